@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -33,6 +33,12 @@ public class GCLogAnalysisApiExecutor extends AbstractApiExecutor<GCModel> {
         return new GCLogAnalyzer(target.toFile(), listener).parse();
     }
 
+    @Override
+    protected double footprintRatio() {
+        // every event of the log is kept as an object with its phases and memory areas
+        return 3.0;
+    }
+
     @Override
     public String namespace() {
         return "gc-log";
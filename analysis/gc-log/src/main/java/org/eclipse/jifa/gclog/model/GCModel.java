@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2022, 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2022, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -27,6 +27,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jifa.analysis.annotation.ApiMeta;
 import org.eclipse.jifa.analysis.listener.ProgressListener;
+import org.eclipse.jifa.analysis.support.Cancellation;
 import org.eclipse.jifa.common.domain.request.PagingRequest;
 import org.eclipse.jifa.common.domain.vo.PageView;
 import org.eclipse.jifa.gclog.diagnoser.AnalysisConfig;
@@ -230,7 +231,9 @@ public abstract class GCModel {
         int indexLow = binarySearchEventIndex(eventList, range.getStart(), true);
         int indexHigh = binarySearchEventIndex(eventList, range.getEnd(), false);
 
+        Cancellation cancellation = Cancellation.current();
         for (int i = indexLow; i < indexHigh; i++) {
+            cancellation.check();
             consumer.accept(eventList.get(i));
         }
     }
@@ -880,7 +883,9 @@ public abstract class GCModel {
         int total = 0;
         List<GCEvent> resultEvents = new ArrayList<>();
 
+        Cancellation cancellation = Cancellation.current();
         for (GCEvent event : gcEvents) {
+            cancellation.check();
             if (!filter.isFiltered(event)) {
                 if (total >= firstIndex && resultEvents.size() < pagingRequest.getPageSize()) {
                     resultEvents.add(event);
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2021, 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2021, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -49,6 +49,11 @@ public class FilterProgressListener implements ProgressListener {
         listener.reset();
     }
 
+    @Override
+    public boolean isCanceled() {
+        return listener.isCanceled();
+    }
+
     @Override
     public String log() {
         return listener.log();
@@ -78,6 +78,12 @@ public interface HeapDumpAnalyzer {
     @ApiMeta(aliases = "directByteBuffer.records")
     PageView<DirectByteBuffer.Item> getDirectByteBuffers(int page, int pageSize);
 
+    @ApiMeta(aliases = "wastedMemory.summary")
+    WastedMemory.Summary getSummaryOfWastedMemory();
+
+    @ApiMeta(aliases = "wastedMemory.records")
+    PageView<WastedMemory.Item> getWastedMemory(int page, int pageSize);
+
     @ApiMeta(aliases = "outbounds")
     PageView<JavaObject> getOutboundOfObject(int objectId, int page, int pageSize);
 
@@ -89,6 +95,9 @@ public interface HeapDumpAnalyzer {
     @ApiMeta(aliases = "findStrings")
     PageView<TheString.Item> getStrings(String pattern, int page, int pageSize);
 
+    @ApiMeta(aliases = "duplicatedStrings")
+    PageView<TheString.DuplicatedItem> getDuplicatedStrings(int page, int pageSize);
+
     @ApiMeta(aliases = "GCRoots.classes")
     PageView<GCRoot.Item> getClassesOfGCRoot(int rootTypeIndex, int page, int pageSize);
 
@@ -135,6 +144,9 @@ public interface HeapDumpAnalyzer {
 
     GCRootPath.Item getPathToGCRoots(int objectId, int skip, int count);
 
+    @ApiMeta(aliases = "retainedSize.objects")
+    long getRetainedSizeOfObjects(int[] objectIds);
+
     @ApiMeta(aliases = "leak.report")
     LeakReport getLeakReport();
 
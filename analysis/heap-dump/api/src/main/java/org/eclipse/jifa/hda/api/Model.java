@@ -659,6 +659,15 @@ public interface Model {
             public long shallowSize;
             public long retainedSize;
         }
+
+        @Data
+        class DuplicatedItem {
+            // id of the first string with this content
+            public int objectId;
+            public String label;
+            public int count;
+            public long wastedSize;
+        }
     }
 
     interface GCRoot {
@@ -730,6 +739,56 @@ public interface Model {
         }
     }
 
+    interface WastedMemory {
+
+        enum Category {
+
+            EMPTY_COLLECTION,
+
+            UNDERFILLED_COLLECTION,
+
+            DUPLICATED_ARRAY,
+
+            BOXED_PRIMITIVE
+        }
+
+        @Data
+        class Item {
+
+            public Category category;
+
+            public String className;
+
+            // one of the objects, e.g. an array of a duplicated content
+            public int objectId;
+
+            public int objects;
+
+            public long shallowSize;
+
+            public long wastedSize;
+
+            // average size / capacity of the collections, null for other categories
+            public Double fillRatio;
+        }
+
+        @Data
+        class Summary {
+
+            public int totalSize;
+
+            public long wastedSize;
+
+            public long emptyCollectionWastedSize;
+
+            public long underfilledCollectionWastedSize;
+
+            public long duplicatedArrayWastedSize;
+
+            public long boxedPrimitiveWastedSize;
+        }
+    }
+
     interface Overview {
 
         @Data
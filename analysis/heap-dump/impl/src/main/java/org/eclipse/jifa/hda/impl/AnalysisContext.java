@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 public class AnalysisContext {
 
@@ -35,6 +36,18 @@ public class AnalysisContext {
 
     volatile SoftReference<LeakReportData> leakReportData= new SoftReference<>(null);
 
+    // see ParallelGraph#shortestPathParents
+    volatile SoftReference<int[]> shortestPathParents = new SoftReference<>(null);
+
+    volatile SoftReference<MergePathData> mergePathData = new SoftReference<>(null);
+
+    volatile SoftReference<WasteAnalysis> wasteAnalysis = new SoftReference<>(null);
+
+    volatile SoftReference<StringIndex> stringIndex = new SoftReference<>(null);
+
+    // completed when the string index is persisted, null if the index is disabled
+    volatile CompletableFuture<Void> stringIndexBuilding;
+
     AnalysisContext(ISnapshot snapshot) {
         this.snapshot = snapshot;
     }
@@ -89,6 +102,12 @@ public class AnalysisContext {
         IResult result;
     }
 
+    static class MergePathData {
+        int[] objectIds;
+
+        ParallelGraph.PathTree tree;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -49,6 +49,7 @@ import org.eclipse.mat.report.QuerySpec;
 import org.eclipse.mat.report.SectionSpec;
 import org.eclipse.mat.report.Spec;
 import org.eclipse.mat.snapshot.ClassHistogramRecord;
+import org.eclipse.mat.snapshot.ClassLoaderHistogramRecord;
 import org.eclipse.mat.snapshot.Histogram;
 import org.eclipse.mat.snapshot.HistogramRecord;
 import org.eclipse.mat.snapshot.IPathsFromGCRootsComputer;
@@ -67,7 +68,9 @@ import org.eclipse.mat.snapshot.model.IPrimitiveArray;
 import org.eclipse.mat.snapshot.model.ObjectReference;
 import org.eclipse.mat.snapshot.query.Icons;
 import org.eclipse.mat.snapshot.query.SnapshotQuery;
+import org.eclipse.mat.util.IProgressListener;
 
+import java.io.File;
 import java.lang.ref.Cleaner;
 import java.lang.ref.SoftReference;
 import java.net.URL;
@@ -84,6 +87,8 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
@@ -106,9 +111,11 @@ import static org.eclipse.jifa.hda.api.Model.OQLResult;
 import static org.eclipse.jifa.hda.api.Model.Overview;
 import static org.eclipse.jifa.hda.api.Model.TheString;
 import static org.eclipse.jifa.hda.api.Model.UnreachableObject;
+import static org.eclipse.jifa.hda.api.Model.WastedMemory;
 import static org.eclipse.jifa.hda.api.SearchPredicate.createPredicate;
 import static org.eclipse.jifa.hda.impl.AnalysisContext.ClassLoaderExplorerData;
 import static org.eclipse.jifa.hda.impl.AnalysisContext.DirectByteBufferData;
+import static org.eclipse.jifa.hda.impl.AnalysisContext.MergePathData;
 
 @SuppressWarnings("unchecked")
 public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
@@ -729,6 +736,43 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
         });
     }
 
+    @Override
+    public WastedMemory.Summary getSummaryOfWastedMemory() {
+        return $(() -> queryWasteAnalysis(context).summary);
+    }
+
+    @Override
+    public PageView<WastedMemory.Item> getWastedMemory(int page, int pageSize) {
+        return $(() -> PageViewBuilder.build(queryWasteAnalysis(context).items, new PagingRequest(page, pageSize)));
+    }
+
+    private WasteAnalysis queryWasteAnalysis(AnalysisContext context) throws SnapshotException {
+        WasteAnalysis analysis = context.wasteAnalysis.get();
+        if (analysis != null) {
+            return analysis;
+        }
+
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (context) {
+            analysis = context.wasteAnalysis.get();
+            if (analysis != null) {
+                return analysis;
+            }
+
+            File file = WasteAnalysis.indexFile(context.snapshot);
+            if (file.exists()) {
+                analysis = $(() -> WasteAnalysis.load(file), null);
+            }
+            if (analysis == null) {
+                analysis = WasteAnalysis.analyze(context.snapshot);
+                WasteAnalysis result = analysis;
+                $(() -> result.save(file));
+            }
+            context.wasteAnalysis = new SoftReference<>(analysis);
+            return analysis;
+        }
+    }
+
     private PageView<JavaObject> queryIOBoundsOfObject(AnalysisContext context, int objectId, int page,
                                                        int pageSize, boolean outbound) throws SnapshotException {
         ISnapshot snapshot = context.snapshot;
@@ -781,6 +825,20 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
     @Override
     public PageView<TheString.Item> getStrings(String pattern, int page, int pageSize) {
         return $(() -> {
+            StringIndex index = StringIndex.isIndexable(pattern) ? queryStringIndex(context, false) : null;
+            if (index != null) {
+                int[] ids = index.search(context.snapshot, pattern);
+                return PageViewBuilder.build(ids, new PagingRequest(page, pageSize), id -> $(() -> {
+                    IObject object = context.snapshot.getObject(id);
+                    TheString.Item item = new TheString.Item();
+                    item.setObjectId(id);
+                    item.setLabel(object.getClassSpecificName());
+                    item.setShallowSize(object.getUsedHeapSize());
+                    item.setRetainedSize(object.getRetainedHeapSize());
+                    return item;
+                }));
+            }
+
             IResultTree tree = queryByCommand(context, "find_strings java.lang.String -pattern " +
                                                        (pattern == null || pattern.equals("") ? ".*" : ".*" + pattern + ".*"));
             List<?> strings = tree.getElements();
@@ -796,6 +854,75 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
         });
     }
 
+    @Override
+    public PageView<TheString.DuplicatedItem> getDuplicatedStrings(int page, int pageSize) {
+        return $(() -> {
+            StringIndex index = queryStringIndex(context, true);
+            return PageViewBuilder.build(new PageViewBuilder.Callback<Integer>() {
+                @Override
+                public int totalSize() {
+                    return index.duplicatedGroupCount();
+                }
+
+                @Override
+                public Integer get(int group) {
+                    return group;
+                }
+            }, new PagingRequest(page, pageSize), group -> $(() -> {
+                TheString.DuplicatedItem item = new TheString.DuplicatedItem();
+                int objectId = index.groupObjectId(group);
+                item.setObjectId(objectId);
+                item.setLabel(context.snapshot.getObject(objectId).getClassSpecificName());
+                item.setCount(index.groupCount(group));
+                item.setWastedSize(index.groupWastedSize(group));
+                return item;
+            }));
+        });
+    }
+
+    /**
+     * @param wait whether to wait for the string index to be built, scheduling the build if it is disabled
+     * @return the string index, or null if it is not available and wait is false
+     */
+    private StringIndex queryStringIndex(AnalysisContext context, boolean wait) {
+        StringIndex index = context.stringIndex.get();
+        if (index != null) {
+            return index;
+        }
+
+        CompletableFuture<Void> building;
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (context) {
+            if (context.stringIndexBuilding == null && wait) {
+                StringIndex.schedule(context);
+            }
+            building = context.stringIndexBuilding;
+        }
+        if (building == null) {
+            return null;
+        }
+        if (wait) {
+            try {
+                building.join();
+            } catch (CompletionException e) {
+                throw new AnalysisException(e.getCause());
+            }
+        } else if (!building.isDone() || building.isCompletedExceptionally()) {
+            return null;
+        }
+
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (context) {
+            index = context.stringIndex.get();
+            if (index == null) {
+                index = wait ? $(() -> StringIndex.load(StringIndex.indexFile(context.snapshot)))
+                             : $(() -> StringIndex.load(StringIndex.indexFile(context.snapshot)), null);
+                context.stringIndex = new SoftReference<>(index);
+            }
+            return index;
+        }
+    }
+
     @Override
     public PageView<GCRoot.Item> getClassesOfGCRoot(int rootTypeIndex, int page, int pageSize) {
         return $(() -> {
@@ -951,13 +1078,6 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
         });
     }
 
-    private IResultTree queryMultiplePath2GCRootsTreeByClassId(AnalysisContext context, int classId,
-                                                               GCRootPath.Grouping grouping)
-            throws Exception {
-        ClassImpl clazz = (ClassImpl) context.snapshot.getObject(classId);
-        return queryMultiplePath2GCRootsTreeByObjectIds(context, clazz.getObjectIds(), grouping);
-    }
-
     private IResultTree queryMultiplePath2GCRootsTreeByObjectIds(AnalysisContext context, int[] objectIds,
                                                                  GCRootPath.Grouping grouping)
             throws Exception {
@@ -993,22 +1113,86 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
         }));
     }
 
+    /**
+     * Large object sets are merged from the shortest path tree computed by {@link ParallelGraph}, smaller ones by
+     * MAT's merge_shortest_paths.
+     */
+    private PageView<GCRootPath.MergePathToGCRootsTreeNode> queryMergePathToGCRoots(
+            AnalysisContext context, int[] objectIds, int[] objectIdPathInGCPathTree, GCRootPath.Grouping grouping,
+            int page, int pageSize) throws Exception {
+        if (objectIds.length < ParallelGraph.THRESHOLD) {
+            IResultTree tree = queryMultiplePath2GCRootsTreeByObjectIds(context, objectIds, grouping);
+            List<?> elements;
+            if (objectIdPathInGCPathTree == null) {
+                elements = tree.getElements();
+            } else {
+                Object object = Helper.fetchObjectInResultTree(tree, objectIdPathInGCPathTree);
+                elements = object == null ? Collections.emptyList() : tree.getChildren(object);
+            }
+            return buildMergePathRootsNode(context, tree, elements, page, pageSize);
+        }
+
+        if (grouping != GCRootPath.Grouping.FROM_GC_ROOTS) {
+            throw new CommonException("Unsupported grouping now");
+        }
+        ParallelGraph.PathTree.Node node = queryMergePathData(context, objectIds).tree.find(objectIdPathInGCPathTree);
+        List<ParallelGraph.PathTree.Node> elements = node == null ? Collections.emptyList() : node.sortedChildren();
+        ISnapshot snapshot = context.snapshot;
+        return PageViewBuilder.build(elements, new PagingRequest(page, pageSize), element -> $(() -> {
+            GCRootPath.MergePathToGCRootsTreeNode record = new GCRootPath.MergePathToGCRootsTreeNode();
+            IObject object = snapshot.getObject(element.objectId);
+            record.setObjectId(element.objectId);
+            record.setObjectType(typeOf(object));
+            record.setGCRoot(snapshot.isGCRoot(element.objectId));
+            record.setClassName(object.getDisplayName());
+            record.setSuffix(Helper.suffix(object.getGCRootInfo()));
+            record.setRefObjects(element.refObjects);
+            record.setShallowHeap(object.getUsedHeapSize());
+            record.setRefShallowHeap(element.refShallowHeap);
+            record.setRetainedHeap(object.getRetainedHeapSize());
+            return record;
+        }));
+    }
+
+    private MergePathData queryMergePathData(AnalysisContext context, int[] objectIds) throws SnapshotException {
+        MergePathData data = context.mergePathData.get();
+        if (data != null && Arrays.equals(data.objectIds, objectIds)) {
+            return data;
+        }
+
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (context) {
+            data = context.mergePathData.get();
+            if (data != null && Arrays.equals(data.objectIds, objectIds)) {
+                return data;
+            }
+
+            int[] parents = context.shortestPathParents.get();
+            if (parents == null) {
+                parents = ParallelGraph.shortestPathParents(context.snapshot, convert(context, GCRootPath.EXCLUDES));
+                context.shortestPathParents = new SoftReference<>(parents);
+            }
+            data = new MergePathData();
+            data.objectIds = objectIds;
+            data.tree = ParallelGraph.mergePaths(context.snapshot, parents, objectIds);
+            context.mergePathData = new SoftReference<>(data);
+            return data;
+        }
+    }
+
     @Override
     public PageView<GCRootPath.MergePathToGCRootsTreeNode> getRootsOfMergePathToGCRootsByClassId(
             int classId, GCRootPath.Grouping grouping, int page, int pageSize) {
         return $(() -> {
-            IResultTree tree = queryMultiplePath2GCRootsTreeByClassId(context, classId, grouping);
-            return buildMergePathRootsNode(context, tree, tree.getElements(), page, pageSize);
+            int[] objectIds = ((IClass) context.snapshot.getObject(classId)).getObjectIds();
+            return queryMergePathToGCRoots(context, objectIds, null, grouping, page, pageSize);
         });
     }
 
     @Override
     public PageView<GCRootPath.MergePathToGCRootsTreeNode> getRootsOfMergePathToGCRootsByObjectIds(
             int[] objectIds, GCRootPath.Grouping grouping, int page, int pageSize) {
-        return $(() -> {
-            IResultTree tree = queryMultiplePath2GCRootsTreeByObjectIds(context, objectIds, grouping);
-            return buildMergePathRootsNode(context, tree, tree.getElements(), page, pageSize);
-        });
+        return $(() -> queryMergePathToGCRoots(context, objectIds, null, grouping, page, pageSize));
     }
 
     @Override
@@ -1016,10 +1200,8 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
             int classId, int[] objectIdPathInGCPathTree, GCRootPath.Grouping grouping,
             int page, int pageSize) {
         return $(() -> {
-            IResultTree tree = queryMultiplePath2GCRootsTreeByClassId(context, classId, grouping);
-            Object object = Helper.fetchObjectInResultTree(tree, objectIdPathInGCPathTree);
-            List<?> elements = object == null ? Collections.emptyList() : tree.getChildren(object);
-            return buildMergePathRootsNode(context, tree, elements, page, pageSize);
+            int[] objectIds = ((IClass) context.snapshot.getObject(classId)).getObjectIds();
+            return queryMergePathToGCRoots(context, objectIds, objectIdPathInGCPathTree, grouping, page, pageSize);
         });
     }
 
@@ -1027,12 +1209,15 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
     public PageView<GCRootPath.MergePathToGCRootsTreeNode> getChildrenOfMergePathToGCRootsByObjectIds(
             int[] objectIds, int[] objectIdPathInGCPathTree, GCRootPath.Grouping grouping,
             int page, int pageSize) {
-        return $(() -> {
-            IResultTree tree = queryMultiplePath2GCRootsTreeByObjectIds(context, objectIds, grouping);
-            Object object = Helper.fetchObjectInResultTree(tree, objectIdPathInGCPathTree);
-            List<?> elements = object == null ? Collections.emptyList() : tree.getChildren(object);
-            return buildMergePathRootsNode(context, tree, elements, page, pageSize);
-        });
+        return $(() -> queryMergePathToGCRoots(context, objectIds, objectIdPathInGCPathTree, grouping, page,
+                                               pageSize));
+    }
+
+    @Override
+    public long getRetainedSizeOfObjects(int[] objectIds) {
+        return $(() -> objectIds.length < ParallelGraph.THRESHOLD
+                       ? context.snapshot.getHeapSize(context.snapshot.getRetainedSet(objectIds, Helper.cancellableListener()))
+                       : ParallelGraph.retainedSize(context.snapshot, objectIds));
     }
 
     @Override
@@ -1522,12 +1707,35 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
         });
     }
 
+    /**
+     * Records of at least {@link ParallelGraph#THRESHOLD} objects get the exact retained size computed by
+     * {@link ParallelGraph}, smaller ones MAT's approximation. The histogram is cached, so is the size.
+     */
+    private static void calculateRetainedSize(AnalysisContext context, ClassHistogramRecord record,
+                                              IProgressListener listener) throws SnapshotException {
+        if (record.getNumberOfObjects() < ParallelGraph.THRESHOLD) {
+            record.calculateRetainedSize(context.snapshot, true, true, listener);
+        } else if (record.getRetainedHeapSize() == 0) {
+            record.setRetainedHeapSize(ParallelGraph.retainedSize(context.snapshot, record.getObjectIds()));
+        }
+    }
+
+    private static void calculateRetainedSize(AnalysisContext context, ClassLoaderHistogramRecord record,
+                                              IProgressListener listener) throws SnapshotException {
+        if (record.getNumberOfObjects() < ParallelGraph.THRESHOLD) {
+            record.calculateRetainedSize(context.snapshot, true, true, listener);
+        } else if (record.getRetainedHeapSize() == 0) {
+            record.setRetainedHeapSize(ParallelGraph.retainedSize(context.snapshot, record.getObjectIds()));
+        }
+    }
+
     @Override
     public PageView<Model.Histogram.Item> getHistogram(Model.Histogram.Grouping groupingBy,
                                                        int[] ids, String sortBy, boolean ascendingOrder,
                                                        String searchText, SearchType searchType,
                                                        int page, int pageSize) {
         return $(() -> {
+            IProgressListener listener = Helper.cancellableListener();
             Map<String, Object> args = new HashMap<>();
             if (ids != null) {
                 args.put("objects", Helper.buildHeapObjectArgument(ids));
@@ -1539,8 +1747,7 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
                     List<ClassHistogramRecord> records =
                             (List<ClassHistogramRecord>) h.getClassHistogramRecords();
                     return PageViewBuilder.<ClassHistogramRecord, Model.Histogram.Item>fromList(records)
-                                          .beforeMap(record -> $(() -> record
-                                                  .calculateRetainedSize(context.snapshot, true, true, Helper.VOID_LISTENER)))
+                                          .beforeMap(record -> $(() -> calculateRetainedSize(context, record, listener)))
                                           .paging(new PagingRequest(page, pageSize))
                                           .map(record -> new Model.Histogram.Item(record.getClassId(), record.getLabel(),
                                                                                   Model.Histogram.ItemType.CLASS,
@@ -1556,8 +1763,7 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
                     PageViewBuilder<? extends XClassLoaderHistogramRecord, Model.Histogram.Item> builder =
                             PageViewBuilder.fromList((List<? extends XClassLoaderHistogramRecord>) ct.getElements());
                     return builder
-                            .beforeMap(record -> $(() -> record.calculateRetainedSize(context.snapshot, true, true,
-                                                                                      Helper.VOID_LISTENER)))
+                            .beforeMap(record -> $(() -> calculateRetainedSize(context, record, listener)))
                             .paging(new PagingRequest(page, pageSize))
                             .map(record ->
                                          new Model.Histogram.Item(record.getClassLoaderId(), record.getLabel(),
@@ -1656,6 +1862,7 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
                                                                  String sortBy, boolean ascendingOrder,
                                                                  int parentObjectId, int page, int pageSize) {
         return $(() -> {
+            IProgressListener listener = Helper.cancellableListener();
             Map<String, Object> args = new HashMap<>();
             if (ids != null) {
                 args.put("objects", Helper.buildHeapObjectArgument(ids));
@@ -1681,8 +1888,8 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
                     if (children != null) {
                         return PageViewBuilder.<ClassHistogramRecord, Model.Histogram.Item>fromList(
                                                       (List<ClassHistogramRecord>) children)
-                                              .beforeMap(record -> $(() -> record
-                                                      .calculateRetainedSize(context.snapshot, true, true, Helper.VOID_LISTENER)))
+                                              .beforeMap(record -> $(() -> calculateRetainedSize(context, record,
+                                                                                                 listener)))
                                               .paging(new PagingRequest(page, pageSize))
                                               .map(record -> new Model.Histogram.Item(record.getClassId(), record.getLabel(),
                                                                                       Model.Histogram.ItemType.CLASS,
@@ -2004,7 +2211,7 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
         public HeapDumpAnalyzer provide(Path path, Map<String, String> options,
                                         ProgressListener listener) {
             Map<String, String> finalOptions = options != null ? options : Collections.emptyMap();
-            return new HeapDumpAnalyzerImpl(new AnalysisContext(
+            AnalysisContext context = new AnalysisContext(
                     $(() ->
                       {
                           try {
@@ -2016,7 +2223,11 @@ public class HeapDumpAnalyzerImpl implements HeapDumpAnalyzer {
                               HprofPreferencesAccess.setStrictness(null);
                           }
                       })
-            ));
+            );
+            if (!"false".equals(finalOptions.get("string_index"))) {
+                StringIndex.schedule(context);
+            }
+            return new HeapDumpAnalyzerImpl(context);
         }
     }
 }
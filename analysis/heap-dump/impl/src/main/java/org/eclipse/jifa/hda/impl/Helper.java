@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2020, 2021 Contributors to the Eclipse Foundation
+ * Copyright (c) 2020, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -12,6 +12,8 @@
  ********************************************************************************/
 package org.eclipse.jifa.hda.impl;
 
+import org.eclipse.jifa.analysis.support.Cancellation;
+import org.eclipse.jifa.common.util.ExecutorFactory;
 import org.eclipse.jifa.common.util.Validate;
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.query.IContextObject;
@@ -26,6 +28,7 @@ import org.eclipse.mat.util.VoidProgressListener;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static org.eclipse.jifa.common.Constant.EMPTY_STRING;
 
@@ -34,6 +37,24 @@ public class Helper {
 
     public static IProgressListener VOID_LISTENER = new VoidProgressListener();
 
+    /**
+     * @return a listener which is canceled once the analysis running on the calling thread is cancelled
+     */
+    public static IProgressListener cancellableListener() {
+        Cancellation cancellation = Cancellation.current();
+        return new VoidProgressListener() {
+            @Override
+            public boolean isCanceled() {
+                return cancellation.isCancelled();
+            }
+        };
+    }
+
+    /**
+     * The executor shared by the parallel computations over a snapshot
+     */
+    static final Executor EXECUTOR = ExecutorFactory.newExecutor("Heap Dump Analysis");
+
     public static int fetchObjectId(IContextObject context) {
         return context == null ? ILLEGAL_OBJECT_ID : context.getObjectId();
     }
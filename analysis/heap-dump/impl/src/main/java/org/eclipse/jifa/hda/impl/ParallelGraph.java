@@ -0,0 +1,373 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.hda.impl;
+
+import org.eclipse.jifa.analysis.support.Cancellation;
+import org.eclipse.jifa.hda.api.AnalysisException;
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntPredicate;
+
+/**
+ * Parallel traversals of the object graph of a snapshot.
+ * <p>
+ * Both traversals are level synchronous breadth first searches starting from the GC roots: every level is partitioned
+ * among the threads of {@link Helper#EXECUTOR}, and objects are claimed through a visited bitset shared by all
+ * threads.
+ */
+class ParallelGraph {
+
+    /**
+     * Object sets smaller than this are handled by MAT queries.
+     */
+    static final int THRESHOLD = 10_000;
+
+    static final int ROOT = -1;
+
+    static final int UNREACHABLE = -2;
+
+    private static final int MIN_PARTITION = 1024;
+
+    private final ISnapshot snapshot;
+
+    private final int numberOfObjects;
+
+    private ParallelGraph(ISnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.numberOfObjects = snapshot.getSnapshotInfo().getNumberOfObjects();
+    }
+
+    /**
+     * Compute a shortest path from the GC roots to every object.
+     *
+     * @param excludes the references not to follow, as returned by HeapDumpAnalyzerImpl#convert
+     * @return parent of each object on its path, {@link #ROOT} for GC roots and {@link #UNREACHABLE} for objects
+     * reachable only through excluded references
+     */
+    static int[] shortestPathParents(ISnapshot snapshot, Map<IClass, Set<String>> excludes) throws SnapshotException {
+        ParallelGraph graph = new ParallelGraph(snapshot);
+        int[] parents = new int[graph.numberOfObjects];
+        Arrays.fill(parents, UNREACHABLE);
+        Excludes ex = new Excludes(snapshot, excludes);
+        graph.traverse(id -> false, ex, parents);
+        return parents;
+    }
+
+    /**
+     * Compute the size of the objects that would be garbage collected if the given objects were, i.e. the exact
+     * retained size of the set.
+     */
+    static long retainedSize(ISnapshot snapshot, int[] objectIds) throws SnapshotException {
+        ParallelGraph graph = new ParallelGraph(snapshot);
+        AtomicLongArray blocked = new AtomicLongArray(words(graph.numberOfObjects));
+        for (int id : objectIds) {
+            set(blocked, id);
+        }
+        AtomicLongArray reached = graph.traverse(id -> get(blocked, id), null, null);
+
+        // objects not reached when the set is removed are retained by the set
+        int partitions = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int size = (graph.numberOfObjects + partitions - 1) / partitions;
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int from = 0; from < graph.numberOfObjects; from += size) {
+            int start = from;
+            int end = Math.min(graph.numberOfObjects, from + size);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                long sum = 0;
+                for (int id = start; id < end; id++) {
+                    if (!get(reached, id)) {
+                        try {
+                            sum += snapshot.getHeapSize(id);
+                        } catch (SnapshotException e) {
+                            throw new CompletionException(e);
+                        }
+                    }
+                }
+                return sum;
+            }, Helper.EXECUTOR));
+        }
+        long retained = 0;
+        for (Long sum : join(futures)) {
+            retained += sum;
+        }
+        return retained;
+    }
+
+    /**
+     * Merge the shortest paths of the given objects into a tree whose roots are GC roots.
+     */
+    static PathTree mergePaths(ISnapshot snapshot, int[] parents, int[] objectIds) throws SnapshotException {
+        PathTree tree = new PathTree();
+        int[] path = new int[16];
+        for (int objectId : objectIds) {
+            if (parents[objectId] == UNREACHABLE) {
+                continue;
+            }
+            int length = 0;
+            for (int id = objectId; id != ROOT; id = parents[id]) {
+                if (length == path.length) {
+                    path = Arrays.copyOf(path, length << 1);
+                }
+                path[length++] = id;
+            }
+            long shallowHeap = snapshot.getHeapSize(objectId);
+            PathTree.Node node = tree.root;
+            for (int i = length - 1; i >= 0; i--) {
+                node = node.children.computeIfAbsent(path[i], PathTree.Node::new);
+                node.refObjects++;
+                node.refShallowHeap += shallowHeap;
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * @param blocked   objects that are neither visited nor followed
+     * @param excludes  references that are not followed, nullable
+     * @param parents   receives the parent of every visited object, nullable
+     * @return the visited objects
+     */
+    private AtomicLongArray traverse(IntPredicate blocked, Excludes excludes, int[] parents)
+            throws SnapshotException {
+        AtomicLongArray visited = new AtomicLongArray(words(numberOfObjects));
+        IntList frontier = new IntList();
+        for (int root : snapshot.getGCRoots()) {
+            if (!blocked.test(root) && set(visited, root)) {
+                frontier.add(root);
+                if (parents != null) {
+                    parents[root] = ROOT;
+                }
+            }
+        }
+
+        Cancellation cancellation = Cancellation.current();
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        while (frontier.size > 0) {
+            // a level is the unit of cancellation
+            cancellation.check();
+            int[] current = frontier.values;
+            int length = frontier.size;
+            int partition = Math.max(MIN_PARTITION, (length + parallelism - 1) / parallelism);
+            List<CompletableFuture<IntList>> futures = new ArrayList<>();
+            for (int from = 0; from < length; from += partition) {
+                int start = from;
+                int end = Math.min(length, from + partition);
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    IntList next = new IntList();
+                    try {
+                        for (int i = start; i < end; i++) {
+                            int id = current[i];
+                            int[] outbounds = snapshot.getOutboundReferentIds(id);
+                            int[] excluded = excludes != null ? excludes.excluded(id, outbounds) : Excludes.NONE;
+                            if (excluded == Excludes.ALL) {
+                                continue;
+                            }
+                            for (int child : outbounds) {
+                                if (Excludes.contains(excluded, child) || blocked.test(child) ||
+                                    !set(visited, child)) {
+                                    continue;
+                                }
+                                // only the thread that claimed the child writes its parent
+                                if (parents != null) {
+                                    parents[child] = id;
+                                }
+                                next.add(child);
+                            }
+                        }
+                    } catch (SnapshotException e) {
+                        throw new CompletionException(e);
+                    }
+                    return next;
+                }, Helper.EXECUTOR));
+            }
+
+            IntList next = new IntList();
+            for (IntList partial : join(futures)) {
+                next.addAll(partial);
+            }
+            frontier = next;
+        }
+        return visited;
+    }
+
+    private static <T> List<T> join(List<CompletableFuture<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                throw new AnalysisException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static boolean get(AtomicLongArray bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * @return true if the bit was not set before
+     */
+    private static boolean set(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long value;
+        do {
+            value = bits.get(word);
+            if ((value & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, value, value | mask));
+        return true;
+    }
+
+    /**
+     * Merged shortest paths, the children of the root are GC roots.
+     */
+    static class PathTree {
+
+        final Node root = new Node(ROOT);
+
+        /**
+         * @param objectIdPath the ids from a GC root down to a node, empty for the virtual root
+         * @return the node, or null if there is no such path
+         */
+        Node find(int[] objectIdPath) {
+            Node node = root;
+            if (objectIdPath != null) {
+                for (int id : objectIdPath) {
+                    node = node.children.get(id);
+                    if (node == null) {
+                        return null;
+                    }
+                }
+            }
+            return node;
+        }
+
+        static class Node {
+
+            final int objectId;
+
+            final Map<Integer, Node> children = new HashMap<>();
+
+            // the number and shallow size of the given objects whose paths go through this node
+            int refObjects;
+
+            long refShallowHeap;
+
+            Node(int objectId) {
+                this.objectId = objectId;
+            }
+
+            List<Node> sortedChildren() {
+                List<Node> list = new ArrayList<>(children.values());
+                list.sort(Comparator.comparingInt((Node n) -> n.refObjects).reversed()
+                                    .thenComparingInt(n -> n.objectId));
+                return list;
+            }
+        }
+    }
+
+    private static class Excludes {
+
+        static final int[] NONE = new int[0];
+
+        // compared by identity
+        static final int[] ALL = new int[0];
+
+        private final ISnapshot snapshot;
+
+        // class id -> excluded field names, null means all references
+        private final Map<Integer, Set<String>> fieldsByClassId = new HashMap<>();
+
+        Excludes(ISnapshot snapshot, Map<IClass, Set<String>> excludes) {
+            this.snapshot = snapshot;
+            if (excludes != null) {
+                excludes.forEach((clazz, fields) -> fieldsByClassId.put(clazz.getObjectId(), fields));
+            }
+        }
+
+        /**
+         * @param outbounds outbound referents of the object, the first one is the class
+         * @return the ids of the excluded referents, {@link #NONE} or {@link #ALL}
+         */
+        int[] excluded(int id, int[] outbounds) throws SnapshotException {
+            if (outbounds.length == 0 || !fieldsByClassId.containsKey(outbounds[0]) || snapshot.isClass(id)) {
+                return NONE;
+            }
+            Set<String> fields = fieldsByClassId.get(outbounds[0]);
+            if (fields == null) {
+                return ALL;
+            }
+            IObject object = snapshot.getObject(id);
+            int[] excluded = NONE;
+            for (String field : fields) {
+                if (object.resolveValue(field) instanceof IObject referent) {
+                    excluded = Arrays.copyOf(excluded, excluded.length + 1);
+                    excluded[excluded.length - 1] = referent.getObjectId();
+                }
+            }
+            return excluded;
+        }
+
+        static boolean contains(int[] excluded, int id) {
+            for (int e : excluded) {
+                if (e == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class IntList {
+
+        int[] values = new int[16];
+
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size << 1));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+}
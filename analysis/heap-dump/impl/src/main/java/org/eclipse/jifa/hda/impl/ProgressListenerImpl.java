@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2021, 2022 Contributors to the Eclipse Foundation
+ * Copyright (c) 2021, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -14,12 +14,16 @@
 package org.eclipse.jifa.hda.impl;
 
 import org.eclipse.jifa.analysis.listener.ProgressListener;
+import org.eclipse.jifa.analysis.support.Cancellation;
 import org.eclipse.jifa.hda.api.FilterProgressListener;
 import org.eclipse.mat.util.IProgressListener;
 
 public class ProgressListenerImpl extends FilterProgressListener implements IProgressListener {
     private boolean cancelled = false;
 
+    // the queries of MAT check the listener on their own threads
+    private final Cancellation cancellation = Cancellation.current();
+
     public ProgressListenerImpl(ProgressListener listener) {
         super(listener);
     }
@@ -30,7 +34,7 @@ public class ProgressListenerImpl extends FilterProgressListener implements IPro
 
     @Override
     public boolean isCanceled() {
-        return cancelled;
+        return cancelled || cancellation.isCancelled() || super.isCanceled();
     }
 
     @Override
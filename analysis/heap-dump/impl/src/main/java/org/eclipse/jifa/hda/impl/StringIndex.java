@@ -0,0 +1,731 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.hda.impl;
+
+import org.eclipse.jifa.common.util.ExecutorFactory;
+import org.eclipse.jifa.hda.api.AnalysisException;
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IInstance;
+import org.eclipse.mat.snapshot.model.IObject;
+import org.eclipse.mat.snapshot.model.PrettyPrinter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * A persisted trigram index over the contents of java.lang.String objects.
+ * <p>
+ * Substring search becomes a posting list intersection followed by verification of the candidates, and the content
+ * hashes computed while building are used to find the candidates of duplicated strings, which are grouped by content.
+ */
+class StringIndex {
+
+    static final String FILE_SUFFIX = "strings.jifa.index";
+
+    private static final int MAGIC = 0x4A534958;
+
+    private static final int VERSION = 2;
+
+    private static final int GRAM = 3;
+
+    // the same limit as IObject#getClassSpecificName used by find_strings
+    private static final int MAX_INDEXED_CHARS = 1024;
+
+    private static final Executor BUILDER = ExecutorFactory.newExecutor("Heap Dump String Index Builder", 1,
+                                                                        Integer.MAX_VALUE);
+
+    // string index -> object id, in ascending order of object id
+    private final int[] objectIds;
+
+    // sorted trigram keys
+    private final long[] grams;
+
+    // postings of grams[i] are postings[offsets[i], offsets[i + 1]), the total exceeds the int range for large dumps
+    private final long[] offsets;
+
+    private final Postings postings;
+
+    // duplicated string groups, sorted by wasted size in descending order
+    private final Groups groups;
+
+    private StringIndex(int[] objectIds, long[] grams, long[] offsets, Postings postings, Groups groups) {
+        this.objectIds = objectIds;
+        this.grams = grams;
+        this.offsets = offsets;
+        this.postings = postings;
+        this.groups = groups;
+    }
+
+    /**
+     * Build the index in background unless it has been persisted by a previous analysis.
+     */
+    static void schedule(AnalysisContext context) {
+        context.stringIndexBuilding = CompletableFuture.runAsync(() -> {
+            if (isCurrent(indexFile(context.snapshot))) {
+                return;
+            }
+            try {
+                context.stringIndex = new SoftReference<>(build(context.snapshot));
+            } catch (SnapshotException | IOException e) {
+                throw new CompletionException(e);
+            }
+        }, BUILDER);
+    }
+
+    static File indexFile(ISnapshot snapshot) {
+        return new File(snapshot.getSnapshotInfo().getPrefix() + FILE_SUFFIX);
+    }
+
+    /**
+     * @param pattern the pattern passed to find strings
+     * @return true if the pattern is a plain literal long enough to be looked up in the index
+     */
+    static boolean isIndexable(String pattern) {
+        if (pattern == null || pattern.length() < GRAM) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            if ("\\^$.|?*+()[]{}".indexOf(pattern.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the file is an index of the current version, an index of a previous version is built again
+     */
+    static boolean isCurrent(File file) {
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static StringIndex load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported string index: " + file.getAbsolutePath());
+            }
+            int[] objectIds = readInts(in);
+            long[] grams = readLongs(in);
+            long[] offsets = readLongs(in);
+            Postings postings = Postings.read(in);
+            Groups groups = new Groups(readInts(in), readInts(in), readLongs(in));
+            return new StringIndex(objectIds, grams, offsets, postings, groups);
+        }
+    }
+
+    /**
+     * Build the index over all strings of the snapshot in parallel and persist it next to the snapshot index.
+     */
+    static StringIndex build(ISnapshot snapshot) throws SnapshotException, IOException {
+        int[] ids = stringObjectIds(snapshot);
+        int n = ids.length;
+        long[] hashes = new long[n];
+        int[] valueIds = new int[n];
+        long[] stringSizes = new long[n];
+        long[] valueSizes = new long[n];
+
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int chunk = Math.max(4096, (n + parallelism - 1) / parallelism);
+        List<CompletableFuture<RangePostings>> futures = new ArrayList<>();
+        for (int from = 0; from < n; from += chunk) {
+            int start = from;
+            int end = Math.min(n, from + chunk);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return indexRange(snapshot, ids, start, end, hashes, valueIds, stringSizes, valueSizes);
+                } catch (SnapshotException e) {
+                    throw new CompletionException(e);
+                }
+            }, Helper.EXECUTOR));
+        }
+        List<RangePostings> ranges = new ArrayList<>(futures.size());
+        for (CompletableFuture<RangePostings> future : futures) {
+            ranges.add(join(future));
+        }
+
+        Groups groups = groupDuplicates(ids, hashes, valueIds, stringSizes, valueSizes,
+                                        i -> contentOf(snapshot.getObject(ids[i])), Helper.EXECUTOR);
+        StringIndex index = assemble(ids, ranges, groups);
+        index.save(indexFile(snapshot));
+        return index;
+    }
+
+    /**
+     * Merge the postings of the ranges, which are released once merged. The ranges are merged in order so that every
+     * posting list stays sorted.
+     */
+    static StringIndex assemble(int[] objectIds, List<RangePostings> ranges, Groups groups) {
+        int gramCount = 0;
+        for (RangePostings range : ranges) {
+            gramCount += range.gramCount;
+        }
+        long[] grams = new long[gramCount];
+        int g = 0;
+        for (RangePostings range : ranges) {
+            System.arraycopy(range.grams, 0, grams, g, range.gramCount);
+            g += range.gramCount;
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        grams = Arrays.copyOf(grams, distinct);
+
+        long[] offsets = new long[grams.length + 1];
+        for (RangePostings range : ranges) {
+            for (int slot = 0; slot < range.gramCount; slot++) {
+                offsets[Arrays.binarySearch(grams, range.grams[slot]) + 1] += range.counts[slot];
+            }
+        }
+        for (int i = 0; i < grams.length; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        Postings postings = new Postings(offsets[grams.length]);
+        long[] cursors = Arrays.copyOf(offsets, grams.length);
+        for (int r = 0; r < ranges.size(); r++) {
+            RangePostings range = ranges.get(r);
+            for (int slot = 0; slot < range.gramCount; slot++) {
+                int i = Arrays.binarySearch(grams, range.grams[slot]);
+                for (int p = range.heads[slot]; p >= 0; p = range.next[p]) {
+                    postings.set(cursors[i]++, range.strings[p]);
+                }
+            }
+            ranges.set(r, null);
+        }
+        return new StringIndex(objectIds, grams, offsets, postings, groups);
+    }
+
+    /**
+     * @return the ids of the strings containing the literal, in ascending order
+     */
+    int[] search(ISnapshot snapshot, String literal) throws SnapshotException {
+        IntList result = new IntList();
+        for (int candidate : candidates(literal)) {
+            int objectId = objectIds[candidate];
+            String content = snapshot.getObject(objectId).getClassSpecificName();
+            if (content != null && content.contains(literal)) {
+                result.add(objectId);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * @return the indexes of the strings containing every trigram of the literal, in ascending order
+     */
+    int[] candidates(String literal) {
+        String key = literal.length() > MAX_INDEXED_CHARS ? literal.substring(0, MAX_INDEXED_CHARS) : literal;
+        Set<Long> distinct = new HashSet<>();
+        for (int i = 0; i + GRAM <= key.length(); i++) {
+            distinct.add(gram(key, i));
+        }
+
+        List<long[]> ranges = new ArrayList<>(distinct.size());
+        for (long gram : distinct) {
+            int i = Arrays.binarySearch(grams, gram);
+            if (i < 0) {
+                return new int[0];
+            }
+            ranges.add(new long[]{offsets[i], offsets[i + 1]});
+        }
+        // intersect the shortest posting lists first
+        ranges.sort((a, b) -> Long.compare(a[1] - a[0], b[1] - b[0]));
+        int[] candidates = postings.copy(ranges.get(0)[0], ranges.get(0)[1]);
+        for (int r = 1; r < ranges.size() && candidates.length > 0; r++) {
+            candidates = intersect(candidates, ranges.get(r)[0], ranges.get(r)[1]);
+        }
+        return candidates;
+    }
+
+    int duplicatedGroupCount() {
+        return groups.objectIds.length;
+    }
+
+    int groupObjectId(int group) {
+        return groups.objectIds[group];
+    }
+
+    int groupCount(int group) {
+        return groups.counts[group];
+    }
+
+    long groupWastedSize(int group) {
+        return groups.wastedSizes[group];
+    }
+
+    private int[] intersect(int[] candidates, long from, long to) {
+        IntList result = new IntList();
+        int i = 0;
+        long j = from;
+        while (i < candidates.length && j < to) {
+            int posting = postings.get(j);
+            if (candidates[i] < posting) {
+                i++;
+            } else if (candidates[i] > posting) {
+                j++;
+            } else {
+                result.add(candidates[i]);
+                i++;
+                j++;
+            }
+        }
+        return result.toArray();
+    }
+
+    void save(File file) throws IOException {
+        Path tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeInts(out, objectIds);
+                writeLongs(out, grams);
+                writeLongs(out, offsets);
+                postings.write(out);
+                writeInts(out, groups.objectIds);
+                writeInts(out, groups.counts);
+                writeLongs(out, groups.wastedSizes);
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static int[] stringObjectIds(ISnapshot snapshot) throws SnapshotException {
+        Collection<IClass> classes = snapshot.getClassesByName("java.lang.String", false);
+        if (classes == null || classes.isEmpty()) {
+            return new int[0];
+        }
+        IntList ids = new IntList();
+        for (IClass clazz : classes) {
+            for (int id : clazz.getObjectIds()) {
+                ids.add(id);
+            }
+        }
+        int[] result = ids.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static RangePostings indexRange(ISnapshot snapshot, int[] ids, int from, int to, long[] hashes,
+                                            int[] valueIds, long[] stringSizes, long[] valueSizes)
+            throws SnapshotException {
+        RangePostings range = new RangePostings();
+        for (int i = from; i < to; i++) {
+            IObject object = snapshot.getObject(ids[i]);
+            String content = contentOf(object);
+            hashes[i] = hash(content);
+            stringSizes[i] = object.getUsedHeapSize();
+            valueIds[i] = Helper.ILLEGAL_OBJECT_ID;
+            if (object instanceof IInstance instance && instance.resolveValue("value") instanceof IObject value) {
+                valueIds[i] = value.getObjectId();
+                valueSizes[i] = value.getUsedHeapSize();
+            }
+            index(range, i, content);
+        }
+        return range;
+    }
+
+    /**
+     * Add the distinct trigrams of the content to the range, strings must be added in ascending order
+     */
+    static void index(RangePostings range, int string, String content) {
+        int length = Math.min(content.length(), MAX_INDEXED_CHARS);
+        for (int j = 0; j + GRAM <= length; j++) {
+            range.add(gram(content, j), string);
+        }
+    }
+
+    private static String contentOf(IObject object) throws SnapshotException {
+        String content = PrettyPrinter.objectAsString(object, Integer.MAX_VALUE);
+        return content != null ? content : "";
+    }
+
+    /**
+     * Strings with the same content hash are candidates, and they are grouped by their contents so that a hash
+     * collision never reports different strings as duplicated. The first string of a group is the one kept, every
+     * other string wastes its own shallow size plus the value array if that array is not shared with another member.
+     */
+    static Groups groupDuplicates(int[] ids, long[] hashes, int[] valueIds, long[] stringSizes, long[] valueSizes,
+                                  ContentReader reader, Executor executor) {
+        // the distinct hashes shared by several strings, compacted in place
+        long[] sorted = hashes.clone();
+        Arrays.sort(sorted);
+        int shared = 0;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1] && (shared == 0 || sorted[shared - 1] != sorted[i])) {
+                sorted[shared++] = sorted[i];
+            }
+        }
+        long[] sharedHashes = Arrays.copyOf(sorted, shared);
+
+        // the members of sharedHashes[h] are members[memberOffsets[h], memberOffsets[h + 1]), in ascending order
+        int[] memberOffsets = new int[shared + 1];
+        for (long hash : hashes) {
+            int h = Arrays.binarySearch(sharedHashes, hash);
+            if (h >= 0) {
+                memberOffsets[h + 1]++;
+            }
+        }
+        for (int h = 0; h < shared; h++) {
+            memberOffsets[h + 1] += memberOffsets[h];
+        }
+        int[] members = new int[memberOffsets[shared]];
+        int[] cursors = Arrays.copyOf(memberOffsets, shared);
+        for (int i = 0; i < hashes.length; i++) {
+            int h = Arrays.binarySearch(sharedHashes, hashes[i]);
+            if (h >= 0) {
+                members[cursors[h]++] = i;
+            }
+        }
+
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int chunk = Math.max(1024, (shared + parallelism - 1) / parallelism);
+        List<CompletableFuture<List<Group>>> futures = new ArrayList<>();
+        for (int from = 0; from < shared; from += chunk) {
+            int start = from;
+            int end = Math.min(shared, from + chunk);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                List<Group> groups = new ArrayList<>();
+                try {
+                    for (int h = start; h < end; h++) {
+                        Map<String, Group> byContent = new HashMap<>();
+                        for (int m = memberOffsets[h]; m < memberOffsets[h + 1]; m++) {
+                            int i = members[m];
+                            byContent.computeIfAbsent(reader.read(i), c -> new Group())
+                                     .add(ids[i], valueIds[i], stringSizes[i], valueSizes[i]);
+                        }
+                        for (Group group : byContent.values()) {
+                            if (group.count > 1) {
+                                groups.add(group);
+                            }
+                        }
+                    }
+                } catch (SnapshotException e) {
+                    throw new CompletionException(e);
+                }
+                return groups;
+            }, executor));
+        }
+
+        List<Group> list = new ArrayList<>();
+        for (CompletableFuture<List<Group>> future : futures) {
+            list.addAll(join(future));
+        }
+        list.sort((a, b) -> Long.compare(b.wastedSize, a.wastedSize));
+        int[] groupObjectIds = new int[list.size()];
+        int[] groupCounts = new int[list.size()];
+        long[] groupWastedSizes = new long[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            Group group = list.get(i);
+            groupObjectIds[i] = group.objectId;
+            groupCounts[i] = group.count;
+            groupWastedSizes[i] = group.wastedSize;
+        }
+        return new Groups(groupObjectIds, groupCounts, groupWastedSizes);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new AnalysisException(e.getCause());
+        }
+    }
+
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static long hash(String s) {
+        // 64-bit FNV-1a, seeded with the length to make collisions between different lengths less likely
+        long h = 0xcbf29ce484222325L ^ s.length();
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static long[] readLongs(DataInputStream in) throws IOException {
+        long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+
+    interface ContentReader {
+        /**
+         * @param string the index of a string
+         * @return the content of the string
+         */
+        String read(int string) throws SnapshotException;
+    }
+
+    record Groups(int[] objectIds, int[] counts, long[] wastedSizes) {
+    }
+
+    /**
+     * An int array addressed by long indexes, split into segments so that its size is not limited by the int range
+     */
+    static class Postings {
+
+        static final int SEGMENT_SHIFT = 24;
+
+        private final long size;
+
+        private final int shift;
+
+        private final int[][] segments;
+
+        Postings(long size) {
+            this(size, SEGMENT_SHIFT);
+        }
+
+        Postings(long size, int shift) {
+            this.size = size;
+            this.shift = shift;
+            long segmentSize = 1L << shift;
+            segments = new int[(int) ((size + segmentSize - 1) >>> shift)][];
+            for (int s = 0; s < segments.length; s++) {
+                segments[s] = new int[(int) Math.min(segmentSize, size - ((long) s << shift))];
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        int get(long index) {
+            return segments[(int) (index >>> shift)][(int) (index & ((1L << shift) - 1))];
+        }
+
+        void set(long index, int value) {
+            segments[(int) (index >>> shift)][(int) (index & ((1L << shift) - 1))] = value;
+        }
+
+        int[] copy(long from, long to) {
+            int[] values = new int[Math.toIntExact(to - from)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = get(from + i);
+            }
+            return values;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(size);
+            for (int[] segment : segments) {
+                for (int value : segment) {
+                    out.writeInt(value);
+                }
+            }
+        }
+
+        static Postings read(DataInputStream in) throws IOException {
+            Postings postings = new Postings(in.readLong());
+            for (int[] segment : postings.segments) {
+                for (int i = 0; i < segment.length; i++) {
+                    segment[i] = in.readInt();
+                }
+            }
+            return postings;
+        }
+    }
+
+    /**
+     * The postings of a range of strings. The postings of a gram are chained in primitive arrays, so that no object
+     * is allocated per gram or per posting.
+     */
+    static class RangePostings {
+
+        // open addressing table from gram + 1 to slot, 0 marks an empty entry
+        private long[] keys = new long[1024];
+
+        private int[] slots = new int[1024];
+
+        // per slot
+        long[] grams = new long[512];
+
+        int[] heads = new int[512];
+
+        private int[] tails = new int[512];
+
+        int[] counts = new int[512];
+
+        int gramCount;
+
+        // per posting
+        int[] strings = new int[1024];
+
+        int[] next = new int[1024];
+
+        private int size;
+
+        /**
+         * Add a posting, a gram seen again in the string added last is ignored
+         */
+        void add(long gram, int string) {
+            int slot = slotOf(gram);
+            if (counts[slot] > 0 && strings[tails[slot]] == string) {
+                return;
+            }
+            if (size == strings.length) {
+                strings = Arrays.copyOf(strings, size << 1);
+                next = Arrays.copyOf(next, size << 1);
+            }
+            strings[size] = string;
+            next[size] = -1;
+            if (counts[slot]++ == 0) {
+                heads[slot] = size;
+            } else {
+                next[tails[slot]] = size;
+            }
+            tails[slot] = size;
+            size++;
+        }
+
+        private int slotOf(long gram) {
+            if (gramCount << 1 >= keys.length) {
+                rehash();
+            }
+            int mask = keys.length - 1;
+            for (int i = mix(gram) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == gram + 1) {
+                    return slots[i];
+                }
+                if (keys[i] == 0) {
+                    if (gramCount == grams.length) {
+                        grams = Arrays.copyOf(grams, gramCount << 1);
+                        heads = Arrays.copyOf(heads, gramCount << 1);
+                        tails = Arrays.copyOf(tails, gramCount << 1);
+                        counts = Arrays.copyOf(counts, gramCount << 1);
+                    }
+                    keys[i] = gram + 1;
+                    slots[i] = gramCount;
+                    grams[gramCount] = gram;
+                    return gramCount++;
+                }
+            }
+        }
+
+        private void rehash() {
+            keys = new long[keys.length << 1];
+            slots = new int[slots.length << 1];
+            int mask = keys.length - 1;
+            for (int slot = 0; slot < gramCount; slot++) {
+                int i = mix(grams[slot]) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = grams[slot] + 1;
+                slots[i] = slot;
+            }
+        }
+
+        private static int mix(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+    }
+
+    private static class Group {
+        int objectId;
+
+        int count;
+
+        long wastedSize;
+
+        final Set<Integer> valueIds = new HashSet<>();
+
+        void add(int id, int valueId, long stringSize, long valueSize) {
+            boolean newValue = valueId == Helper.ILLEGAL_OBJECT_ID || valueIds.add(valueId);
+            if (count++ == 0) {
+                objectId = id;
+            } else {
+                wastedSize += stringSize + (newValue ? valueSize : 0);
+            }
+        }
+    }
+
+    private static class IntList {
+        int[] values = new int[4];
+
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,571 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.hda.impl;
+
+import org.eclipse.jifa.hda.api.AnalysisException;
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IInstance;
+import org.eclipse.mat.snapshot.model.IObject;
+import org.eclipse.mat.snapshot.model.IObjectArray;
+import org.eclipse.mat.snapshot.model.IPrimitiveArray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.eclipse.jifa.hda.api.Model.WastedMemory;
+
+/**
+ * Finds memory that could be recovered: empty and underfilled collections, primitive arrays with duplicated content
+ * and boxed primitives with duplicated values.
+ * <p>
+ * All objects of the interesting classes are analyzed in one parallel pass, partitioned by class and then by chunks
+ * of object ids. The result is persisted next to the snapshot index.
+ */
+class WasteAnalysis {
+
+    static final String FILE_SUFFIX = "waste.jifa.index";
+
+    private static final int MAGIC = 0x4A574149;
+
+    private static final int VERSION = 2;
+
+    private static final int CHUNK = 1 << 16;
+
+    // class name -> {size field, array field[, counter cells field]}, subclasses included
+    private static final Map<String, String[]> COLLECTIONS = Map.of(
+            "java.util.ArrayList", new String[]{"size", "elementData"},
+            "java.util.Vector", new String[]{"elementCount", "elementData"},
+            "java.util.HashMap", new String[]{"size", "table"},
+            "java.util.Hashtable", new String[]{"count", "table"},
+            // the long baseCount misses the updates made under contention, which are kept in the counter cells
+            "java.util.concurrent.ConcurrentHashMap", new String[]{"baseCount", "table", "counterCells"});
+
+    private static final Set<String> HASHED_COLLECTIONS = Set.of("java.util.HashMap",
+                                                                 "java.util.Hashtable",
+                                                                 "java.util.concurrent.ConcurrentHashMap");
+
+    private static final Set<String> ARRAYS = Set.of("byte[]", "char[]");
+
+    private static final Set<String> BOXES = Set.of("java.lang.Byte", "java.lang.Short", "java.lang.Integer",
+                                                    "java.lang.Long", "java.lang.Float", "java.lang.Double",
+                                                    "java.lang.Character", "java.lang.Boolean");
+
+    final WastedMemory.Summary summary;
+
+    // sorted by wasted size in descending order
+    final List<WastedMemory.Item> items;
+
+    private WasteAnalysis(WastedMemory.Summary summary, List<WastedMemory.Item> items) {
+        this.summary = summary;
+        this.items = items;
+    }
+
+    static File indexFile(ISnapshot snapshot) {
+        return new File(snapshot.getSnapshotInfo().getPrefix() + FILE_SUFFIX);
+    }
+
+    static WasteAnalysis analyze(ISnapshot snapshot) throws SnapshotException {
+        List<CompletableFuture<Partial>> futures = new ArrayList<>();
+        for (Map.Entry<String, String[]> entry : COLLECTIONS.entrySet()) {
+            boolean hashed = HASHED_COLLECTIONS.contains(entry.getKey());
+            submit(snapshot, entry.getKey(), true, futures,
+                   (clazz, ids) -> collections(snapshot, clazz, ids, entry.getValue(), hashed));
+        }
+        for (String name : ARRAYS) {
+            submit(snapshot, name, false, futures, (clazz, ids) -> arrays(snapshot, clazz, ids));
+        }
+        for (String name : BOXES) {
+            submit(snapshot, name, false, futures, (clazz, ids) -> boxes(snapshot, clazz, ids));
+        }
+
+        // partials of the same class are merged in submission order
+        Map<String, Partial> merged = new HashMap<>();
+        for (CompletableFuture<Partial> future : futures) {
+            Partial partial;
+            try {
+                partial = future.join();
+            } catch (CompletionException e) {
+                throw new AnalysisException(e.getCause());
+            }
+            merged.merge(partial.className, partial, Partial::merge);
+        }
+
+        List<WastedMemory.Item> items = new ArrayList<>();
+        for (Partial partial : merged.values()) {
+            partial.complete(items);
+        }
+        items.sort(Comparator.comparingLong((WastedMemory.Item item) -> item.wastedSize).reversed());
+
+        WastedMemory.Summary summary = new WastedMemory.Summary();
+        summary.totalSize = items.size();
+        for (WastedMemory.Item item : items) {
+            summary.wastedSize += item.wastedSize;
+            switch (item.category) {
+                case EMPTY_COLLECTION -> summary.emptyCollectionWastedSize += item.wastedSize;
+                case UNDERFILLED_COLLECTION -> summary.underfilledCollectionWastedSize += item.wastedSize;
+                case DUPLICATED_ARRAY -> summary.duplicatedArrayWastedSize += item.wastedSize;
+                case BOXED_PRIMITIVE -> summary.boxedPrimitiveWastedSize += item.wastedSize;
+            }
+        }
+        return new WasteAnalysis(summary, items);
+    }
+
+    static WasteAnalysis load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported wasted memory index: " + file.getAbsolutePath());
+            }
+            WastedMemory.Summary summary = new WastedMemory.Summary();
+            summary.totalSize = in.readInt();
+            summary.wastedSize = in.readLong();
+            summary.emptyCollectionWastedSize = in.readLong();
+            summary.underfilledCollectionWastedSize = in.readLong();
+            summary.duplicatedArrayWastedSize = in.readLong();
+            summary.boxedPrimitiveWastedSize = in.readLong();
+
+            List<WastedMemory.Item> items = new ArrayList<>(summary.totalSize);
+            for (int i = 0; i < summary.totalSize; i++) {
+                WastedMemory.Item item = new WastedMemory.Item();
+                item.category = WastedMemory.Category.values()[in.readByte()];
+                item.className = in.readUTF();
+                item.objectId = in.readInt();
+                item.objects = in.readInt();
+                item.shallowSize = in.readLong();
+                item.wastedSize = in.readLong();
+                item.fillRatio = in.readBoolean() ? in.readDouble() : null;
+                items.add(item);
+            }
+            return new WasteAnalysis(summary, items);
+        }
+    }
+
+    void save(File file) throws IOException {
+        Path tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(summary.totalSize);
+                out.writeLong(summary.wastedSize);
+                out.writeLong(summary.emptyCollectionWastedSize);
+                out.writeLong(summary.underfilledCollectionWastedSize);
+                out.writeLong(summary.duplicatedArrayWastedSize);
+                out.writeLong(summary.boxedPrimitiveWastedSize);
+                for (WastedMemory.Item item : items) {
+                    out.writeByte(item.category.ordinal());
+                    out.writeUTF(item.className);
+                    out.writeInt(item.objectId);
+                    out.writeInt(item.objects);
+                    out.writeLong(item.shallowSize);
+                    out.writeLong(item.wastedSize);
+                    out.writeBoolean(item.fillRatio != null);
+                    if (item.fillRatio != null) {
+                        out.writeDouble(item.fillRatio);
+                    }
+                }
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void submit(ISnapshot snapshot, String className, boolean includeSubClasses,
+                               List<CompletableFuture<Partial>> futures, Task task) throws SnapshotException {
+        Collection<IClass> classes = snapshot.getClassesByName(className, includeSubClasses);
+        if (classes == null) {
+            return;
+        }
+        for (IClass clazz : classes) {
+            int[] ids = clazz.getObjectIds();
+            for (int from = 0; from < ids.length; from += CHUNK) {
+                int[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + CHUNK));
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return task.run(clazz, chunk);
+                    } catch (SnapshotException e) {
+                        throw new CompletionException(e);
+                    }
+                }, Helper.EXECUTOR));
+            }
+        }
+    }
+
+    private static Partial collections(ISnapshot snapshot, IClass clazz, int[] ids, String[] fields, boolean hashed)
+            throws SnapshotException {
+        CollectionPartial partial = new CollectionPartial(clazz.getName());
+        for (int id : ids) {
+            IObject object = snapshot.getObject(id);
+            if (!(object instanceof IInstance instance)) {
+                continue;
+            }
+            long size = sizeOf(snapshot, instance, fields);
+            if (size < 0) {
+                continue;
+            }
+            IObjectArray array = instance.resolveValue(fields[1]) instanceof IObjectArray a ? a : null;
+            long arraySize = array != null ? array.getUsedHeapSize() : 0;
+            int capacity = array != null ? array.getLength() : 0;
+
+            if (size == 0) {
+                partial.empty.add(id, instance.getUsedHeapSize() + arraySize, instance.getUsedHeapSize() + arraySize);
+                continue;
+            }
+            if (capacity == 0) {
+                continue;
+            }
+            partial.fillRatioSum += Math.min(1.0, (double) size / capacity);
+            partial.nonEmpty++;
+            long needed = hashed ? tableSizeFor(size) : size;
+            if (capacity > needed) {
+                partial.underfilled.add(id, instance.getUsedHeapSize() + arraySize,
+                                        arraySize * (capacity - needed) / capacity);
+            }
+        }
+        return partial;
+    }
+
+    private static Partial arrays(ISnapshot snapshot, IClass clazz, int[] ids) throws SnapshotException {
+        ArrayPartial partial = new ArrayPartial(clazz.getName(), ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            IObject object = snapshot.getObject(ids[i]);
+            if (!(object instanceof IPrimitiveArray array)) {
+                continue;
+            }
+            partial.ids[i] = ids[i];
+            partial.hashes[i] = hash(array.getValueArray());
+            partial.sizes[i] = array.getUsedHeapSize();
+        }
+        return partial;
+    }
+
+    private static Partial boxes(ISnapshot snapshot, IClass clazz, int[] ids) throws SnapshotException {
+        BoxPartial partial = new BoxPartial(clazz.getName());
+        for (int id : ids) {
+            IObject object = snapshot.getObject(id);
+            if (!(object instanceof IInstance instance)) {
+                continue;
+            }
+            Object value = instance.resolveValue("value");
+            long bits;
+            if (value instanceof Double d) {
+                bits = Double.doubleToRawLongBits(d);
+            } else if (value instanceof Float f) {
+                bits = Float.floatToRawIntBits(f);
+            } else if (value instanceof Number n) {
+                bits = n.longValue();
+            } else if (value instanceof Character c) {
+                bits = c;
+            } else if (value instanceof Boolean b) {
+                bits = b ? 1 : 0;
+            } else {
+                continue;
+            }
+            partial.values.add(bits);
+            partial.objects++;
+            partial.shallowSize += instance.getUsedHeapSize();
+            if (partial.objectId == Helper.ILLEGAL_OBJECT_ID) {
+                partial.objectId = id;
+            }
+        }
+        return partial;
+    }
+
+    /**
+     * @param fields the size field, the array field and the optional counter cells field
+     * @return the size of the collection, or -1 if it is unknown. Like ConcurrentHashMap#size, the values of the
+     * counter cells are added to the size field if the collection has them.
+     */
+    static long sizeOf(ISnapshot snapshot, IInstance instance, String[] fields) throws SnapshotException {
+        if (!(instance.resolveValue(fields[0]) instanceof Number count)) {
+            return -1;
+        }
+        long size = count.longValue();
+        if (fields.length > 2 && instance.resolveValue(fields[2]) instanceof IObjectArray cells) {
+            for (long address : cells.getReferenceArray()) {
+                if (address != 0 &&
+                    snapshot.getObject(snapshot.mapAddressToId(address)) instanceof IInstance cell &&
+                    cell.resolveValue("value") instanceof Number value) {
+                    size += value.longValue();
+                }
+            }
+        }
+        // the sum may be transiently negative, as ConcurrentHashMap#sumCount
+        return Math.max(0, size);
+    }
+
+    /**
+     * @return the table length of a hashed collection with the default load factor holding size entries
+     */
+    static long tableSizeFor(long size) {
+        long min = (long) Math.ceil(size / 0.75);
+        return min >= 1 << 30 ? 1 << 30 : Math.max(1, Long.highestOneBit(min - 1) << 1);
+    }
+
+    private static long hash(Object content) {
+        // 64-bit FNV-1a
+        long h = 0xcbf29ce484222325L;
+        if (content instanceof byte[] bytes) {
+            for (byte b : bytes) {
+                h = (h ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            h ^= bytes.length;
+        } else if (content instanceof char[] chars) {
+            for (char c : chars) {
+                h = (h ^ c) * 0x100000001b3L;
+            }
+            h ^= chars.length;
+        }
+        return h;
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        Partial run(IClass clazz, int[] ids) throws SnapshotException;
+    }
+
+    private abstract static class Partial {
+
+        final String className;
+
+        Partial(String className) {
+            this.className = className;
+        }
+
+        abstract Partial merge(Partial other);
+
+        abstract void complete(List<WastedMemory.Item> items);
+
+        static WastedMemory.Item item(WastedMemory.Category category, String className, int objectId, int objects,
+                                      long shallowSize, long wastedSize) {
+            WastedMemory.Item item = new WastedMemory.Item();
+            item.category = category;
+            item.className = className;
+            item.objectId = objectId;
+            item.objects = objects;
+            item.shallowSize = shallowSize;
+            item.wastedSize = wastedSize;
+            return item;
+        }
+    }
+
+    private static class Accumulator {
+
+        int objectId = Helper.ILLEGAL_OBJECT_ID;
+
+        int objects;
+
+        long shallowSize;
+
+        long wastedSize;
+
+        void add(int id, long shallowSize, long wastedSize) {
+            if (objectId == Helper.ILLEGAL_OBJECT_ID) {
+                objectId = id;
+            }
+            objects++;
+            this.shallowSize += shallowSize;
+            this.wastedSize += wastedSize;
+        }
+
+        void merge(Accumulator other) {
+            if (objectId == Helper.ILLEGAL_OBJECT_ID) {
+                objectId = other.objectId;
+            }
+            objects += other.objects;
+            shallowSize += other.shallowSize;
+            wastedSize += other.wastedSize;
+        }
+    }
+
+    private static class CollectionPartial extends Partial {
+
+        final Accumulator empty = new Accumulator();
+
+        final Accumulator underfilled = new Accumulator();
+
+        double fillRatioSum;
+
+        int nonEmpty;
+
+        CollectionPartial(String className) {
+            super(className);
+        }
+
+        @Override
+        Partial merge(Partial other) {
+            CollectionPartial o = (CollectionPartial) other;
+            empty.merge(o.empty);
+            underfilled.merge(o.underfilled);
+            fillRatioSum += o.fillRatioSum;
+            nonEmpty += o.nonEmpty;
+            return this;
+        }
+
+        @Override
+        void complete(List<WastedMemory.Item> items) {
+            if (empty.objects > 0) {
+                WastedMemory.Item item = item(WastedMemory.Category.EMPTY_COLLECTION, className, empty.objectId,
+                                              empty.objects, empty.shallowSize, empty.wastedSize);
+                item.fillRatio = 0.0;
+                items.add(item);
+            }
+            if (underfilled.objects > 0) {
+                WastedMemory.Item item = item(WastedMemory.Category.UNDERFILLED_COLLECTION, className,
+                                              underfilled.objectId, underfilled.objects,
+                                              underfilled.shallowSize, underfilled.wastedSize);
+                item.fillRatio = fillRatioSum / nonEmpty;
+                items.add(item);
+            }
+        }
+    }
+
+    private static class ArrayPartial extends Partial {
+
+        int[] ids;
+
+        long[] hashes;
+
+        long[] sizes;
+
+        // the chunks merged into this one in order, concatenated once when completed
+        final List<ArrayPartial> merged = new ArrayList<>();
+
+        ArrayPartial(String className, int length) {
+            super(className);
+            ids = new int[length];
+            Arrays.fill(ids, Helper.ILLEGAL_OBJECT_ID);
+            hashes = new long[length];
+            sizes = new long[length];
+        }
+
+        @Override
+        Partial merge(Partial other) {
+            ArrayPartial o = (ArrayPartial) other;
+            merged.add(o);
+            merged.addAll(o.merged);
+            o.merged.clear();
+            return this;
+        }
+
+        private void concat() {
+            if (merged.isEmpty()) {
+                return;
+            }
+            int length = ids.length;
+            for (ArrayPartial partial : merged) {
+                length += partial.ids.length;
+            }
+            int[] allIds = Arrays.copyOf(ids, length);
+            long[] allHashes = Arrays.copyOf(hashes, length);
+            long[] allSizes = Arrays.copyOf(sizes, length);
+            int offset = ids.length;
+            for (ArrayPartial partial : merged) {
+                System.arraycopy(partial.ids, 0, allIds, offset, partial.ids.length);
+                System.arraycopy(partial.hashes, 0, allHashes, offset, partial.hashes.length);
+                System.arraycopy(partial.sizes, 0, allSizes, offset, partial.sizes.length);
+                offset += partial.ids.length;
+            }
+            ids = allIds;
+            hashes = allHashes;
+            sizes = allSizes;
+            merged.clear();
+        }
+
+        @Override
+        void complete(List<WastedMemory.Item> items) {
+            concat();
+            long[] sorted = hashes.clone();
+            Arrays.sort(sorted);
+            Map<Long, Accumulator> groups = new HashMap<>();
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] == sorted[i - 1]) {
+                    groups.computeIfAbsent(sorted[i], k -> new Accumulator());
+                }
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == Helper.ILLEGAL_OBJECT_ID) {
+                    continue;
+                }
+                Accumulator group = groups.get(hashes[i]);
+                if (group != null) {
+                    // the first array of a group is the one kept
+                    group.add(ids[i], sizes[i], group.objects == 0 ? 0 : sizes[i]);
+                }
+            }
+            for (Accumulator group : groups.values()) {
+                if (group.objects > 1) {
+                    items.add(item(WastedMemory.Category.DUPLICATED_ARRAY, className, group.objectId, group.objects,
+                                   group.shallowSize, group.wastedSize));
+                }
+            }
+        }
+    }
+
+    private static class BoxPartial extends Partial {
+
+        final Set<Long> values = new HashSet<>();
+
+        int objectId = Helper.ILLEGAL_OBJECT_ID;
+
+        int objects;
+
+        long shallowSize;
+
+        BoxPartial(String className) {
+            super(className);
+        }
+
+        @Override
+        Partial merge(Partial other) {
+            BoxPartial o = (BoxPartial) other;
+            values.addAll(o.values);
+            if (objectId == Helper.ILLEGAL_OBJECT_ID) {
+                objectId = o.objectId;
+            }
+            objects += o.objects;
+            shallowSize += o.shallowSize;
+            return this;
+        }
+
+        @Override
+        void complete(List<WastedMemory.Item> items) {
+            // boxes holding the same value could be shared
+            int duplicated = objects - values.size();
+            if (duplicated > 0) {
+                items.add(item(WastedMemory.Category.BOXED_PRIMITIVE, className, objectId, objects, shallowSize,
+                               shallowSize / objects * duplicated));
+            }
+        }
+    }
+}
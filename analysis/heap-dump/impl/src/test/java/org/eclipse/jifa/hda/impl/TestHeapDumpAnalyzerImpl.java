@@ -16,6 +16,7 @@ import com.sun.management.HotSpotDiagnosticMXBean;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jifa.analysis.listener.ProgressListener;
+import org.eclipse.jifa.common.domain.vo.PageView;
 import org.eclipse.jifa.hda.api.HeapDumpAnalyzer;
 import org.eclipse.jifa.hda.api.Model;
 import org.eclipse.jifa.hda.api.SearchType;
@@ -28,8 +29,18 @@ import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Slf4j
 public class TestHeapDumpAnalyzerImpl {
@@ -38,6 +49,36 @@ public class TestHeapDumpAnalyzerImpl {
 
     private static HeapDumpAnalyzer ANALYZER;
 
+    private static final String DUPLICATED_STRING = "jifa duplicated string";
+
+    // distinct string objects with distinct value arrays, reachable when the heap is dumped
+    private static final String[] DUPLICATED_STRINGS = new String[8];
+
+    // maps whose tables are allocated but hold no entries
+    private static final Map<?, ?>[] EMPTY_MAPS = new Map[8];
+
+    // a map whose table is far larger than its entries need
+    private static final Map<String, String> UNDERFILLED_MAP = new ConcurrentHashMap<>(1024);
+
+    // objects retaining only their payloads, enough of them for the parallel paths to be taken
+    private static final Retained[] RETAINED = new Retained[ParallelGraph.THRESHOLD];
+
+    static {
+        for (int i = 0; i < RETAINED.length; i++) {
+            RETAINED[i] = new Retained();
+        }
+        for (int i = 0; i < DUPLICATED_STRINGS.length; i++) {
+            DUPLICATED_STRINGS[i] = new String(DUPLICATED_STRING.toCharArray());
+        }
+        for (int i = 0; i < EMPTY_MAPS.length; i++) {
+            Map<String, String> map = new ConcurrentHashMap<>();
+            map.put("key", "value");
+            map.remove("key");
+            EMPTY_MAPS[i] = map;
+        }
+        UNDERFILLED_MAP.put("key", "value");
+    }
+
     @BeforeAll
     public static void init() throws Exception {
         // init environment
@@ -142,6 +183,45 @@ public class TestHeapDumpAnalyzerImpl {
         ANALYZER.getDirectByteBuffers(1, 10);
     }
 
+    @Test
+    public void testGetSummaryOfWastedMemory() {
+        Model.WastedMemory.Summary summary = ANALYZER.getSummaryOfWastedMemory();
+        List<Model.WastedMemory.Item> items = ANALYZER.getWastedMemory(1, Integer.MAX_VALUE).getData();
+        assertEquals(items.size(), summary.getTotalSize());
+        assertEquals(items.stream().mapToLong(Model.WastedMemory.Item::getWastedSize).sum(), summary.getWastedSize());
+        assertEquals(summary.getWastedSize(),
+                     summary.getEmptyCollectionWastedSize() + summary.getUnderfilledCollectionWastedSize() +
+                     summary.getDuplicatedArrayWastedSize() + summary.getBoxedPrimitiveWastedSize());
+    }
+
+    @Test
+    public void testGetWastedMemory() {
+        List<Model.WastedMemory.Item> items = ANALYZER.getWastedMemory(1, Integer.MAX_VALUE).getData();
+        for (int i = 1; i < items.size(); i++) {
+            assertTrue(items.get(i - 1).getWastedSize() >= items.get(i).getWastedSize());
+        }
+
+        Model.WastedMemory.Item empty = wastedMemoryOf(items, Model.WastedMemory.Category.EMPTY_COLLECTION,
+                                                       ConcurrentHashMap.class.getName());
+        assertTrue(empty.getObjects() >= EMPTY_MAPS.length);
+        assertTrue(empty.getWastedSize() > 0);
+        assertEquals(0.0, empty.getFillRatio());
+
+        Model.WastedMemory.Item underfilled = wastedMemoryOf(items, Model.WastedMemory.Category.UNDERFILLED_COLLECTION,
+                                                             ConcurrentHashMap.class.getName());
+        assertTrue(underfilled.getObjects() >= 1);
+        assertTrue(underfilled.getWastedSize() > 0);
+        assertTrue(underfilled.getFillRatio() < 1.0);
+    }
+
+    private static Model.WastedMemory.Item wastedMemoryOf(List<Model.WastedMemory.Item> items,
+                                                          Model.WastedMemory.Category category, String className) {
+        return items.stream()
+                    .filter(item -> item.getCategory() == category && className.equals(item.getClassName()))
+                    .findFirst()
+                    .orElseThrow();
+    }
+
     @Test
     public void testGetOutboundOfObject() {
         ANALYZER.getOutboundOfObject(1, 1, 10);
@@ -160,6 +240,28 @@ public class TestHeapDumpAnalyzerImpl {
     @Test
     public void testGetStrings() {
         ANALYZER.getStrings("abc", 1, 10);
+
+        PageView<Model.TheString.Item> strings = ANALYZER.getStrings("duplicated str", 1, 100);
+        assertTrue(strings.getTotalSize() >= DUPLICATED_STRINGS.length);
+        for (Model.TheString.Item item : strings.getData()) {
+            assertTrue(item.getLabel().contains("duplicated str"));
+        }
+    }
+
+    @Test
+    public void testGetDuplicatedStrings() {
+        PageView<Model.TheString.DuplicatedItem> groups = ANALYZER.getDuplicatedStrings(1, Integer.MAX_VALUE);
+        Model.TheString.DuplicatedItem group = groups.getData()
+                                                     .stream()
+                                                     .filter(item -> DUPLICATED_STRING.equals(item.getLabel()))
+                                                     .findFirst()
+                                                     .orElseThrow();
+        assertTrue(group.getCount() >= DUPLICATED_STRINGS.length);
+        // every copy wastes at least its own value array
+        assertTrue(group.getWastedSize() >= (long) (DUPLICATED_STRINGS.length - 1) * DUPLICATED_STRING.length());
+        for (Model.TheString.DuplicatedItem item : groups.getData()) {
+            assertTrue(item.getCount() > 1);
+        }
     }
 
     @Test
@@ -197,6 +299,34 @@ public class TestHeapDumpAnalyzerImpl {
         ANALYZER.getPathToGCRoots(1, 1, 10);
     }
 
+    @Test
+    public void testGetRetainedSizeOfObjects() {
+        int[] ids = retainedObjectIds();
+        assertEquals(RETAINED.length, ids.length);
+
+        // the halves are computed by MAT, the whole set by ParallelGraph
+        int half = ids.length / 2;
+        long first = ANALYZER.getRetainedSizeOfObjects(Arrays.copyOfRange(ids, 0, half));
+        long second = ANALYZER.getRetainedSizeOfObjects(Arrays.copyOfRange(ids, half, ids.length));
+        assertTrue(first > 0);
+        assertTrue(second > 0);
+        assertEquals(first + second, ANALYZER.getRetainedSizeOfObjects(ids));
+    }
+
+    @Test
+    public void testMergePathToGCRoots() {
+        int[] ids = retainedObjectIds();
+
+        // the whole set is merged by ParallelGraph, the set without one object by MAT. Ties between shortest paths
+        // may be broken differently, so the number of objects whose paths reach each depth is compared.
+        long[] parallel = refObjectsByDepth(ids);
+        long[] mat = refObjectsByDepth(Arrays.copyOf(ids, ids.length - 1));
+        assertEquals(mat.length, parallel.length);
+        for (int depth = 0; depth < parallel.length; depth++) {
+            assertEquals(mat[depth] + 1, parallel[depth]);
+        }
+    }
+
     @Test
     public void testGetLeakReport() {
         ANALYZER.getLeakReport();
@@ -237,6 +367,49 @@ public class TestHeapDumpAnalyzerImpl {
         ANALYZER.getDuplicatedClasses("", SearchType.BY_NAME, 1, 10);
     }
 
+    private static int[] retainedObjectIds() {
+        int classId = ANALYZER.getHistogram(Model.Histogram.Grouping.BY_CLASS,
+                                            null,
+                                            "shallowHeap",
+                                            true,
+                                            Pattern.quote(Retained.class.getName()),
+                                            SearchType.BY_NAME, 1, 1).getData().get(0).getObjectId();
+        return ANALYZER.getHistogramObjects(classId, 1, RETAINED.length)
+                       .getData()
+                       .stream()
+                       .mapToInt(Model.JavaObject::getObjectId)
+                       .toArray();
+    }
+
+    private static long[] refObjectsByDepth(int[] objectIds) {
+        List<Long> byDepth = new ArrayList<>();
+        collectRefObjects(objectIds, Arrays.stream(objectIds).boxed().collect(Collectors.toSet()), new int[0],
+                          byDepth);
+        return byDepth.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static void collectRefObjects(int[] objectIds, Set<Integer> objects, int[] path, List<Long> byDepth) {
+        List<Model.GCRootPath.MergePathToGCRootsTreeNode> nodes =
+                path.length == 0
+                ? ANALYZER.getRootsOfMergePathToGCRootsByObjectIds(objectIds, Model.GCRootPath.Grouping.FROM_GC_ROOTS,
+                                                                   1, Integer.MAX_VALUE).getData()
+                : ANALYZER.getChildrenOfMergePathToGCRootsByObjectIds(objectIds, path,
+                                                                      Model.GCRootPath.Grouping.FROM_GC_ROOTS,
+                                                                      1, Integer.MAX_VALUE).getData();
+        for (Model.GCRootPath.MergePathToGCRootsTreeNode node : nodes) {
+            if (byDepth.size() == path.length) {
+                byDepth.add(0L);
+            }
+            byDepth.set(path.length, byDepth.get(path.length) + node.getRefObjects());
+            // the planted objects end their paths
+            if (!objects.contains(node.getObjectId())) {
+                int[] child = Arrays.copyOf(path, path.length + 1);
+                child[path.length] = node.getObjectId();
+                collectRefObjects(objectIds, objects, child, byDepth);
+            }
+        }
+    }
+
     @Test
     public void testGetHistogram() {
         ANALYZER.getHistogram(Model.Histogram.Grouping.BY_CLASS,
@@ -247,6 +420,19 @@ public class TestHeapDumpAnalyzerImpl {
                               null, 1, 10);
     }
 
+    @Test
+    public void testGetHistogramRetainedSize() {
+        // the planted class has enough objects for its retained size to be computed by ParallelGraph
+        Model.Histogram.Item item = ANALYZER.getHistogram(Model.Histogram.Grouping.BY_CLASS,
+                                                          null,
+                                                          "shallowHeap",
+                                                          true,
+                                                          Pattern.quote(Retained.class.getName()),
+                                                          SearchType.BY_NAME, 1, 1).getData().get(0);
+        assertEquals(RETAINED.length, item.getNumberOfObjects());
+        assertEquals(ANALYZER.getRetainedSizeOfObjects(retainedObjectIds()), item.getRetainedSize());
+    }
+
     @Test
     public void testGetHistogramObjects() {
         int id = ANALYZER.getHistogram(Model.Histogram.Grouping.BY_CLASS,
@@ -262,4 +448,9 @@ public class TestHeapDumpAnalyzerImpl {
     public void testGetRootsOfDominatorTree() {
         ANALYZER.getRootsOfDominatorTree(Model.DominatorTree.Grouping.NONE, "shallowHeap", true, null, SearchType.BY_NAME, 1, 10);
     }
+
+    private static final class Retained {
+
+        private final byte[] payload = new byte[16];
+    }
 }
@@ -0,0 +1,104 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.hda.impl;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.SnapshotInfo;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestParallelGraph {
+
+    // 0: class of 1, 1: GC root referencing 2 by a, 3 by b and 4 by c, 2 -> 5, 4 -> 6
+    private static final int[][] OUTBOUNDS = {{}, {0, 2, 3, 4}, {5}, {}, {6}, {}, {}};
+
+    @Test
+    public void testShortestPathParents() throws SnapshotException {
+        ISnapshot snapshot = snapshot();
+        int[] parents = ParallelGraph.shortestPathParents(snapshot, null);
+        assertArrayEquals(new int[]{1, ParallelGraph.ROOT, 1, 1, 1, 2, 4}, parents);
+    }
+
+    @Test
+    public void testShortestPathParentsWithExcludes() throws SnapshotException {
+        ISnapshot snapshot = snapshot();
+        IObject root = mock(IObject.class);
+        IObject a = object(2);
+        IObject b = object(3);
+        when(snapshot.getObject(1)).thenReturn(root);
+        when(root.resolveValue("a")).thenReturn(a);
+        when(root.resolveValue("b")).thenReturn(b);
+        IClass clazz = mock(IClass.class);
+        when(clazz.getObjectId()).thenReturn(0);
+
+        // every excluded field is skipped, not only the first one found
+        int[] parents = ParallelGraph.shortestPathParents(snapshot, Map.of(clazz, Set.of("a", "b")));
+        int unreachable = ParallelGraph.UNREACHABLE;
+        assertArrayEquals(new int[]{1, ParallelGraph.ROOT, unreachable, unreachable, 1, unreachable, 4}, parents);
+    }
+
+    @Test
+    public void testRetainedSize() throws SnapshotException {
+        ISnapshot snapshot = snapshot();
+        // 2 retains 5, 4 retains 6
+        assertEquals(2 * 10 + 5, ParallelGraph.retainedSize(snapshot, new int[]{2}));
+        assertEquals(2 * 10 + 5 + 4 * 10 + 6, ParallelGraph.retainedSize(snapshot, new int[]{2, 4}));
+    }
+
+    @Test
+    public void testMergePaths() throws SnapshotException {
+        ISnapshot snapshot = snapshot();
+        int[] parents = ParallelGraph.shortestPathParents(snapshot, null);
+        ParallelGraph.PathTree tree = ParallelGraph.mergePaths(snapshot, parents, new int[]{5, 6, 3});
+
+        ParallelGraph.PathTree.Node root = tree.find(new int[]{1});
+        assertEquals(3, root.refObjects);
+        assertEquals(5 + 6 + 3, root.refShallowHeap);
+        assertEquals(1, tree.find(new int[]{1, 2, 5}).refObjects);
+        assertEquals(1, tree.find(new int[]{1, 4, 6}).refObjects);
+        assertEquals(null, tree.find(new int[]{1, 5}));
+    }
+
+    /**
+     * The heap size of object i is i, except 2 and 4 whose size is 10 times their ids.
+     */
+    private static ISnapshot snapshot() throws SnapshotException {
+        ISnapshot snapshot = mock(ISnapshot.class);
+        SnapshotInfo info = mock(SnapshotInfo.class);
+        when(info.getNumberOfObjects()).thenReturn(OUTBOUNDS.length);
+        when(snapshot.getSnapshotInfo()).thenReturn(info);
+        when(snapshot.getGCRoots()).thenReturn(new int[]{1});
+        when(snapshot.isClass(0)).thenReturn(true);
+        for (int id = 0; id < OUTBOUNDS.length; id++) {
+            when(snapshot.getOutboundReferentIds(id)).thenReturn(OUTBOUNDS[id]);
+            when(snapshot.getHeapSize(id)).thenReturn(id == 2 || id == 4 ? id * 10L : id);
+        }
+        return snapshot;
+    }
+
+    private static IObject object(int id) {
+        IObject object = mock(IObject.class);
+        when(object.getObjectId()).thenReturn(id);
+        return object;
+    }
+}
@@ -0,0 +1,155 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.hda.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestStringIndex {
+
+    private static final String[] CONTENTS = {"abcd", "xabc", "zzz", "aaaa", "abab", "bcd", "ab", "zabcz"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testCandidates() {
+        StringIndex index = index(CONTENTS, 3);
+        assertArrayEquals(new int[]{0, 1, 7}, index.candidates("abc"));
+        assertArrayEquals(new int[]{0}, index.candidates("abcd"));
+        assertArrayEquals(new int[]{0, 5}, index.candidates("bcd"));
+        // repeated grams of a string are posted once
+        assertArrayEquals(new int[]{3}, index.candidates("aaa"));
+        assertArrayEquals(new int[]{4}, index.candidates("bab"));
+        assertArrayEquals(new int[0], index.candidates("abz"));
+        // every range size gives the same postings
+        for (int rangeSize = 1; rangeSize <= CONTENTS.length; rangeSize++) {
+            assertArrayEquals(new int[]{0, 1, 7}, index(CONTENTS, rangeSize).candidates("abc"));
+        }
+    }
+
+    @Test
+    public void testManyGrams() {
+        // grows the gram table and the posting chains of a range
+        String[] contents = new String[5000];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = "s" + i + "-" + (i % 7);
+        }
+        StringIndex index = index(contents, 2000);
+        assertEquals(0, index.candidates("-3x").length);
+        int[] candidates = index.candidates("123");
+        for (int candidate : candidates) {
+            assertTrue(contents[candidate].contains("123"));
+        }
+        int expected = 0;
+        for (String content : contents) {
+            if (content.contains("123")) {
+                expected++;
+            }
+        }
+        assertEquals(expected, candidates.length);
+    }
+
+    @Test
+    public void testPostingsAcrossSegments() throws IOException {
+        StringIndex.Postings postings = new StringIndex.Postings(10, 2);
+        for (int i = 0; i < 10; i++) {
+            postings.set(i, i * 10);
+        }
+        assertEquals(70, postings.get(7));
+        assertArrayEquals(new int[]{30, 40, 50, 60, 70}, postings.copy(3, 8));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        postings.write(new DataOutputStream(bytes));
+        StringIndex.Postings read =
+                StringIndex.Postings.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(10, read.size());
+        assertArrayEquals(postings.copy(0, 10), read.copy(0, 10));
+
+        assertEquals(0, new StringIndex.Postings(0).copy(0, 0).length);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File file = dir.resolve("heap." + StringIndex.FILE_SUFFIX).toFile();
+        assertFalse(StringIndex.isCurrent(file));
+
+        StringIndex index = index(CONTENTS, 2);
+        index.save(file);
+        assertTrue(StringIndex.isCurrent(file));
+        StringIndex loaded = StringIndex.load(file);
+        assertArrayEquals(index.candidates("abc"), loaded.candidates("abc"));
+        assertEquals(1, loaded.duplicatedGroupCount());
+        assertEquals(102, loaded.groupObjectId(0));
+
+        // an index of another version is built again
+        byte[] content = Files.readAllBytes(file.toPath());
+        content[7] = 1;
+        Files.write(file.toPath(), content);
+        assertFalse(StringIndex.isCurrent(file));
+    }
+
+    @Test
+    public void testGroupDuplicatesByContent() {
+        int[] ids = {10, 11, 12, 13, 14, 15};
+        String[] contents = {"a", "b", "a", "b", "c", "a"};
+        // every hash collides, only the contents tell the groups apart
+        long[] hashes = new long[ids.length];
+        // 12 shares the value array of 10
+        int[] valueIds = {20, 21, 20, 23, 24, 25};
+        long[] stringSizes = {24, 24, 24, 24, 24, 24};
+        long[] valueSizes = {16, 32, 16, 32, 16, 16};
+
+        StringIndex.Groups groups = StringIndex.groupDuplicates(ids, hashes, valueIds, stringSizes, valueSizes,
+                                                                i -> contents[i], Runnable::run);
+        assertArrayEquals(new int[]{10, 11}, groups.objectIds());
+        assertArrayEquals(new int[]{3, 2}, groups.counts());
+        // 12 wastes its shallow size only, 15 wastes its value array too
+        assertArrayEquals(new long[]{24 + 24 + 16, 24 + 32}, groups.wastedSizes());
+
+        // different hashes are never grouped
+        groups = StringIndex.groupDuplicates(ids, new long[]{1, 2, 3, 4, 5, 6}, valueIds, stringSizes, valueSizes,
+                                             i -> contents[i], Runnable::run);
+        assertEquals(0, groups.objectIds().length);
+    }
+
+    private static StringIndex index(String[] contents, int rangeSize) {
+        int[] objectIds = new int[contents.length];
+        List<StringIndex.RangePostings> ranges = new ArrayList<>();
+        for (int i = 0; i < contents.length; i++) {
+            objectIds[i] = 100 + i;
+            if (i % rangeSize == 0) {
+                ranges.add(new StringIndex.RangePostings());
+            }
+            StringIndex.index(ranges.get(ranges.size() - 1), i, contents[i]);
+        }
+        StringIndex.Groups groups = new StringIndex.Groups(new int[]{102}, new int[]{2}, new long[]{40});
+        return StringIndex.assemble(objectIds, ranges, groups);
+    }
+}
@@ -0,0 +1,131 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.hda.impl;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IInstance;
+import org.eclipse.mat.snapshot.model.IObjectArray;
+import org.eclipse.mat.snapshot.model.IPrimitiveArray;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.eclipse.jifa.hda.api.Model.WastedMemory;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestWasteAnalysis {
+
+    private static final String[] HASH_MAP = {"size", "table"};
+
+    private static final String[] CONCURRENT_HASH_MAP = {"baseCount", "table", "counterCells"};
+
+    @Test
+    public void testSizeOfIntField() throws SnapshotException {
+        IInstance map = mock(IInstance.class);
+        when(map.resolveValue("size")).thenReturn(3);
+        assertEquals(3, WasteAnalysis.sizeOf(mock(ISnapshot.class), map, HASH_MAP));
+    }
+
+    @Test
+    public void testSizeOfLongField() throws SnapshotException {
+        IInstance map = mock(IInstance.class);
+        when(map.resolveValue("baseCount")).thenReturn(5L);
+        assertEquals(5, WasteAnalysis.sizeOf(mock(ISnapshot.class), map, CONCURRENT_HASH_MAP));
+    }
+
+    @Test
+    public void testSizeOfCounterCells() throws SnapshotException {
+        ISnapshot snapshot = mock(ISnapshot.class);
+        IInstance map = mock(IInstance.class);
+        IObjectArray cells = mock(IObjectArray.class);
+        when(map.resolveValue("baseCount")).thenReturn(2L);
+        when(map.resolveValue("counterCells")).thenReturn(cells);
+        when(cells.getReferenceArray()).thenReturn(new long[]{0x100, 0, 0x200});
+        mockCell(snapshot, 0x100, 1, 3L);
+        mockCell(snapshot, 0x200, 2, 4L);
+        assertEquals(9, WasteAnalysis.sizeOf(snapshot, map, CONCURRENT_HASH_MAP));
+    }
+
+    @Test
+    public void testSizeOfNegativeSum() throws SnapshotException {
+        ISnapshot snapshot = mock(ISnapshot.class);
+        IInstance map = mock(IInstance.class);
+        IObjectArray cells = mock(IObjectArray.class);
+        when(map.resolveValue("baseCount")).thenReturn(1L);
+        when(map.resolveValue("counterCells")).thenReturn(cells);
+        when(cells.getReferenceArray()).thenReturn(new long[]{0x100});
+        mockCell(snapshot, 0x100, 1, -2L);
+        assertEquals(0, WasteAnalysis.sizeOf(snapshot, map, CONCURRENT_HASH_MAP));
+    }
+
+    @Test
+    public void testSizeOfUnknown() throws SnapshotException {
+        assertEquals(-1, WasteAnalysis.sizeOf(mock(ISnapshot.class), mock(IInstance.class), HASH_MAP));
+    }
+
+    @Test
+    public void testTableSizeFor() {
+        assertEquals(1, WasteAnalysis.tableSizeFor(0));
+        assertEquals(2, WasteAnalysis.tableSizeFor(1));
+        assertEquals(4, WasteAnalysis.tableSizeFor(3));
+        assertEquals(16, WasteAnalysis.tableSizeFor(12));
+        assertEquals(32, WasteAnalysis.tableSizeFor(13));
+        assertEquals(1 << 30, WasteAnalysis.tableSizeFor(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void testDuplicatedArraysAcrossChunks() throws SnapshotException {
+        // the arrays of a class are analyzed in chunks, the even ones and the odd ones are duplicated
+        int count = 150_000;
+        IClass clazz = mock(IClass.class);
+        when(clazz.getName()).thenReturn("byte[]");
+        when(clazz.getObjectIds()).thenReturn(IntStream.range(0, count).toArray());
+        IPrimitiveArray even = array(new byte[]{1, 2});
+        IPrimitiveArray odd = array(new byte[]{3, 4});
+        ISnapshot snapshot = mock(ISnapshot.class);
+        when(snapshot.getClassesByName("byte[]", false)).thenReturn(List.of(clazz));
+        when(snapshot.getObject(anyInt())).thenAnswer(i -> (int) i.getArgument(0) % 2 == 0 ? even : odd);
+
+        WasteAnalysis analysis = WasteAnalysis.analyze(snapshot);
+        // the first array of each group is the one kept
+        assertEquals(Set.of(0, 1), analysis.items.stream().map(item -> item.objectId).collect(Collectors.toSet()));
+        for (WastedMemory.Item item : analysis.items) {
+            assertEquals(WastedMemory.Category.DUPLICATED_ARRAY, item.category);
+            assertEquals(count / 2, item.objects);
+            assertEquals(count / 2 * 16L, item.shallowSize);
+            assertEquals((count / 2 - 1) * 16L, item.wastedSize);
+        }
+    }
+
+    private static IPrimitiveArray array(byte[] value) {
+        IPrimitiveArray array = mock(IPrimitiveArray.class);
+        when(array.getValueArray()).thenReturn(value);
+        when(array.getUsedHeapSize()).thenReturn(16L);
+        return array;
+    }
+
+    private static void mockCell(ISnapshot snapshot, long address, int id, long value) throws SnapshotException {
+        IInstance cell = mock(IInstance.class);
+        when(cell.resolveValue("value")).thenReturn(value);
+        when(snapshot.mapAddressToId(address)).thenReturn(id);
+        when(snapshot.getObject(id)).thenReturn(cell);
+    }
+}
@@ -184,6 +184,18 @@ public class HeapDumpAnalysisApiExecutor extends AbstractApiExecutor<HeapDumpAna
                 log.warn("Failed to delete index file: {}", index.getAbsolutePath());
             }
         }
+
+        // additional indexes built by jifa, e.g. the string index
+        String prefix = indexFileNamePrefix(target);
+        File[] jifaIndexes = target.toAbsolutePath().getParent().toFile().listFiles(
+                (dir, name) -> name.startsWith(prefix) && name.endsWith(".jifa.index"));
+        if (jifaIndexes != null) {
+            for (File jifaIndex : jifaIndexes) {
+                if (!jifaIndex.delete()) {
+                    log.warn("Failed to delete index file: {}", jifaIndex.getAbsolutePath());
+                }
+            }
+        }
     }
 
     @Override
@@ -196,6 +208,12 @@ public class HeapDumpAnalysisApiExecutor extends AbstractApiExecutor<HeapDumpAna
         return PROVIDER.provide(target, options, listener);
     }
 
+    @Override
+    protected double footprintRatio() {
+        // the indexes are mostly on disk once parsed, parsing needs about half of the file size
+        return 0.5;
+    }
+
     @Override
     protected void cachedAnalyzerRemoved(HeapDumpAnalyzer heapDumpAnalyzer) {
         if (heapDumpAnalyzer != null) {
@@ -204,6 +222,10 @@ public class HeapDumpAnalysisApiExecutor extends AbstractApiExecutor<HeapDumpAna
     }
 
     private File indexFile(Path target) {
+        return target.resolveSibling(indexFileNamePrefix(target) + "index").toFile();
+    }
+
+    private String indexFileNamePrefix(Path target) {
         String indexFileNamePrefix;
         String dumpFileName = target.toFile().getName();
         int i = dumpFileName.lastIndexOf('.');
@@ -212,6 +234,6 @@ public class HeapDumpAnalysisApiExecutor extends AbstractApiExecutor<HeapDumpAna
         } else {
             indexFileNamePrefix = dumpFileName + '.';
         }
-        return target.resolveSibling(indexFileNamePrefix + "index").toFile();
+        return indexFileNamePrefix;
     }
 }
@@ -61,4 +61,10 @@ public class JFRAnalysisApiExecutor extends AbstractApiExecutor<JFRAnalyzer> {
     protected JFRAnalyzer buildAnalyzer(Path target, Map<String, String> options, ProgressListener listener) {
         return new JFRAnalyzerImpl(target, options, listener);
     }
+
+    @Override
+    protected double footprintRatio() {
+        // the compact binary events expand into objects
+        return 2.0;
+    }
 }
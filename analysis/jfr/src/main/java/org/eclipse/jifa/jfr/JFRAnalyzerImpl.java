@@ -15,6 +15,7 @@ package org.eclipse.jifa.jfr;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jifa.analysis.listener.ProgressListener;
+import org.eclipse.jifa.analysis.support.Cancellation;
 import org.eclipse.jifa.jfr.api.JFRAnalyzer;
 import org.eclipse.jifa.jfr.exception.ProfileAnalysisException;
 import org.eclipse.jifa.jfr.extractor.*;
@@ -132,7 +133,9 @@ public class JFRAnalyzerImpl implements JFRAnalyzer {
         if (taskSet != null) {
             set = new HashSet<>(taskSet);
         }
+        Cancellation cancellation = Cancellation.current();
         for (TaskResultBase ts : list) {
+            cancellation.check();
             if (set != null && !set.isEmpty()) {
                 if (include && !set.contains(ts.getTask().getName())) {
                     continue;
@@ -175,7 +178,9 @@ public class JFRAnalyzerImpl implements JFRAnalyzer {
     private void generateCpuTime(DimensionResult<TaskCPUTime> result, List<Object[]> os,
                                  Map<String, Long> names, SymbolMap map, boolean include, List<String> taskSet) {
         List<TaskCPUTime> list = result.getList();
+        Cancellation cancellation = Cancellation.current();
         for (TaskCPUTime ct : list) {
+            cancellation.check();
             if (taskSet != null && !taskSet.isEmpty()) {
                 if (include) {
                     if (!isTaskNameIn(ct.getTask().getName(), taskSet)) {
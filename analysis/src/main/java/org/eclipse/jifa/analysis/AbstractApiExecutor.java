@@ -14,6 +14,7 @@ package org.eclipse.jifa.analysis;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.RemovalListener;
 import com.github.benmanes.caffeine.cache.Scheduler;
 import lombok.extern.slf4j.Slf4j;
@@ -24,10 +25,12 @@ import org.eclipse.jifa.analysis.annotation.ApiParameterMeta;
 import org.eclipse.jifa.analysis.annotation.Exclude;
 import org.eclipse.jifa.analysis.listener.DefaultProgressListener;
 import org.eclipse.jifa.analysis.listener.ProgressListener;
+import org.eclipse.jifa.analysis.scheduler.ApiScheduler;
+import org.eclipse.jifa.analysis.scheduler.Lane;
+import org.eclipse.jifa.analysis.support.Cancellation;
 import org.eclipse.jifa.analysis.support.MethodNameConverter;
 import org.eclipse.jifa.analysis.util.TypeParameterUtil;
 import org.eclipse.jifa.common.domain.exception.ErrorCodeException;
-import org.eclipse.jifa.common.util.ExecutorFactory;
 import org.eclipse.jifa.common.util.Validate;
 
 import java.io.File;
@@ -58,32 +61,36 @@ import static org.eclipse.jifa.analysis.listener.ProgressListener.NoOpProgressLi
 @Slf4j
 public abstract class AbstractApiExecutor<Analyzer> implements ApiExecutor {
 
+    private static final long MIN_FOOTPRINT = 16 * 1024 * 1024;
+
     private Set<Api> apis;
 
     private final Map<String, Method> apiMethodMap = new HashMap<>();
 
     private final Set<String> predefinedApiNames = new HashSet<>();
 
-    private final Map<ExecutionContext, CompletableFuture<?>> activeContext = new ConcurrentHashMap<>();
+    private final Map<ExecutionContext, Execution> activeContext = new ConcurrentHashMap<>();
 
-    private final Map<Path, CompletableFuture<Analyzer>> buildingAnalyzer = new ConcurrentHashMap<>();
+    private final Map<Path, CompletableFuture<Admitted<Analyzer>>> buildingAnalyzer = new ConcurrentHashMap<>();
 
     private final Map<Path, ProgressListener> buildingAnalyzerListeners = new ConcurrentHashMap<>();
 
-    private final Cache<Path, Analyzer> cachedAnalyzer;
-
-    private final java.util.concurrent.Executor executor;
+    private final Cache<Path, Admitted<Analyzer>> cachedAnalyzer;
 
     protected AbstractApiExecutor() {
         loadApi();
 
-        executor = ExecutorFactory.newExecutor(this.getClass().getSimpleName() + " Executor");
-
+        // analyzers are evicted by the admission controller according to their estimated footprints
         cachedAnalyzer = Caffeine.newBuilder()
                                  .scheduler(Scheduler.systemScheduler())
-                                 .softValues()
-                                 .expireAfterAccess(getCacheDuration(), TimeUnit.MINUTES)
-                                 .removalListener((RemovalListener<Object, Analyzer>) (key, analyzer, cause) -> cachedAnalyzerRemoved(analyzer))
+                                 .expireAfter(new AnalyzerExpiry())
+                                 .removalListener((RemovalListener<Object, Admitted<Analyzer>>) (key, admitted, cause) -> {
+                                     if (admitted != null) {
+                                         // a pinned analyzer is disposed once its calls complete
+                                         admitted.ticket().release();
+                                         admitted.ticket().whenIdle(() -> cachedAnalyzerRemoved(admitted.analyzer()));
+                                     }
+                                 })
                                  .build();
     }
 
@@ -101,23 +108,63 @@ public abstract class AbstractApiExecutor<Analyzer> implements ApiExecutor {
             throw new IllegalArgumentException("Unsupported api: " + context.api());
         }
 
-        return activeContext.computeIfAbsent(context, ignored -> {
+        // the same calls share an execution, which is cancelled once all of their callers cancel
+        Execution execution = activeContext.compute(context, (ignored, active) -> {
+            if (active != null && active.subscribe()) {
+                return active;
+            }
+            Execution newExecution = new Execution();
+            newExecution.subscribe();
             boolean isPredefinedApi = predefinedApiNames.contains(context.api());
             CompletableFuture<?> receiver = isPredefinedApi
                     ? CompletableFuture.completedFuture(this)
-                    : buildAnalyzer(context.target(), Collections.emptyMap());
-            return receiver.thenApplyAsync(r -> {
+                    : buildAnalyzer(context.target(), Collections.emptyMap(), context.user(), false);
+            newExecution.future = receiver.thenApplyAsync(r -> newExecution.cancellation.call(() -> {
+                if (isPredefinedApi) {
+                    return invoke(method, r, context);
+                }
+                // the analyzer is pinned during the call, so that it is neither evicted nor disposed meanwhile
+                @SuppressWarnings("unchecked")
+                Admitted<Analyzer> admitted = (Admitted<Analyzer>) r;
+                while (!admitted.ticket().pin()) {
+                    // evicted before the call started
+                    admitted = buildAnalyzer(context.target(), Collections.emptyMap(), context.user(), false).join();
+                }
                 try {
-                    return checkApiReturnValue(method.invoke(r, context.arguments()));
-                } catch (RuntimeException re) {
-                    throw re;
-                } catch (Throwable t) {
-                    throw new CompletionException(t);
+                    return invoke(method, admitted.analyzer(), context);
                 } finally {
-                    activeContext.remove(context);
+                    admitted.ticket().unpin();
                 }
-            }, executor);
+            }), ApiScheduler.getInstance().executor(Lane.QUERY, context.user()));
+            return newExecution;
+        });
+        execution.future.whenComplete((r, t) -> activeContext.remove(context, execution));
+
+        CompletableFuture<Object> subscription = new CompletableFuture<>();
+        execution.future.whenComplete((r, t) -> {
+            if (t != null) {
+                subscription.completeExceptionally(t);
+            } else {
+                subscription.complete(r);
+            }
+        });
+        subscription.whenComplete((r, t) -> {
+            if (subscription.isCancelled() && execution.unsubscribe()) {
+                activeContext.remove(context, execution);
+                execution.future.cancel(false);
+            }
         });
+        return subscription;
+    }
+
+    private Object invoke(Method method, Object receiver, ExecutionContext context) {
+        try {
+            return checkApiReturnValue(method.invoke(receiver, context.arguments()));
+        } catch (RuntimeException re) {
+            throw re;
+        } catch (Throwable t) {
+            throw new CompletionException(t);
+        }
     }
 
     private void loadApi() {
@@ -207,10 +254,14 @@ public abstract class AbstractApiExecutor<Analyzer> implements ApiExecutor {
                 comparisonTargetPath = apiParameterMeta.comparisonTargetPath();
             }
             Validate.isTrue(!(targetPath && comparisonTargetPath));
-            if (targetPath || comparisonTargetPath) {
+            if (targetPath) {
                 Validate.isTrue(type == Path.class);
                 required = true;
             }
+            if (comparisonTargetPath) {
+                Validate.isTrue(type == Path.class || TypeParameterUtil.isListOf(type, Path.class));
+                required = true;
+            }
             if (type == Path.class) {
                 Validate.isTrue(targetPath || comparisonTargetPath);
             }
@@ -220,29 +271,42 @@ public abstract class AbstractApiExecutor<Analyzer> implements ApiExecutor {
         return apiParameters;
     }
 
-    private CompletableFuture<Analyzer> buildAnalyzer(Path target, Map<String, String> options) {
-        Analyzer analyzer = cachedAnalyzer.getIfPresent(target);
+    private CompletableFuture<Admitted<Analyzer>> buildAnalyzer(Path target, Map<String, String> options, String user,
+                                                                boolean prebuilt) {
+        Admitted<Analyzer> cached = cachedAnalyzer.getIfPresent(target);
 
-        if (analyzer != null) {
-            return CompletableFuture.completedFuture(analyzer);
+        if (cached != null) {
+            cached.ticket().touch();
+            return CompletableFuture.completedFuture(cached);
         }
 
         AtomicBoolean puttedByMe = new AtomicBoolean(false);
-        CompletableFuture<Analyzer> analyzerFuture = buildingAnalyzer.computeIfAbsent(target, ignored -> {
-            CompletableFuture<Analyzer> f = new CompletableFuture<>();
-            executor.execute(() -> {
+        CompletableFuture<Admitted<Analyzer>> analyzerFuture = buildingAnalyzer.computeIfAbsent(target, ignored -> {
+            CompletableFuture<Admitted<Analyzer>> f = new CompletableFuture<>();
+            ProgressListener listener = this.buildingAnalyzerListeners.get(target);
+            AdmissionController.Ticket ticket =
+                    AdmissionController.getInstance().acquire(target.toString(), estimateFootprint(target));
+            if (!ticket.admission().isDone() && listener != null) {
+                listener.subTask("Waiting for memory to build the analyzer");
+            }
+            ticket.admission().thenRunAsync(() -> {
                 try {
-                    Analyzer r = cachedAnalyzer.getIfPresent(target);
-                    if (r == null) {
-                        ProgressListener listener = this.buildingAnalyzerListeners.get(target);
-                        r = buildAnalyzer(target, options, listener != null ? listener : NoOpProgressListener);
-                        cachedAnalyzer.put(target, r);
+                    Admitted<Analyzer> admitted = cachedAnalyzer.getIfPresent(target);
+                    if (admitted == null) {
+                        Analyzer r = buildAnalyzer(target, options, listener != null ? listener : NoOpProgressListener);
+                        Admitted<Analyzer> built = new Admitted<>(r, ticket, prebuilt);
+                        cachedAnalyzer.put(target, built);
+                        ticket.evictable(() -> cachedAnalyzer.asMap().remove(target, built));
+                        f.complete(built);
+                    } else {
+                        ticket.release();
+                        f.complete(admitted);
                     }
-                    f.complete(r);
                 } catch (Throwable e) {
+                    ticket.release();
                     f.completeExceptionally(e);
                 }
-            });
+            }, ApiScheduler.getInstance().executor(Lane.BUILD, user));
             puttedByMe.set(true);
             return f;
         });
@@ -258,6 +322,21 @@ public abstract class AbstractApiExecutor<Analyzer> implements ApiExecutor {
 
     protected abstract Analyzer buildAnalyzer(Path target, Map<String, String> options, ProgressListener listener) throws Throwable;
 
+    /**
+     * @param target the target file
+     * @return the estimated memory footprint in bytes of the analyzer of the target
+     */
+    protected long estimateFootprint(Path target) {
+        return Math.max(MIN_FOOTPRINT, (long) (target.toFile().length() * footprintRatio()));
+    }
+
+    /**
+     * @return the ratio of the memory footprint of an analyzer to the size of its target file
+     */
+    protected double footprintRatio() {
+        return 1.0;
+    }
+
     protected void cachedAnalyzerRemoved(Analyzer analyzer) {
     }
 
@@ -278,10 +357,19 @@ public abstract class AbstractApiExecutor<Analyzer> implements ApiExecutor {
         return false;
     }
 
+    @Override
+    public final CompletableFuture<?> prebuild(Path target) {
+        return analyze(target, Collections.emptyMap(), true);
+    }
+
     public final void analyze(@ApiParameterMeta(targetPath = true) Path target,
                               @ApiParameterMeta(required = false) Map<String, String> options) {
+        analyze(target, options, false);
+    }
+
+    private CompletableFuture<?> analyze(Path target, Map<String, String> options, boolean prebuilt) {
         if (cachedAnalyzer.getIfPresent(target) != null) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         checkExists(target);
@@ -290,9 +378,11 @@ public abstract class AbstractApiExecutor<Analyzer> implements ApiExecutor {
 
         boolean puttedByMe = buildingAnalyzerListeners.putIfAbsent(target, progressListener) == null;
 
+        // joins the build started by another call
+        CompletableFuture<Admitted<Analyzer>> future =
+                buildAnalyzer(target, options, ApiScheduler.currentUser(), prebuilt);
         if (puttedByMe) {
-            CompletableFuture<Analyzer> future = buildAnalyzer(target, options);
-            future.whenComplete((analyzer, throwable) -> {
+            future.whenComplete((admitted, throwable) -> {
                 try {
                     if (throwable != null) {
                         try {
@@ -312,6 +402,7 @@ public abstract class AbstractApiExecutor<Analyzer> implements ApiExecutor {
                 }
             });
         }
+        return future;
     }
 
     public final Progress progressOfAnalysis(@ApiParameterMeta(targetPath = true) Path target) throws IOException {
@@ -379,11 +470,68 @@ public abstract class AbstractApiExecutor<Analyzer> implements ApiExecutor {
     }
 
     private void cleanAndDisposeAnalyzerCache(Path target) {
-        // Dispose snapshot synchronized to prevent from some problem caused by data inconsistency.
-        Analyzer analyzer = cachedAnalyzer.getIfPresent(target);
+        // the removal listener releases the ticket and disposes the analyzer
         cachedAnalyzer.invalidate(target);
-        if (analyzer != null) {
-            cachedAnalyzerRemoved(analyzer);
+    }
+
+    /**
+     * @param prebuilt true if the analyzer was built ahead of its first use
+     */
+    private record Admitted<A>(A analyzer, AdmissionController.Ticket ticket, boolean prebuilt) {
+    }
+
+    /**
+     * Analyzers expire once they are not accessed for the cache duration, except that prebuilt ones are kept until
+     * their first access.
+     */
+    private class AnalyzerExpiry implements Expiry<Path, Admitted<Analyzer>> {
+
+        @Override
+        public long expireAfterCreate(Path target, Admitted<Analyzer> admitted, long currentTime) {
+            return admitted.prebuilt() ? Long.MAX_VALUE : TimeUnit.MINUTES.toNanos(getCacheDuration());
+        }
+
+        @Override
+        public long expireAfterUpdate(Path target, Admitted<Analyzer> admitted, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(target, admitted, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Path target, Admitted<Analyzer> admitted, long currentTime,
+                                    long currentDuration) {
+            return TimeUnit.MINUTES.toNanos(getCacheDuration());
+        }
+    }
+
+    private static class Execution {
+
+        private final Cancellation cancellation = new Cancellation();
+
+        private CompletableFuture<?> future;
+
+        private int subscribers;
+
+        /**
+         * @return false if the execution is cancelled
+         */
+        synchronized boolean subscribe() {
+            if (cancellation.isCancelled()) {
+                return false;
+            }
+            subscribers++;
+            return true;
+        }
+
+        /**
+         * @return true if the execution is cancelled since it has no subscriber
+         */
+        synchronized boolean unsubscribe() {
+            if (--subscribers == 0 && !future.isDone()) {
+                cancellation.cancel();
+                return true;
+            }
+            return false;
         }
     }
 }
\ No newline at end of file
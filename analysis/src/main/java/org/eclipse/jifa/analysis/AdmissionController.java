@@ -0,0 +1,303 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jifa.common.util.Validate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Controls which analyzers may be built, so that all api executors together stay within a memory budget.
+ * <p>
+ * The footprint of an analyzer is estimated before it is built. A build is admitted if its footprint fits into the
+ * budget, otherwise the least recently used analyzers that have been built are evicted to make room. If evicting them
+ * is not enough, the build waits in a FIFO queue until others are released. A build whose footprint exceeds the budget
+ * is admitted only when nothing else is held. Analyzers pinned by running calls are never evicted.
+ */
+@Slf4j
+public class AdmissionController {
+
+    private static final AdmissionController INSTANCE = new AdmissionController();
+
+    private long budget = Runtime.getRuntime().maxMemory() / 2;
+
+    private long usedSize;
+
+    // admitted tickets in the order of access
+    private final LinkedHashSet<Ticket> admitted = new LinkedHashSet<>();
+
+    private final Deque<Ticket> waiting = new ArrayDeque<>();
+
+    AdmissionController() {
+    }
+
+    public static AdmissionController getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param budget the budget in bytes shared by the analyzers of all api executors
+     */
+    public void configure(long budget) {
+        Validate.isTrue(budget > 0, "budget must be positive");
+        List<Runnable> actions;
+        synchronized (this) {
+            this.budget = budget;
+            actions = drain();
+        }
+        actions.forEach(Runnable::run);
+    }
+
+    /**
+     * @param name   the name of the analyzer for logging
+     * @param weight the estimated footprint of the analyzer in bytes
+     * @return the ticket whose admission completes once the analyzer may be built
+     */
+    public Ticket acquire(String name, long weight) {
+        Validate.isTrue(weight >= 0, "weight must not be negative");
+        Ticket ticket = new Ticket(name, weight);
+        List<Runnable> actions;
+        synchronized (this) {
+            waiting.add(ticket);
+            actions = drain();
+            if (waiting.contains(ticket)) {
+                log.info("Analyzer of {} is waiting for memory, weight = {}, used = {}, budget = {}",
+                         name, weight, usedSize, budget);
+            }
+        }
+        actions.forEach(Runnable::run);
+        return ticket;
+    }
+
+    /**
+     * @return the budget in bytes
+     */
+    public synchronized long budget() {
+        return budget;
+    }
+
+    /**
+     * @return the total weight of the admitted analyzers in bytes
+     */
+    public synchronized long usedSize() {
+        return usedSize;
+    }
+
+    /**
+     * @return the count of the admitted analyzers, including the ones being built
+     */
+    public synchronized int admittedCount() {
+        return admitted.size();
+    }
+
+    /**
+     * @return the count of the analyzers waiting for memory
+     */
+    public synchronized int waitingCount() {
+        return waiting.size();
+    }
+
+    /**
+     * Admit the waiting tickets in order while they fit
+     *
+     * @return the evictions and the completions of admissions which must run without holding the lock
+     */
+    private List<Runnable> drain() {
+        List<Runnable> actions = new ArrayList<>();
+        while (!waiting.isEmpty()) {
+            Ticket head = waiting.peek();
+            if (!fits(head.weight)) {
+                // the size held by the analyzers being built or used
+                long pinnedSize = usedSize;
+                for (Ticket ticket : admitted) {
+                    if (ticket.isIdle()) {
+                        pinnedSize -= ticket.weight;
+                    }
+                }
+                if (pinnedSize > 0 && pinnedSize + head.weight > budget) {
+                    break;
+                }
+                // the least recently used first
+                Iterator<Ticket> iterator = admitted.iterator();
+                while (!fits(head.weight) && iterator.hasNext()) {
+                    Ticket victim = iterator.next();
+                    if (!victim.isIdle()) {
+                        continue;
+                    }
+                    log.info("Evict analyzer of {} for {}, weight = {}", victim.name, head.name, victim.weight);
+                    iterator.remove();
+                    victim.released = true;
+                    usedSize -= victim.weight;
+                    actions.add(victim.evictor);
+                }
+            }
+            waiting.poll();
+            admitted.add(head);
+            usedSize += head.weight;
+            actions.add(() -> head.admission.complete(head));
+        }
+        return actions;
+    }
+
+    private boolean fits(long weight) {
+        return usedSize + weight <= budget || usedSize == 0;
+    }
+
+    public class Ticket {
+
+        private final String name;
+
+        private final long weight;
+
+        private final CompletableFuture<Ticket> admission = new CompletableFuture<>();
+
+        // not null once the analyzer is built and may be evicted
+        private Runnable evictor;
+
+        private boolean released;
+
+        // the count of the running calls of the analyzer
+        private int pins;
+
+        // run once the ticket is released and no call is running
+        private Runnable onIdle;
+
+        private Ticket(String name, long weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        public CompletableFuture<Ticket> admission() {
+            return admission;
+        }
+
+        public long weight() {
+            return weight;
+        }
+
+        /**
+         * Mark the analyzer as built, so that it may be evicted to admit others
+         *
+         * @param evictor removes the analyzer from its cache
+         */
+        public void evictable(Runnable evictor) {
+            List<Runnable> actions;
+            synchronized (AdmissionController.this) {
+                if (released) {
+                    return;
+                }
+                this.evictor = evictor;
+                actions = drain();
+            }
+            actions.forEach(Runnable::run);
+        }
+
+        /**
+         * Pin the analyzer for a call, so that it is not evicted until {@link #unpin()}. This also records an access.
+         *
+         * @return false if the ticket is released, in which case the analyzer must not be used
+         */
+        public boolean pin() {
+            synchronized (AdmissionController.this) {
+                if (released) {
+                    return false;
+                }
+                pins++;
+                admitted.remove(this);
+                admitted.add(this);
+                return true;
+            }
+        }
+
+        public void unpin() {
+            List<Runnable> actions;
+            Runnable idle = null;
+            synchronized (AdmissionController.this) {
+                Validate.isTrue(pins > 0, "ticket is not pinned");
+                if (--pins == 0 && released) {
+                    idle = onIdle;
+                    onIdle = null;
+                }
+                actions = drain();
+            }
+            actions.forEach(Runnable::run);
+            if (idle != null) {
+                idle.run();
+            }
+        }
+
+        /**
+         * @param action run once the ticket is released and not pinned, immediately if it is already the case
+         */
+        public void whenIdle(Runnable action) {
+            synchronized (AdmissionController.this) {
+                if (!released || pins > 0) {
+                    onIdle = action;
+                    return;
+                }
+            }
+            action.run();
+        }
+
+        /**
+         * Record an access to the analyzer which defers its eviction
+         */
+        public void touch() {
+            synchronized (AdmissionController.this) {
+                if (admitted.remove(this)) {
+                    admitted.add(this);
+                }
+            }
+        }
+
+        private boolean isIdle() {
+            return evictor != null && pins == 0;
+        }
+
+        /**
+         * Release the memory held by the analyzer, or give up waiting. It is fine to release a ticket more than once.
+         */
+        public void release() {
+            List<Runnable> actions;
+            Runnable idle = null;
+            synchronized (AdmissionController.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                if (pins == 0) {
+                    idle = onIdle;
+                    onIdle = null;
+                }
+                if (admitted.remove(this)) {
+                    usedSize -= weight;
+                } else {
+                    waiting.remove(this);
+                    admission.cancel(false);
+                }
+                actions = drain();
+            }
+            actions.forEach(Runnable::run);
+            if (idle != null) {
+                idle.run();
+            }
+        }
+    }
+}
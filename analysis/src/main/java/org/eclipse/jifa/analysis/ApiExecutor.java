@@ -12,6 +12,7 @@
  ********************************************************************************/
 package org.eclipse.jifa.analysis;
 
+import java.nio.file.Path;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
@@ -39,6 +40,17 @@ public interface ApiExecutor {
      */
     CompletableFuture<?> execute(ExecutionContext context);
 
+    /**
+     * Build the analyzer of the target ahead of its first use. Unlike an analyzer built on demand, it does not expire
+     * before it is used, though it may still be evicted to free memory.
+     *
+     * @param target the target file
+     * @return a future completed once the analyzer is built
+     */
+    default CompletableFuture<?> prebuild(Path target) {
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * @return a matcher to tell the byte array is supported by this executor, default is null
      */
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -34,7 +34,27 @@ public interface ApiService {
      * @param arguments api arguments
      * @return api execution result
      */
-    CompletableFuture<?> execute(Path target, String namespace, String api, Object[] arguments);
+    default CompletableFuture<?> execute(Path target, String namespace, String api, Object[] arguments) {
+        return execute(target, namespace, api, arguments, null);
+    }
+
+    /**
+     * @param target    analysis target
+     * @param namespace api namespace
+     * @param api       api name or alias
+     * @param arguments api arguments
+     * @param user      the user on whose behalf the api is executed, null if unknown
+     * @return api execution result
+     */
+    CompletableFuture<?> execute(Path target, String namespace, String api, Object[] arguments, String user);
+
+    /**
+     * @param target    analysis target
+     * @param namespace api namespace
+     * @return a future completed once the analyzer of the target is built
+     * @see ApiExecutor#prebuild(Path)
+     */
+    CompletableFuture<?> prebuild(Path target, String namespace);
 
     /**
      * @return the instance of api service implementation
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -63,14 +63,24 @@ public class ApiServiceImpl implements ApiService {
     }
 
     @Override
-    public CompletableFuture<?> execute(Path target, String namespace, String api, Object[] arguments) {
+    public CompletableFuture<?> execute(Path target, String namespace, String api, Object[] arguments, String user) {
         Validate.notNull(target, "target must not be null");
         Validate.notNull(namespace, "namespace must not be null");
         Validate.notNull(api, "api must not be null");
 
         ApiExecutor executor = this.executors.get(namespace);
         Validate.notNull(executor, () -> "Unsupported namespace: " + namespace);
-        return executor.execute(new ExecutionContext(target, api, arguments));
+        return executor.execute(new ExecutionContext(target, api, arguments, user));
+    }
+
+    @Override
+    public CompletableFuture<?> prebuild(Path target, String namespace) {
+        Validate.notNull(target, "target must not be null");
+        Validate.notNull(namespace, "namespace must not be null");
+
+        ApiExecutor executor = this.executors.get(namespace);
+        Validate.notNull(executor, () -> "Unsupported namespace: " + namespace);
+        return executor.prebuild(target);
     }
 
     @Override
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -20,8 +20,14 @@ import java.util.Objects;
  * @param target the analysis target path
  * @param api the api
  * @param arguments the arguments
+ * @param user the user on whose behalf the api is executed, null if unknown. It is not a part of the identity, so
+ *             the same calls of different users share an execution
  */
-public record ExecutionContext(Path target, String api, Object[] arguments) {
+public record ExecutionContext(Path target, String api, Object[] arguments, String user) {
+
+    public ExecutionContext(Path target, String api, Object[] arguments) {
+        this(target, api, arguments, null);
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -43,7 +43,9 @@ public @interface ApiParameterMeta {
     boolean targetPath() default false;
 
     /**
-     * @return true if this parameter is the path of a comparison analysis target
+     * The parameter type is either Path or List&lt;Path&gt;
+     *
+     * @return true if this parameter is the path, or the paths, of comparison analysis targets
      */
     boolean comparisonTargetPath() default false;
 }
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2021 Contributors to the Eclipse Foundation
+ * Copyright (c) 2021, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,34 +13,197 @@
 
 package org.eclipse.jifa.analysis.cache;
 
-import com.google.common.cache.CacheBuilder;
 import org.eclipse.jifa.common.domain.exception.CommonException;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * The cache of a proxy. Weights are accounted by {@link CacheManager} against the quota of this cache and the
+ * global budget.
+ */
 class Cache {
 
-    private final com.google.common.cache.Cache<CacheKey, Object> cache;
+    final String name;
 
-    Cache() {
-        cache = CacheBuilder
-                .newBuilder()
-                .softValues()
-                .recordStats()
-                .expireAfterAccess(10, TimeUnit.MINUTES)
-                .build();
+    final Counters counters = new Counters();
+
+    // guarded by the cache manager
+    long weightedSize;
+
+    private final CacheManager manager;
+
+    private final ConcurrentHashMap<CacheKey, Entry> entries = new ConcurrentHashMap<>();
+
+    Cache(CacheManager manager, String name) {
+        this.manager = manager;
+        this.name = name;
     }
 
+    /**
+     * Load the value of the key. Concurrent calls with an equal key share a single invocation of the loader.
+     */
     @SuppressWarnings("unchecked")
     <V> V load(CacheKey key, Callable<V> loader) {
+        Entry entry = entries.get(key);
+        Entry created = null;
+        if (entry == null) {
+            Entry newEntry = new Entry(this, key);
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = created = newEntry;
+            }
+        }
+
+        if (created == null) {
+            counters.hitCount.increment();
+            manager.global.hitCount.increment();
+            entry.hitCount.increment();
+            entry.lastAccessTime = System.nanoTime();
+            try {
+                return (V) entry.future.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+
+        counters.missCount.increment();
+        manager.global.missCount.increment();
+        long start = System.nanoTime();
+        V value;
         try {
-            return (V) cache.get(key, loader);
-        } catch (ExecutionException e) {
-            throw new CommonException(e);
+            value = loader.call();
+        } catch (Throwable t) {
+            counters.loadFailureCount.increment();
+            manager.global.loadFailureCount.increment();
+            entries.remove(key, created);
+            created.future.completeExceptionally(t);
+            throw rethrow(t);
+        }
+        long loadTime = System.nanoTime() - start;
+        counters.recordLoad(loadTime);
+        manager.global.recordLoad(loadTime);
+
+        created.loadTime = loadTime;
+        created.weight = SizeEstimator.estimate(value);
+        created.lastAccessTime = System.nanoTime();
+        created.future.complete(value);
+        manager.admit(created);
+        return value;
+    }
+
+    boolean contains(Entry entry) {
+        return entries.get(entry.key) == entry;
+    }
+
+    boolean remove(Entry entry) {
+        return entries.remove(entry.key, entry);
+    }
+
+    Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    void invalidateAll() {
+        manager.release(this);
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException re) {
+            return re;
+        }
+        if (t instanceof Error e) {
+            throw e;
+        }
+        return new CommonException(t);
+    }
+
+    static class Entry implements EvictionPolicy.Candidate {
+
+        final Cache cache;
+
+        final CacheKey key;
+
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        final LongAdder hitCount = new LongAdder();
+
+        volatile long weight;
+
+        volatile long loadTime;
+
+        volatile long lastAccessTime;
+
+        // guarded by the cache manager, true if the weight has been added to the cache and the budget
+        boolean admitted;
+
+        Entry(Cache cache, CacheKey key) {
+            this.cache = cache;
+            this.key = key;
+        }
+
+        @Override
+        public long weight() {
+            return weight;
+        }
+
+        @Override
+        public long loadTime() {
+            return loadTime;
+        }
+
+        @Override
+        public long lastAccessTime() {
+            return lastAccessTime;
+        }
+
+        @Override
+        public long hitCount() {
+            return hitCount.sum();
+        }
+    }
+
+    static class Counters {
+
+        final LongAdder hitCount = new LongAdder();
+
+        final LongAdder missCount = new LongAdder();
+
+        final LongAdder loadSuccessCount = new LongAdder();
+
+        final LongAdder loadFailureCount = new LongAdder();
+
+        final LongAdder totalLoadTime = new LongAdder();
+
+        final LongAdder evictionCount = new LongAdder();
+
+        final LongAdder evictionWeight = new LongAdder();
+
+        void recordLoad(long loadTime) {
+            loadSuccessCount.increment();
+            totalLoadTime.add(loadTime);
+        }
+
+        void recordEviction(long weight) {
+            evictionCount.increment();
+            evictionWeight.add(weight);
+        }
+
+        void fill(CacheStatistics.Item item) {
+            item.setHitCount(hitCount.sum());
+            item.setMissCount(missCount.sum());
+            item.setLoadSuccessCount(loadSuccessCount.sum());
+            item.setLoadFailureCount(loadFailureCount.sum());
+            item.setTotalLoadTime(TimeUnit.NANOSECONDS.toMillis(totalLoadTime.sum()));
+            item.setEvictionCount(evictionCount.sum());
+            item.setEvictionWeight(evictionWeight.sum());
         }
     }
 
@@ -62,13 +225,13 @@ class Cache {
             if (o == null || getClass() != o.getClass())
                 return false;
             CacheKey cacheKey = (CacheKey) o;
-            return method.equals(cacheKey.method) && Arrays.equals(args, cacheKey.args);
+            return method.equals(cacheKey.method) && Arrays.deepEquals(args, cacheKey.args);
         }
 
         @Override
         public int hashCode() {
             int hash = method.hashCode();
-            return hash * 31 ^ Arrays.hashCode(args);
+            return hash * 31 ^ Arrays.deepHashCode(args);
         }
     }
 }
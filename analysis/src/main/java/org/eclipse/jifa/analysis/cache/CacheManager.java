@@ -0,0 +1,193 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jifa.common.util.ExecutorFactory;
+import org.eclipse.jifa.common.util.Validate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages the memory budget shared by the caches of all proxies built by {@link ProxyBuilder}.
+ * <p>
+ * Every cache may use at most a quota of the budget. When a cache exceeds its quota or all caches exceed the budget,
+ * results are evicted according to the {@link EvictionPolicy}. Results that have not been accessed for a while are
+ * expired regardless of the budget.
+ */
+@Slf4j
+public class CacheManager {
+
+    private static final CacheManager INSTANCE = new CacheManager();
+
+    final Cache.Counters global = new Cache.Counters();
+
+    private final Set<Cache> caches = ConcurrentHashMap.newKeySet();
+
+    private long budget = Runtime.getRuntime().maxMemory() / 4;
+
+    private double quotaRatio = 0.5;
+
+    private long expireAfterAccess = TimeUnit.MINUTES.toNanos(10);
+
+    private EvictionPolicy policy = EvictionPolicy.LRU;
+
+    private long weightedSize;
+
+    private CacheManager() {
+        ExecutorFactory.newScheduledExecutorService("Analysis Cache Cleaner", 1)
+                       .scheduleWithFixedDelay(this::expire, 1, 1, TimeUnit.MINUTES);
+    }
+
+    public static CacheManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param budget            the budget in bytes shared by all caches
+     * @param quotaRatio        the ratio of the budget that a single cache may use
+     * @param expireAfterAccess the duration in milliseconds after which a result that is not accessed expires
+     * @param policy            the eviction policy
+     */
+    public synchronized void configure(long budget, double quotaRatio, long expireAfterAccess, EvictionPolicy policy) {
+        Validate.isTrue(budget > 0, "budget must be positive");
+        Validate.isTrue(quotaRatio > 0 && quotaRatio <= 1, "quota ratio must be in (0, 1]");
+        Validate.isTrue(expireAfterAccess > 0, "expireAfterAccess must be positive");
+        Validate.notNull(policy);
+        this.budget = budget;
+        this.quotaRatio = quotaRatio;
+        this.expireAfterAccess = TimeUnit.MILLISECONDS.toNanos(expireAfterAccess);
+        this.policy = policy;
+        for (Cache cache : caches) {
+            shrink(cache);
+        }
+        shrink(null);
+    }
+
+    /**
+     * @return the statistics of all caches
+     */
+    public synchronized CacheStatistics statistics() {
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setBudget(budget);
+        statistics.setQuota(quota());
+        statistics.setWeightedSize(weightedSize);
+
+        CacheStatistics.Item total = statistics.getTotal();
+        total.setName("total");
+        global.fill(total);
+        total.setWeightedSize(weightedSize);
+
+        long entryCount = 0;
+        for (Cache cache : caches) {
+            CacheStatistics.Item item = new CacheStatistics.Item();
+            item.setName(cache.name);
+            cache.counters.fill(item);
+            item.setEntryCount(cache.entries().size());
+            item.setWeightedSize(cache.weightedSize);
+            statistics.getCaches().add(item);
+            entryCount += item.getEntryCount();
+        }
+        total.setEntryCount(entryCount);
+        return statistics;
+    }
+
+    Cache newCache(String name) {
+        Cache cache = new Cache(this, name);
+        caches.add(cache);
+        return cache;
+    }
+
+    /**
+     * Account the weight of a loaded entry, evicting entries if the quota or the budget is exceeded.
+     * An entry heavier than the quota is evicted immediately.
+     */
+    synchronized void admit(Cache.Entry entry) {
+        Cache cache = entry.cache;
+        if (!caches.contains(cache) || !cache.contains(entry)) {
+            return;
+        }
+        entry.admitted = true;
+        cache.weightedSize += entry.weight;
+        weightedSize += entry.weight;
+
+        shrink(cache);
+        shrink(null);
+    }
+
+    /**
+     * Remove a cache and all its entries.
+     */
+    synchronized void release(Cache cache) {
+        if (caches.remove(cache)) {
+            for (Cache.Entry entry : cache.entries()) {
+                remove(entry);
+            }
+        }
+    }
+
+    synchronized void expire() {
+        long now = System.nanoTime();
+        for (Cache cache : caches) {
+            for (Cache.Entry entry : cache.entries()) {
+                if (entry.admitted && now - entry.lastAccessTime > expireAfterAccess) {
+                    remove(entry);
+                }
+            }
+        }
+    }
+
+    private long quota() {
+        return (long) (budget * quotaRatio);
+    }
+
+    /**
+     * @param cache the cache to shrink below its quota, or null to shrink all caches below the budget
+     */
+    private void shrink(Cache cache) {
+        while (cache != null ? cache.weightedSize > quota() : weightedSize > budget) {
+            Cache.Entry victim = null;
+            double lowest = Double.MAX_VALUE;
+            for (Cache c : cache != null ? List.of(cache) : new ArrayList<>(caches)) {
+                for (Cache.Entry entry : c.entries()) {
+                    if (entry.admitted) {
+                        double priority = policy.priority(entry);
+                        if (victim == null || priority < lowest) {
+                            victim = entry;
+                            lowest = priority;
+                        }
+                    }
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            log.debug("Evict cached result of {}, weight = {}", victim.key.method, victim.weight);
+            victim.cache.counters.recordEviction(victim.weight);
+            global.recordEviction(victim.weight);
+            remove(victim);
+        }
+    }
+
+    private void remove(Cache.Entry entry) {
+        if (entry.cache.remove(entry) && entry.admitted) {
+            entry.admitted = false;
+            entry.cache.weightedSize -= entry.weight;
+            weightedSize -= entry.weight;
+        }
+    }
+}
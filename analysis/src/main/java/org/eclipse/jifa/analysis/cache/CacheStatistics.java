@@ -0,0 +1,65 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis.cache;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statistics of the caches created for {@link Cacheable} methods.
+ */
+@Data
+public class CacheStatistics {
+
+    private long budget;
+
+    private long quota;
+
+    private long weightedSize;
+
+    private Item total = new Item();
+
+    private List<Item> caches = new ArrayList<>();
+
+    @Data
+    public static class Item {
+
+        private String name;
+
+        private long entryCount;
+
+        private long weightedSize;
+
+        private long hitCount;
+
+        private long missCount;
+
+        private long loadSuccessCount;
+
+        private long loadFailureCount;
+
+        // in milliseconds
+        private long totalLoadTime;
+
+        private long evictionCount;
+
+        private long evictionWeight;
+
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+    }
+}
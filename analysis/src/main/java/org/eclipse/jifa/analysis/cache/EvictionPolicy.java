@@ -0,0 +1,77 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis.cache;
+
+import org.eclipse.jifa.common.util.Validate;
+
+/**
+ * Decides which cached result is evicted first when a cache exceeds its quota or the global budget is exceeded.
+ */
+@FunctionalInterface
+public interface EvictionPolicy {
+
+    /**
+     * Evict the least recently used result first.
+     */
+    EvictionPolicy LRU = Candidate::lastAccessTime;
+
+    /**
+     * Evict the result that is cheapest to recompute relative to its size first.
+     */
+    EvictionPolicy COST_AWARE = candidate -> (double) candidate.loadTime() * (candidate.hitCount() + 1) /
+                                             Math.max(1, candidate.weight());
+
+    /**
+     * @param candidate the candidate
+     * @return the priority of the candidate, the candidate with the lowest priority is evicted first
+     */
+    double priority(Candidate candidate);
+
+    /**
+     * @param name lru or cost-aware
+     * @return the eviction policy
+     */
+    static EvictionPolicy of(String name) {
+        return switch (name.toLowerCase()) {
+            case "lru" -> LRU;
+            case "cost-aware" -> COST_AWARE;
+            default -> Validate.error("Unsupported eviction policy: " + name);
+        };
+    }
+
+    /**
+     * A cached result that can be evicted.
+     */
+    interface Candidate {
+
+        /**
+         * @return the estimated size in bytes
+         */
+        long weight();
+
+        /**
+         * @return the time in nanoseconds spent computing the result
+         */
+        long loadTime();
+
+        /**
+         * @return the value of {@link System#nanoTime()} when the result was last accessed
+         */
+        long lastAccessTime();
+
+        /**
+         * @return the number of times the result has been served from the cache
+         */
+        long hitCount();
+    }
+}
@@ -24,12 +24,12 @@ import java.util.List;
 
 class Handler implements MethodInterceptor {
 
-    private final Cache cache;
+    final Cache cache;
 
     private final List<Method> cacheableMethods;
 
     public Handler(Class<?> target) {
-        cache = new Cache();
+        cache = CacheManager.getInstance().newCache(target.getName());
         cacheableMethods = new ArrayList<>();
 
         try {
@@ -15,16 +15,33 @@ package org.eclipse.jifa.analysis.cache;
 
 import net.sf.cglib.proxy.Enhancer;
 
+import java.lang.ref.Cleaner;
+import java.util.function.Function;
+
 /**
  * Proxy builder for building a proxy for a class that has cacheable methods.
  */
 public class ProxyBuilder {
 
-    private static <T> Enhancer buildEnhancer(Class<T> clazz) {
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    @SuppressWarnings("unchecked")
+    private static <T> T create(Class<T> clazz, Function<Enhancer, Object> creator) {
         Enhancer e = new Enhancer();
         e.setSuperclass(clazz);
-        e.setCallback(new Handler(clazz));
-        return e;
+        Handler handler = new Handler(clazz);
+        e.setCallback(handler);
+        Cache cache = handler.cache;
+        T proxy;
+        try {
+            proxy = (T) creator.apply(e);
+        } catch (Throwable t) {
+            cache.invalidateAll();
+            throw t;
+        }
+        // release the weight of the cached results once the proxy is unreachable
+        CLEANER.register(proxy, cache::invalidateAll);
+        return proxy;
     }
 
     /**
@@ -32,9 +49,8 @@ public class ProxyBuilder {
      * @param <T>   the type
      * @return the proxy
      */
-    @SuppressWarnings("unchecked")
     public static <T> T build(Class<T> clazz) {
-        return (T) buildEnhancer(clazz).create();
+        return create(clazz, Enhancer::create);
     }
 
     /**
@@ -44,8 +60,7 @@ public class ProxyBuilder {
      * @param <T>      the type
      * @return proxy
      */
-    @SuppressWarnings("unchecked")
     public static <T> T build(Class<T> clazz, Class<?>[] argTypes, Object[] args) {
-        return (T) buildEnhancer(clazz).create(argTypes, args);
+        return create(clazz, e -> e.create(argTypes, args));
     }
 }
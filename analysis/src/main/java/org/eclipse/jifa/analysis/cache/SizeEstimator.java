@@ -0,0 +1,177 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the size of a cached result by walking a bounded sample of its object graph.
+ * <p>
+ * Containers are sampled and the sampled size is extrapolated, so the estimate is cheap for large results but only
+ * approximate.
+ */
+class SizeEstimator {
+
+    private static final int OBJECT_HEADER = 16;
+
+    private static final int REFERENCE = 4;
+
+    private static final int MAX_SAMPLES = 32;
+
+    private static final int MAX_DEPTH = 12;
+
+    private static final int MAX_VISITS = 8192;
+
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return Layout.of(type);
+        }
+    };
+
+    private final Map<Object, Boolean> visited = new IdentityHashMap<>();
+
+    private SizeEstimator() {
+    }
+
+    static long estimate(Object value) {
+        return new SizeEstimator().sizeOf(value, 0);
+    }
+
+    private long sizeOf(Object value, int depth) {
+        if (value == null || visited.put(value, Boolean.TRUE) != null) {
+            return 0;
+        }
+
+        Class<?> type = value.getClass();
+        if (value instanceof CharSequence s) {
+            return align(OBJECT_HEADER + 8) + align(OBJECT_HEADER + s.length());
+        }
+        if (type.isArray()) {
+            Class<?> component = type.getComponentType();
+            int length = Array.getLength(value);
+            long shallow = align(OBJECT_HEADER + (long) length * Layout.sizeOf(component));
+            if (component.isPrimitive()) {
+                return shallow;
+            }
+            Object[] array = (Object[]) value;
+            return shallow + sample(array.length, new Iterator<>() {
+                int i;
+
+                @Override
+                public boolean hasNext() {
+                    return i < array.length;
+                }
+
+                @Override
+                public Object next() {
+                    return array[i++];
+                }
+            }, depth);
+        }
+        if (value instanceof Collection<?> c) {
+            // one node or slot per element
+            return align(OBJECT_HEADER + 16) + (long) c.size() * 24 + sample(c.size(), c.iterator(), depth);
+        }
+        if (value instanceof Map<?, ?> m) {
+            return align(OBJECT_HEADER + 32) + (long) m.size() * 40 +
+                   sample(m.size(), m.entrySet().iterator(), depth);
+        }
+        if (value instanceof Map.Entry<?, ?> e) {
+            return sizeOf(e.getKey(), depth + 1) + sizeOf(e.getValue(), depth + 1);
+        }
+
+        Layout layout = LAYOUTS.get(type);
+        long size = layout.shallowSize;
+        if (depth < MAX_DEPTH && visited.size() < MAX_VISITS) {
+            for (Field field : layout.references) {
+                try {
+                    size += sizeOf(field.get(value), depth + 1);
+                } catch (IllegalAccessException ignored) {
+                }
+            }
+        }
+        return size;
+    }
+
+    private long sample(int size, Iterator<?> iterator, int depth) {
+        if (size == 0 || depth >= MAX_DEPTH || visited.size() >= MAX_VISITS) {
+            return 0;
+        }
+        long sampled = 0;
+        int count = 0;
+        while (iterator.hasNext() && count < MAX_SAMPLES) {
+            sampled += sizeOf(iterator.next(), depth + 1);
+            count++;
+        }
+        return count == 0 ? 0 : sampled * size / count;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static class Layout {
+
+        final long shallowSize;
+
+        final List<Field> references;
+
+        Layout(long shallowSize, List<Field> references) {
+            this.shallowSize = shallowSize;
+            this.references = references;
+        }
+
+        static Layout of(Class<?> type) {
+            long size = OBJECT_HEADER;
+            List<Field> references = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    size += sizeOf(field.getType());
+                    // fields of JDK internal classes are not accessible
+                    if (!field.getType().isPrimitive() && field.trySetAccessible()) {
+                        references.add(field);
+                    }
+                }
+            }
+            return new Layout(align(size), references);
+        }
+
+        static int sizeOf(Class<?> type) {
+            if (type == long.class || type == double.class) {
+                return 8;
+            }
+            if (type == int.class || type == float.class) {
+                return 4;
+            }
+            if (type == short.class || type == char.class) {
+                return 2;
+            }
+            if (type == byte.class || type == boolean.class) {
+                return 1;
+            }
+            return REFERENCE;
+        }
+    }
+}
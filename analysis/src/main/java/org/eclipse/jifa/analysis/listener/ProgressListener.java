@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2021, 2022 Contributors to the Eclipse Foundation
+ * Copyright (c) 2021, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,6 +13,8 @@
 
 package org.eclipse.jifa.analysis.listener;
 
+import org.eclipse.jifa.analysis.support.Cancellation;
+
 /**
  * Progress listener of the analysis.
  * Currently, it is only used for the first analysis.
@@ -55,6 +57,14 @@ public interface ProgressListener {
     default void reset() {
     }
 
+    /**
+     * @return true if the work reporting progress should stop, which is the case once the api call executed on the
+     * current thread is cancelled by its client
+     */
+    default boolean isCanceled() {
+        return Cancellation.current().isCancelled();
+    }
+
     /**
      * @return the log
      */
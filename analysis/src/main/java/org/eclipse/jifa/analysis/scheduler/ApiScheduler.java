@@ -0,0 +1,261 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jifa.common.util.ExecutorFactory;
+import org.eclipse.jifa.common.util.Validate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the work of all api executors in lanes, so that api calls of built analyzers do not wait behind the builds
+ * of others.
+ * <p>
+ * A lane runs at most a number of tasks concurrently. Waiting tasks are queued by user and the users take turns, so a
+ * user submitting many tasks does not delay the others. The query lane may run on virtual threads if the runtime
+ * supports them.
+ */
+@Slf4j
+public class ApiScheduler {
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    // the tasks of unknown users share a turn
+    private static final String UNKNOWN_USER = "";
+
+    private static final ThreadLocal<String> CURRENT_USER = new ThreadLocal<>();
+
+    private static final ApiScheduler INSTANCE = new ApiScheduler();
+
+    private final Map<Lane, Runner> runners = new EnumMap<>(Lane.class);
+
+    ApiScheduler() {
+        for (Lane lane : Lane.values()) {
+            runners.put(lane, new Runner(lane));
+        }
+        configure(PROCESSORS, PROCESSORS * 2, false);
+    }
+
+    public static ApiScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the user of the task running on the current thread, or null
+     */
+    public static String currentUser() {
+        return CURRENT_USER.get();
+    }
+
+    /**
+     * @param buildConcurrency     the max count of analyzers built concurrently
+     * @param queryConcurrency     the max count of api calls executed concurrently
+     * @param virtualQueryThreads  whether to execute api calls on virtual threads, ignored if they are not supported
+     */
+    public void configure(int buildConcurrency, int queryConcurrency, boolean virtualQueryThreads) {
+        Validate.isTrue(buildConcurrency > 0, "build concurrency must be positive");
+        Validate.isTrue(queryConcurrency > 0, "query concurrency must be positive");
+        runners.get(Lane.BUILD).configure(buildConcurrency, false);
+        runners.get(Lane.QUERY).configure(queryConcurrency, virtualQueryThreads);
+    }
+
+    /**
+     * @param lane the lane
+     * @param user the user on whose behalf tasks are submitted, null if unknown
+     * @return the executor submitting tasks to the lane
+     */
+    public Executor executor(Lane lane, String user) {
+        Runner runner = runners.get(lane);
+        String key = user != null ? user : UNKNOWN_USER;
+        return task -> runner.submit(new Task(task, key, System.nanoTime()));
+    }
+
+    /**
+     * @return the statistics of all lanes
+     */
+    public SchedulerStatistics statistics() {
+        SchedulerStatistics statistics = new SchedulerStatistics();
+        for (Runner runner : runners.values()) {
+            statistics.getLanes().add(runner.statistics());
+        }
+        return statistics;
+    }
+
+    private record Task(Runnable runnable, String user, long submitTime) {
+    }
+
+    private static class Runner {
+
+        private final Lane lane;
+
+        private int concurrency;
+
+        private boolean virtualThreads;
+
+        private ExecutorService threads;
+
+        private int runningCount;
+
+        // the queued tasks by user, and the users in the order of their turns
+        private final Map<String, Deque<Task>> queues = new HashMap<>();
+
+        private final Deque<String> turns = new ArrayDeque<>();
+
+        private int queuedCount;
+
+        private long submittedCount;
+
+        private long completedCount;
+
+        private long totalWaitTime;
+
+        private long maxWaitTime;
+
+        private long totalRunTime;
+
+        Runner(Lane lane) {
+            this.lane = lane;
+        }
+
+        void configure(int concurrency, boolean virtualThreads) {
+            ExecutorService newThreads = null;
+            if (virtualThreads) {
+                newThreads = newVirtualThreadPerTaskExecutor();
+            }
+            boolean virtual = newThreads != null;
+            if (newThreads == null) {
+                newThreads = ExecutorFactory.newExecutorService("Analysis " + lane + " Lane", concurrency);
+            }
+
+            ExecutorService oldThreads;
+            List<Runnable> actions;
+            synchronized (this) {
+                oldThreads = threads;
+                threads = newThreads;
+                this.concurrency = concurrency;
+                this.virtualThreads = virtual;
+                actions = dispatch();
+            }
+            actions.forEach(Runnable::run);
+            if (oldThreads != null) {
+                // running tasks complete on the old threads
+                oldThreads.shutdown();
+            }
+        }
+
+        void submit(Task task) {
+            List<Runnable> actions;
+            synchronized (this) {
+                submittedCount++;
+                Deque<Task> queue = queues.get(task.user);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    queues.put(task.user, queue);
+                    turns.add(task.user);
+                }
+                queue.add(task);
+                queuedCount++;
+                actions = dispatch();
+            }
+            actions.forEach(Runnable::run);
+        }
+
+        /**
+         * Take the tasks allowed to run, one per user in turn
+         *
+         * @return the actions starting the tasks which must run without holding the lock
+         */
+        private List<Runnable> dispatch() {
+            List<Runnable> actions = new ArrayList<>();
+            while (runningCount < concurrency && !turns.isEmpty()) {
+                String user = turns.poll();
+                Deque<Task> queue = queues.get(user);
+                Task task = queue.poll();
+                if (queue.isEmpty()) {
+                    queues.remove(user);
+                } else {
+                    turns.add(user);
+                }
+                queuedCount--;
+                runningCount++;
+                ExecutorService executor = threads;
+                actions.add(() -> executor.execute(() -> run(task)));
+            }
+            return actions;
+        }
+
+        private void run(Task task) {
+            long start = System.nanoTime();
+            CURRENT_USER.set(task.user.equals(UNKNOWN_USER) ? null : task.user);
+            try {
+                task.runnable.run();
+            } catch (Throwable t) {
+                log.error("Uncaught error in {} lane", lane, t);
+            } finally {
+                CURRENT_USER.remove();
+                long end = System.nanoTime();
+                List<Runnable> actions;
+                synchronized (this) {
+                    runningCount--;
+                    completedCount++;
+                    long waitTime = TimeUnit.NANOSECONDS.toMillis(start - task.submitTime);
+                    totalWaitTime += waitTime;
+                    maxWaitTime = Math.max(maxWaitTime, waitTime);
+                    totalRunTime += TimeUnit.NANOSECONDS.toMillis(end - start);
+                    actions = dispatch();
+                }
+                actions.forEach(Runnable::run);
+            }
+        }
+
+        synchronized SchedulerStatistics.Item statistics() {
+            SchedulerStatistics.Item item = new SchedulerStatistics.Item();
+            item.setLane(lane);
+            item.setConcurrency(concurrency);
+            item.setVirtualThreads(virtualThreads);
+            item.setRunningCount(runningCount);
+            item.setQueuedCount(queuedCount);
+            item.setQueuedUserCount(queues.size());
+            item.setSubmittedCount(submittedCount);
+            item.setCompletedCount(completedCount);
+            item.setTotalWaitTime(totalWaitTime);
+            item.setMaxWaitTime(maxWaitTime);
+            item.setTotalRunTime(totalRunTime);
+            return item;
+        }
+
+        /**
+         * @return the executor service of virtual threads, or null if they are not supported by the runtime
+         */
+        private static ExecutorService newVirtualThreadPerTaskExecutor() {
+            try {
+                // introduced in JDK 21, the build targets JDK 17
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads are not supported, fall back to platform threads");
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis.scheduler;
+
+/**
+ * The lanes of {@link ApiScheduler}
+ */
+public enum Lane {
+
+    /**
+     * Building analyzers, which may take minutes
+     */
+    BUILD,
+
+    /**
+     * Api calls of built analyzers, most of which take milliseconds
+     */
+    QUERY,
+}
@@ -0,0 +1,65 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis.scheduler;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statistics of the lanes of {@link ApiScheduler}
+ */
+@Data
+public class SchedulerStatistics {
+
+    private List<Item> lanes = new ArrayList<>();
+
+    @Data
+    public static class Item {
+
+        private Lane lane;
+
+        private int concurrency;
+
+        private boolean virtualThreads;
+
+        private int runningCount;
+
+        // the depth of the queue
+        private int queuedCount;
+
+        // the count of users having queued tasks
+        private int queuedUserCount;
+
+        private long submittedCount;
+
+        private long completedCount;
+
+        // in milliseconds, from submission to start
+        private long totalWaitTime;
+
+        private long maxWaitTime;
+
+        // in milliseconds, from start to completion
+        private long totalRunTime;
+
+        public double getAverageWaitTime() {
+            return completedCount == 0 ? 0 : (double) totalWaitTime / completedCount;
+        }
+
+        public double getAverageRunTime() {
+            return completedCount == 0 ? 0 : (double) totalRunTime / completedCount;
+        }
+    }
+}
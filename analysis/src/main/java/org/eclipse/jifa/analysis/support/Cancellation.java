@@ -0,0 +1,88 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis.support;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Cancellation of the analysis work executed on behalf of a client.
+ * <p>
+ * The cancellation of an api call is bound to the thread executing it. Analyzers check it cooperatively, directly or
+ * through {@link org.eclipse.jifa.analysis.listener.ProgressListener#isCanceled()}, and stop by throwing an
+ * exception, since interrupting the thread would close the channels of files shared by other calls.
+ */
+public final class Cancellation {
+
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The cancellation of the work which can not be cancelled
+     */
+    public static final Cancellation NEVER = new Cancellation();
+
+    private volatile boolean cancelled;
+
+    /**
+     * @return the cancellation bound to the current thread, or {@link #NEVER}
+     */
+    public static Cancellation current() {
+        Cancellation cancellation = CURRENT.get();
+        return cancellation != null ? cancellation : NEVER;
+    }
+
+    /**
+     * @throws CancellationException if the cancellation bound to the current thread is cancelled
+     */
+    public static void checkCurrent() {
+        current().check();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        if (this != NEVER) {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * @throws CancellationException if cancelled
+     */
+    public void check() {
+        if (cancelled) {
+            throw new CancellationException("Analysis is cancelled");
+        }
+    }
+
+    /**
+     * @param action the action executed with this cancellation bound to the current thread
+     * @return the result of the action
+     */
+    public <T> T call(Supplier<T> action) {
+        check();
+        Cancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
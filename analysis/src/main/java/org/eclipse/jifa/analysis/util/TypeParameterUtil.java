@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -15,6 +15,7 @@ package org.eclipse.jifa.analysis.util;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.util.List;
 
 /**
  * Type parameter util
@@ -59,4 +60,14 @@ public abstract class TypeParameterUtil {
 
         throw new RuntimeException();
     }
+
+    /**
+     * @param type        the type
+     * @param elementType the element type
+     * @return true if the type is List&lt;elementType&gt;
+     */
+    public static boolean isListOf(Type type, Class<?> elementType) {
+        return type instanceof ParameterizedType pt && pt.getRawType() == List.class &&
+               pt.getActualTypeArguments()[0] == elementType;
+    }
 }
@@ -0,0 +1,123 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestAdmissionController {
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        AdmissionController controller = new AdmissionController();
+        controller.configure(100);
+        List<String> evicted = new ArrayList<>();
+
+        AdmissionController.Ticket a = controller.acquire("a", 40);
+        AdmissionController.Ticket b = controller.acquire("b", 40);
+        Assertions.assertTrue(a.admission().isDone());
+        Assertions.assertTrue(b.admission().isDone());
+        a.evictable(() -> evicted.add("a"));
+        b.evictable(() -> evicted.add("b"));
+        a.touch();
+
+        // b is less recently used than a
+        AdmissionController.Ticket c = controller.acquire("c", 40);
+        Assertions.assertTrue(c.admission().isDone());
+        Assertions.assertEquals(List.of("b"), evicted);
+        Assertions.assertEquals(80, controller.usedSize());
+
+        // releasing an evicted ticket again changes nothing
+        b.release();
+        Assertions.assertEquals(80, controller.usedSize());
+    }
+
+    @Test
+    public void testQueue() {
+        AdmissionController controller = new AdmissionController();
+        controller.configure(100);
+
+        // neither a nor b is built, so c and d must wait
+        AdmissionController.Ticket a = controller.acquire("a", 60);
+        AdmissionController.Ticket b = controller.acquire("b", 30);
+        AdmissionController.Ticket c = controller.acquire("c", 50);
+        AdmissionController.Ticket d = controller.acquire("d", 10);
+        Assertions.assertFalse(c.admission().isDone());
+        Assertions.assertFalse(d.admission().isDone(), "admission is in order");
+        Assertions.assertEquals(2, controller.waitingCount());
+        Assertions.assertEquals(2, controller.admittedCount());
+
+        a.release();
+        Assertions.assertTrue(c.admission().isDone());
+        Assertions.assertTrue(d.admission().isDone());
+        Assertions.assertEquals(90, controller.usedSize());
+
+        // a ticket heavier than the budget is admitted once nothing else is held
+        AdmissionController.Ticket e = controller.acquire("e", 200);
+        AdmissionController.Ticket f = controller.acquire("f", 10);
+        Assertions.assertFalse(e.admission().isDone());
+        b.release();
+        c.release();
+        Assertions.assertFalse(e.admission().isDone());
+        d.evictable(() -> d.release());
+        Assertions.assertTrue(e.admission().isDone());
+        Assertions.assertEquals(200, controller.usedSize());
+        Assertions.assertFalse(f.admission().isDone());
+
+        f.release();
+        Assertions.assertTrue(f.admission().isCancelled());
+        Assertions.assertEquals(0, controller.waitingCount());
+    }
+
+    @Test
+    public void testPinned() {
+        AdmissionController controller = new AdmissionController();
+        controller.configure(100);
+        List<String> evicted = new ArrayList<>();
+        List<String> disposed = new ArrayList<>();
+
+        AdmissionController.Ticket a = controller.acquire("a", 60);
+        a.evictable(() -> {
+            evicted.add("a");
+            a.release();
+            a.whenIdle(() -> disposed.add("a"));
+        });
+        Assertions.assertTrue(a.pin());
+        Assertions.assertTrue(a.pin());
+
+        // a is used by two calls, so b waits for them
+        AdmissionController.Ticket b = controller.acquire("b", 60);
+        Assertions.assertFalse(b.admission().isDone());
+        a.unpin();
+        Assertions.assertFalse(b.admission().isDone());
+        a.unpin();
+        Assertions.assertTrue(b.admission().isDone());
+        Assertions.assertEquals(List.of("a"), evicted);
+        Assertions.assertEquals(List.of("a"), disposed);
+        Assertions.assertFalse(a.pin(), "an evicted analyzer must not be used");
+
+        // an analyzer released during a call is disposed once the call completes
+        b.evictable(() -> {
+        });
+        Assertions.assertTrue(b.pin());
+        b.release();
+        b.whenIdle(() -> disposed.add("b"));
+        Assertions.assertEquals(List.of("a"), disposed);
+        b.unpin();
+        Assertions.assertEquals(List.of("a", "b"), disposed);
+        Assertions.assertEquals(0, controller.usedSize());
+    }
+}
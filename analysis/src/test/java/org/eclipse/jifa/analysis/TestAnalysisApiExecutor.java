@@ -61,4 +61,23 @@ public class TestAnalysisApiExecutor {
         line = (String) result.get();
         assertEquals("Hello Jifa", line);
     }
+
+    @Test
+    public void testPrebuild() throws IOException, ExecutionException, InterruptedException {
+        ApiService service = ApiService.getInstance();
+
+        File tempFile = File.createTempFile("test", "txt");
+        tempFile.deleteOnExit();
+        FileUtils.writeStringToFile(tempFile, "Hello Jifa", StandardCharsets.UTF_8);
+
+        // the future completes once the analyzer is built
+        service.prebuild(tempFile.toPath(), "text").get();
+        Progress progress = (Progress) service.execute(tempFile.toPath(), "text", "progressOfAnalysis",
+                                                       new Object[]{tempFile.toPath()}).get();
+        assertEquals(Progress.State.SUCCESS, progress.getState());
+
+        // completes at once when the analyzer is cached
+        assertTrue(service.prebuild(tempFile.toPath(), "text").isDone());
+        assertEquals("Hello Jifa", service.execute(tempFile.toPath(), "text", "getLine", new Object[]{1}).get());
+    }
 }
@@ -0,0 +1,74 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jifa.analysis.support.Cancellation;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCancellation {
+
+    @Test
+    public void testBinding() {
+        assertSame(Cancellation.NEVER, Cancellation.current());
+        Cancellation.NEVER.cancel();
+        assertFalse(Cancellation.NEVER.isCancelled());
+
+        Cancellation cancellation = new Cancellation();
+        assertSame(cancellation, cancellation.call(Cancellation::current));
+        assertSame(Cancellation.NEVER, Cancellation.current());
+
+        cancellation.cancel();
+        assertThrows(CancellationException.class, cancellation::check);
+        assertThrows(CancellationException.class, () -> cancellation.call(() -> null));
+    }
+
+    @Test
+    public void testSharedExecution() throws IOException, InterruptedException {
+        ApiService service = ApiService.getInstance();
+        File tempFile = File.createTempFile("test", "txt");
+        tempFile.deleteOnExit();
+        FileUtils.writeStringToFile(tempFile, "Hello Jifa", StandardCharsets.UTF_8);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Object[] args = {started, cancelled};
+        CompletableFuture<?> first = service.execute(tempFile.toPath(), "text", "awaitCancellation", args);
+        CompletableFuture<?> second = service.execute(tempFile.toPath(), "text", "awaitCancellation", args);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // the other caller still waits for the result
+        first.cancel(false);
+        assertTrue(first.isCancelled());
+        assertFalse(cancelled.await(200, TimeUnit.MILLISECONDS));
+        assertFalse(second.isDone());
+
+        second.cancel(false);
+        assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+        assertEquals(0, cancelled.getCount());
+    }
+}
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -16,11 +16,14 @@ import com.google.common.collect.Lists;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jifa.analysis.annotation.ApiMeta;
 import org.eclipse.jifa.analysis.listener.ProgressListener;
+import org.eclipse.jifa.analysis.support.Cancellation;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class TextAnalyzer {
 
@@ -43,4 +46,19 @@ public class TextAnalyzer {
     public long getTotalLines() {
         return lines.size();
     }
+
+    @ApiMeta
+    public boolean awaitCancellation(CountDownLatch started, CountDownLatch cancelled) throws InterruptedException {
+        started.countDown();
+        Cancellation cancellation = Cancellation.current();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (cancellation.isCancelled()) {
+                cancelled.countDown();
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
 }
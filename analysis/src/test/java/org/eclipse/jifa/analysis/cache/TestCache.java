@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -12,19 +12,49 @@
  ********************************************************************************/
 package org.eclipse.jifa.analysis.cache;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestCache {
 
     public static class C {
 
+        final AtomicInteger loads = new AtomicInteger();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
         @Cacheable
         public String randomString() {
             return UUID.randomUUID().toString();
         }
+
+        @Cacheable
+        public byte[] bytes(int size) {
+            loads.incrementAndGet();
+            return new byte[size];
+        }
+
+        @Cacheable
+        public String slow(int[] key) throws InterruptedException {
+            loads.incrementAndGet();
+            latch.await();
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    @AfterEach
+    public void reset() {
+        CacheManager.getInstance().configure(Runtime.getRuntime().maxMemory() / 4, 0.5,
+                                             TimeUnit.MINUTES.toMillis(10), EvictionPolicy.LRU);
     }
 
     @Test
@@ -32,4 +62,55 @@ public class TestCache {
         C c = ProxyBuilder.build(C.class);
         Assertions.assertEquals(c.randomString(), c.randomString());
     }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        C c = ProxyBuilder.build(C.class);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return c.slow(new int[]{1, 2});
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        Thread.sleep(100);
+        c.latch.countDown();
+        String first = futures.get(0).get();
+        for (CompletableFuture<String> future : futures) {
+            Assertions.assertEquals(first, future.get());
+        }
+        Assertions.assertEquals(1, c.loads.get());
+    }
+
+    @Test
+    public void testQuota() {
+        CacheManager.getInstance().configure(1024 * 1024, 0.5, TimeUnit.MINUTES.toMillis(10), EvictionPolicy.LRU);
+        C c = ProxyBuilder.build(C.class);
+
+        c.bytes(256 * 1024);
+        c.bytes(256 * 1024);
+        Assertions.assertEquals(1, c.loads.get());
+
+        // exceeds the quota together with the first one
+        c.bytes(300 * 1024);
+        c.bytes(256 * 1024);
+        Assertions.assertEquals(3, c.loads.get());
+
+        // heavier than the quota, never cached
+        c.bytes(600 * 1024);
+        c.bytes(600 * 1024);
+        Assertions.assertEquals(5, c.loads.get());
+
+        CacheStatistics.Item item = CacheManager.getInstance().statistics().getCaches().stream()
+                                                .filter(i -> i.getName().equals(C.class.getName()) &&
+                                                             i.getMissCount() == 5)
+                                                .findFirst()
+                                                .orElseThrow();
+        Assertions.assertEquals(1, item.getHitCount());
+        Assertions.assertTrue(item.getEvictionCount() >= 3);
+        Assertions.assertTrue(item.getWeightedSize() <= 512 * 1024);
+    }
 }
@@ -0,0 +1,94 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.analysis.scheduler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class TestApiScheduler {
+
+    @Test
+    public void testFairness() throws Exception {
+        ApiScheduler scheduler = new ApiScheduler();
+        scheduler.configure(1, 1, false);
+
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+        List<String> order = new CopyOnWriteArrayList<>();
+        Executor a = scheduler.executor(Lane.QUERY, "a");
+        Executor b = scheduler.executor(Lane.QUERY, "b");
+
+        a.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        // a floods the lane before b submits anything
+        for (int i = 0; i < 4; i++) {
+            a.execute(() -> {
+                order.add("a" + ":" + ApiScheduler.currentUser());
+                done.countDown();
+            });
+        }
+        for (int i = 0; i < 2; i++) {
+            b.execute(() -> {
+                order.add("b" + ":" + ApiScheduler.currentUser());
+                done.countDown();
+            });
+        }
+
+        SchedulerStatistics.Item query = scheduler.statistics().getLanes().get(Lane.QUERY.ordinal());
+        Assertions.assertEquals(1, query.getRunningCount());
+        Assertions.assertEquals(6, query.getQueuedCount());
+        Assertions.assertEquals(2, query.getQueuedUserCount());
+
+        blocker.countDown();
+        Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of("a:a", "b:b", "a:a", "b:b", "a:a", "a:a"), order);
+    }
+
+    @Test
+    public void testLanes() throws Exception {
+        ApiScheduler scheduler = new ApiScheduler();
+        scheduler.configure(1, 1, true);
+
+        // a long build does not block queries
+        CountDownLatch building = new CountDownLatch(1);
+        scheduler.executor(Lane.BUILD, null).execute(() -> {
+            try {
+                building.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        CountDownLatch queried = new CountDownLatch(1);
+        scheduler.executor(Lane.QUERY, null).execute(() -> {
+            Assertions.assertNull(ApiScheduler.currentUser());
+            queried.countDown();
+        });
+        Assertions.assertTrue(queried.await(10, TimeUnit.SECONDS));
+        building.countDown();
+
+        SchedulerStatistics.Item query = scheduler.statistics().getLanes().get(Lane.QUERY.ordinal());
+        Assertions.assertEquals(1, query.getSubmittedCount());
+        Assertions.assertEquals(Runtime.version().feature() >= 21, query.isVirtualThreads());
+    }
+}
@@ -0,0 +1,302 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+
+package org.eclipse.jifa.tda;
+
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+import org.eclipse.jifa.tda.model.CallSiteTree;
+import org.eclipse.jifa.tda.model.Frame;
+import org.eclipse.jifa.tda.model.RawMonitor;
+import org.eclipse.jifa.tda.model.Snapshot;
+import org.eclipse.jifa.tda.model.ThreadTable;
+import org.eclipse.jifa.tda.model.WaitForGraph;
+import org.eclipse.jifa.tda.vo.ComparisonOverview;
+import org.eclipse.jifa.tda.vo.VFrameDelta;
+import org.eclipse.jifa.tda.vo.VMonitor;
+import org.eclipse.jifa.tda.vo.VNewContention;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The differences between a base thread dump and a target thread dump of the same process.
+ * <p>
+ * Threads are correlated by native id and name. The call site trees of the dumps are merged by walking both frozen
+ * trees from the roots and pairing the children of paired nodes by frame, so no stack trace is visited again.
+ */
+class Comparison {
+
+    private final ComparisonOverview overview = new ComparisonOverview();
+
+    private final List<VNewContention> newContentions = new ArrayList<>();
+
+    private final CallSiteTree base;
+
+    private final CallSiteTree target;
+
+    // the merged tree whose node 0 is the root, the children of a node are adjacent and sorted by |delta| desc
+    private int size;
+
+    // -1 if the call site is absent from the base
+    private int[] baseNodes = new int[64];
+
+    // -1 if the call site is absent from the target
+    private int[] targetNodes = new int[64];
+
+    private int[] firstChildren = new int[64];
+
+    private int[] childCounts = new int[64];
+
+    private Comparison(CallSiteTree base, CallSiteTree target) {
+        this.base = base;
+        this.target = target;
+    }
+
+    /**
+     * @param base   the snapshot of the base thread dump
+     * @param target the snapshot of the target thread dump
+     * @return the comparison
+     */
+    static Comparison build(Snapshot base, Snapshot target) {
+        Comparison comparison = new Comparison(base.getCallSiteTree(), target.getCallSiteTree());
+        comparison.computeThreadDeltas(base.getThreadTable(), target.getThreadTable());
+        comparison.computeNewContentions(base, target);
+        comparison.mergeCallSiteTrees();
+        comparison.overview.setNewlyContendedMonitorCount(comparison.newContentions.size());
+        return comparison;
+    }
+
+    ComparisonOverview overview() {
+        return overview;
+    }
+
+    List<VNewContention> newContentions() {
+        return newContentions;
+    }
+
+    int nodeCount() {
+        return size;
+    }
+
+    int firstChild(int id) {
+        return firstChildren[id];
+    }
+
+    int childCount(int id) {
+        return childCounts[id];
+    }
+
+    /**
+     * @param id the id of a node of the merged tree except the root
+     * @return the node
+     */
+    VFrameDelta frameDelta(int id) {
+        Frame frame = baseNodes[id] >= 0 ? base.frame(baseNodes[id]) : target.frame(targetNodes[id]);
+        VFrameDelta vFrame = ThreadDumpAnalyzer.fillVFrame(new VFrameDelta(), frame);
+        vFrame.setId(id);
+        vFrame.setBaseWeight(weight(base, baseNodes[id]));
+        vFrame.setWeight(weight(target, targetNodes[id]));
+        vFrame.setDelta(vFrame.getWeight() - vFrame.getBaseWeight());
+        vFrame.setEnd(childCounts[id] == 0);
+        return vFrame;
+    }
+
+    private void computeThreadDeltas(ThreadTable base, ThreadTable target) {
+        Map<ThreadKey, Integer> baseThreads = threadsByKey(base);
+        Map<ThreadKey, Integer> targetThreads = threadsByKey(target);
+        overview.setBaseThreadCount(threadCount(base));
+        overview.setTargetThreadCount(threadCount(target));
+        overview.setAddedThreadCount((int) targetThreads.keySet().stream().filter(k -> !baseThreads.containsKey(k))
+                                                         .count());
+        overview.setRemovedThreadCount((int) baseThreads.keySet().stream().filter(k -> !targetThreads.containsKey(k))
+                                                        .count());
+
+        Map<String, Set<ThreadKey>> baseGroups = keysByGroup(base);
+        Map<String, Set<ThreadKey>> targetGroups = keysByGroup(target);
+        Set<String> groups = new TreeSet<>(baseGroups.keySet());
+        groups.addAll(targetGroups.keySet());
+        for (String group : groups) {
+            Set<ThreadKey> baseKeys = baseGroups.getOrDefault(group, Set.of());
+            Set<ThreadKey> targetKeys = targetGroups.getOrDefault(group, Set.of());
+            ComparisonOverview.GroupDelta delta = new ComparisonOverview.GroupDelta();
+            delta.setName(group);
+            delta.setBaseCount(baseKeys.size());
+            delta.setTargetCount(targetKeys.size());
+            delta.setAddedCount((int) targetKeys.stream().filter(k -> !baseKeys.contains(k)).count());
+            delta.setRemovedCount((int) baseKeys.stream().filter(k -> !targetKeys.contains(k)).count());
+            overview.getGroups().add(delta);
+        }
+        overview.getGroups().sort(Comparator.comparingInt((ComparisonOverview.GroupDelta d) -> d.getAddedCount() +
+                                                                                               d.getRemovedCount())
+                                            .reversed());
+
+        Map<JavaThreadState, Map<JavaThreadState, Integer>> transitions = new LinkedHashMap<>();
+        baseThreads.forEach((key, from) -> {
+            Integer to = targetThreads.get(key);
+            if (!base.isJava(from) || to == null || !target.isJava(to)) {
+                return;
+            }
+            if (base.javaState(from) != target.javaState(to)) {
+                transitions.computeIfAbsent(base.javaState(from), s -> new LinkedHashMap<>())
+                           .merge(target.javaState(to), 1, Integer::sum);
+            }
+        });
+        transitions.forEach((from, map) -> map.forEach((to, count) -> {
+            ComparisonOverview.StateTransition transition = new ComparisonOverview.StateTransition();
+            transition.setFrom(from);
+            transition.setTo(to);
+            transition.setCount(count);
+            overview.getStateTransitions().add(transition);
+        }));
+        overview.getStateTransitions().sort(Comparator.comparingInt(ComparisonOverview.StateTransition::getCount)
+                                                      .reversed());
+    }
+
+    private static int threadCount(ThreadTable table) {
+        int count = 0;
+        for (int id = 1; id < table.size(); id++) {
+            if (table.contains(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the thread ids by key except those sharing a key which can not be correlated
+     */
+    private static Map<ThreadKey, Integer> threadsByKey(ThreadTable table) {
+        Map<ThreadKey, Integer> threads = new HashMap<>();
+        Set<ThreadKey> ambiguous = new HashSet<>();
+        for (int id = 1; id < table.size(); id++) {
+            if (table.contains(id) && threads.put(ThreadKey.of(table, id), id) != null) {
+                ambiguous.add(ThreadKey.of(table, id));
+            }
+        }
+        ambiguous.forEach(threads::remove);
+        return threads;
+    }
+
+    private static Map<String, Set<ThreadKey>> keysByGroup(ThreadTable table) {
+        Map<String, Set<ThreadKey>> groups = new HashMap<>();
+        for (int id = 1; id < table.size(); id++) {
+            if (table.contains(id) && table.group(id) != null) {
+                groups.computeIfAbsent(table.group(id), g -> new HashSet<>()).add(ThreadKey.of(table, id));
+            }
+        }
+        return groups;
+    }
+
+    private void computeNewContentions(Snapshot base, Snapshot target) {
+        Set<MonitorKey> contended = new HashSet<>();
+        for (WaitForGraph.Contention contention : base.getWaitForGraph().getContentions()) {
+            contended.add(MonitorKey.of(contention.getMonitor()));
+        }
+        // in descending order of the count of blocked threads
+        for (WaitForGraph.Contention contention : target.getWaitForGraph().getContentions()) {
+            RawMonitor rm = contention.getMonitor();
+            if (contended.contains(MonitorKey.of(rm))) {
+                continue;
+            }
+            VNewContention newContention = new VNewContention();
+            // the id of a monitor of the target is meaningless to the analyzer of the base
+            newContention.setMonitor(new VMonitor(-1, rm.getAddress(), rm.isClassInstance(), rm.getClazz()));
+            ThreadTable table = target.getThreadTable();
+            int owner = contention.getOwnerId();
+            if (table.contains(owner)) {
+                newContention.setOwner(table.name(owner));
+                newContention.setOwnerNid(table.nid(owner));
+            }
+            newContention.setWaiterCount(contention.getWaiterCount());
+            newContention.setBlockedCount(contention.getBlockedCount());
+            newContention.setDepth(contention.getDepth());
+            newContentions.add(newContention);
+        }
+    }
+
+    private void mergeCallSiteTrees() {
+        newNode(0, 0);
+        for (int head = 0; head < size; head++) {
+            // pair the children of both trees by frame
+            Map<Frame, Integer> baseChildren = new HashMap<>();
+            int baseNode = baseNodes[head];
+            if (baseNode >= 0) {
+                for (int i = 0; i < base.childCount(baseNode); i++) {
+                    int child = base.firstChild(baseNode) + i;
+                    baseChildren.put(base.frame(child), child);
+                }
+            }
+            List<int[]> pairs = new ArrayList<>();
+            int targetNode = targetNodes[head];
+            if (targetNode >= 0) {
+                for (int i = 0; i < target.childCount(targetNode); i++) {
+                    int child = target.firstChild(targetNode) + i;
+                    Integer baseChild = baseChildren.remove(target.frame(child));
+                    pairs.add(new int[]{baseChild != null ? baseChild : -1, child});
+                }
+            }
+            baseChildren.values().forEach(child -> pairs.add(new int[]{child, -1}));
+            pairs.sort(Comparator.comparingInt((int[] p) -> -Math.abs(weight(target, p[1]) - weight(base, p[0])))
+                                 .thenComparingInt(p -> -weight(target, p[1]))
+                                 .thenComparingInt(p -> -weight(base, p[0]))
+                                 .thenComparingInt(p -> p[1])
+                                 .thenComparingInt(p -> p[0]));
+
+            firstChildren[head] = size;
+            childCounts[head] = pairs.size();
+            for (int[] pair : pairs) {
+                newNode(pair[0], pair[1]);
+            }
+        }
+    }
+
+    private static int weight(CallSiteTree tree, int node) {
+        return node >= 0 ? tree.weight(node) : 0;
+    }
+
+    private void newNode(int baseNode, int targetNode) {
+        if (size == baseNodes.length) {
+            int capacity = size << 1;
+            baseNodes = Arrays.copyOf(baseNodes, capacity);
+            targetNodes = Arrays.copyOf(targetNodes, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+        }
+        baseNodes[size] = baseNode;
+        targetNodes[size] = targetNode;
+        size++;
+    }
+
+    private record ThreadKey(long nid, String name) {
+
+        static ThreadKey of(ThreadTable table, int id) {
+            return new ThreadKey(table.nid(id), table.name(id));
+        }
+    }
+
+    private record MonitorKey(long address, String clazz) {
+
+        static MonitorKey of(RawMonitor rm) {
+            return new MonitorKey(rm.getAddress(), rm.getClazz());
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda;
+
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+import org.eclipse.jifa.tda.enums.MonitorState;
+import org.eclipse.jifa.tda.model.CallSiteTree;
+import org.eclipse.jifa.tda.model.Snapshot;
+import org.eclipse.jifa.tda.model.ThreadTable;
+import org.eclipse.jifa.tda.vo.SeriesOverview;
+import org.eclipse.jifa.tda.vo.VFrame;
+import org.eclipse.jifa.tda.vo.VHeldMonitor;
+import org.eclipse.jifa.tda.vo.VStuckThread;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * The analysis of several thread dumps of the same process taken a few seconds apart.
+ * <p>
+ * Java threads are correlated across samples by native id and name. A thread is stuck if its stack trace is the same
+ * in consecutive samples, and a monitor is held if it is locked by the same thread in consecutive samples. The call
+ * site tree merges the java threads of all samples, so the weight of a frame is the number of samples it appears in.
+ */
+class Series {
+
+    private final SeriesOverview overview = new SeriesOverview();
+
+    private final List<VStuckThread> stuckThreads = new ArrayList<>();
+
+    private final List<VHeldMonitor> heldMonitors = new ArrayList<>();
+
+    private final CallSiteTree callSiteTree = new CallSiteTree();
+
+    private Series() {
+    }
+
+    /**
+     * @param snapshots the snapshots of the samples
+     * @return the series
+     */
+    static Series build(List<Snapshot> snapshots) {
+        List<Snapshot> samples = new ArrayList<>(snapshots);
+        if (samples.stream().allMatch(s -> s.getTimestamp() >= 0)) {
+            samples.sort(Comparator.comparingLong(Snapshot::getTimestamp));
+        }
+
+        Series series = new Series();
+        series.computeOverview(samples);
+        List<ThreadTable> tables = samples.stream().map(Snapshot::getThreadTable).toList();
+        Map<ThreadKey, int[]> threads = correlate(tables);
+        series.computeStuckThreads(tables, threads);
+        series.computeHeldMonitors(tables, threads);
+        series.computeCallSiteTree(samples);
+        series.overview.setStuckThreadCount(series.stuckThreads.size());
+        series.overview.setHeldMonitorCount(series.heldMonitors.size());
+        return series;
+    }
+
+    SeriesOverview overview() {
+        return overview;
+    }
+
+    List<VStuckThread> stuckThreads() {
+        return stuckThreads;
+    }
+
+    List<VHeldMonitor> heldMonitors() {
+        return heldMonitors;
+    }
+
+    CallSiteTree callSiteTree() {
+        return callSiteTree;
+    }
+
+    private void computeOverview(List<Snapshot> samples) {
+        for (Snapshot snapshot : samples) {
+            SeriesOverview.Sample sample = new SeriesOverview.Sample();
+            sample.setName(Path.of(snapshot.getPath()).getFileName().toString());
+            sample.setTimestamp(snapshot.getTimestamp());
+            ThreadTable table = snapshot.getThreadTable();
+            for (int id = 1; id < table.size(); id++) {
+                if (!table.contains(id) || !table.isJava(id)) {
+                    continue;
+                }
+                sample.setJavaThreadCount(sample.getJavaThreadCount() + 1);
+                if (table.javaState(id) == JavaThreadState.RUNNABLE) {
+                    sample.setRunnableCount(sample.getRunnableCount() + 1);
+                } else if (table.javaState(id) == JavaThreadState.BLOCKED_ON_MONITOR_ENTER) {
+                    sample.setBlockedCount(sample.getBlockedCount() + 1);
+                }
+            }
+            overview.getSamples().add(sample);
+        }
+    }
+
+    /**
+     * @return the id of the java thread of each sample by key, 0 if the thread is absent from a sample
+     */
+    private static Map<ThreadKey, int[]> correlate(List<ThreadTable> tables) {
+        Map<ThreadKey, int[]> threads = new LinkedHashMap<>();
+        // keys shared by several threads of a sample can not be correlated
+        Set<ThreadKey> ambiguous = new HashSet<>();
+        for (int i = 0; i < tables.size(); i++) {
+            ThreadTable table = tables.get(i);
+            for (int id = 1; id < table.size(); id++) {
+                if (!table.contains(id) || !table.isJava(id)) {
+                    continue;
+                }
+                ThreadKey key = new ThreadKey(table.nid(id), table.name(id));
+                int[] array = threads.computeIfAbsent(key, k -> new int[tables.size()]);
+                if (array[i] != 0) {
+                    ambiguous.add(key);
+                }
+                array[i] = id;
+            }
+        }
+        ambiguous.forEach(threads::remove);
+        return threads;
+    }
+
+    private void computeStuckThreads(List<ThreadTable> tables, Map<ThreadKey, int[]> threads) {
+        for (int[] array : threads.values()) {
+            Run run = longestRun(array.length, i -> sameTrace(tables.get(i - 1), array[i - 1],
+                                                              tables.get(i), array[i]));
+            if (run == null) {
+                continue;
+            }
+            ThreadTable table = tables.get(run.last);
+            int id = array[run.last];
+            VStuckThread stuckThread = new VStuckThread();
+            stuckThread.setName(table.name(id));
+            stuckThread.setNid(table.nid(id));
+            stuckThread.setState(table.javaState(id));
+            stuckThread.setFirstSample(run.first);
+            stuckThread.setLastSample(run.last);
+            stuckThread.setSampleCount(run.length());
+            List<VFrame> frames = new ArrayList<>();
+            int trace = table.trace(id);
+            for (int i = 0; i < table.frameCount(trace); i++) {
+                frames.add(ThreadDumpAnalyzer.toVFrame(table, table.frame(trace, i)));
+            }
+            stuckThread.setFrames(frames);
+            stuckThreads.add(stuckThread);
+        }
+        stuckThreads.sort(Comparator.comparingInt(VStuckThread::getSampleCount).reversed()
+                                    .thenComparing(VStuckThread::getName));
+    }
+
+    private static boolean sameTrace(ThreadTable previousTable, int previous, ThreadTable currentTable, int current) {
+        if (previous == 0 || current == 0) {
+            return false;
+        }
+        int trace = currentTable.trace(current);
+        int previousTrace = previousTable.trace(previous);
+        return trace >= 0 && previousTrace >= 0 && currentTable.frameCount(trace) > 0 &&
+               currentTable.sameTrace(trace, previousTable, previousTrace);
+    }
+
+    private void computeHeldMonitors(List<ThreadTable> tables, Map<ThreadKey, int[]> threads) {
+        // the raw monitor id of each sample by (address, owner), -1 if the monitor is not locked in a sample
+        Map<MonitorKey, int[]> locked = new LinkedHashMap<>();
+        threads.forEach((threadKey, array) -> {
+            for (int i = 0; i < array.length; i++) {
+                ThreadTable table = tables.get(i);
+                int trace = array[i] == 0 ? -1 : table.trace(array[i]);
+                if (trace < 0) {
+                    continue;
+                }
+                for (int f = 0; f < table.frameCount(trace); f++) {
+                    int frame = table.frame(trace, f);
+                    for (int m = 0; m < table.monitorCount(frame); m++) {
+                        int rm = table.monitorId(frame, m);
+                        long address = table.rawMonitorAddress(rm);
+                        if (table.monitorState(frame, m) != MonitorState.LOCKED || address < 0) {
+                            continue;
+                        }
+                        MonitorKey key = new MonitorKey(address, threadKey);
+                        locked.computeIfAbsent(key, k -> {
+                            int[] ids = new int[array.length];
+                            Arrays.fill(ids, -1);
+                            return ids;
+                        })[i] = rm;
+                    }
+                }
+            }
+        });
+
+        locked.forEach((key, array) -> {
+            Run run = longestRun(array.length, i -> array[i - 1] >= 0 && array[i] >= 0);
+            if (run == null) {
+                return;
+            }
+            ThreadTable table = tables.get(run.last);
+            int rm = array[run.last];
+            int owner = threads.get(key.owner)[run.last];
+            VHeldMonitor heldMonitor = new VHeldMonitor();
+            heldMonitor.setAddress(table.rawMonitorAddress(rm));
+            heldMonitor.setClassInstance(table.isRawMonitorClassInstance(rm));
+            heldMonitor.setClazz(table.rawMonitorClass(rm));
+            heldMonitor.setOwner(table.name(owner));
+            heldMonitor.setOwnerNid(table.nid(owner));
+            heldMonitor.setFirstSample(run.first);
+            heldMonitor.setLastSample(run.last);
+            heldMonitor.setSampleCount(run.length());
+            int maxWaiters = 0;
+            for (int i = run.first; i <= run.last; i++) {
+                maxWaiters = Math.max(maxWaiters,
+                                      tables.get(i).monitorThreadCount(array[i], MonitorState.WAITING_TO_LOCK));
+            }
+            heldMonitor.setMaxWaiters(maxWaiters);
+            heldMonitors.add(heldMonitor);
+        });
+        heldMonitors.sort(Comparator.comparingInt(VHeldMonitor::getSampleCount)
+                                    .thenComparingInt(VHeldMonitor::getMaxWaiters)
+                                    .reversed());
+    }
+
+    private void computeCallSiteTree(List<Snapshot> samples) {
+        // the call site tree of a sample has the traces of its java threads
+        for (Snapshot snapshot : samples) {
+            callSiteTree.merge(snapshot.getCallSiteTree());
+        }
+        callSiteTree.freeze();
+    }
+
+    /**
+     * @param size       the sample count
+     * @param continuous whether sample i continues the run of sample i - 1
+     * @return the longest run of at least two samples, or null
+     */
+    private static Run longestRun(int size, IntPredicate continuous) {
+        Run longest = null;
+        int first = 0;
+        for (int i = 1; i <= size; i++) {
+            if (i < size && continuous.test(i)) {
+                continue;
+            }
+            if (i - first >= 2 && (longest == null || i - first > longest.length())) {
+                longest = new Run(first, i - 1);
+            }
+            first = i;
+        }
+        return longest;
+    }
+
+    private record Run(int first, int last) {
+
+        int length() {
+            return last - first + 1;
+        }
+    }
+
+    private record ThreadKey(long nid, String name) {
+    }
+
+    private record MonitorKey(long address, ThreadKey owner) {
+    }
+}
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -17,6 +17,7 @@ import org.eclipse.jifa.analysis.AbstractApiExecutor;
 import org.eclipse.jifa.analysis.listener.ProgressListener;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.function.Predicate;
@@ -26,7 +27,7 @@ public class ThreadDumpAnalysisApiExecutor extends AbstractApiExecutor<ThreadDum
 
     @Override
     protected ThreadDumpAnalyzer buildAnalyzer(Path target, Map<String, String> options, ProgressListener listener) {
-        return new ThreadDumpAnalyzer(target, listener);
+        return ThreadDumpAnalyzer.build(target, listener);
     }
 
     @Override
@@ -50,9 +51,16 @@ public class ThreadDumpAnalysisApiExecutor extends AbstractApiExecutor<ThreadDum
         return new Predicate<>() {
             static final String HEADER = "Full thread dump";
 
+            static final String JSON_KEY = "\"threadDump\"";
+
             @Override
             public boolean test(byte[] bytes) {
-                return bytes.length > 20 + HEADER.length() && new String(bytes, 20, HEADER.length()).equals(HEADER);
+                if (bytes.length > 20 + HEADER.length() && new String(bytes, 20, HEADER.length()).equals(HEADER)) {
+                    return true;
+                }
+                // generated by 'jcmd <pid> Thread.dump_to_file -format=json'
+                String content = new String(bytes, StandardCharsets.UTF_8).stripLeading();
+                return content.startsWith("{") && content.contains(JSON_KEY);
             }
         };
     }
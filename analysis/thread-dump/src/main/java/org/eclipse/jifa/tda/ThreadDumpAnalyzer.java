@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2022, 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2022, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -20,40 +20,57 @@ import org.eclipse.jifa.analysis.cache.ProxyBuilder;
 import org.eclipse.jifa.analysis.listener.ProgressListener;
 import org.eclipse.jifa.common.domain.request.PagingRequest;
 import org.eclipse.jifa.common.domain.vo.PageView;
+import org.eclipse.jifa.common.util.ExecutorFactory;
 import org.eclipse.jifa.common.util.PageViewBuilder;
+import org.eclipse.jifa.tda.enums.JavaThreadState;
 import org.eclipse.jifa.tda.enums.MonitorState;
+import org.eclipse.jifa.tda.enums.OSTreadState;
 import org.eclipse.jifa.tda.enums.ThreadType;
 import org.eclipse.jifa.tda.model.CallSiteTree;
 import org.eclipse.jifa.tda.model.Frame;
 import org.eclipse.jifa.tda.model.IdentityPool;
-import org.eclipse.jifa.tda.model.JavaThread;
+import org.eclipse.jifa.tda.model.LineIndex;
 import org.eclipse.jifa.tda.model.Monitor;
 import org.eclipse.jifa.tda.model.RawMonitor;
 import org.eclipse.jifa.tda.model.Snapshot;
-import org.eclipse.jifa.tda.model.Thread;
+import org.eclipse.jifa.tda.model.ThreadTable;
+import org.eclipse.jifa.tda.model.WaitForGraph;
 import org.eclipse.jifa.tda.parser.ParserFactory;
-import org.eclipse.jifa.tda.util.CollectionUtil;
+import org.eclipse.jifa.tda.vo.ComparisonOverview;
 import org.eclipse.jifa.tda.vo.Content;
 import org.eclipse.jifa.tda.vo.Overview;
+import org.eclipse.jifa.tda.vo.SeriesOverview;
+import org.eclipse.jifa.tda.vo.VContention;
 import org.eclipse.jifa.tda.vo.VFrame;
+import org.eclipse.jifa.tda.vo.VFrameDelta;
+import org.eclipse.jifa.tda.vo.VHeldMonitor;
 import org.eclipse.jifa.tda.vo.VMonitor;
+import org.eclipse.jifa.tda.vo.VNewContention;
+import org.eclipse.jifa.tda.vo.VStuckThread;
 import org.eclipse.jifa.tda.vo.VThread;
+import org.eclipse.jifa.tda.vo.VWait;
 
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static org.eclipse.jifa.analysis.listener.ProgressListener.NoOpProgressListener;
 
 /**
  * Thread dump analyzer
  */
 public class ThreadDumpAnalyzer {
 
+    private static final int SERIES_PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
     private final Snapshot snapshot;
 
     ThreadDumpAnalyzer(Path path, ProgressListener listener) {
@@ -73,28 +90,32 @@ public class ThreadDumpAnalyzer {
                                   new Object[]{path, listener});
     }
 
-    private void computeThreadState(Overview o, Thread thread) {
-        ThreadType type = thread.getType();
-        switch (type) {
+    private void computeThreadState(Overview o, ThreadTable table, int id) {
+        OSTreadState osState = table.osState(id);
+        switch (table.type(id)) {
             case JAVA:
-                JavaThread jt = ((JavaThread) thread);
-                o.getJavaThreadStat().inc(jt.getJavaThreadState());
-                o.getJavaThreadStat().inc(jt.getOsThreadState());
-                if (jt.isDaemon()) {
+                o.getJavaThreadStat().inc(table.javaState(id));
+                o.getJavaThreadStat().inc(osState);
+                if (table.isDaemon(id)) {
                     o.getJavaThreadStat().incDaemon();
                 }
                 break;
             case JIT:
-                o.getJitThreadStat().inc(thread.getOsThreadState());
+                o.getJitThreadStat().inc(osState);
                 break;
             case GC:
-                o.getGcThreadStat().inc(thread.getOsThreadState());
+                o.getGcThreadStat().inc(osState);
                 break;
             case VM:
-                o.getOtherThreadStat().inc(thread.getOsThreadState());
+                o.getOtherThreadStat().inc(osState);
                 break;
         }
-        o.getThreadStat().inc(thread.getOsThreadState());
+        o.getThreadStat().inc(osState);
+
+        String group = table.group(id);
+        if (group != null) {
+            o.getThreadGroupStat().computeIfAbsent(group, i -> new Overview.ThreadStat()).inc(osState);
+        }
     }
 
     /**
@@ -103,23 +124,19 @@ public class ThreadDumpAnalyzer {
     @Cacheable
     public Overview overview() {
         Overview o = new Overview();
-        CollectionUtil.forEach(t -> computeThreadState(o, t), snapshot.getJavaThreads(), snapshot.getNonJavaThreads());
-
-        snapshot.getThreadGroup().forEach(
-            (p, l) -> {
-                for (Thread t : l) {
-                    o.getThreadGroupStat().computeIfAbsent(p, i -> new Overview.ThreadStat()).inc(t.getOsThreadState());
-                }
+        ThreadTable table = snapshot.getThreadTable();
+        for (int id = 1; id < table.size(); id++) {
+            if (table.contains(id)) {
+                computeThreadState(o, table, id);
             }
-        );
+        }
+
         o.setTimestamp(snapshot.getTimestamp());
         o.setVmInfo(snapshot.getVmInfo());
         o.setJniRefs(snapshot.getJniRefs());
         o.setJniWeakRefs(snapshot.getJniWeakRefs());
 
-        if (snapshot.getDeadLockThreads() != null) {
-            o.setDeadLockCount(snapshot.getDeadLockThreads().size());
-        }
+        o.setDeadLockCount(snapshot.getDeadLockCount());
 
         o.setErrorCount(snapshot.getErrors().size());
         return o;
@@ -129,50 +146,100 @@ public class ThreadDumpAnalyzer {
      * @return the call site tree by parent id
      */
     public PageView<VFrame> callSiteTree(int parentId, PagingRequest paging) {
-        CallSiteTree tree = snapshot.getCallSiteTree();
-        if (parentId < 0 || parentId >= tree.getId2Node().length) {
+        return buildVFramePageView(snapshot.getCallSiteTree(), parentId, paging);
+    }
+
+    private static PageView<VFrame> buildVFramePageView(CallSiteTree tree, int parentId, PagingRequest paging) {
+        if (parentId < 0 || parentId >= tree.nodeCount()) {
             throw new IllegalArgumentException("Illegal parent id: " + parentId);
         }
-        CallSiteTree.Node node = tree.getId2Node()[parentId];
-        List<CallSiteTree.Node> children = node.getChildren() != null ? node.getChildren() : Collections.emptyList();
-        return PageViewBuilder.build(children, paging, n -> {
-            VFrame vFrame = new VFrame();
-            vFrame.setId(n.getId());
-            vFrame.setWeight(n.getWeight());
-            vFrame.setEnd(n.getChildren() == null);
-
-            Frame frame = n.getFrame();
-            vFrame.setClazz(frame.getClazz());
-            vFrame.setMethod(frame.getMethod());
-            vFrame.setModule(frame.getModule());
-            vFrame.setSourceType(frame.getSourceType());
-            vFrame.setSource(frame.getSource());
-
-            vFrame.setLine(frame.getLine());
-
-            if (frame.getMonitors() != null) {
-                List<VMonitor> vMonitors = new ArrayList<>();
-                for (Monitor monitor : frame.getMonitors()) {
-                    String clazz = null;
-                    RawMonitor rm = monitor.getRawMonitor();
-                    clazz = rm.getClazz();
-                    vMonitors.add(new VMonitor(rm.getId(), rm.getAddress(), rm.isClassInstance(),
-                                               clazz,
-                                               monitor.getState()));
-                }
-                vFrame.setMonitors(vMonitors);
+        int firstChild = tree.firstChild(parentId);
+        int childCount = tree.childCount(parentId);
+        return PageViewBuilder.build(new PageViewBuilder.Callback<Integer>() {
+            @Override
+            public int totalSize() {
+                return childCount;
             }
+
+            @Override
+            public Integer get(int index) {
+                return firstChild + index;
+            }
+        }, paging, id -> {
+            VFrame vFrame = toVFrame(tree.frame(id));
+            vFrame.setId(id);
+            vFrame.setWeight(tree.weight(id));
+            vFrame.setEnd(tree.childCount(id) == 0);
             return vFrame;
         });
     }
 
-    private PageView<VThread> buildVThreadPageView(List<Thread> threads, PagingRequest paging) {
-        return PageViewBuilder.build(threads, paging, thread -> {
-            VThread vThread = new VThread();
-            vThread.setId(thread.getId());
-            vThread.setName(thread.getName());
-            return vThread;
-        });
+    static VFrame toVFrame(Frame frame) {
+        return fillVFrame(new VFrame(), frame);
+    }
+
+    static <V extends VFrame> V fillVFrame(V vFrame, Frame frame) {
+        vFrame.setClazz(frame.getClazz());
+        vFrame.setMethod(frame.getMethod());
+        vFrame.setModule(frame.getModule());
+        vFrame.setSourceType(frame.getSourceType());
+        vFrame.setSource(frame.getSource());
+        vFrame.setLine(frame.getLine());
+
+        if (frame.getMonitors() != null) {
+            List<VMonitor> vMonitors = new ArrayList<>();
+            for (Monitor monitor : frame.getMonitors()) {
+                String clazz = null;
+                RawMonitor rm = monitor.getRawMonitor();
+                clazz = rm.getClazz();
+                vMonitors.add(new VMonitor(rm.getId(), rm.getAddress(), rm.isClassInstance(),
+                                           clazz,
+                                           monitor.getState()));
+            }
+            vFrame.setMonitors(vMonitors);
+        }
+        return vFrame;
+    }
+
+    /**
+     * @return the frame of the thread table
+     */
+    static VFrame toVFrame(ThreadTable table, int frame) {
+        VFrame vFrame = new VFrame();
+        vFrame.setClazz(table.frameClass(frame));
+        vFrame.setMethod(table.frameMethod(frame));
+        vFrame.setModule(table.frameModule(frame));
+        vFrame.setSourceType(table.frameSourceType(frame));
+        vFrame.setSource(table.frameSource(frame));
+        vFrame.setLine(table.frameLine(frame));
+        if (table.monitorCount(frame) > 0) {
+            List<VMonitor> vMonitors = new ArrayList<>();
+            for (int i = 0; i < table.monitorCount(frame); i++) {
+                int rm = table.monitorId(frame, i);
+                vMonitors.add(new VMonitor(rm, table.rawMonitorAddress(rm), table.isRawMonitorClassInstance(rm),
+                                           table.rawMonitorClass(rm), table.monitorState(frame, i)));
+            }
+            vFrame.setMonitors(vMonitors);
+        }
+        return vFrame;
+    }
+
+    private PageView<VThread> buildVThreadPageView(int[] ids, PagingRequest paging) {
+        return PageViewBuilder.build(ids, paging, this::toVThread);
+    }
+
+    /**
+     * @return the thread, null if it is absent such as a thread of the dead lock section
+     */
+    private VThread toVThread(int id) {
+        ThreadTable table = snapshot.getThreadTable();
+        if (!table.contains(id)) {
+            return null;
+        }
+        VThread vThread = new VThread();
+        vThread.setId(id);
+        vThread.setName(table.name(id));
+        return vThread;
     }
 
     /**
@@ -184,18 +251,45 @@ public class ThreadDumpAnalyzer {
     public PageView<VThread> threads(@ApiParameterMeta(required = false) String name,
                                      @ApiParameterMeta(required = false) ThreadType type,
                                      PagingRequest paging) {
-        List<Thread> threads = new ArrayList<>();
-        CollectionUtil.forEach(t -> {
-            if (type != null && t.getType() != type) {
-                return;
-            }
-            if (StringUtils.isNotBlank(name) && !t.getName().contains(name)) {
-                return;
-            }
-            threads.add(t);
-        }, snapshot.getJavaThreads(), snapshot.getNonJavaThreads());
+        return searchThreads(name, null, null, null, type, null, paging);
+    }
 
-        return buildVThreadPageView(threads, paging);
+    /**
+     * Search threads by the conditions which are ignored if they are absent
+     *
+     * @param name         a part of the thread name
+     * @param method       a part of 'class.method' of a frame of the thread
+     * @param monitorClass a part of the class of a monitor or an ownable synchronizer of the thread
+     * @param state        the java thread state
+     * @param type         the thread type
+     * @param group        the thread group name
+     * @param paging       paging request
+     * @return the threads matching all the conditions, java threads first
+     */
+    public PageView<VThread> searchThreads(@ApiParameterMeta(required = false) String name,
+                                           @ApiParameterMeta(required = false) String method,
+                                           @ApiParameterMeta(required = false) String monitorClass,
+                                           @ApiParameterMeta(required = false) JavaThreadState state,
+                                           @ApiParameterMeta(required = false) ThreadType type,
+                                           @ApiParameterMeta(required = false) String group,
+                                           PagingRequest paging) {
+        BitSet ids = snapshot.getThreadIndex().query(StringUtils.isNotBlank(name) ? name : null,
+                                                     StringUtils.isNotBlank(method) ? method : null,
+                                                     StringUtils.isNotBlank(monitorClass) ? monitorClass : null,
+                                                     state, type, StringUtils.isNotBlank(group) ? group : null);
+        ThreadTable table = snapshot.getThreadTable();
+        int[] result = new int[ids.cardinality()];
+        int size = 0;
+        for (boolean java : new boolean[]{true, false}) {
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                // the index finds the candidates of names
+                if (table.isJava(id) != java || StringUtils.isNotBlank(name) && !table.name(id).contains(name)) {
+                    continue;
+                }
+                result[size++] = id;
+            }
+        }
+        return buildVThreadPageView(Arrays.copyOf(result, size), paging);
     }
 
     /**
@@ -204,32 +298,38 @@ public class ThreadDumpAnalyzer {
      * @return the threads filtered by group name and type
      */
     public PageView<VThread> threadsOfGroup(String groupName, PagingRequest paging) {
-        List<Thread> threads = snapshot.getThreadGroup().getOrDefault(groupName, Collections.emptyList());
-        return buildVThreadPageView(threads, paging);
+        BitSet ids = snapshot.getThreadIndex().query(null, null, null, null, null, groupName);
+        return buildVThreadPageView(ids.stream().toArray(), paging);
     }
 
     public List<String> rawContentOfThread(int id) throws IOException {
-        Thread thread = snapshot.getThreadMap().get(id);
-        if (thread == null) {
+        ThreadTable table = snapshot.getThreadTable();
+        if (!table.contains(id)) {
             throw new IllegalArgumentException("Thread id is illegal: " + id);
         }
-        String path = snapshot.getPath();
-
-        int start = thread.getLineStart();
-        int end = thread.getLineEnd();
-        List<String> content = new ArrayList<>();
-
-        try (LineNumberReader lnr = new LineNumberReader(new FileReader(path))) {
-            for (int i = 1; i < start; i++) {
-                lnr.readLine();
-            }
+        int start = table.lineStart(id);
+        int end = table.lineEnd(id);
+        return lineIndex().read(Path.of(snapshot.getPath()), start, end - start + 1);
+    }
 
-            for (int i = start; i <= end; i++) {
-                content.add(lnr.readLine());
-            }
+    /**
+     * @param id the thread id
+     * @return the frames of the thread, the top frame first
+     */
+    public List<VFrame> framesOfThread(int id) {
+        ThreadTable table = snapshot.getThreadTable();
+        if (!table.contains(id)) {
+            throw new IllegalArgumentException("Thread id is illegal: " + id);
         }
-
-        return content;
+        int trace = table.trace(id);
+        if (trace < 0) {
+            return Collections.emptyList();
+        }
+        List<VFrame> frames = new ArrayList<>();
+        for (int i = 0; i < table.frameCount(trace); i++) {
+            frames.add(toVFrame(table, table.frame(trace, i)));
+        }
+        return frames;
     }
 
     /**
@@ -239,32 +339,24 @@ public class ThreadDumpAnalyzer {
      * @throws IOException
      */
     public Content content(int lineNo, int lineLimit) throws IOException {
-        String path = snapshot.getPath();
-
-        int end = lineNo + lineLimit - 1;
-        List<String> content = new ArrayList<>();
-        boolean reachEnd;
-
-        try (LineNumberReader lnr = new LineNumberReader(new FileReader(path))) {
-            for (int i = 1; i < lineNo; i++) {
-                String line = lnr.readLine();
-                if (line == null) {
-                    break;
-                }
-            }
+        LineIndex index = lineIndex();
+        List<String> content = index.read(Path.of(snapshot.getPath()), lineNo, lineLimit);
+        return new Content(content, (long) lineNo + lineLimit - 1 >= index.getLineCount());
+    }
 
-            for (int i = lineNo; i <= end; i++) {
-                String line = lnr.readLine();
-                if (line == null) {
-                    break;
+    private LineIndex lineIndex() throws IOException {
+        // snapshots deserialized from data written by older versions have no line index
+        LineIndex index = snapshot.getLineIndex();
+        if (index == null) {
+            synchronized (snapshot) {
+                index = snapshot.getLineIndex();
+                if (index == null) {
+                    index = LineIndex.build(Path.of(snapshot.getPath()));
+                    snapshot.setLineIndex(index);
                 }
-                content.add(line);
             }
-
-            String line = lnr.readLine();
-            reachEnd = line == null;
         }
-        return new Content(content, reachEnd);
+        return index;
     }
 
     /**
@@ -284,11 +376,15 @@ public class ThreadDumpAnalyzer {
      * @return the threads by monitor id and state
      */
     public PageView<VThread> threadsByMonitor(int id, MonitorState state, PagingRequest paging) {
-        Map<MonitorState, List<Thread>> map = snapshot.getMonitorThreads().get(id);
-        if (map == null) {
+        ThreadTable table = snapshot.getThreadTable();
+        if (!table.hasMonitorThreads(id)) {
             throw new IllegalArgumentException("Illegal monitor id: " + id);
         }
-        return buildVThreadPageView(map.getOrDefault(state, Collections.emptyList()), paging);
+        int[] ids = new int[table.monitorThreadCount(id, state)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = table.monitorThread(id, state, i);
+        }
+        return buildVThreadPageView(ids, paging);
     }
 
     /**
@@ -296,13 +392,187 @@ public class ThreadDumpAnalyzer {
      * @return the <state, count> map by monitor id
      */
     public Map<MonitorState, Integer> threadCountsByMonitor(int id) {
-        Map<MonitorState, List<Thread>> map = snapshot.getMonitorThreads().get(id);
-        if (map == null) {
+        ThreadTable table = snapshot.getThreadTable();
+        if (!table.hasMonitorThreads(id)) {
             throw new IllegalArgumentException("Illegal monitor id: " + id);
         }
 
         Map<MonitorState, Integer> counts = new HashMap<>();
-        map.forEach((s, l) -> counts.put(s, l.size()));
+        for (MonitorState state : MonitorState.values()) {
+            int count = table.monitorThreadCount(id, state);
+            if (count > 0) {
+                counts.put(state, count);
+            }
+        }
         return counts;
     }
+
+    /**
+     * @return the cycles of the wait-for graph, each of which is a dead lock
+     */
+    public List<List<VWait>> waitForCycles() {
+        List<List<VWait>> cycles = new ArrayList<>();
+        for (List<WaitForGraph.Wait> cycle : snapshot.getWaitForGraph().getCycles()) {
+            List<VWait> vCycle = new ArrayList<>();
+            for (WaitForGraph.Wait wait : cycle) {
+                VWait vWait = new VWait();
+                vWait.setThread(toVThread(wait.getThreadId()));
+                RawMonitor rm = wait.getMonitor();
+                vWait.setMonitor(new VMonitor(rm.getId(), rm.getAddress(), rm.isClassInstance(), rm.getClazz(),
+                                              wait.getState()));
+                vWait.setOwner(toVThread(wait.getOwnerId()));
+                vCycle.add(vWait);
+            }
+            cycles.add(vCycle);
+        }
+        return cycles;
+    }
+
+    /**
+     * @param paging paging request
+     * @return the contended monitors in descending order of the count of threads blocked by them
+     */
+    public PageView<VContention> contentions(PagingRequest paging) {
+        return PageViewBuilder.build(snapshot.getWaitForGraph().getContentions(), paging, contention -> {
+            VContention vContention = new VContention();
+            RawMonitor rm = contention.getMonitor();
+            vContention.setMonitor(new VMonitor(rm.getId(), rm.getAddress(), rm.isClassInstance(), rm.getClazz()));
+            vContention.setOwner(toVThread(contention.getOwnerId()));
+            vContention.setWaiterCount(contention.getWaiterCount());
+            vContention.setBlockedCount(contention.getBlockedCount());
+            vContention.setDepth(contention.getDepth());
+            return vContention;
+        });
+    }
+
+    /**
+     * Parse the other thread dumps in parallel and analyze them together with this one
+     *
+     * @param others the other thread dumps of the same process
+     * @return the series
+     */
+    @Cacheable
+    protected Series series(List<Path> others) {
+        Path path = Path.of(snapshot.getPath());
+        List<Path> paths = others.stream().distinct().filter(p -> !p.equals(path)).toList();
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("No other thread dump");
+        }
+
+        ExecutorService executor = ExecutorFactory.newExecutorService("Thread Dump Series",
+                                                                      Math.min(paths.size(), SERIES_PARALLELISM));
+        try {
+            List<CompletableFuture<Snapshot>> futures = new ArrayList<>();
+            for (Path p : paths) {
+                futures.add(CompletableFuture.supplyAsync(
+                    () -> ParserFactory.buildParser(p).parse(p, NoOpProgressListener), executor));
+            }
+            List<Snapshot> snapshots = new ArrayList<>();
+            snapshots.add(snapshot);
+            for (CompletableFuture<Snapshot> future : futures) {
+                snapshots.add(future.join());
+            }
+            return Series.build(snapshots);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param others the other thread dumps of the same process
+     * @return the overview of the series
+     */
+    public SeriesOverview seriesOverview(@ApiParameterMeta(comparisonTargetPath = true) List<Path> others) {
+        return series(others).overview();
+    }
+
+    /**
+     * @param others the other thread dumps of the same process
+     * @param paging paging request
+     * @return the threads whose stack traces are the same in consecutive samples
+     */
+    public PageView<VStuckThread> stuckThreadsOfSeries(@ApiParameterMeta(comparisonTargetPath = true) List<Path> others,
+                                                      PagingRequest paging) {
+        return PageViewBuilder.build(series(others).stuckThreads(), paging);
+    }
+
+    /**
+     * @param others the other thread dumps of the same process
+     * @param paging paging request
+     * @return the monitors locked by the same threads in consecutive samples
+     */
+    public PageView<VHeldMonitor> heldMonitorsOfSeries(@ApiParameterMeta(comparisonTargetPath = true) List<Path> others,
+                                                       PagingRequest paging) {
+        return PageViewBuilder.build(series(others).heldMonitors(), paging);
+    }
+
+    /**
+     * @param others   the other thread dumps of the same process
+     * @param parentId parent id
+     * @param paging   paging request
+     * @return the call site tree of all samples by parent id
+     */
+    public PageView<VFrame> callSiteTreeOfSeries(@ApiParameterMeta(comparisonTargetPath = true) List<Path> others,
+                                                 int parentId, PagingRequest paging) {
+        return buildVFramePageView(series(others).callSiteTree(), parentId, paging);
+    }
+
+    /**
+     * Parse the other thread dump and compare it with this one
+     *
+     * @param other the target thread dump, this one is the base
+     * @return the comparison
+     */
+    @Cacheable
+    protected Comparison comparison(Path other) {
+        if (other.equals(Path.of(snapshot.getPath()))) {
+            throw new IllegalArgumentException("No other thread dump");
+        }
+        return Comparison.build(snapshot, ParserFactory.buildParser(other).parse(other, NoOpProgressListener));
+    }
+
+    /**
+     * @param other the target thread dump
+     * @return the threads added and removed by group and the state transitions of java threads
+     */
+    public ComparisonOverview comparisonOverview(@ApiParameterMeta(comparisonTargetPath = true) Path other) {
+        return comparison(other).overview();
+    }
+
+    /**
+     * @param other    the target thread dump
+     * @param parentId the parent id of the merged call site tree
+     * @param paging   paging request
+     * @return the call sites of both thread dumps with weight deltas, in descending order of the absolute delta
+     */
+    public PageView<VFrameDelta> callSiteTreeOfComparison(@ApiParameterMeta(comparisonTargetPath = true) Path other,
+                                                          int parentId, PagingRequest paging) {
+        Comparison comparison = comparison(other);
+        if (parentId < 0 || parentId >= comparison.nodeCount()) {
+            throw new IllegalArgumentException("Illegal parent id: " + parentId);
+        }
+        int firstChild = comparison.firstChild(parentId);
+        int childCount = comparison.childCount(parentId);
+        return PageViewBuilder.build(new PageViewBuilder.Callback<Integer>() {
+            @Override
+            public int totalSize() {
+                return childCount;
+            }
+
+            @Override
+            public Integer get(int index) {
+                return firstChild + index;
+            }
+        }, paging, comparison::frameDelta);
+    }
+
+    /**
+     * @param other  the target thread dump
+     * @param paging paging request
+     * @return the monitors contended in the target thread dump but not in this one
+     */
+    public PageView<VNewContention> newContentionsOfComparison(
+        @ApiParameterMeta(comparisonTargetPath = true) Path other, PagingRequest paging) {
+        return PageViewBuilder.build(comparison(other).newContentions(), paging);
+    }
 }
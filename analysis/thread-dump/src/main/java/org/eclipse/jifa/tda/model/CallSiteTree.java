@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ * Copyright (c) 2022, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,94 +13,185 @@
 
 package org.eclipse.jifa.tda.model;
 
-import lombok.Data;
-
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 
-@Data
+/**
+ * The merged stack traces of java threads. The root is a virtual node whose id is 0.
+ * <p>
+ * A tree is built by a single thread, trees built by different threads are combined by {@link #merge(CallSiteTree)}.
+ * Nodes are stored in arrays. Once frozen, nodes are numbered in breadth first order with the children of a node
+ * sorted by weight, so the children of a node have consecutive ids.
+ */
 public class CallSiteTree {
 
-    private final Node root;
+    // null once frozen
+    private Builder builder = new Builder();
+
+    // distinct frames in the order of the first node referring to them
+    private Frame[] frames;
+
+    // index of the frame of a node in frames, -1 for the root
+    private int[] frameIds;
+
+    private int[] weights;
 
-    private List<List<Node>> allChildren;
+    // -1 for the root
+    private int[] parents;
 
-    private int count;
+    private int[] firstChildren;
 
-    private Node[] id2Node;
+    private int[] childCounts;
 
-    public CallSiteTree() {
-        root = new Node();
-        allChildren = new ArrayList<>();
+    public void add(Trace trace) {
+        add(trace, 1);
     }
 
-    public synchronized void add(Trace trace) {
-        Frame[] frames = trace.getFrames();
-        root.weight++;
-        Node parent = root;
-        for (Frame frame : frames) {
-            parent = addChildren(parent, frame);
+    /**
+     * Add a trace shared by several threads
+     *
+     * @param trace  the trace
+     * @param weight the count of threads
+     */
+    public void add(Trace trace, int weight) {
+        builder.add(trace.getFrames(), weight);
+    }
+
+    /**
+     * Add the traces of another tree, frozen or not
+     */
+    public void merge(CallSiteTree other) {
+        if (other.builder != null) {
+            builder.merge(other.builder);
+        } else {
+            builder.merge(other);
         }
     }
 
     public void freeze() {
-        id2Node = new Node[count + 1];
-        id2Node[0] = root;
-        int index = 1;
-        for (List<Node> children : allChildren) {
-            children.sort((o1, o2) -> o2.weight - o1.weight);
-
-            for (Node n : children) {
-                n.setId(index);
-                id2Node[index++] = n;
+        Builder b = builder;
+        int size = b.size;
+        int[] order = new int[size];
+        int[] ids = new int[size];
+        firstChildren = new int[size];
+        childCounts = new int[size];
+
+        Comparator<Integer> comparator = Comparator.comparingInt((Integer n) -> b.weights[n]).reversed()
+                                                   .thenComparingInt(n -> b.frames.get(b.frameIds[n]).hashCode())
+                                                   .thenComparingInt(n -> n);
+        int tail = 1;
+        for (int head = 0; head < size; head++) {
+            int node = order[head];
+            ids[node] = head;
+            List<Integer> children = new ArrayList<>();
+            for (int child = b.firstChildren[node]; child >= 0; child = b.nextSiblings[child]) {
+                children.add(child);
+            }
+            children.sort(comparator);
+            firstChildren[head] = tail;
+            childCounts[head] = children.size();
+            for (int child : children) {
+                order[tail++] = child;
             }
         }
 
-        assert index == count + 1;
+        frameIds = new int[size];
+        weights = new int[size];
+        parents = new int[size];
+        Map<Integer, Integer> frameIdMap = new HashMap<>();
+        List<Frame> frameList = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            int node = order[id];
+            weights[id] = b.weights[node];
+            if (id == 0) {
+                frameIds[id] = -1;
+                parents[id] = -1;
+                continue;
+            }
+            parents[id] = ids[b.parents[node]];
+            frameIds[id] = frameIdMap.computeIfAbsent(b.frameIds[node], i -> {
+                frameList.add(b.frames.get(i));
+                return frameList.size() - 1;
+            });
+        }
+        frames = frameList.toArray(new Frame[0]);
 
-        allChildren = null;
+        builder = null;
     }
 
-    private Node addChildren(Node parent, Frame frame) {
-        List<Node> children = parent.children;
-        if (children == null) {
-            Node node = new Node(frame);
-            count++;
-            children = new ArrayList<>();
-            children.add(node);
-            parent.children = children;
-            allChildren.add(children);
-            return node;
-        }
+    /**
+     * Restore a frozen tree
+     *
+     * @param nodeFrames the frames of the nodes in the order of ids, the first one is the root whose frame is null
+     * @param weights    the weights of the nodes
+     * @param parents    the parents of the nodes
+     * @return the frozen tree
+     */
+    public static CallSiteTree frozen(Frame[] nodeFrames, int[] weights, int[] parents) {
+        int size = weights.length;
+        CallSiteTree tree = new CallSiteTree();
+        tree.builder = null;
+        tree.weights = weights;
+        tree.parents = parents;
+        tree.frameIds = new int[size];
+        tree.firstChildren = new int[size];
+        tree.childCounts = new int[size];
 
-        int low = 0;
-        int high = children.size() - 1;
-        while (low <= high) {
-            int mid = low + (high - low) / 2;
-            Node node = children.get(mid);
-            if (node.frame.equals(frame)) {
-                node.weight++;
-                return node;
-            } else if (node.frame.hashCode() < frame.hashCode()) {
-                low = mid + 1;
-            } else {
-                high = mid - 1;
-            }
+        Map<Frame, Integer> frameIdMap = new HashMap<>();
+        List<Frame> frameList = new ArrayList<>();
+        tree.frameIds[0] = -1;
+        for (int id = 1; id < size; id++) {
+            tree.frameIds[id] = frameIdMap.computeIfAbsent(nodeFrames[id], f -> {
+                frameList.add(f);
+                return frameList.size() - 1;
+            });
+            tree.childCounts[parents[id]]++;
+        }
+        // the same as freeze()
+        int tail = 1;
+        for (int id = 0; id < size; id++) {
+            tree.firstChildren[id] = tail;
+            tail += tree.childCounts[id];
         }
-        Node node = new Node(frame);
-        count++;
-        children.add(low, node);
-        return node;
+        tree.frames = frameList.toArray(new Frame[0]);
+        return tree;
     }
 
-    @Override
-    public String toString() {
-        return "CallSiteTree{" +
-               "root=" + root +
-               ", allChildren=" + allChildren +
-               '}';
+    public int nodeCount() {
+        return weights.length;
+    }
+
+    /**
+     * @return the frame of the node, null for the root
+     */
+    public Frame frame(int id) {
+        return id == 0 ? null : frames[frameIds[id]];
+    }
+
+    public int weight(int id) {
+        return weights[id];
+    }
+
+    /**
+     * @return the parent of the node, -1 for the root
+     */
+    public int parent(int id) {
+        return parents[id];
+    }
+
+    /**
+     * @return the id of the first child, meaningful only if the node has children
+     */
+    public int firstChild(int id) {
+        return firstChildren[id];
+    }
+
+    public int childCount(int id) {
+        return childCounts[id];
     }
 
     @Override
@@ -110,50 +201,150 @@ public class CallSiteTree {
         if (o == null || getClass() != o.getClass())
             return false;
         CallSiteTree tree = (CallSiteTree) o;
-        return count == tree.count && Objects.equals(root, tree.root) &&
-               Objects.equals(allChildren, tree.allChildren) && Arrays.equals(id2Node, tree.id2Node);
+        return Arrays.equals(frames, tree.frames) && Arrays.equals(frameIds, tree.frameIds) &&
+               Arrays.equals(weights, tree.weights) && Arrays.equals(parents, tree.parents) &&
+               Arrays.equals(firstChildren, tree.firstChildren) && Arrays.equals(childCounts, tree.childCounts);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(root, allChildren, count);
-        result = 31 * result + Arrays.hashCode(id2Node);
+        int result = Arrays.hashCode(frames);
+        result = 31 * result + Arrays.hashCode(frameIds);
+        result = 31 * result + Arrays.hashCode(weights);
+        result = 31 * result + Arrays.hashCode(parents);
         return result;
     }
 
-    @Data
-    public static class Node extends Identity {
+    private static class Builder {
+
+        private static final long EMPTY = -1;
+
+        private final List<Frame> frames = new ArrayList<>();
 
-        Frame frame;
+        private final Map<Frame, Integer> frameIdMap = new HashMap<>();
 
-        int weight;
+        private int size;
 
-        List<Node> children;
+        private int[] parents = new int[64];
 
-        public Node(Frame frame) {
-            this.frame = frame;
-            weight = 1;
+        private int[] frameIds = new int[64];
+
+        private int[] weights = new int[64];
+
+        private int[] firstChildren = new int[64];
+
+        private int[] nextSiblings = new int[64];
+
+        // open addressing table from (parent, frame id) to child
+        private long[] keys = new long[128];
+
+        private int[] values = new int[128];
+
+        Builder() {
+            Arrays.fill(keys, EMPTY);
+            newNode(-1, -1);
+        }
+
+        void add(Frame[] trace, int weight) {
+            weights[0] += weight;
+            int node = 0;
+            for (Frame frame : trace) {
+                node = child(node, frameId(frame));
+                weights[node] += weight;
+            }
         }
 
-        public Node() {
-            frame = null;
-            weight = 0;
+        void merge(Builder other) {
+            // a parent is always created before its children
+            int[] mapped = new int[other.size];
+            weights[0] += other.weights[0];
+            for (int n = 1; n < other.size; n++) {
+                int node = child(mapped[other.parents[n]], frameId(other.frames.get(other.frameIds[n])));
+                weights[node] += other.weights[n];
+                mapped[n] = node;
+            }
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o)
-                return true;
-            if (o == null || getClass() != o.getClass())
-                return false;
-            Node node = (Node) o;
-            return weight == node.weight && Objects.equals(frame, node.frame) &&
-                   Objects.equals(children, node.children);
+        void merge(CallSiteTree frozen) {
+            // a parent has a smaller id than its children
+            int[] mapped = new int[frozen.nodeCount()];
+            weights[0] += frozen.weight(0);
+            for (int id = 1; id < mapped.length; id++) {
+                int node = child(mapped[frozen.parent(id)], frameId(frozen.frame(id)));
+                weights[node] += frozen.weight(id);
+                mapped[id] = node;
+            }
+        }
+
+        private int frameId(Frame frame) {
+            return frameIdMap.computeIfAbsent(frame, f -> {
+                frames.add(f);
+                return frames.size() - 1;
+            });
+        }
+
+        private int child(int parent, int frameId) {
+            long key = ((long) parent << 32) | frameId;
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int node = newNode(parent, frameId);
+            keys[slot] = key;
+            values[slot] = node;
+            if (size * 2 > keys.length) {
+                rehash();
+            }
+            return node;
+        }
+
+        private int newNode(int parent, int frameId) {
+            if (size == parents.length) {
+                int capacity = size << 1;
+                parents = Arrays.copyOf(parents, capacity);
+                frameIds = Arrays.copyOf(frameIds, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            }
+            int node = size++;
+            parents[node] = parent;
+            frameIds[node] = frameId;
+            firstChildren[node] = -1;
+            nextSiblings[node] = parent >= 0 ? firstChildren[parent] : -1;
+            if (parent >= 0) {
+                firstChildren[parent] = node;
+            }
+            return node;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length << 1];
+            values = new int[oldValues.length << 1];
+            Arrays.fill(keys, EMPTY);
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(frame, weight, children);
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
         }
     }
 }
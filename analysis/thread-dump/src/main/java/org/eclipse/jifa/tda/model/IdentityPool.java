@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ * Copyright (c) 2022, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -32,6 +32,19 @@ public class IdentityPool<O extends Identity> extends Pool<O> {
         refCountMap = new ConcurrentHashMap<>();
     }
 
+    /**
+     * @param objects the objects of a frozen pool, in the order of {@link #objects()}
+     * @return a frozen pool of the objects
+     */
+    public static <O extends Identity> IdentityPool<O> frozen(List<O> objects) {
+        IdentityPool<O> pool = new IdentityPool<>();
+        pool.id.set(objects.size());
+        pool.objects = objects;
+        pool.refCountMap = null;
+        pool.map = null;
+        return pool;
+    }
+
     @Override
     public O add(O o) {
         O pooled = map.computeIfAbsent(o, k -> {
@@ -0,0 +1,125 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.model;
+
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+import org.eclipse.jifa.tda.enums.OSTreadState;
+
+import java.util.Arrays;
+
+/**
+ * Java threads stored column by column while a dump is parsed, for dumps which may contain millions of threads such as
+ * virtual threads, so that no object is allocated per thread.
+ * <p>
+ * Rows are in the order of lines, the ids of the threads are consecutive from {@link #firstId()} once the snapshot is
+ * posted. Names are pooled symbols and traces are pooled, so a row only refers to shared objects.
+ */
+public class JavaThreadColumns {
+
+    private static final JavaThreadState[] JAVA_THREAD_STATES = JavaThreadState.values();
+
+    private static final OSTreadState[] OS_THREAD_STATES = OSTreadState.values();
+
+    private int size;
+
+    private int firstId = -1;
+
+    private String[] names = new String[64];
+
+    private long[] jids = new long[64];
+
+    private byte[] javaStates = new byte[64];
+
+    private byte[] osStates = new byte[64];
+
+    private int[] lineStarts = new int[64];
+
+    private int[] lineEnds = new int[64];
+
+    private Trace[] traces = new Trace[64];
+
+    /**
+     * @param name      the pooled name
+     * @param jid       the java thread id
+     * @param javaState the java thread state
+     * @param osState   the os thread state
+     * @param lineStart the first line
+     * @param lineEnd   the last line, included
+     * @param trace     the pooled trace
+     */
+    public void add(String name, long jid, JavaThreadState javaState, OSTreadState osState, int lineStart,
+                    int lineEnd, Trace trace) {
+        if (size == names.length) {
+            int capacity = size << 1;
+            names = Arrays.copyOf(names, capacity);
+            jids = Arrays.copyOf(jids, capacity);
+            javaStates = Arrays.copyOf(javaStates, capacity);
+            osStates = Arrays.copyOf(osStates, capacity);
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+            lineEnds = Arrays.copyOf(lineEnds, capacity);
+            traces = Arrays.copyOf(traces, capacity);
+        }
+        names[size] = name;
+        jids[size] = jid;
+        javaStates[size] = (byte) javaState.ordinal();
+        osStates[size] = (byte) osState.ordinal();
+        lineStarts[size] = lineStart;
+        lineEnds[size] = lineEnd;
+        traces[size] = trace;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the id of the first row, -1 before the snapshot is posted
+     */
+    public int firstId() {
+        return firstId;
+    }
+
+    void assignIds(int firstId) {
+        this.firstId = firstId;
+    }
+
+    public String name(int row) {
+        return names[row];
+    }
+
+    public long jid(int row) {
+        return jids[row];
+    }
+
+    public JavaThreadState javaState(int row) {
+        return JAVA_THREAD_STATES[javaStates[row]];
+    }
+
+    public OSTreadState osState(int row) {
+        return OS_THREAD_STATES[osStates[row]];
+    }
+
+    public int lineStart(int row) {
+        return lineStarts[row];
+    }
+
+    public int lineEnd(int row) {
+        return lineEnds[row];
+    }
+
+    public Trace trace(int row) {
+        return traces[row];
+    }
+}
@@ -0,0 +1,139 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.model;
+
+import lombok.Data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte offsets of the lines of a file, so that lines can be read without scanning the file from the beginning.
+ * <p>
+ * Only the offset of every {@link #STRIDE}th line is recorded, a read skips at most STRIDE - 1 lines. Lines are
+ * terminated the same way as {@link java.io.LineNumberReader}: by '\n', '\r' or "\r\n".
+ */
+@Data
+public class LineIndex {
+
+    static final int STRIDE = 16;
+
+    // offsets[i] is the offset of line i * STRIDE + 1
+    private long[] offsets;
+
+    private int lineCount;
+
+    public static LineIndex build(Path path) throws IOException {
+        Builder builder = new Builder();
+        boolean lineStart = true;
+        boolean cr = false;
+        long position = 0;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (cr && b == '\n') {
+                        // "\r\n" terminates the line once
+                        cr = false;
+                        position++;
+                        continue;
+                    }
+                    if (lineStart) {
+                        builder.add(position);
+                        lineStart = false;
+                    }
+                    cr = b == '\r';
+                    if (cr || b == '\n') {
+                        lineStart = true;
+                    }
+                    position++;
+                }
+                buffer.clear();
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param lineNo start line number, starting from 1
+     * @param limit  max line count
+     * @return the lines, fewer than limit if the end of file is reached
+     */
+    public List<String> read(Path path, int lineNo, int limit) throws IOException {
+        if (lineNo < 1) {
+            throw new IllegalArgumentException("Illegal line number: " + lineNo);
+        }
+        List<String> lines = new ArrayList<>();
+        if (lineNo > lineCount || limit <= 0) {
+            return lines;
+        }
+
+        int block = (lineNo - 1) / STRIDE;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(offsets[block]);
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, Charset.defaultCharset()));
+            for (int i = block * STRIDE + 1; i < lineNo; i++) {
+                reader.readLine();
+            }
+            int end = (int) Math.min(lineCount, (long) lineNo + limit - 1);
+            for (int i = lineNo; i <= end; i++) {
+                lines.add(reader.readLine());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Builds an index from the offsets of the lines, in order
+     */
+    public static class Builder {
+
+        private long[] offsets = new long[1024];
+
+        private int size;
+
+        private int lineCount;
+
+        /**
+         * @param offset the offset of the next line
+         */
+        public void add(long offset) {
+            if (lineCount++ % STRIDE == 0) {
+                if (size == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, size << 1);
+                }
+                offsets[size++] = offset;
+            }
+        }
+
+        public LineIndex build() {
+            LineIndex index = new LineIndex();
+            index.offsets = Arrays.copyOf(offsets, size);
+            index.lineCount = lineCount;
+            return index;
+        }
+    }
+}
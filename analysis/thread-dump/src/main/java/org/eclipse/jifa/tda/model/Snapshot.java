@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2022, 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2022, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -23,8 +23,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Data
 public class Snapshot {
@@ -44,16 +42,22 @@ public class Snapshot {
 
     private String path;
 
+    private LineIndex lineIndex;
+
     // -1 means unknown
     private long timestamp = -1L;
 
     private String vmInfo = "UNKNOWN";
 
-    private final List<JavaThread> javaThreads = new ArrayList<>();
+    // null once posted, the thread table is the model of threads
+    private List<JavaThread> javaThreads = new ArrayList<>();
+
+    private List<Thread> nonJavaThreads = new ArrayList<>();
 
-    private final List<Thread> nonJavaThreads = new ArrayList<>();
+    private Map<Integer, Thread> threadMap = new HashMap<>();
 
-    private final Map<Integer, Thread> threadMap = new HashMap<>();
+    // java threads of parsers which do not allocate an object per thread, null if absent
+    private JavaThreadColumns javaThreadColumns;
 
     private int nextThreadId = 1;
 
@@ -65,36 +69,31 @@ public class Snapshot {
     // -1 means unknown
     private int jniWeakRefs = -1;
 
-    private Map<String, List<Thread>> threadGroup;
-
     private Map<Integer, Map<MonitorState, List<Thread>>> monitorThreads = new HashMap<>();
 
-    // dead locks
+    // dead locks, null once posted
     private List<List<JavaThread>> deadLockThreads;
 
+    private int deadLockCount;
+
+    private WaitForGraph waitForGraph;
+
+    private ThreadIndex threadIndex;
+
+    private ThreadTable threadTable;
+
     // parse error
     private final List<Error> errors = new ArrayList<>();
 
-    private static final Pattern GROUP_NAME_PATTERN = Pattern.compile("(?<prefix>.*)[-#]\\d+( .+)?");
-
-    private void assignThreadIdAndComputeThreadGroupInfo() {
-        Map<String, List<Thread>> map = new HashMap<>();
+    private void assignThreadIds() {
         CollectionUtil.forEach(t -> {
             t.setId(nextThreadId++);
             threadMap.put(t.getId(), t);
-            String name = t.getName();
-            Matcher matcher = GROUP_NAME_PATTERN.matcher(name);
-            if (matcher.matches()) {
-                String prefix = matcher.group("prefix");
-                map.computeIfAbsent(prefix, i -> new ArrayList<>()).add(t);
-            }
         }, nonJavaThreads, javaThreads);
-
-        threadGroup = new HashMap<>();
-        for (Map.Entry<String, List<Thread>> entry : map.entrySet()) {
-            if (entry.getValue().size() > 1) {
-                threadGroup.put(entry.getKey(), entry.getValue());
-            }
+        if (javaThreadColumns != null) {
+            // the rows are in the order of lines
+            javaThreadColumns.assignIds(nextThreadId);
+            nextThreadId += javaThreadColumns.size();
         }
     }
 
@@ -110,7 +109,19 @@ public class Snapshot {
 
         javaThreads.sort(Comparator.comparingInt(Thread::getLineStart));
         nonJavaThreads.sort(Comparator.comparingInt(Thread::getLineStart));
-        assignThreadIdAndComputeThreadGroupInfo();
+        assignThreadIds();
+        threadTable = ThreadTable.build(this);
+        waitForGraph = WaitForGraph.build(threadTable, rawMonitors.objects());
+        threadIndex = ThreadIndex.build(threadTable);
+        deadLockCount = deadLockThreads == null ? 0 : deadLockThreads.size();
+
+        // the thread table replaces the threads, their traces and frames
+        javaThreads = null;
+        nonJavaThreads = null;
+        threadMap = null;
+        javaThreadColumns = null;
+        monitorThreads = null;
+        deadLockThreads = null;
     }
 
     @Override
@@ -119,21 +130,23 @@ public class Snapshot {
         if (o == null || getClass() != o.getClass()) return false;
         Snapshot snapshot = (Snapshot) o;
         return timestamp == snapshot.timestamp && nextThreadId == snapshot.nextThreadId && jniRefs == snapshot.jniRefs
-               && jniWeakRefs == snapshot.jniWeakRefs
+               && jniWeakRefs == snapshot.jniWeakRefs && deadLockCount == snapshot.deadLockCount
                && Objects.equals(symbols, snapshot.symbols) && Objects.equals(frames, snapshot.frames)
                && Objects.equals(traces, snapshot.traces) && Objects.equals(rawMonitors, snapshot.rawMonitors)
                && Objects.equals(monitors, snapshot.monitors)
                && Objects.equals(concurrentLocks, snapshot.concurrentLocks)
-               && Objects.equals(path, snapshot.path)
+               && Objects.equals(path, snapshot.path) && Objects.equals(lineIndex, snapshot.lineIndex)
                && Objects.equals(vmInfo, snapshot.vmInfo) && Objects.equals(javaThreads, snapshot.javaThreads)
                && Objects.equals(nonJavaThreads, snapshot.nonJavaThreads) && Objects.equals(threadMap, snapshot.threadMap)
-               && Objects.equals(callSiteTree, snapshot.callSiteTree) && Objects.equals(threadGroup, snapshot.threadGroup)
+               && Objects.equals(callSiteTree, snapshot.callSiteTree)
                && Objects.equals(monitorThreads, snapshot.monitorThreads) && Objects.equals(deadLockThreads, snapshot.deadLockThreads)
+               && Objects.equals(waitForGraph, snapshot.waitForGraph) && Objects.equals(threadIndex, snapshot.threadIndex)
+               && Objects.equals(threadTable, snapshot.threadTable)
                && Objects.equals(errors, snapshot.errors);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(symbols, frames, traces, rawMonitors, monitors, concurrentLocks, path, timestamp, vmInfo, javaThreads, nonJavaThreads, threadMap, nextThreadId, callSiteTree, jniRefs, jniWeakRefs, threadGroup, monitorThreads, deadLockThreads, errors);
+        return Objects.hash(symbols, frames, traces, rawMonitors, monitors, concurrentLocks, path, lineIndex, timestamp, vmInfo, javaThreads, nonJavaThreads, threadMap, nextThreadId, callSiteTree, jniRefs, jniWeakRefs, monitorThreads, deadLockThreads, deadLockCount, waitForGraph, threadIndex, threadTable, errors);
     }
 }
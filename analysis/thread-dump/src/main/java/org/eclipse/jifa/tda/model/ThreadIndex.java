@@ -0,0 +1,203 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.model;
+
+import lombok.Data;
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+import org.eclipse.jifa.tda.enums.ThreadType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Inverted index from the tokens of thread names, the methods of frames, the classes of monitors, java thread states,
+ * thread types and thread groups to the ids of threads.
+ * <p>
+ * A query intersects the bit sets of its conditions. A text condition matches a key if the key contains it, since keys
+ * are much less than threads, the keys are scanned and the bit sets of the matched keys are united.
+ */
+@Data
+public class ThreadIndex {
+
+    // bit i is thread i
+    private BitSet all = new BitSet();
+
+    // lower case tokens of thread names
+    private Map<String, BitSet> nameTokens = new HashMap<>();
+
+    // class.method
+    private Map<String, BitSet> methods = new HashMap<>();
+
+    // classes of monitors and ownable synchronizers
+    private Map<String, BitSet> monitorClasses = new HashMap<>();
+
+    private Map<JavaThreadState, BitSet> states = new EnumMap<>(JavaThreadState.class);
+
+    private Map<ThreadType, BitSet> types = new EnumMap<>(ThreadType.class);
+
+    private Map<String, BitSet> groups = new HashMap<>();
+
+    /**
+     * @param table the thread table of a snapshot
+     * @return the index
+     */
+    public static ThreadIndex build(ThreadTable table) {
+        ThreadIndex index = new ThreadIndex();
+        // the bit sets of the keys of a trace
+        Map<Integer, List<BitSet>> traceKeys = new HashMap<>();
+        for (int id = 1; id < table.size(); id++) {
+            if (!table.contains(id)) {
+                continue;
+            }
+            index.all.set(id);
+            for (String token : tokenize(table.name(id))) {
+                index.nameTokens.computeIfAbsent(token, k -> new BitSet()).set(id);
+            }
+            if (table.type(id) != null) {
+                index.types.computeIfAbsent(table.type(id), k -> new BitSet()).set(id);
+            }
+            if (table.isJava(id)) {
+                index.states.computeIfAbsent(table.javaState(id), k -> new BitSet()).set(id);
+                int trace = table.trace(id);
+                if (trace >= 0) {
+                    for (BitSet bits : traceKeys.computeIfAbsent(trace, t -> index.keysOf(table, t))) {
+                        bits.set(id);
+                    }
+                }
+            }
+            String group = table.group(id);
+            if (group != null) {
+                index.groups.computeIfAbsent(group, k -> new BitSet()).set(id);
+            }
+        }
+        return index;
+    }
+
+    private List<BitSet> keysOf(ThreadTable table, int trace) {
+        // distinct bit sets, a recursive method appears several times
+        Set<BitSet> keys = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < table.frameCount(trace); i++) {
+            int frame = table.frame(trace, i);
+            keys.add(methods.computeIfAbsent(table.frameClass(frame) + "." + table.frameMethod(frame),
+                                             k -> new BitSet()));
+            for (int j = 0; j < table.monitorCount(frame); j++) {
+                String clazz = table.rawMonitorClass(table.monitorId(frame, j));
+                if (clazz != null) {
+                    keys.add(monitorClasses.computeIfAbsent(clazz, k -> new BitSet()));
+                }
+            }
+        }
+        for (int i = 0; i < table.lockCount(trace); i++) {
+            String clazz = table.lockClass(trace, i);
+            if (clazz != null) {
+                keys.add(monitorClasses.computeIfAbsent(clazz, k -> new BitSet()));
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Conditions are ignored if they are null
+     *
+     * @param name         a part of the thread name, the ids of threads whose names contain it are a subset of the
+     *                     result which must be checked by the caller
+     * @param method       a part of 'class.method' of a frame
+     * @param monitorClass a part of the class of a monitor or an ownable synchronizer
+     * @param state        the java thread state
+     * @param type         the thread type
+     * @param group        the thread group
+     * @return the ids of matched threads
+     */
+    public BitSet query(String name, String method, String monitorClass, JavaThreadState state, ThreadType type,
+                        String group) {
+        BitSet result = (BitSet) all.clone();
+        if (name != null) {
+            for (String token : tokenize(name)) {
+                result.and(unionOfKeysContaining(nameTokens, token));
+            }
+        }
+        if (method != null) {
+            result.and(unionOfKeysContaining(methods, method));
+        }
+        if (monitorClass != null) {
+            result.and(unionOfKeysContaining(monitorClasses, monitorClass));
+        }
+        if (state != null) {
+            result.and(states.getOrDefault(state, new BitSet()));
+        }
+        if (type != null) {
+            result.and(types.getOrDefault(type, new BitSet()));
+        }
+        if (group != null) {
+            result.and(groups.getOrDefault(group, new BitSet()));
+        }
+        return result;
+    }
+
+    private static BitSet unionOfKeysContaining(Map<String, BitSet> map, String part) {
+        BitSet union = new BitSet();
+        map.forEach((key, bits) -> {
+            if (key.contains(part)) {
+                union.or(bits);
+            }
+        });
+        return union;
+    }
+
+    /**
+     * @return the lower case runs of letters and digits, a name containing a string contains its tokens in its tokens
+     */
+    static Set<String> tokenize(String name) {
+        Set<String> tokens = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= name.length(); i++) {
+            boolean letterOrDigit = i < name.length() && Character.isLetterOrDigit(name.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                tokens.add(name.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        ThreadIndex that = (ThreadIndex) o;
+        return Objects.equals(all, that.all) && Objects.equals(nameTokens, that.nameTokens) &&
+               Objects.equals(methods, that.methods) && Objects.equals(monitorClasses, that.monitorClasses) &&
+               Objects.equals(states, that.states) && Objects.equals(types, that.types) &&
+               Objects.equals(groups, that.groups);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(all, nameTokens, methods, monitorClasses, states, types, groups);
+    }
+}
@@ -0,0 +1,680 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.model;
+
+import lombok.Data;
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+import org.eclipse.jifa.tda.enums.MonitorState;
+import org.eclipse.jifa.tda.enums.OSTreadState;
+import org.eclipse.jifa.tda.enums.SourceType;
+import org.eclipse.jifa.tda.enums.ThreadType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The frozen, columnar model of the threads, traces and frames of a snapshot, which replaces the thread objects once
+ * the snapshot is posted.
+ * <p>
+ * Strings are symbol ids into a single string table and enums are ordinals in byte arrays. Thread columns are indexed
+ * by thread id, the frames and the ownable synchronizers of a trace are ranges of the trace columns, and the monitors
+ * of a frame are a range of the monitor columns. The threads of a raw monitor in a state are a range of the monitor
+ * thread column. Scanning all threads touches a few primitive arrays instead of an object per thread.
+ */
+@Data
+public class ThreadTable {
+
+    private static final ThreadType[] THREAD_TYPES = ThreadType.values();
+
+    private static final OSTreadState[] OS_THREAD_STATES = OSTreadState.values();
+
+    private static final JavaThreadState[] JAVA_THREAD_STATES = JavaThreadState.values();
+
+    private static final SourceType[] SOURCE_TYPES = SourceType.values();
+
+    private static final MonitorState[] MONITOR_STATES = MonitorState.values();
+
+    private static final Pattern GROUP_NAME_PATTERN = Pattern.compile("(?<prefix>.*)[-#]\\d+( .+)?");
+
+    private String[] symbols;
+
+    // thread columns, -1 means absent
+    private int[] names;
+
+    private byte[] types;
+
+    private byte[] osStates;
+
+    // -1 for non-java threads
+    private byte[] javaStates;
+
+    private BitSet daemons;
+
+    private int[] lineStarts;
+
+    private int[] lineEnds;
+
+    private long[] nids;
+
+    // 0 for non-java threads
+    private long[] jids;
+
+    private int[] groups;
+
+    private int[] traces;
+
+    // the frames of trace i are traceFrames[traceOffsets[i], traceOffsets[i + 1])
+    private int[] traceOffsets;
+
+    private int[] traceFrames;
+
+    // the ownable synchronizers of trace i are [traceLockOffsets[i], traceLockOffsets[i + 1]) of the lock columns
+    private int[] traceLockOffsets;
+
+    private long[] lockAddresses;
+
+    private int[] lockClasses;
+
+    // frame columns
+    private int[] frameClasses;
+
+    private int[] frameMethods;
+
+    private int[] frameModules;
+
+    private byte[] frameSourceTypes;
+
+    private int[] frameSources;
+
+    private int[] frameLines;
+
+    // the monitors of frame i are [frameMonitorOffsets[i], frameMonitorOffsets[i + 1]) of the monitor columns
+    private int[] frameMonitorOffsets;
+
+    private int[] monitorIds;
+
+    private byte[] monitorStates;
+
+    // raw monitor columns, indexed by raw monitor id
+    private long[] rawMonitorAddresses;
+
+    private BitSet rawMonitorClassInstances;
+
+    private int[] rawMonitorClasses;
+
+    // the threads of raw monitor i in state s are monitorThreads[monitorThreadOffsets[i * STATES + s], ...) where 0
+    // stands for a thread of the dead lock section
+    private int[] monitorThreadOffsets;
+
+    private int[] monitorThreads;
+
+    /**
+     * @param snapshot the snapshot whose thread ids are assigned
+     * @return the table
+     */
+    public static ThreadTable build(Snapshot snapshot) {
+        return new Builder(snapshot).build();
+    }
+
+    /**
+     * @return the upper bound of thread ids
+     */
+    public int size() {
+        return names.length;
+    }
+
+    public boolean contains(int id) {
+        return id > 0 && id < names.length && names[id] >= 0;
+    }
+
+    public String name(int id) {
+        return symbols[names[id]];
+    }
+
+    public ThreadType type(int id) {
+        return types[id] < 0 ? null : THREAD_TYPES[types[id]];
+    }
+
+    public OSTreadState osState(int id) {
+        return osStates[id] < 0 ? null : OS_THREAD_STATES[osStates[id]];
+    }
+
+    public boolean isJava(int id) {
+        return javaStates[id] >= 0;
+    }
+
+    /**
+     * @return the java thread state, null for non-java threads
+     */
+    public JavaThreadState javaState(int id) {
+        return javaStates[id] < 0 ? null : JAVA_THREAD_STATES[javaStates[id]];
+    }
+
+    public boolean isDaemon(int id) {
+        return daemons.get(id);
+    }
+
+    public int lineStart(int id) {
+        return lineStarts[id];
+    }
+
+    public int lineEnd(int id) {
+        return lineEnds[id];
+    }
+
+    public long nid(int id) {
+        return nids[id];
+    }
+
+    public long jid(int id) {
+        return jids[id];
+    }
+
+    /**
+     * @return the group name, null if the thread is not in a group
+     */
+    public String group(int id) {
+        return groups[id] < 0 ? null : symbols[groups[id]];
+    }
+
+    /**
+     * @return the trace id, -1 if the thread has no trace
+     */
+    public int trace(int id) {
+        return traces[id];
+    }
+
+    public int frameCount(int trace) {
+        return traceOffsets[trace + 1] - traceOffsets[trace];
+    }
+
+    /**
+     * @return the id of the index-th frame of the trace, the top frame is the first one
+     */
+    public int frame(int trace, int index) {
+        return traceFrames[traceOffsets[trace] + index];
+    }
+
+    public int lockCount(int trace) {
+        return traceLockOffsets[trace + 1] - traceLockOffsets[trace];
+    }
+
+    public long lockAddress(int trace, int index) {
+        return lockAddresses[traceLockOffsets[trace] + index];
+    }
+
+    public String lockClass(int trace, int index) {
+        return symbol(lockClasses[traceLockOffsets[trace] + index]);
+    }
+
+    public String frameClass(int frame) {
+        return symbol(frameClasses[frame]);
+    }
+
+    public String frameMethod(int frame) {
+        return symbol(frameMethods[frame]);
+    }
+
+    public String frameModule(int frame) {
+        return symbol(frameModules[frame]);
+    }
+
+    public SourceType frameSourceType(int frame) {
+        return frameSourceTypes[frame] < 0 ? null : SOURCE_TYPES[frameSourceTypes[frame]];
+    }
+
+    public String frameSource(int frame) {
+        return symbol(frameSources[frame]);
+    }
+
+    public int frameLine(int frame) {
+        return frameLines[frame];
+    }
+
+    public int monitorCount(int frame) {
+        return frameMonitorOffsets[frame + 1] - frameMonitorOffsets[frame];
+    }
+
+    /**
+     * @return the raw monitor id of the index-th monitor of the frame
+     */
+    public int monitorId(int frame, int index) {
+        return monitorIds[frameMonitorOffsets[frame] + index];
+    }
+
+    public MonitorState monitorState(int frame, int index) {
+        byte state = monitorStates[frameMonitorOffsets[frame] + index];
+        return state < 0 ? null : MONITOR_STATES[state];
+    }
+
+    public long rawMonitorAddress(int rawMonitorId) {
+        return rawMonitorAddresses[rawMonitorId];
+    }
+
+    public boolean isRawMonitorClassInstance(int rawMonitorId) {
+        return rawMonitorClassInstances.get(rawMonitorId);
+    }
+
+    public String rawMonitorClass(int rawMonitorId) {
+        return symbol(rawMonitorClasses[rawMonitorId]);
+    }
+
+    /**
+     * @return whether some threads are in a state of the raw monitor
+     */
+    public boolean hasMonitorThreads(int rawMonitorId) {
+        if (rawMonitorId < 0 || rawMonitorId >= rawMonitorAddresses.length) {
+            return false;
+        }
+        int base = rawMonitorId * MONITOR_STATES.length;
+        return monitorThreadOffsets[base + MONITOR_STATES.length] > monitorThreadOffsets[base];
+    }
+
+    public int monitorThreadCount(int rawMonitorId, MonitorState state) {
+        int slot = rawMonitorId * MONITOR_STATES.length + state.ordinal();
+        return monitorThreadOffsets[slot + 1] - monitorThreadOffsets[slot];
+    }
+
+    /**
+     * @return the id of the index-th thread in the state of the raw monitor, 0 for a thread of the dead lock section
+     */
+    public int monitorThread(int rawMonitorId, MonitorState state, int index) {
+        return monitorThreads[monitorThreadOffsets[rawMonitorId * MONITOR_STATES.length + state.ordinal()] + index];
+    }
+
+    /**
+     * @return whether the trace has the same frames, monitors and ownable synchronizers as the trace of another table
+     */
+    public boolean sameTrace(int trace, ThreadTable other, int otherTrace) {
+        if (frameCount(trace) != other.frameCount(otherTrace) || lockCount(trace) != other.lockCount(otherTrace)) {
+            return false;
+        }
+        for (int i = 0; i < frameCount(trace); i++) {
+            if (!sameFrame(frame(trace, i), other, other.frame(otherTrace, i))) {
+                return false;
+            }
+        }
+        for (int i = 0; i < lockCount(trace); i++) {
+            if (lockAddress(trace, i) != other.lockAddress(otherTrace, i) ||
+                !Objects.equals(lockClass(trace, i), other.lockClass(otherTrace, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean sameFrame(int frame, ThreadTable other, int otherFrame) {
+        if (frameLine(frame) != other.frameLine(otherFrame) ||
+            frameSourceType(frame) != other.frameSourceType(otherFrame) ||
+            !Objects.equals(frameClass(frame), other.frameClass(otherFrame)) ||
+            !Objects.equals(frameMethod(frame), other.frameMethod(otherFrame)) ||
+            !Objects.equals(frameModule(frame), other.frameModule(otherFrame)) ||
+            !Objects.equals(frameSource(frame), other.frameSource(otherFrame)) ||
+            monitorCount(frame) != other.monitorCount(otherFrame)) {
+            return false;
+        }
+        for (int i = 0; i < monitorCount(frame); i++) {
+            int rm = monitorId(frame, i);
+            int otherRm = other.monitorId(otherFrame, i);
+            if (monitorState(frame, i) != other.monitorState(otherFrame, i) ||
+                rawMonitorAddress(rm) != other.rawMonitorAddress(otherRm) ||
+                isRawMonitorClassInstance(rm) != other.isRawMonitorClassInstance(otherRm) ||
+                !Objects.equals(rawMonitorClass(rm), other.rawMonitorClass(otherRm))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String symbol(int id) {
+        return id < 0 ? null : symbols[id];
+    }
+
+    private static final class Builder {
+
+        private final Snapshot snapshot;
+
+        private final ThreadTable table = new ThreadTable();
+
+        private final Map<String, Integer> symbolIds = new HashMap<>();
+
+        private final List<String> symbols = new ArrayList<>();
+
+        private final Map<Trace, Integer> traceIds = new IdentityHashMap<>();
+
+        private final List<Trace> traces = new ArrayList<>();
+
+        private final Map<Frame, Integer> frameIds = new IdentityHashMap<>();
+
+        private final List<Frame> frames = new ArrayList<>();
+
+        Builder(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        ThreadTable build() {
+            buildThreads();
+            buildTraces();
+            buildFrames();
+            buildRawMonitors();
+            buildMonitorThreads();
+            table.symbols = symbols.toArray(new String[0]);
+            return table;
+        }
+
+        private void buildThreads() {
+            int size = snapshot.getNextThreadId();
+            table.names = filled(size);
+            table.types = new byte[size];
+            table.osStates = new byte[size];
+            table.javaStates = new byte[size];
+            Arrays.fill(table.javaStates, (byte) -1);
+            table.daemons = new BitSet(size);
+            table.lineStarts = new int[size];
+            table.lineEnds = new int[size];
+            table.nids = new long[size];
+            table.jids = new long[size];
+            table.groups = filled(size);
+            table.traces = filled(size);
+
+            for (int id = 1; id < size; id++) {
+                Thread thread = snapshot.getThreadMap().get(id);
+                if (thread == null) {
+                    continue;
+                }
+                table.names[id] = symbol(thread.getName());
+                table.types[id] = ordinal(thread.getType());
+                table.osStates[id] = ordinal(thread.getOsThreadState());
+                table.lineStarts[id] = thread.getLineStart();
+                table.lineEnds[id] = thread.getLineEnd();
+                table.nids[id] = thread.getNid();
+                if (thread instanceof JavaThread javaThread) {
+                    // an unknown state is still a java thread
+                    table.javaStates[id] = javaThread.getJavaThreadState() == null
+                                           ? (byte) JavaThreadState.UNKNOWN.ordinal()
+                                           : ordinal(javaThread.getJavaThreadState());
+                    table.jids[id] = javaThread.getJid();
+                    if (javaThread.isDaemon()) {
+                        table.daemons.set(id);
+                    }
+                    table.traces[id] = trace(javaThread.getTrace());
+                }
+            }
+
+            JavaThreadColumns columns = snapshot.getJavaThreadColumns();
+            if (columns != null) {
+                for (int row = 0; row < columns.size(); row++) {
+                    int id = columns.firstId() + row;
+                    table.names[id] = symbol(columns.name(row));
+                    table.types[id] = (byte) ThreadType.JAVA.ordinal();
+                    table.osStates[id] = ordinal(columns.osState(row));
+                    table.lineStarts[id] = columns.lineStart(row);
+                    table.lineEnds[id] = columns.lineEnd(row);
+                    table.javaStates[id] = ordinal(columns.javaState(row));
+                    table.jids[id] = columns.jid(row);
+                    table.traces[id] = trace(columns.trace(row));
+                }
+            }
+
+            buildGroups();
+        }
+
+        private void buildGroups() {
+            // the threads whose names are the same except a number form a group if there are several of them
+            Map<String, List<Integer>> map = new HashMap<>();
+            for (int id = 1; id < table.names.length; id++) {
+                if (table.names[id] < 0) {
+                    continue;
+                }
+                Matcher matcher = GROUP_NAME_PATTERN.matcher(symbols.get(table.names[id]));
+                if (matcher.matches()) {
+                    map.computeIfAbsent(matcher.group("prefix"), i -> new ArrayList<>()).add(id);
+                }
+            }
+            // in a stable order so that equal snapshots have equal tables
+            map.keySet().stream().sorted().forEach(name -> {
+                List<Integer> ids = map.get(name);
+                if (ids.size() > 1) {
+                    int group = symbol(name);
+                    ids.forEach(id -> table.groups[id] = group);
+                }
+            });
+        }
+
+        private int trace(Trace trace) {
+            if (trace == null) {
+                return -1;
+            }
+            return traceIds.computeIfAbsent(trace, t -> {
+                traces.add(t);
+                return traces.size() - 1;
+            });
+        }
+
+        private void buildTraces() {
+            table.traceOffsets = new int[traces.size() + 1];
+            int length = 0;
+            for (int i = 0; i < traces.size(); i++) {
+                table.traceOffsets[i] = length;
+                Frame[] f = traces.get(i).getFrames();
+                length += f == null ? 0 : f.length;
+            }
+            table.traceOffsets[traces.size()] = length;
+
+            table.traceFrames = new int[length];
+            for (int i = 0; i < traces.size(); i++) {
+                Frame[] f = traces.get(i).getFrames();
+                if (f == null) {
+                    continue;
+                }
+                for (int j = 0; j < f.length; j++) {
+                    table.traceFrames[table.traceOffsets[i] + j] = frameIds.computeIfAbsent(f[j], frame -> {
+                        frames.add(frame);
+                        return frames.size() - 1;
+                    });
+                }
+            }
+
+            table.traceLockOffsets = new int[traces.size() + 1];
+            length = 0;
+            for (int i = 0; i < traces.size(); i++) {
+                table.traceLockOffsets[i] = length;
+                ConcurrentLock[] locks = traces.get(i).getConcurrentLocks();
+                length += locks == null ? 0 : locks.length;
+            }
+            table.traceLockOffsets[traces.size()] = length;
+
+            table.lockAddresses = new long[length];
+            table.lockClasses = new int[length];
+            for (int i = 0; i < traces.size(); i++) {
+                ConcurrentLock[] locks = traces.get(i).getConcurrentLocks();
+                if (locks == null) {
+                    continue;
+                }
+                for (int j = 0; j < locks.length; j++) {
+                    table.lockAddresses[table.traceLockOffsets[i] + j] = locks[j].getAddress();
+                    table.lockClasses[table.traceLockOffsets[i] + j] = symbol(locks[j].getClazz());
+                }
+            }
+        }
+
+        private void buildFrames() {
+            int size = frames.size();
+            table.frameClasses = new int[size];
+            table.frameMethods = new int[size];
+            table.frameModules = new int[size];
+            table.frameSourceTypes = new byte[size];
+            table.frameSources = new int[size];
+            table.frameLines = new int[size];
+            table.frameMonitorOffsets = new int[size + 1];
+
+            int monitorCount = 0;
+            for (int i = 0; i < size; i++) {
+                Frame frame = frames.get(i);
+                table.frameClasses[i] = symbol(frame.getClazz());
+                table.frameMethods[i] = symbol(frame.getMethod());
+                table.frameModules[i] = symbol(frame.getModule());
+                table.frameSourceTypes[i] = ordinal(frame.getSourceType());
+                table.frameSources[i] = symbol(frame.getSource());
+                table.frameLines[i] = frame.getLine();
+                table.frameMonitorOffsets[i] = monitorCount;
+                monitorCount += frame.getMonitors() == null ? 0 : frame.getMonitors().length;
+            }
+            table.frameMonitorOffsets[size] = monitorCount;
+
+            table.monitorIds = new int[monitorCount];
+            table.monitorStates = new byte[monitorCount];
+            for (int i = 0; i < size; i++) {
+                Monitor[] monitors = frames.get(i).getMonitors();
+                if (monitors == null) {
+                    continue;
+                }
+                for (int j = 0; j < monitors.length; j++) {
+                    table.monitorIds[table.frameMonitorOffsets[i] + j] = monitors[j].getRawMonitor().getId();
+                    table.monitorStates[table.frameMonitorOffsets[i] + j] = ordinal(monitors[j].getState());
+                }
+            }
+        }
+
+        private void buildRawMonitors() {
+            // ids start from 1
+            int size = 1;
+            for (int id : table.monitorIds) {
+                size = Math.max(size, id + 1);
+            }
+            List<RawMonitor> pooled = snapshot.getRawMonitors().objects();
+            if (pooled != null) {
+                for (RawMonitor rm : pooled) {
+                    size = Math.max(size, rm.getId() + 1);
+                }
+            }
+            table.rawMonitorAddresses = new long[size];
+            Arrays.fill(table.rawMonitorAddresses, -1);
+            table.rawMonitorClassInstances = new BitSet(size);
+            table.rawMonitorClasses = filled(size);
+
+            for (Frame frame : frames) {
+                if (frame.getMonitors() != null) {
+                    for (Monitor monitor : frame.getMonitors()) {
+                        addRawMonitor(monitor.getRawMonitor());
+                    }
+                }
+            }
+            if (pooled != null) {
+                pooled.forEach(this::addRawMonitor);
+            }
+        }
+
+        private void buildMonitorThreads() {
+            int states = MONITOR_STATES.length;
+            int slots = table.rawMonitorAddresses.length * states;
+            Map<Integer, Map<MonitorState, List<Thread>>> monitorThreads = snapshot.getMonitorThreads();
+            int[] counts = new int[slots];
+            if (monitorThreads != null) {
+                monitorThreads.forEach((id, map) -> map.forEach((state, threads) -> {
+                    counts[id * states + state.ordinal()] = threads.size();
+                }));
+            }
+            table.monitorThreadOffsets = new int[slots + 1];
+            for (int i = 0; i < slots; i++) {
+                table.monitorThreadOffsets[i + 1] = table.monitorThreadOffsets[i] + counts[i];
+            }
+            table.monitorThreads = new int[table.monitorThreadOffsets[slots]];
+            if (monitorThreads != null) {
+                monitorThreads.forEach((id, map) -> map.forEach((state, threads) -> {
+                    int offset = table.monitorThreadOffsets[id * states + state.ordinal()];
+                    for (Thread thread : threads) {
+                        table.monitorThreads[offset++] = thread == null ? 0 : thread.getId();
+                    }
+                }));
+            }
+        }
+
+        private void addRawMonitor(RawMonitor rm) {
+            int id = rm.getId();
+            table.rawMonitorAddresses[id] = rm.getAddress();
+            if (rm.isClassInstance()) {
+                table.rawMonitorClassInstances.set(id);
+            }
+            table.rawMonitorClasses[id] = symbol(rm.getClazz());
+        }
+
+        private int symbol(String s) {
+            if (s == null) {
+                return -1;
+            }
+            return symbolIds.computeIfAbsent(s, k -> {
+                symbols.add(k);
+                return symbols.size() - 1;
+            });
+        }
+
+        private static byte ordinal(Enum<?> e) {
+            return (byte) (e == null ? -1 : e.ordinal());
+        }
+
+        private static int[] filled(int size) {
+            int[] array = new int[size];
+            Arrays.fill(array, -1);
+            return array;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        ThreadTable that = (ThreadTable) o;
+        return Arrays.equals(symbols, that.symbols) && Arrays.equals(names, that.names) &&
+               Arrays.equals(types, that.types) && Arrays.equals(osStates, that.osStates) &&
+               Arrays.equals(javaStates, that.javaStates) && Objects.equals(daemons, that.daemons) &&
+               Arrays.equals(lineStarts, that.lineStarts) && Arrays.equals(lineEnds, that.lineEnds) &&
+               Arrays.equals(nids, that.nids) && Arrays.equals(jids, that.jids) &&
+               Arrays.equals(groups, that.groups) && Arrays.equals(traces, that.traces) &&
+               Arrays.equals(traceOffsets, that.traceOffsets) && Arrays.equals(traceFrames, that.traceFrames) &&
+               Arrays.equals(traceLockOffsets, that.traceLockOffsets) &&
+               Arrays.equals(lockAddresses, that.lockAddresses) && Arrays.equals(lockClasses, that.lockClasses) &&
+               Arrays.equals(frameClasses, that.frameClasses) && Arrays.equals(frameMethods, that.frameMethods) &&
+               Arrays.equals(frameModules, that.frameModules) &&
+               Arrays.equals(frameSourceTypes, that.frameSourceTypes) &&
+               Arrays.equals(frameSources, that.frameSources) && Arrays.equals(frameLines, that.frameLines) &&
+               Arrays.equals(frameMonitorOffsets, that.frameMonitorOffsets) &&
+               Arrays.equals(monitorIds, that.monitorIds) && Arrays.equals(monitorStates, that.monitorStates) &&
+               Arrays.equals(rawMonitorAddresses, that.rawMonitorAddresses) &&
+               Objects.equals(rawMonitorClassInstances, that.rawMonitorClassInstances) &&
+               Arrays.equals(rawMonitorClasses, that.rawMonitorClasses) &&
+               Arrays.equals(monitorThreadOffsets, that.monitorThreadOffsets) &&
+               Arrays.equals(monitorThreads, that.monitorThreads);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(symbols);
+        result = 31 * result + Arrays.hashCode(names);
+        result = 31 * result + Arrays.hashCode(javaStates);
+        result = 31 * result + Arrays.hashCode(traces);
+        result = 31 * result + Arrays.hashCode(traceFrames);
+        return result;
+    }
+}
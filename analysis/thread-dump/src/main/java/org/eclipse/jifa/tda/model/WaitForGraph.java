@@ -0,0 +1,284 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.model;
+
+import lombok.Data;
+import org.eclipse.jifa.tda.enums.MonitorState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The graph of java threads where a thread points to the owner of the monitor or the ownable synchronizer it waits
+ * for.
+ * <p>
+ * A thread blocks on at most one monitor, so a thread has at most one outgoing edge and every cycle is found by
+ * following the edges from each thread. Cycles include the dead locks of ownable synchronizers which are not reported
+ * by jstack. Contended monitors are ranked by the number of threads blocked by them, directly or through the
+ * threads waiting for their owners.
+ */
+@Data
+public class WaitForGraph {
+
+    // each cycle is in the order of the edges
+    private List<List<Wait>> cycles = new ArrayList<>();
+
+    // in descending order of blocked count
+    private List<Contention> contentions = new ArrayList<>();
+
+    /**
+     * @param table       the thread table
+     * @param rawMonitors the pooled raw monitors which the monitor ids of the table refer to
+     * @return the graph
+     */
+    public static WaitForGraph build(ThreadTable table, List<RawMonitor> rawMonitors) {
+        RawMonitor[] monitors = new RawMonitor[table.getRawMonitorAddresses().length];
+        if (rawMonitors != null) {
+            rawMonitors.forEach(rm -> monitors[rm.getId()] = rm);
+        }
+        // thread ids by address
+        Map<Long, Integer> owners = new HashMap<>();
+        // by thread id, the owners are resolved once all threads are collected
+        Map<Integer, Wait> edges = new LinkedHashMap<>();
+        for (int id = 1; id < table.size(); id++) {
+            if (table.contains(id) && table.isJava(id) && table.trace(id) >= 0) {
+                collect(table, id, monitors, owners, edges);
+            }
+        }
+
+        // the reverse of the edges, by thread id
+        Map<Integer, List<Integer>> waiters = new HashMap<>();
+        edges.values().forEach(wait -> {
+            Integer owner = owners.get(wait.monitor.getAddress());
+            wait.ownerId = owner != null && owner.intValue() != wait.threadId ? owner : -1;
+            if (wait.ownerId >= 0) {
+                waiters.computeIfAbsent(wait.ownerId, i -> new ArrayList<>()).add(wait.threadId);
+            }
+        });
+
+        WaitForGraph graph = new WaitForGraph();
+        graph.findCycles(edges);
+        graph.rankContentions(edges, waiters);
+        return graph;
+    }
+
+    private static void collect(ThreadTable table, int id, RawMonitor[] monitors, Map<Long, Integer> owners,
+                                Map<Integer, Wait> edges) {
+        int trace = table.trace(id);
+        for (int i = 0; i < table.lockCount(trace); i++) {
+            owners.put(table.lockAddress(trace, i), id);
+        }
+        // a monitor released by Object.wait() is still listed as locked by an outer frame
+        Set<Long> released = new HashSet<>();
+        for (int f = 0; f < table.frameCount(trace); f++) {
+            int frame = table.frame(trace, f);
+            for (int m = 0; m < table.monitorCount(frame); m++) {
+                int rm = table.monitorId(frame, m);
+                long address = table.rawMonitorAddress(rm);
+                MonitorState state = table.monitorState(frame, m);
+                switch (state) {
+                    case WAITING_TO_LOCK, PARKING -> {
+                        if (address >= 0) {
+                            edges.putIfAbsent(id, wait(id, monitors[rm], state));
+                        }
+                    }
+                    case WAITING_TO_RE_LOCK -> {
+                        released.add(address);
+                        edges.putIfAbsent(id, wait(id, monitors[rm], state));
+                    }
+                    case WAITING_ON -> released.add(address);
+                    case LOCKED -> {
+                        if (address >= 0 && !released.contains(address)) {
+                            owners.put(address, id);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+    }
+
+    private static Wait wait(int threadId, RawMonitor monitor, MonitorState state) {
+        Wait wait = new Wait();
+        wait.threadId = threadId;
+        wait.monitor = monitor;
+        wait.state = state;
+        return wait;
+    }
+
+    private void findCycles(Map<Integer, Wait> edges) {
+        // 0: not visited, 1: on the current path, 2: done
+        Map<Integer, Integer> states = new HashMap<>();
+        for (Integer start : edges.keySet()) {
+            List<Integer> path = new ArrayList<>();
+            Integer current = start;
+            while (current != null && states.getOrDefault(current, 0) == 0) {
+                states.put(current, 1);
+                path.add(current);
+                Wait wait = edges.get(current);
+                current = wait != null && wait.ownerId >= 0 ? wait.ownerId : null;
+            }
+            if (current != null && states.get(current) == 1) {
+                List<Wait> cycle = new ArrayList<>();
+                for (int i = path.indexOf(current); i < path.size(); i++) {
+                    cycle.add(edges.get(path.get(i)));
+                }
+                cycles.add(cycle);
+            }
+            for (Integer id : path) {
+                states.put(id, 2);
+            }
+        }
+    }
+
+    private void rankContentions(Map<Integer, Wait> edges, Map<Integer, List<Integer>> waiters) {
+        Map<RawMonitor, List<Wait>> waitsByMonitor = new LinkedHashMap<>();
+        for (Wait wait : edges.values()) {
+            if (wait.state == MonitorState.WAITING_TO_LOCK || wait.ownerId >= 0) {
+                waitsByMonitor.computeIfAbsent(wait.monitor, m -> new ArrayList<>()).add(wait);
+            }
+        }
+
+        waitsByMonitor.forEach((monitor, list) -> {
+            // breadth first from the direct waiters against the edges
+            Set<Integer> blocked = new HashSet<>();
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (Wait wait : list) {
+                if (blocked.add(wait.threadId)) {
+                    queue.add(wait.threadId);
+                }
+            }
+            int depth = 0;
+            while (!queue.isEmpty()) {
+                depth++;
+                for (int n = queue.size(); n > 0; n--) {
+                    for (Integer waiter : waiters.getOrDefault(queue.poll(), List.of())) {
+                        if (blocked.add(waiter)) {
+                            queue.add(waiter);
+                        }
+                    }
+                }
+            }
+
+            Contention contention = new Contention();
+            contention.monitor = monitor;
+            contention.ownerId = list.get(0).ownerId;
+            contention.waiterCount = list.size();
+            // the owner is blocked by itself if it is in a cycle
+            blocked.remove(contention.ownerId);
+            contention.blockedCount = blocked.size();
+            contention.depth = depth;
+            contentions.add(contention);
+        });
+        contentions.sort(Comparator.comparingInt(Contention::getBlockedCount)
+                                   .thenComparingInt(Contention::getWaiterCount)
+                                   .thenComparingInt(Contention::getDepth)
+                                   .reversed()
+                                   .thenComparingInt(c -> c.monitor.getId()));
+    }
+
+    /**
+     * A thread waiting for a monitor or an ownable synchronizer
+     */
+    @Data
+    public static class Wait {
+
+        private int threadId;
+
+        private RawMonitor monitor;
+
+        private MonitorState state;
+
+        // -1 means unknown
+        private int ownerId;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            Wait wait = (Wait) o;
+            return threadId == wait.threadId && ownerId == wait.ownerId && Objects.equals(monitor, wait.monitor) &&
+                   state == wait.state;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(threadId, monitor, state, ownerId);
+        }
+    }
+
+    /**
+     * A monitor or an ownable synchronizer which threads wait for
+     */
+    @Data
+    public static class Contention {
+
+        private RawMonitor monitor;
+
+        // -1 means unknown
+        private int ownerId;
+
+        // the count of threads waiting for the monitor
+        private int waiterCount;
+
+        // the count of threads waiting for the monitor, or for a thread blocked by the monitor
+        private int blockedCount;
+
+        // the length of the longest chain of threads waiting for the monitor
+        private int depth;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            Contention that = (Contention) o;
+            return ownerId == that.ownerId && waiterCount == that.waiterCount && blockedCount == that.blockedCount &&
+                   depth == that.depth && Objects.equals(monitor, that.monitor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(monitor, ownerId, waiterCount, blockedCount, depth);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        WaitForGraph that = (WaitForGraph) o;
+        return Objects.equals(cycles, that.cycles) && Objects.equals(contentions, that.contentions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cycles, contentions);
+    }
+}
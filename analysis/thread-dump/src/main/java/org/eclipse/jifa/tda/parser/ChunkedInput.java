@@ -0,0 +1,234 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.parser;
+
+import org.eclipse.jifa.tda.model.LineIndex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads a dump in chunks of about the same size which start at thread headers, i.e. lines starting with '"'.
+ * <p>
+ * Chunks are memory-mapped and decoded into lines in parallel, a fixed number of chunks ahead of the reader. Lines are
+ * terminated the same way as {@link ReaderInput}: by '\n', '\r' or "\r\n". The byte offset of each line is recorded
+ * as it is read.
+ */
+class ChunkedInput implements Input {
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+
+    private final Executor executor;
+
+    // chunk i is [boundaries[i], boundaries[i + 1])
+    private final long[] boundaries;
+
+    private final Deque<CompletableFuture<Chunk>> decoding = new ArrayDeque<>();
+
+    private int nextChunk;
+
+    private Chunk chunk;
+
+    private int index;
+
+    private String current;
+
+    private int lineNumber;
+
+    private final LineIndex.Builder lineIndex = new LineIndex.Builder();
+
+    ChunkedInput(Path dumpPath, long chunkSize, Executor executor, int window) throws IOException {
+        channel = FileChannel.open(dumpPath, StandardOpenOption.READ);
+        this.executor = executor;
+        try {
+            boundaries = split(chunkSize);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        for (int i = 0; i < window; i++) {
+            decodeNextChunk();
+        }
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        while (chunk == null || index == chunk.lines.length) {
+            CompletableFuture<Chunk> next = decoding.poll();
+            if (next == null) {
+                current = null;
+                return null;
+            }
+            try {
+                chunk = next.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException uio) {
+                    throw uio.getCause();
+                }
+                throw e;
+            }
+            index = 0;
+            decodeNextChunk();
+        }
+        current = chunk.lines[index];
+        // released once read
+        chunk.lines[index] = null;
+        lineIndex.add(chunk.start + chunk.offsets[index++]);
+        lineNumber++;
+        return current;
+    }
+
+    @Override
+    public String currentLine() {
+        return current;
+    }
+
+    @Override
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public LineIndex lineIndex() throws IOException {
+        while (readLine() != null) {
+            // consume the remaining lines
+        }
+        return lineIndex.build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    int chunkCount() {
+        return boundaries.length - 1;
+    }
+
+    private void decodeNextChunk() {
+        if (nextChunk >= chunkCount()) {
+            return;
+        }
+        long start = boundaries[nextChunk];
+        long end = boundaries[nextChunk + 1];
+        nextChunk++;
+        decoding.add(CompletableFuture.supplyAsync(() -> {
+            try {
+                return decode(start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor));
+    }
+
+    /**
+     * Lines are split on bytes, which is safe for the ASCII compatible charsets of dumps, so that their offsets are
+     * known.
+     */
+    private Chunk decode(long start, long end) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        channel.map(FileChannel.MapMode.READ_ONLY, start, end - start).get(bytes);
+        Charset charset = Charset.defaultCharset();
+        List<String> lines = new ArrayList<>();
+        int[] offsets = new int[1024];
+        int begin = 0;
+        int length = bytes.length;
+        for (int i = 0; i <= length; i++) {
+            byte b = i < length ? bytes[i] : 0;
+            if (b == '\n' || b == '\r' || (i == length && begin < length)) {
+                if (lines.size() == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length << 1);
+                }
+                offsets[lines.size()] = begin;
+                lines.add(new String(bytes, begin, i - begin, charset).trim());
+                if (b == '\r' && i + 1 < length && bytes[i + 1] == '\n') {
+                    i++;
+                }
+                begin = i + 1;
+            }
+        }
+        return new Chunk(start, lines.toArray(new String[0]), offsets);
+    }
+
+    private long[] split(long chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> list = new ArrayList<>();
+        list.add(0L);
+        long position = chunkSize;
+        while (position < size) {
+            long boundary = nextThreadHeader(position, size);
+            if (boundary < 0) {
+                break;
+            }
+            list.add(boundary);
+            position = boundary + chunkSize;
+        }
+        list.add(size);
+
+        long[] result = new long[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the offset of the first line starting with '"' at or after the position, or -1 if there is none
+     */
+    private long nextThreadHeader(long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        // the byte before the position tells whether a line starts at the position
+        long offset = position - 1;
+        byte previous = 0;
+        while (offset < size) {
+            buffer.clear();
+            int n = channel.read(buffer, offset);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b == '"' && (previous == '\n' || previous == '\r')) {
+                    return offset + i;
+                }
+                previous = b;
+            }
+            offset += n;
+        }
+        return -1;
+    }
+
+    /**
+     * @param start   the offset of the chunk
+     * @param lines   the lines of the chunk
+     * @param offsets offsets[i] is the offset of lines[i] relative to the start of the chunk
+     */
+    private record Chunk(long start, String[] lines, int[] offsets) {
+    }
+}
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ * Copyright (c) 2022, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,48 +13,35 @@
 
 package org.eclipse.jifa.tda.parser;
 
+import org.eclipse.jifa.tda.model.LineIndex;
+
 import java.io.Closeable;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
-import java.nio.file.Path;
-
-public class Input implements Closeable {
-
-    private final LineNumberReader lnr;
-
-    private String current;
-
-    public Input(Path dumpPath) throws IOException {
-        lnr = new LineNumberReader(new FileReader(dumpPath.toFile()));
-    }
-
-    public void mark() throws IOException {
-        lnr.mark(1024);
-    }
-
-    public void reset() throws IOException {
-        lnr.reset();
-    }
-
-    public int lineNumber() {
-        return lnr.getLineNumber();
-    }
-
-    public String readLine() throws IOException {
-        current = lnr.readLine();
-        if (current != null) {
-            current = current.trim();
-        }
-        return current;
-    }
-
-    public String currentLine() {
-        return current;
-    }
 
-    @Override
-    public void close() throws IOException {
-        lnr.close();
-    }
+/**
+ * Lines of a dump, trimmed
+ */
+public interface Input extends Closeable {
+
+    /**
+     * @return the next line, or null if the end of the dump is reached
+     */
+    String readLine() throws IOException;
+
+    /**
+     * @return the line returned by the last {@link #readLine()}
+     */
+    String currentLine();
+
+    /**
+     * @return the number of the current line, starting from 1
+     */
+    int lineNumber();
+
+    /**
+     * Read the remaining lines, if any
+     *
+     * @return the byte offsets of all lines, recorded as they are read
+     */
+    LineIndex lineIndex() throws IOException;
 }
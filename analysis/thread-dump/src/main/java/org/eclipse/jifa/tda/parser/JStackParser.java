@@ -16,11 +16,13 @@ package org.eclipse.jifa.tda.parser;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jifa.analysis.listener.ProgressListener;
+import org.eclipse.jifa.common.util.ExecutorFactory;
 import org.eclipse.jifa.tda.enums.JavaThreadState;
 import org.eclipse.jifa.tda.enums.MonitorState;
 import org.eclipse.jifa.tda.enums.OSTreadState;
 import org.eclipse.jifa.tda.enums.SourceType;
 import org.eclipse.jifa.tda.enums.ThreadType;
+import org.eclipse.jifa.tda.model.CallSiteTree;
 import org.eclipse.jifa.tda.model.ConcurrentLock;
 import org.eclipse.jifa.tda.model.Frame;
 import org.eclipse.jifa.tda.model.JavaThread;
@@ -34,6 +36,7 @@ import org.eclipse.jifa.tda.util.Converter;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -41,46 +44,54 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Parser of jstack output.
+ * <p>
+ * Java threads are parsed in parallel by threads created for each parse. Dumps larger than the chunk size are
+ * memory-mapped and read in chunks that are decoded in parallel, see {@link ChunkedInput}. Results that depend on the
+ * parsing order, such as monitor ids and the call site tree, are merged in the order of the dump so that the snapshot
+ * does not depend on the scheduling of the threads.
+ */
 @Slf4j
 public class JStackParser implements Parser {
 
-    private static final BlockingDeque<ParserImpl.RawJavaThread> QUEUE;
+    static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
 
-    private static final ExecutorService ES;
+    private static final int PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
 
-    static {
-        QUEUE = new LinkedBlockingDeque<>(128);
+    private final long chunkSize;
 
-        int count = Math.max(2, Runtime.getRuntime().availableProcessors());
-        ES = Executors.newFixedThreadPool(count);
-        assert count >= 2;
+    public JStackParser() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
 
-        for (int i = 0; i < count; i++) {
-            ES.submit(() -> {
-                //noinspection InfiniteLoopStatement
-                while (true) {
-                    try {
-                        QUEUE.take().parse();
-                    } catch (Throwable t) {
-                        log.error("Parse one thread error", t);
-                    }
-                }
-            });
+    /**
+     * @param chunkSize dumps larger than it are read in chunks of about this size
+     */
+    public JStackParser(long chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
         }
+        this.chunkSize = chunkSize;
     }
 
     @Override
     public Snapshot parse(Path path, ProgressListener listener) {
+        ExecutorService executor = ExecutorFactory.newExecutorService("JStack Parser", PARALLELISM);
         try {
-            Snapshot snapshot = new ParserImpl(path, listener).parse();
+            Snapshot snapshot;
+            try (Input input = Files.size(path) > chunkSize
+                    ? new ChunkedInput(path, chunkSize, executor, PARALLELISM)
+                    : new ReaderInput(path)) {
+                snapshot = new ParserImpl(path, input, executor, listener).parse();
+                snapshot.setLineIndex(input.lineIndex());
+            }
             snapshot.post();
             return snapshot;
         } catch (Throwable t) {
@@ -88,6 +99,8 @@ public class JStackParser implements Parser {
                 throw (ParserException) t;
             }
             throw new ParserException(t);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -175,9 +188,11 @@ public class JStackParser implements Parser {
 
     private static class ParserImpl {
 
+        private static final int BATCH_SIZE = 64;
+
         private final Input input;
 
-        private final AtomicInteger processing;
+        private final Executor executor;
 
         private final List<Throwable> errors;
 
@@ -185,12 +200,21 @@ public class JStackParser implements Parser {
 
         private final ProgressListener listener;
 
-        ParserImpl(Path path, ProgressListener listener) throws IOException {
-            this.input = new Input(path);
+        // canonical raw monitors, their ids are assigned when merging
+        private final Pool<RawMonitor> rawMonitors = new Pool<>();
+
+        private final List<CompletableFuture<Batch>> batches = new ArrayList<>();
+
+        private final List<MonitorEvent> deadLockMonitorEvents = new ArrayList<>();
+
+        private List<RawJavaThread> batch = new ArrayList<>();
+
+        ParserImpl(Path path, Input input, Executor executor, ProgressListener listener) throws IOException {
+            this.input = input;
+            this.executor = executor;
             this.listener = listener;
             snapshot = new Snapshot();
             snapshot.setPath(path.toAbsolutePath().toString());
-            processing = new AtomicInteger(0);
             errors = new ArrayList<>();
 
             step();
@@ -208,6 +232,7 @@ public class JStackParser implements Parser {
             // concurrent
             listener.subTask("Parsing threads");
             parseThreads();
+            flush();
 
             listener.subTask("Parsing JNI handles");
             parseJNIGlobalHandles();
@@ -216,12 +241,8 @@ public class JStackParser implements Parser {
             parseDeadLocks();
             listener.worked(8);
 
-            // Wait for all Java threads to complete
-            synchronized (this) {
-                while (processing.get() != 0) {
-                    this.wait();
-                }
-            }
+            // wait for all java threads and merge them in order
+            merge();
             listener.worked(90);
 
             return snapshot;
@@ -353,7 +374,7 @@ public class JStackParser implements Parser {
                         if (line != null && !line.startsWith("\"") && !line.isBlank() && !line.startsWith("Found")) {
                             stackTraces.add(line);
                         } else {
-                            Trace trace = parseStackTrace(threads.get(i), true, stackTraces);
+                            Trace trace = parseStackTrace(true, stackTraces, deadLockMonitorEvents);
                             threads.get(i).setTrace(snapshot.getTraces().add(trace));
                             break;
                         }
@@ -375,12 +396,75 @@ public class JStackParser implements Parser {
             }
         }
 
-        void enroll(RawJavaThread tp) {
-            processing.incrementAndGet();
-            try {
-                QUEUE.put(tp);
-            } catch (Throwable t) {
-                processing.decrementAndGet();
+        void enroll(RawJavaThread rjt) {
+            batch.add(rjt);
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<RawJavaThread> threads = batch;
+            batch = new ArrayList<>();
+            batches.add(CompletableFuture.supplyAsync(() -> {
+                List<ParsedThread> result = new ArrayList<>(threads.size());
+                CallSiteTree callSiteTree = new CallSiteTree();
+                for (RawJavaThread rjt : threads) {
+                    try {
+                        ParsedThread parsed = parse(rjt);
+                        if (parsed.trace() != null) {
+                            callSiteTree.add(parsed.trace());
+                        }
+                        result.add(parsed);
+                    } catch (Throwable t) {
+                        recordError(t);
+                    }
+                }
+                return new Batch(result, callSiteTree);
+            }, executor));
+        }
+
+        void merge() {
+            for (CompletableFuture<Batch> future : batches) {
+                Batch batch = future.join();
+                for (ParsedThread parsed : batch.threads()) {
+                    JavaThread thread = parsed.thread();
+                    apply(thread, parsed.monitorEvents());
+                    snapshot.getJavaThreads().add(thread);
+                }
+                snapshot.getCallSiteTree().merge(batch.callSiteTree());
+            }
+            apply(null, deadLockMonitorEvents);
+        }
+
+        void apply(Thread thread, List<MonitorEvent> events) {
+            for (MonitorEvent event : events) {
+                RawMonitor rm = snapshot.getRawMonitors().add(event.rawMonitor());
+                if (!event.needMap()) {
+                    continue;
+                }
+                MonitorState state = event.state();
+                boolean shouldMap = true;
+                if (state == MonitorState.LOCKED) {
+                    Map<MonitorState, List<Thread>> map = snapshot.getMonitorThreads().get(rm.getId());
+                    if (map != null) {
+                        for (Map.Entry<MonitorState, List<Thread>> entry : map.entrySet()) {
+                            if (entry.getKey() != MonitorState.LOCKED && entry.getValue().contains(thread)) {
+                                shouldMap = false;
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (shouldMap) {
+                    snapshot.getMonitorThreads()
+                            .computeIfAbsent(rm.getId(), i -> new HashMap<>())
+                            .computeIfAbsent(state, s -> new ArrayList<>())
+                            .add(thread);
+                }
             }
         }
 
@@ -483,29 +567,10 @@ public class JStackParser implements Parser {
             } while ((line = input.currentLine()) != null);
         }
 
-        void done() {
-            int remain = processing.decrementAndGet();
-            if (remain == 0) {
-                synchronized (this) {
-                    this.notify();
-                }
-            }
-        }
-
         void recordError(Throwable t) {
+            log.error("Parse one thread error", t);
             synchronized (this) {
                 errors.add(t);
-                t.printStackTrace();
-            }
-        }
-
-        void onParseRawThreadError(Throwable t) {
-            recordError(t);
-            int remain = processing.decrementAndGet();
-            if (remain == 0) {
-                synchronized (this) {
-                    this.notify();
-                }
             }
         }
 
@@ -515,43 +580,22 @@ public class JStackParser implements Parser {
             }
         }
 
-        Monitor assembleMonitor(Thread thread, boolean needMap, MonitorState state, long address,
+        Monitor assembleMonitor(List<MonitorEvent> events, boolean needMap, MonitorState state, long address,
                                 boolean isClass, String clazz) {
             RawMonitor rm = new RawMonitor();
             rm.setAddress(address);
             rm.setClassInstance(isClass);
             rm.setClazz(clazz);
-            rm = snapshot.getRawMonitors().add(rm);
+            rm = rawMonitors.add(rm);
             Monitor monitor = new Monitor();
             monitor.setRawMonitor(rm);
             monitor.setState(state);
             monitor = snapshot.getMonitors().add(monitor);
-            if (needMap) {
-                synchronized (this) {
-                    boolean shouldMap = true;
-                    if (state == MonitorState.LOCKED) {
-                        Map<MonitorState, List<Thread>> map = snapshot.getMonitorThreads().get(rm.getId());
-                        if (map != null) {
-                            for (Map.Entry<MonitorState, List<Thread>> entry : map.entrySet()) {
-                                if (entry.getKey() != MonitorState.LOCKED && entry.getValue().contains(thread)) {
-                                    shouldMap = false;
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                    if (shouldMap) {
-                        snapshot.getMonitorThreads()
-                                .computeIfAbsent(rm.getId(), i -> new HashMap<>())
-                                .computeIfAbsent(state, s -> new ArrayList<>())
-                                .add(thread);
-                    }
-                }
-            }
+            events.add(new MonitorEvent(rm, state, needMap));
             return monitor;
         }
 
-        Trace parseStackTrace(Thread thread, boolean deadLockThread, List<String> stackTraces) {
+        Trace parseStackTrace(boolean deadLockThread, List<String> stackTraces, List<MonitorEvent> events) {
             Pool<String> symbolPool = snapshot.getSymbols();
             Pool<Frame> framePool = snapshot.getFrames();
             Pool<Monitor> monitorPool = snapshot.getMonitors();
@@ -606,14 +650,14 @@ public class JStackParser implements Parser {
                         if (!m.matches()) {
                             throw new ParserException("Illegal parking line: " + line);
                         }
-                        monitors.add(assembleMonitor(thread, !deadLockThread, MonitorState.PARKING,
+                        monitors.add(assembleMonitor(events, !deadLockThread, MonitorState.PARKING,
                                                      Long.decode(m.group("address")),
                                                      false, symbolPool.add(m.group("class"))));
                     } else if (line.startsWith(MonitorState.WAITING_ON.prefix())) {
                         assert last != null;
                         if (line.contains("<no object reference available>")) {
                             monitors
-                                .add(assembleMonitor(thread, !deadLockThread,
+                                .add(assembleMonitor(events, !deadLockThread,
                                                      MonitorState.WAITING_ON_NO_OBJECT_REFERENCE_AVAILABLE,
                                                      -1, false, null));
                         } else {
@@ -622,7 +666,7 @@ public class JStackParser implements Parser {
                                 throw new ParserException("Illegal waiting line: " + line);
                             }
                             monitors
-                                .add(assembleMonitor(thread, !deadLockThread, MonitorState.WAITING_ON,
+                                .add(assembleMonitor(events, !deadLockThread, MonitorState.WAITING_ON,
                                                      Long.decode(m.group("address")),
                                                      m.group("isClass") != null,
                                                      symbolPool.add(m.group("class"))));
@@ -634,7 +678,7 @@ public class JStackParser implements Parser {
                             throw new ParserException("Illegal waiting to re-lock line: " + line);
                         }
                         monitors
-                            .add(assembleMonitor(thread, !deadLockThread, MonitorState.WAITING_TO_RE_LOCK,
+                            .add(assembleMonitor(events, !deadLockThread, MonitorState.WAITING_TO_RE_LOCK,
                                                  Long.decode(m.group("address")),
                                                  m.group("isClass") != null,
                                                  symbolPool.add(m.group("class"))));
@@ -646,7 +690,7 @@ public class JStackParser implements Parser {
                                 "Illegal waiting on class initialization line: " + line);
                         }
                         monitors
-                            .add(assembleMonitor(thread, !deadLockThread,
+                            .add(assembleMonitor(events, !deadLockThread,
                                                  MonitorState.WAITING_ON_CLASS_INITIALIZATION,
                                                  -1, true, symbolPool.add(m.group("class"))));
                     } else if (line.startsWith(MonitorState.LOCKED.prefix())) {
@@ -655,7 +699,7 @@ public class JStackParser implements Parser {
                         if (!m.matches()) {
                             throw new ParserException("Illegal locked line: " + line);
                         }
-                        monitors.add(assembleMonitor(thread, !deadLockThread, MonitorState.LOCKED,
+                        monitors.add(assembleMonitor(events, !deadLockThread, MonitorState.LOCKED,
                                                      Long.decode(m.group("address")),
                                                      m.group("isClass") != null,
                                                      symbolPool.add(m.group("class"))));
@@ -665,7 +709,7 @@ public class JStackParser implements Parser {
                         if (!m.matches()) {
                             throw new ParserException("Illegal waiting to lock line: " + line);
                         }
-                        monitors.add(assembleMonitor(thread, !deadLockThread, MonitorState.WAITING_TO_LOCK,
+                        monitors.add(assembleMonitor(events, !deadLockThread, MonitorState.WAITING_TO_LOCK,
                                                      Long.decode(m.group("address")),
                                                      m.group("isClass") != null,
                                                      symbolPool.add(m.group("class"))));
@@ -675,7 +719,7 @@ public class JStackParser implements Parser {
                         if (!m.matches()) {
                             throw new ParserException("Illegal eliminated lock line: " + line);
                         }
-                        monitors.add(assembleMonitor(thread, !deadLockThread, MonitorState.ELIMINATED,
+                        monitors.add(assembleMonitor(events, !deadLockThread, MonitorState.ELIMINATED,
                                                      Long.decode(m.group("address")),
                                                      m.group("isClass") != null,
                                                      symbolPool.add(m.group("class"))));
@@ -686,7 +730,7 @@ public class JStackParser implements Parser {
                             throw new ParserException(
                                 "Illegal eliminated(scalar replaced) lock line: " + line);
                         }
-                        monitors.add(assembleMonitor(thread, !deadLockThread,
+                        monitors.add(assembleMonitor(events, !deadLockThread,
                                                      MonitorState.ELIMINATED_SCALAR_REPLACED,
                                                      -1,
                                                      false,
@@ -739,46 +783,40 @@ public class JStackParser implements Parser {
             return trace;
         }
 
-        void parse(RawJavaThread rjt) {
-            try {
-                List<String> contents = rjt.contents;
-                assert contents.size() >= 2;
-
-                String line = contents.get(0);
-                Matcher m = PATTERNS.JAVA_THREAD.matcher(contents.get(0));
-                if (!m.matches()) {
-                    throw new ParserException("Illegal java thread: " + line);
-                }
-                JavaThread thread = new JavaThread();
-                fillThread(thread, m);
-                thread.setLineStart(rjt.lineStart);
-                thread.setLineEnd(rjt.lineEnd);
-                thread.setJid(Long.parseLong(m.group("id")));
-                thread.setDaemon(m.group("daemon") != null);
-                thread.setPriority(Integer.parseInt(m.group("priority")));
-                thread.setLastJavaSP(Long.decode(m.group("lastJavaSP")));
-
-                // java thread state
-                line = contents.get(1);
-                m = PATTERNS.JAVA_STATE.matcher(line);
-                if (!m.matches()) {
-                    throw new ParserException("Illegal java thread state: " + line);
-                }
-                thread.setJavaThreadState(JavaThreadState.getByDescription(m.group("state")));
+        ParsedThread parse(RawJavaThread rjt) {
+            List<String> contents = rjt.contents;
+            assert contents.size() >= 2;
 
-                if (contents.size() > 2 && thread.getType() == ThreadType.JAVA /* skip jit */) {
-                    // trace
-                    Trace trace = parseStackTrace(thread, false, contents.subList(2, contents.size()));
-                    snapshot.getCallSiteTree().add(trace);
-                    thread.setTrace(snapshot.getTraces().add(trace));
-                }
-                synchronized (this) {
-                    snapshot.getJavaThreads().add(thread);
-                }
-                done();
-            } catch (Throwable t) {
-                onParseRawThreadError(t);
+            String line = contents.get(0);
+            Matcher m = PATTERNS.JAVA_THREAD.matcher(contents.get(0));
+            if (!m.matches()) {
+                throw new ParserException("Illegal java thread: " + line);
             }
+            JavaThread thread = new JavaThread();
+            fillThread(thread, m);
+            thread.setLineStart(rjt.lineStart);
+            thread.setLineEnd(rjt.lineEnd);
+            thread.setJid(Long.parseLong(m.group("id")));
+            thread.setDaemon(m.group("daemon") != null);
+            thread.setPriority(Integer.parseInt(m.group("priority")));
+            thread.setLastJavaSP(Long.decode(m.group("lastJavaSP")));
+
+            // java thread state
+            line = contents.get(1);
+            m = PATTERNS.JAVA_STATE.matcher(line);
+            if (!m.matches()) {
+                throw new ParserException("Illegal java thread state: " + line);
+            }
+            thread.setJavaThreadState(JavaThreadState.getByDescription(m.group("state")));
+
+            List<MonitorEvent> events = new ArrayList<>();
+            Trace trace = null;
+            if (contents.size() > 2 && thread.getType() == ThreadType.JAVA /* skip jit */) {
+                // trace
+                trace = parseStackTrace(false, contents.subList(2, contents.size()), events);
+                thread.setTrace(snapshot.getTraces().add(trace));
+            }
+            return new ParsedThread(thread, trace, events);
         }
 
         enum Element {
@@ -802,21 +840,22 @@ public class JStackParser implements Parser {
             void onMatched(Matcher matcher) throws Exception;
         }
 
-        class RawJavaThread {
+        static class RawJavaThread {
 
-            private final List<String> contents;
+            private final List<String> contents = new ArrayList<>();
 
             private int lineStart;
 
             private int lineEnd;
+        }
 
-            public RawJavaThread() {
-                contents = new ArrayList<>();
-            }
+        record MonitorEvent(RawMonitor rawMonitor, MonitorState state, boolean needMap) {
+        }
 
-            void parse() {
-                ParserImpl.this.parse(this);
-            }
+        record ParsedThread(JavaThread thread, Trace trace, List<MonitorEvent> monitorEvents) {
+        }
+
+        record Batch(List<ParsedThread> threads, CallSiteTree callSiteTree) {
         }
     }
 }
@@ -0,0 +1,403 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.parser;
+
+import com.google.gson.stream.JsonReader;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.eclipse.jifa.analysis.listener.ProgressListener;
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+import org.eclipse.jifa.tda.enums.OSTreadState;
+import org.eclipse.jifa.tda.enums.SourceType;
+import org.eclipse.jifa.tda.model.Frame;
+import org.eclipse.jifa.tda.model.JavaThreadColumns;
+import org.eclipse.jifa.tda.model.LineIndex;
+import org.eclipse.jifa.tda.model.Pool;
+import org.eclipse.jifa.tda.model.Snapshot;
+import org.eclipse.jifa.tda.model.Trace;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parser for the thread dumps generated by 'jcmd &lt;pid&gt; Thread.dump_to_file -format=json'.
+ * <p>
+ * The document is read as a stream of tokens and never materialized. Such dumps may contain millions of virtual
+ * threads sharing a few stacks, so frames are cached by their text, traces are pooled as they are read, threads are
+ * stored in {@link JavaThreadColumns} rather than as objects, and each distinct trace is added to the call site tree once
+ * with the count of threads sharing it.
+ */
+@Slf4j
+public class JcmdJsonParser implements Parser {
+
+    // [class loader/][module[@version]/]class.method(source)
+    private static final Pattern FRAME =
+        Pattern.compile("(?<prefix>.*/)?(?<class>[^/]+)\\.(?<method>[^./]+)\\((?<source>.*)\\)");
+
+    @Override
+    public Snapshot parse(Path path, ProgressListener listener) {
+        try {
+            Snapshot snapshot;
+            long size = Files.size(path);
+            try (LineCountingReader reader =
+                     new LineCountingReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+                 JsonReader json = new JsonReader(reader)) {
+                snapshot = new ParserImpl(path, size, reader, json, listener).parse();
+            }
+            snapshot.setLineIndex(LineIndex.build(path));
+            snapshot.post();
+            return snapshot;
+        } catch (Throwable t) {
+            if (t instanceof ParserException) {
+                throw (ParserException) t;
+            }
+            throw new ParserException(t);
+        }
+    }
+
+    private static class ParserImpl {
+
+        private final long size;
+
+        private final LineCountingReader reader;
+
+        private final JsonReader json;
+
+        private final ProgressListener listener;
+
+        private final Snapshot snapshot;
+
+        private final Map<String, Frame> frameCache = new HashMap<>();
+
+        // thread counts of the pooled traces, in the order of first appearance
+        private final Map<Trace, int[]> traceCounts = new IdentityHashMap<>();
+
+        private final List<Trace> traceOrder = new ArrayList<>();
+
+        // consecutive threads often share a stack
+        private List<String> lastStack;
+
+        private Trace lastTrace;
+
+        private int reported;
+
+        ParserImpl(Path path, long size, LineCountingReader reader, JsonReader json, ProgressListener listener) {
+            this.size = size;
+            this.reader = reader;
+            this.json = json;
+            this.listener = listener;
+            snapshot = new Snapshot();
+            snapshot.setPath(path.toAbsolutePath().toString());
+            snapshot.setJavaThreadColumns(new JavaThreadColumns());
+        }
+
+        Snapshot parse() throws IOException {
+            listener.beginTask("Parsing thread dump", 100);
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals("threadDump")) {
+                    parseThreadDump();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+
+            for (Trace trace : traceOrder) {
+                snapshot.getCallSiteTree().add(trace, traceCounts.get(trace)[0]);
+            }
+            listener.worked(100 - reported);
+            return snapshot;
+        }
+
+        void parseThreadDump() throws IOException {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "time" -> {
+                        String time = json.nextString();
+                        try {
+                            snapshot.setTimestamp(Instant.parse(time).toEpochMilli());
+                        } catch (DateTimeParseException e) {
+                            log.warn("Parse time failed: {}", time);
+                        }
+                    }
+                    case "runtimeVersion" -> snapshot.setVmInfo(json.nextString());
+                    case "threadContainers" -> {
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            parseThreadContainer();
+                        }
+                        json.endArray();
+                    }
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+
+        void parseThreadContainer() throws IOException {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals("threads")) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        parseThread();
+                        reportProgress();
+                    }
+                    json.endArray();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+
+        void parseThread() throws IOException {
+            // hasNext() has read the line of '{'
+            int lineStart = reader.lineNumber();
+            long jid = -1;
+            String name = null;
+            String state = null;
+            List<String> stack = List.of();
+
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "tid" -> jid = NumberUtils.toLong(json.nextString(), -1);
+                    case "name" -> name = json.nextString();
+                    case "state" -> state = json.nextString();
+                    case "stack" -> {
+                        stack = new ArrayList<>();
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            stack.add(json.nextString());
+                        }
+                        json.endArray();
+                    }
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+
+            Trace trace = traceOf(stack);
+            Frame[] frames = trace.getFrames();
+            States states = statesOf(state, frames.length > 0 ? frames[0] : null);
+            snapshot.getJavaThreadColumns().add(snapshot.getSymbols().add(name != null ? name : ""), jid,
+                                                states.javaState(), states.osState(), lineStart,
+                                                reader.lineNumber(), trace);
+        }
+
+        Trace traceOf(List<String> stack) {
+            if (stack.equals(lastStack)) {
+                traceCounts.get(lastTrace)[0]++;
+                return lastTrace;
+            }
+
+            Frame[] frames = new Frame[stack.size()];
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = frameCache.computeIfAbsent(stack.get(i), this::parseFrame);
+            }
+            Trace trace = new Trace();
+            trace.setFrames(frames);
+            trace = snapshot.getTraces().add(trace);
+            Trace pooled = trace;
+            traceCounts.computeIfAbsent(trace, t -> {
+                traceOrder.add(pooled);
+                return new int[1];
+            })[0]++;
+
+            lastStack = stack;
+            lastTrace = trace;
+            return trace;
+        }
+
+        Frame parseFrame(String text) {
+            Pool<String> symbols = snapshot.getSymbols();
+            Frame frame = new Frame();
+            Matcher m = FRAME.matcher(text);
+            if (!m.matches()) {
+                log.warn("Illegal java frame: {}", text);
+                frame.setClazz(symbols.add(text));
+                frame.setMethod(symbols.add(""));
+                frame.setSourceType(SourceType.UNKNOWN_SOURCE);
+                return snapshot.getFrames().add(frame);
+            }
+
+            frame.setClazz(symbols.add(m.group("class")));
+            frame.setMethod(symbols.add(m.group("method")));
+            String prefix = m.group("prefix");
+            if (prefix != null) {
+                // strip the class loader and '/'
+                String module = prefix.substring(prefix.lastIndexOf('/', prefix.length() - 2) + 1,
+                                                 prefix.length() - 1);
+                if (!module.isEmpty()) {
+                    frame.setModule(symbols.add(module));
+                }
+            }
+            String source = m.group("source");
+            SourceType sourceType = SourceType.judge(source);
+            frame.setSourceType(sourceType);
+            if (sourceType == SourceType.SOURCE_FILE_WITH_LINE_NUMBER) {
+                int index = source.indexOf(":");
+                frame.setLine(NumberUtils.toInt(source.substring(index + 1), -1));
+                frame.setSource(symbols.add(source.substring(0, index)));
+            } else if (sourceType == SourceType.SOURCE_FILE) {
+                frame.setSource(symbols.add(source));
+            }
+            return snapshot.getFrames().add(frame);
+        }
+
+        /**
+         * @param state the name of a Thread.State, null if absent which is the case before JDK 22
+         * @param top   the top frame, null if the stack is empty
+         */
+        States statesOf(String state, Frame top) {
+            JavaThreadState javaState = JavaThreadState.UNKNOWN;
+            OSTreadState osState = OSTreadState.UNKNOWN;
+            if (state != null) {
+                boolean timed = state.equals("TIMED_WAITING");
+                switch (state) {
+                    case "NEW" -> {
+                        javaState = JavaThreadState.NEW;
+                        osState = OSTreadState.ALLOCATED;
+                    }
+                    case "RUNNABLE" -> {
+                        javaState = JavaThreadState.RUNNABLE;
+                        osState = OSTreadState.RUNNABLE;
+                    }
+                    case "BLOCKED" -> {
+                        javaState = JavaThreadState.BLOCKED_ON_MONITOR_ENTER;
+                        osState = OSTreadState.MONITOR_WAIT;
+                    }
+                    case "WAITING", "TIMED_WAITING" -> {
+                        String method = top != null ? top.getMethod() : "";
+                        if (method.startsWith("park")) {
+                            javaState = timed ? JavaThreadState.PARKED_TIMED : JavaThreadState.PARKED;
+                            osState = OSTreadState.COND_VAR_WAIT;
+                        } else if (method.startsWith("sleep")) {
+                            javaState = JavaThreadState.SLEEPING;
+                            osState = OSTreadState.SLEEPING;
+                        } else {
+                            javaState = timed ? JavaThreadState.IN_OBJECT_WAIT_TIMED : JavaThreadState.IN_OBJECT_WAIT;
+                            osState = OSTreadState.OBJECT_WAIT;
+                        }
+                    }
+                    case "TERMINATED" -> {
+                        javaState = JavaThreadState.TERMINATED;
+                        osState = OSTreadState.ZOMBIE;
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return new States(javaState, osState);
+        }
+
+        void reportProgress() {
+            if (size <= 0) {
+                return;
+            }
+            // the parsing is 99% of the work
+            int percent = (int) Math.min(99, reader.charCount() * 99 / size);
+            if (percent > reported) {
+                listener.worked(percent - reported);
+                reported = percent;
+            }
+        }
+    }
+
+    private record States(JavaThreadState javaState, OSTreadState osState) {
+    }
+
+    /**
+     * Returns at most one line per read, so the line being read is known when a token is returned by JsonReader, which
+     * only reads when its buffer is exhausted.
+     */
+    private static class LineCountingReader extends Reader {
+
+        private final Reader in;
+
+        private final char[] buffer = new char[64 * 1024];
+
+        private int position;
+
+        private int limit;
+
+        private int lineNumber;
+
+        private boolean lineStart = true;
+
+        private long charCount;
+
+        LineCountingReader(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            if (lineStart) {
+                lineNumber++;
+                lineStart = false;
+            }
+            int n = 0;
+            while (n < len && position < limit) {
+                char c = buffer[position++];
+                cbuf[off + n++] = c;
+                if (c == '\n') {
+                    lineStart = true;
+                    break;
+                }
+            }
+            charCount += n;
+            return n;
+        }
+
+        int lineNumber() {
+            return lineNumber;
+        }
+
+        long charCount() {
+            return charCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ * Copyright (c) 2022, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,13 +13,38 @@
 
 package org.eclipse.jifa.tda.parser;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class ParserFactory {
 
-    private static final Parser DEFAULT = new SerDesParser(new JStackParser());
+    private static final Parser JSTACK = new SerDesParser(new JStackParser());
+
+    private static final Parser JCMD_JSON = new SerDesParser(new JcmdJsonParser());
 
     public static Parser buildParser(Path path) {
-        return DEFAULT;
+        return isJson(path) ? JCMD_JSON : JSTACK;
+    }
+
+    /**
+     * @return true if the first non-whitespace character is '{'
+     */
+    private static boolean isJson(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] bytes = in.readNBytes(1024);
+            int i = 0;
+            // UTF-8 BOM
+            if (bytes.length >= 3 && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF) {
+                i = 3;
+            }
+            while (i < bytes.length && Character.isWhitespace(bytes[i])) {
+                i++;
+            }
+            return i < bytes.length && bytes[i] == '{';
+        } catch (IOException e) {
+            return false;
+        }
     }
 }
@@ -0,0 +1,124 @@
+/********************************************************************************
+ * Copyright (c) 2022, 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.parser;
+
+import org.eclipse.jifa.tda.model.LineIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads a dump line by line. Lines are terminated the same way as {@link java.io.LineNumberReader}: by '\n', '\r' or
+ * "\r\n", and the byte offset of each line is recorded as it is read.
+ */
+class ReaderInput implements Input {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+
+    private final Charset charset = Charset.defaultCharset();
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    // the offset of buffer[0] in the dump
+    private long base;
+
+    // true if the last line was terminated by '\r', a following '\n' is part of the terminator
+    private boolean skipLf;
+
+    private byte[] line = new byte[256];
+
+    private String current;
+
+    private int lineNumber;
+
+    private final LineIndex.Builder lineIndex = new LineIndex.Builder();
+
+    ReaderInput(Path dumpPath) throws IOException {
+        in = Files.newInputStream(dumpPath);
+    }
+
+    @Override
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        int b = read();
+        if (skipLf) {
+            skipLf = false;
+            if (b == '\n') {
+                b = read();
+            }
+        }
+        if (b < 0) {
+            current = null;
+            return null;
+        }
+
+        lineIndex.add(base + position - 1);
+        lineNumber++;
+        int length = 0;
+        while (b >= 0 && b != '\n' && b != '\r') {
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length << 1);
+            }
+            line[length++] = (byte) b;
+            b = read();
+        }
+        skipLf = b == '\r';
+        current = new String(line, 0, length, charset).trim();
+        return current;
+    }
+
+    @Override
+    public String currentLine() {
+        return current;
+    }
+
+    @Override
+    public LineIndex lineIndex() throws IOException {
+        while (readLine() != null) {
+            // consume the remaining lines
+        }
+        return lineIndex.build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            base += limit;
+            position = 0;
+            limit = Math.max(0, in.read(buffer));
+            if (limit == 0) {
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+}
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ * Copyright (c) 2022, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,33 +13,23 @@
 
 package org.eclipse.jifa.tda.parser;
 
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jifa.analysis.listener.ProgressListener;
+import org.eclipse.jifa.common.util.ExecutorFactory;
 import org.eclipse.jifa.tda.model.Snapshot;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
 
+/**
+ * Caches the snapshot generated by the delegated parser in a file next to the thread dump, see {@link SnapshotFormat}
+ */
 @Slf4j
 public class SerDesParser implements Parser {
 
-    private static final ThreadLocal<Kryo> KRYO;
-
-    static {
-        KRYO = ThreadLocal.withInitial(() -> {
-            Kryo kryo = new Kryo();
-            kryo.setRegistrationRequired(false);
-            return kryo;
-        });
-    }
+    private static final int PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
 
     private final Parser parser;
 
@@ -49,12 +39,20 @@ public class SerDesParser implements Parser {
 
     @Override
     public Snapshot parse(Path path, ProgressListener listener) {
-        // TODO: multi-threads support
+        ExecutorService executor = ExecutorFactory.newExecutorService("Thread Dump SerDes", PARALLELISM);
+        try {
+            return parse(path, listener, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Snapshot parse(Path path, ProgressListener listener, ExecutorService executor) {
         Path serializedDataPath = resolveSerializedDataPath(path);
         if (Files.exists(serializedDataPath)) {
             try {
                 listener.beginTask("Deserializing thread dump", 100);
-                Snapshot snapshot = deserialize(serializedDataPath);
+                Snapshot snapshot = SnapshotFormat.read(serializedDataPath, executor);
                 listener.worked(100);
                 return snapshot;
             } catch (Throwable t) {
@@ -67,7 +65,7 @@ public class SerDesParser implements Parser {
         Snapshot snapshot = parser.parse(path, listener);
         try {
             listener.beginTask("Serializing thread dump", 5);
-            serialize(snapshot, serializedDataPath);
+            SnapshotFormat.write(snapshot, serializedDataPath, executor);
         } catch (Throwable t) {
             log.warn("Failed to serialize thread dump: {}", t.getMessage());
         } finally {
@@ -79,18 +77,4 @@ public class SerDesParser implements Parser {
     private Path resolveSerializedDataPath(Path source) {
         return Paths.get(source.toFile().getAbsoluteFile() + ".kryo");
     }
-
-    private void serialize(Snapshot snapshot, Path path) throws FileNotFoundException {
-        Kryo kryo = KRYO.get();
-        try (Output out = new Output(new FileOutputStream(path.toFile()))) {
-            kryo.writeObject(out, snapshot);
-        }
-    }
-
-    private Snapshot deserialize(Path path) throws IOException {
-        Kryo kryo = KRYO.get();
-        try (Input input = new Input(new FileInputStream(path.toFile()))) {
-            return kryo.readObject(input, Snapshot.class);
-        }
-    }
 }
@@ -0,0 +1,651 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.parser;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.eclipse.jifa.tda.enums.MonitorState;
+import org.eclipse.jifa.tda.enums.SourceType;
+import org.eclipse.jifa.tda.model.CallSiteTree;
+import org.eclipse.jifa.tda.model.Error;
+import org.eclipse.jifa.tda.model.Frame;
+import org.eclipse.jifa.tda.model.IdentityPool;
+import org.eclipse.jifa.tda.model.LineIndex;
+import org.eclipse.jifa.tda.model.Monitor;
+import org.eclipse.jifa.tda.model.RawMonitor;
+import org.eclipse.jifa.tda.model.Snapshot;
+import org.eclipse.jifa.tda.model.ThreadIndex;
+import org.eclipse.jifa.tda.model.ThreadTable;
+import org.eclipse.jifa.tda.model.WaitForGraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * The file format of serialized snapshots.
+ * <p>
+ * A file starts with a magic number and the format version, followed by the table of sections and the sections.
+ * Sections are compressed with LZ4 and refer to the monitors and frames of other sections by index, so they are
+ * serialized in parallel, and are decompressed and deserialized in parallel as soon as the sections they refer to are.
+ * The fields of the model are written one by one, no class name is written. The thread table is written column by
+ * column in a few sections which are independent of each other.
+ * <p>
+ * Files of other versions are rejected, {@link #VERSION} must be increased whenever the model or a section changes.
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x4A544441;
+
+    static final int VERSION = 2;
+
+    private static final MonitorState[] MONITOR_STATES = MonitorState.values();
+
+    private static final SourceType[] SOURCE_TYPES = SourceType.values();
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private enum Section {
+        MONITORS,
+        // the frames of the call site tree
+        FRAMES,
+        // the columns of the thread table
+        SYMBOLS,
+        THREADS,
+        TRACES,
+        THREAD_FRAMES,
+        CALL_SITE_TREE,
+        SUMMARY
+    }
+
+    private SnapshotFormat() {
+    }
+
+    static void write(Snapshot snapshot, Path path, Executor executor) throws IOException {
+        Tables tables = Tables.collect(snapshot);
+        ThreadTable table = snapshot.getThreadTable();
+
+        List<CompletableFuture<Encoded>> futures = new ArrayList<>();
+        futures.add(encode(Section.MONITORS, out -> writeMonitors(out, tables), executor));
+        futures.add(encode(Section.FRAMES, out -> writeFrames(out, tables), executor));
+        futures.add(encode(Section.SYMBOLS, out -> writeSymbols(out, table), executor));
+        futures.add(encode(Section.THREADS, out -> writeThreads(out, table), executor));
+        futures.add(encode(Section.TRACES, out -> writeTraces(out, table), executor));
+        futures.add(encode(Section.THREAD_FRAMES, out -> writeThreadFrames(out, table), executor));
+        futures.add(encode(Section.CALL_SITE_TREE, out -> writeCallSiteTree(out, snapshot.getCallSiteTree(), tables),
+                           executor));
+        futures.add(encode(Section.SUMMARY, out -> writeSummary(out, snapshot, tables), executor));
+
+        // a partially written file must never be read, and concurrent writers of the same path must not share one
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(futures.size());
+                List<Encoded> sections = new ArrayList<>();
+                for (CompletableFuture<Encoded> future : futures) {
+                    Encoded encoded = join(future);
+                    sections.add(encoded);
+                    out.writeByte(encoded.section.ordinal());
+                    out.writeInt(encoded.rawLength);
+                    out.writeInt(encoded.data.length);
+                }
+                for (Encoded encoded : sections) {
+                    out.write(encoded.data);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static Snapshot read(Path path, Executor executor) throws IOException {
+        Map<Section, List<CompletableFuture<Input>>> inputs = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a serialized snapshot");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version: " + version);
+            }
+            int count = in.readInt();
+            Section[] sections = new Section[count];
+            int[] rawLengths = new int[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                sections[i] = Section.values()[in.readUnsignedByte()];
+                rawLengths[i] = in.readInt();
+                lengths[i] = in.readInt();
+            }
+            // decompress a section while reading the next ones
+            for (int i = 0; i < count; i++) {
+                byte[] data = in.readNBytes(lengths[i]);
+                if (data.length != lengths[i]) {
+                    throw new EOFException();
+                }
+                int rawLength = rawLengths[i];
+                inputs.computeIfAbsent(sections[i], s -> new ArrayList<>())
+                      .add(CompletableFuture.supplyAsync(() -> decompress(data, rawLength), executor));
+            }
+        }
+
+        CompletableFuture<MonitorTable> monitors = input(inputs, Section.MONITORS)
+            .thenApply(SnapshotFormat::readMonitors);
+        CompletableFuture<Frame[]> frames = input(inputs, Section.FRAMES)
+            .thenCombine(monitors, SnapshotFormat::readFrames);
+        CompletableFuture<CallSiteTree> callSiteTree = input(inputs, Section.CALL_SITE_TREE)
+            .thenCombine(frames, SnapshotFormat::readCallSiteTree);
+        // the sections set different columns
+        ThreadTable table = new ThreadTable();
+        List<CompletableFuture<Void>> columns = List.of(
+            input(inputs, Section.SYMBOLS).thenAccept(in -> readSymbols(in, table)),
+            input(inputs, Section.THREADS).thenAccept(in -> readThreads(in, table)),
+            input(inputs, Section.TRACES).thenAccept(in -> readTraces(in, table)),
+            input(inputs, Section.THREAD_FRAMES).thenAccept(in -> readThreadFrames(in, table)));
+
+        Snapshot snapshot = new Snapshot();
+        snapshot.setSymbols(null);
+        snapshot.setFrames(null);
+        snapshot.setTraces(null);
+        snapshot.setMonitors(null);
+        snapshot.setConcurrentLocks(null);
+        // the same as a posted snapshot
+        snapshot.setJavaThreads(null);
+        snapshot.setNonJavaThreads(null);
+        snapshot.setThreadMap(null);
+        snapshot.setMonitorThreads(null);
+        for (CompletableFuture<Void> future : columns) {
+            join(future);
+        }
+        snapshot.setThreadTable(table);
+        snapshot.setCallSiteTree(join(callSiteTree));
+        MonitorTable monitorTable = join(monitors);
+        snapshot.setRawMonitors(
+            IdentityPool.frozen(new ArrayList<>(Arrays.asList(monitorTable.monitors).subList(0, monitorTable.pooledCount))));
+        readSummary(join(input(inputs, Section.SUMMARY)), snapshot, monitorTable.monitors);
+        // derived from the thread table
+        snapshot.setThreadIndex(ThreadIndex.build(table));
+        return snapshot;
+    }
+
+    private static CompletableFuture<Encoded> encode(Section section, Consumer<Output> writer, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            Output out = new Output(64 * 1024, -1);
+            writer.accept(out);
+            LZ4Compressor compressor = LZ4.fastCompressor();
+            byte[] compressed = compressor.compress(out.getBuffer(), 0, out.position());
+            return new Encoded(section, out.position(), compressed);
+        }, executor);
+    }
+
+    private static Input decompress(byte[] data, int rawLength) {
+        LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+        return new Input(decompressor.decompress(data, rawLength));
+    }
+
+    private static CompletableFuture<Input> input(Map<Section, List<CompletableFuture<Input>>> inputs,
+                                                  Section section) {
+        List<CompletableFuture<Input>> list = inputs.get(section);
+        if (list == null || list.size() != 1) {
+            throw new IllegalStateException("Illegal count of section " + section);
+        }
+        return list.get(0);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    private static void writeMonitors(Output out, Tables tables) {
+        out.writeVarInt(tables.monitors.size(), true);
+        out.writeVarInt(tables.pooledMonitorCount, true);
+        for (RawMonitor monitor : tables.monitors) {
+            out.writeVarInt(monitor.getId(), true);
+            out.writeVarLong(monitor.getAddress(), false);
+            out.writeBoolean(monitor.isClassInstance());
+            out.writeString(monitor.getClazz());
+        }
+    }
+
+    private static MonitorTable readMonitors(Input in) {
+        RawMonitor[] monitors = new RawMonitor[in.readVarInt(true)];
+        int pooledCount = in.readVarInt(true);
+        for (int i = 0; i < monitors.length; i++) {
+            RawMonitor monitor = new RawMonitor();
+            monitor.setId(in.readVarInt(true));
+            monitor.setAddress(in.readVarLong(false));
+            monitor.setClassInstance(in.readBoolean());
+            monitor.setClazz(in.readString());
+            monitors[i] = monitor;
+        }
+        return new MonitorTable(monitors, pooledCount);
+    }
+
+    private static void writeFrames(Output out, Tables tables) {
+        out.writeVarInt(tables.frames.size(), true);
+        for (Frame frame : tables.frames) {
+            out.writeString(frame.getClazz());
+            out.writeString(frame.getMethod());
+            out.writeString(frame.getModule());
+            writeEnum(out, frame.getSourceType());
+            out.writeString(frame.getSource());
+            out.writeVarInt(frame.getLine(), false);
+            Monitor[] monitors = frame.getMonitors();
+            writeLength(out, monitors == null ? -1 : monitors.length);
+            if (monitors != null) {
+                for (Monitor monitor : monitors) {
+                    out.writeVarInt(tables.monitorIndex.get(monitor.getRawMonitor()), true);
+                    writeEnum(out, monitor.getState());
+                }
+            }
+        }
+    }
+
+    private static Frame[] readFrames(Input in, MonitorTable rawMonitors) {
+        Frame[] frames = new Frame[in.readVarInt(true)];
+        for (int i = 0; i < frames.length; i++) {
+            Frame frame = new Frame();
+            frame.setClazz(in.readString());
+            frame.setMethod(in.readString());
+            frame.setModule(in.readString());
+            frame.setSourceType(readEnum(in, SOURCE_TYPES));
+            frame.setSource(in.readString());
+            frame.setLine(in.readVarInt(false));
+            int length = readLength(in);
+            if (length >= 0) {
+                Monitor[] monitors = new Monitor[length];
+                for (int j = 0; j < length; j++) {
+                    Monitor monitor = new Monitor();
+                    monitor.setRawMonitor(rawMonitors.monitors[in.readVarInt(true)]);
+                    monitor.setState(readEnum(in, MONITOR_STATES));
+                    monitors[j] = monitor;
+                }
+                frame.setMonitors(monitors);
+            }
+            frames[i] = frame;
+        }
+        return frames;
+    }
+
+    private static void writeSymbols(Output out, ThreadTable table) {
+        out.writeVarInt(table.getSymbols().length, true);
+        for (String symbol : table.getSymbols()) {
+            out.writeString(symbol);
+        }
+    }
+
+    private static void readSymbols(Input in, ThreadTable table) {
+        String[] symbols = new String[in.readVarInt(true)];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = in.readString();
+        }
+        table.setSymbols(symbols);
+    }
+
+    private static void writeThreads(Output out, ThreadTable table) {
+        writeInts(out, table.getNames());
+        writeBytes(out, table.getTypes());
+        writeBytes(out, table.getOsStates());
+        writeBytes(out, table.getJavaStates());
+        writeBits(out, table.getDaemons());
+        writeInts(out, table.getLineStarts());
+        writeInts(out, table.getLineEnds());
+        writeLongs(out, table.getNids());
+        writeLongs(out, table.getJids());
+        writeInts(out, table.getGroups());
+        writeInts(out, table.getTraces());
+    }
+
+    private static void readThreads(Input in, ThreadTable table) {
+        table.setNames(readInts(in));
+        table.setTypes(readBytes(in));
+        table.setOsStates(readBytes(in));
+        table.setJavaStates(readBytes(in));
+        table.setDaemons(readBits(in));
+        table.setLineStarts(readInts(in));
+        table.setLineEnds(readInts(in));
+        table.setNids(readLongs(in));
+        table.setJids(readLongs(in));
+        table.setGroups(readInts(in));
+        table.setTraces(readInts(in));
+    }
+
+    private static void writeTraces(Output out, ThreadTable table) {
+        writeInts(out, table.getTraceOffsets());
+        writeInts(out, table.getTraceFrames());
+        writeInts(out, table.getTraceLockOffsets());
+        writeLongs(out, table.getLockAddresses());
+        writeInts(out, table.getLockClasses());
+    }
+
+    private static void readTraces(Input in, ThreadTable table) {
+        table.setTraceOffsets(readInts(in));
+        table.setTraceFrames(readInts(in));
+        table.setTraceLockOffsets(readInts(in));
+        table.setLockAddresses(readLongs(in));
+        table.setLockClasses(readInts(in));
+    }
+
+    private static void writeThreadFrames(Output out, ThreadTable table) {
+        writeInts(out, table.getFrameClasses());
+        writeInts(out, table.getFrameMethods());
+        writeInts(out, table.getFrameModules());
+        writeBytes(out, table.getFrameSourceTypes());
+        writeInts(out, table.getFrameSources());
+        writeInts(out, table.getFrameLines());
+        writeInts(out, table.getFrameMonitorOffsets());
+        writeInts(out, table.getMonitorIds());
+        writeBytes(out, table.getMonitorStates());
+        writeLongs(out, table.getRawMonitorAddresses());
+        writeBits(out, table.getRawMonitorClassInstances());
+        writeInts(out, table.getRawMonitorClasses());
+        writeInts(out, table.getMonitorThreadOffsets());
+        writeInts(out, table.getMonitorThreads());
+    }
+
+    private static void readThreadFrames(Input in, ThreadTable table) {
+        table.setFrameClasses(readInts(in));
+        table.setFrameMethods(readInts(in));
+        table.setFrameModules(readInts(in));
+        table.setFrameSourceTypes(readBytes(in));
+        table.setFrameSources(readInts(in));
+        table.setFrameLines(readInts(in));
+        table.setFrameMonitorOffsets(readInts(in));
+        table.setMonitorIds(readInts(in));
+        table.setMonitorStates(readBytes(in));
+        table.setRawMonitorAddresses(readLongs(in));
+        table.setRawMonitorClassInstances(readBits(in));
+        table.setRawMonitorClasses(readInts(in));
+        table.setMonitorThreadOffsets(readInts(in));
+        table.setMonitorThreads(readInts(in));
+    }
+
+    private static void writeCallSiteTree(Output out, CallSiteTree tree, Tables tables) {
+        int size = tree.nodeCount();
+        out.writeVarInt(size, true);
+        out.writeVarInt(tree.weight(0), true);
+        for (int id = 1; id < size; id++) {
+            out.writeVarInt(tables.frameIndex.get(tree.frame(id)), true);
+            out.writeVarInt(tree.weight(id), true);
+            out.writeVarInt(tree.parent(id), true);
+        }
+    }
+
+    private static CallSiteTree readCallSiteTree(Input in, Frame[] frames) {
+        int size = in.readVarInt(true);
+        Frame[] nodeFrames = new Frame[size];
+        int[] weights = new int[size];
+        int[] parents = new int[size];
+        weights[0] = in.readVarInt(true);
+        parents[0] = -1;
+        for (int id = 1; id < size; id++) {
+            nodeFrames[id] = frames[in.readVarInt(true)];
+            weights[id] = in.readVarInt(true);
+            parents[id] = in.readVarInt(true);
+        }
+        return CallSiteTree.frozen(nodeFrames, weights, parents);
+    }
+
+    private static void writeSummary(Output out, Snapshot snapshot, Tables tables) {
+        out.writeString(snapshot.getPath());
+        LineIndex lineIndex = snapshot.getLineIndex();
+        out.writeBoolean(lineIndex != null);
+        if (lineIndex != null) {
+            out.writeVarInt(lineIndex.getLineCount(), true);
+            out.writeVarInt(lineIndex.getOffsets().length, true);
+            out.writeLongs(lineIndex.getOffsets(), 0, lineIndex.getOffsets().length);
+        }
+        out.writeLong(snapshot.getTimestamp());
+        out.writeString(snapshot.getVmInfo());
+        out.writeVarInt(snapshot.getNextThreadId(), true);
+        out.writeVarInt(snapshot.getJniRefs(), false);
+        out.writeVarInt(snapshot.getJniWeakRefs(), false);
+        out.writeVarInt(snapshot.getDeadLockCount(), true);
+
+        WaitForGraph graph = snapshot.getWaitForGraph();
+        out.writeBoolean(graph != null);
+        if (graph != null) {
+            out.writeVarInt(graph.getCycles().size(), true);
+            for (List<WaitForGraph.Wait> cycle : graph.getCycles()) {
+                out.writeVarInt(cycle.size(), true);
+                for (WaitForGraph.Wait wait : cycle) {
+                    out.writeVarInt(wait.getThreadId(), true);
+                    out.writeVarInt(tables.monitorIndex.get(wait.getMonitor()), true);
+                    writeEnum(out, wait.getState());
+                    out.writeVarInt(wait.getOwnerId(), false);
+                }
+            }
+            out.writeVarInt(graph.getContentions().size(), true);
+            for (WaitForGraph.Contention contention : graph.getContentions()) {
+                out.writeVarInt(tables.monitorIndex.get(contention.getMonitor()), true);
+                out.writeVarInt(contention.getOwnerId(), false);
+                out.writeVarInt(contention.getWaiterCount(), true);
+                out.writeVarInt(contention.getBlockedCount(), true);
+                out.writeVarInt(contention.getDepth(), true);
+            }
+        }
+
+        out.writeVarInt(snapshot.getErrors().size(), true);
+        for (Error error : snapshot.getErrors()) {
+            out.writeString(error.getDetail());
+            out.writeVarInt(error.getLineStart(), true);
+            out.writeVarInt(error.getLineEnd(), true);
+        }
+    }
+
+    private static void readSummary(Input in, Snapshot snapshot, RawMonitor[] monitors) {
+        snapshot.setPath(in.readString());
+        if (in.readBoolean()) {
+            LineIndex lineIndex = new LineIndex();
+            lineIndex.setLineCount(in.readVarInt(true));
+            lineIndex.setOffsets(in.readLongs(in.readVarInt(true)));
+            snapshot.setLineIndex(lineIndex);
+        }
+        snapshot.setTimestamp(in.readLong());
+        snapshot.setVmInfo(in.readString());
+        snapshot.setNextThreadId(in.readVarInt(true));
+        snapshot.setJniRefs(in.readVarInt(false));
+        snapshot.setJniWeakRefs(in.readVarInt(false));
+        snapshot.setDeadLockCount(in.readVarInt(true));
+
+        if (in.readBoolean()) {
+            WaitForGraph graph = new WaitForGraph();
+            int size = in.readVarInt(true);
+            for (int i = 0; i < size; i++) {
+                int length = in.readVarInt(true);
+                List<WaitForGraph.Wait> cycle = new ArrayList<>(length);
+                for (int j = 0; j < length; j++) {
+                    WaitForGraph.Wait wait = new WaitForGraph.Wait();
+                    wait.setThreadId(in.readVarInt(true));
+                    wait.setMonitor(monitors[in.readVarInt(true)]);
+                    wait.setState(readEnum(in, MONITOR_STATES));
+                    wait.setOwnerId(in.readVarInt(false));
+                    cycle.add(wait);
+                }
+                graph.getCycles().add(cycle);
+            }
+            size = in.readVarInt(true);
+            for (int i = 0; i < size; i++) {
+                WaitForGraph.Contention contention = new WaitForGraph.Contention();
+                contention.setMonitor(monitors[in.readVarInt(true)]);
+                contention.setOwnerId(in.readVarInt(false));
+                contention.setWaiterCount(in.readVarInt(true));
+                contention.setBlockedCount(in.readVarInt(true));
+                contention.setDepth(in.readVarInt(true));
+                graph.getContentions().add(contention);
+            }
+            snapshot.setWaitForGraph(graph);
+        }
+
+        int errors = in.readVarInt(true);
+        for (int i = 0; i < errors; i++) {
+            Error error = new Error();
+            error.setDetail(in.readString());
+            error.setLineStart(in.readVarInt(true));
+            error.setLineEnd(in.readVarInt(true));
+            snapshot.getErrors().add(error);
+        }
+    }
+
+    private static void writeInts(Output out, int[] array) {
+        out.writeVarInt(array.length, true);
+        out.writeInts(array, 0, array.length, false);
+    }
+
+    private static int[] readInts(Input in) {
+        return in.readInts(in.readVarInt(true), false);
+    }
+
+    private static void writeLongs(Output out, long[] array) {
+        out.writeVarInt(array.length, true);
+        out.writeLongs(array, 0, array.length, false);
+    }
+
+    private static long[] readLongs(Input in) {
+        return in.readLongs(in.readVarInt(true), false);
+    }
+
+    private static void writeBytes(Output out, byte[] array) {
+        out.writeVarInt(array.length, true);
+        out.writeBytes(array);
+    }
+
+    private static byte[] readBytes(Input in) {
+        return in.readBytes(in.readVarInt(true));
+    }
+
+    private static void writeBits(Output out, BitSet bits) {
+        writeLongs(out, bits.toLongArray());
+    }
+
+    private static BitSet readBits(Input in) {
+        return BitSet.valueOf(readLongs(in));
+    }
+
+    // -1 for null
+    private static void writeLength(Output out, int length) {
+        out.writeVarInt(length + 1, true);
+    }
+
+    private static int readLength(Input in) {
+        return in.readVarInt(true) - 1;
+    }
+
+    // 0 for null
+    private static void writeEnum(Output out, Enum<?> value) {
+        out.writeVarInt(value == null ? 0 : value.ordinal() + 1, true);
+    }
+
+    private static <E extends Enum<E>> E readEnum(Input in, E[] values) {
+        int ordinal = in.readVarInt(true);
+        return ordinal == 0 ? null : values[ordinal - 1];
+    }
+
+    private record Encoded(Section section, int rawLength, byte[] data) {
+    }
+
+    // the pooled monitors come first
+    private record MonitorTable(RawMonitor[] monitors, int pooledCount) {
+    }
+
+    /**
+     * The monitors and frames referred to by index
+     */
+    private static class Tables {
+
+        private final List<RawMonitor> monitors = new ArrayList<>();
+
+        private final Map<RawMonitor, Integer> monitorIndex = new IdentityHashMap<>();
+
+        private int pooledMonitorCount;
+
+        private final List<Frame> frames = new ArrayList<>();
+
+        private final Map<Frame, Integer> frameIndex = new IdentityHashMap<>();
+
+        static Tables collect(Snapshot snapshot) {
+            Tables tables = new Tables();
+            List<RawMonitor> pooled = snapshot.getRawMonitors().objects();
+            if (pooled != null) {
+                pooled.forEach(tables::monitor);
+            }
+            tables.pooledMonitorCount = tables.monitors.size();
+
+            CallSiteTree tree = snapshot.getCallSiteTree();
+            for (int id = 1; id < tree.nodeCount(); id++) {
+                tables.frame(tree.frame(id));
+            }
+            WaitForGraph graph = snapshot.getWaitForGraph();
+            if (graph != null) {
+                graph.getCycles().forEach(cycle -> cycle.forEach(wait -> tables.monitor(wait.getMonitor())));
+                graph.getContentions().forEach(contention -> tables.monitor(contention.getMonitor()));
+            }
+            return tables;
+        }
+
+        private void monitor(RawMonitor monitor) {
+            if (!monitorIndex.containsKey(monitor)) {
+                monitorIndex.put(monitor, monitors.size());
+                monitors.add(monitor);
+            }
+        }
+
+        private void frame(Frame frame) {
+            if (frameIndex.containsKey(frame)) {
+                return;
+            }
+            frameIndex.put(frame, frames.size());
+            frames.add(frame);
+            if (frame.getMonitors() != null) {
+                for (Monitor monitor : frame.getMonitors()) {
+                    monitor(monitor.getRawMonitor());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+
+package org.eclipse.jifa.tda.vo;
+
+import lombok.Data;
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The differences between a base thread dump and a target thread dump
+ */
+@Data
+public class ComparisonOverview {
+
+    private int baseThreadCount;
+
+    private int targetThreadCount;
+
+    // threads of the target whose native id and name are absent from the base
+    private int addedThreadCount;
+
+    private int removedThreadCount;
+
+    // in descending order of the count of added and removed threads
+    private List<GroupDelta> groups = new ArrayList<>();
+
+    // in descending order of count
+    private List<StateTransition> stateTransitions = new ArrayList<>();
+
+    private int newlyContendedMonitorCount;
+
+    @Data
+    public static class GroupDelta {
+
+        private String name;
+
+        private int baseCount;
+
+        private int targetCount;
+
+        private int addedCount;
+
+        private int removedCount;
+    }
+
+    @Data
+    public static class StateTransition {
+
+        private JavaThreadState from;
+
+        private JavaThreadState to;
+
+        // the count of java threads in both dumps whose state changed from 'from' to 'to'
+        private int count;
+    }
+}
@@ -0,0 +1,46 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.vo;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class SeriesOverview {
+
+    // in the order of time
+    private List<Sample> samples = new ArrayList<>();
+
+    private int stuckThreadCount;
+
+    private int heldMonitorCount;
+
+    @Data
+    public static class Sample {
+
+        // the file name of the thread dump
+        private String name;
+
+        // -1 means unknown
+        private long timestamp;
+
+        private int javaThreadCount;
+
+        private int runnableCount;
+
+        private int blockedCount;
+    }
+}
@@ -0,0 +1,31 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+
+package org.eclipse.jifa.tda.vo;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * A node of the merged call site tree of two thread dumps, the weight is the one of the target
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class VFrameDelta extends VFrame {
+
+    private int baseWeight;
+
+    // target weight - base weight
+    private int delta;
+}
@@ -0,0 +1,45 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.vo;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * A monitor locked by the same thread in consecutive samples
+ */
+@Data
+public class VHeldMonitor {
+
+    private long address;
+
+    private boolean classInstance;
+
+    @SerializedName("class")
+    private String clazz;
+
+    private String owner;
+
+    private long ownerNid;
+
+    // the index of the first and the last sample of the longest run
+    private int firstSample;
+
+    private int lastSample;
+
+    private int sampleCount;
+
+    // the max count of threads waiting to lock the monitor in a sample of the run
+    private int maxWaiters;
+}
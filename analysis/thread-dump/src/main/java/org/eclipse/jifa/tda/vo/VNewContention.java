@@ -0,0 +1,37 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+
+package org.eclipse.jifa.tda.vo;
+
+import lombok.Data;
+
+/**
+ * A monitor contended in the target thread dump but not in the base one
+ */
+@Data
+public class VNewContention {
+
+    private VMonitor monitor;
+
+    // null if unknown
+    private String owner;
+
+    private long ownerNid;
+
+    private int waiterCount;
+
+    private int blockedCount;
+
+    private int depth;
+}
@@ -0,0 +1,41 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda.vo;
+
+import lombok.Data;
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+
+import java.util.List;
+
+/**
+ * A java thread whose stack trace is the same in consecutive samples
+ */
+@Data
+public class VStuckThread {
+
+    private String name;
+
+    private long nid;
+
+    private JavaThreadState state;
+
+    // the index of the first and the last sample of the longest run
+    private int firstSample;
+
+    private int lastSample;
+
+    private int sampleCount;
+
+    private List<VFrame> frames;
+}
@@ -16,15 +16,34 @@ package org.eclipse.jifa.tda;
 import org.eclipse.jifa.analysis.listener.DefaultProgressListener;
 import org.eclipse.jifa.common.domain.request.PagingRequest;
 import org.eclipse.jifa.common.domain.vo.PageView;
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+import org.eclipse.jifa.tda.enums.MonitorState;
 import org.eclipse.jifa.tda.enums.ThreadType;
+import org.eclipse.jifa.tda.model.LineIndex;
+import org.eclipse.jifa.tda.vo.ComparisonOverview;
 import org.eclipse.jifa.tda.vo.Content;
 import org.eclipse.jifa.tda.vo.Overview;
+import org.eclipse.jifa.tda.vo.SeriesOverview;
+import org.eclipse.jifa.tda.vo.VContention;
 import org.eclipse.jifa.tda.vo.VFrame;
+import org.eclipse.jifa.tda.vo.VFrameDelta;
+import org.eclipse.jifa.tda.vo.VHeldMonitor;
 import org.eclipse.jifa.tda.vo.VMonitor;
+import org.eclipse.jifa.tda.vo.VNewContention;
+import org.eclipse.jifa.tda.vo.VStuckThread;
 import org.eclipse.jifa.tda.vo.VThread;
+import org.eclipse.jifa.tda.vo.VWait;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.FileReader;
+import java.io.LineNumberReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class TestAnalyzer extends TestBase {
 
     @Test
@@ -49,5 +68,315 @@ public class TestAnalyzer extends TestBase {
         Content line2 = tda.content(2, 1);
         Assertions.assertEquals("Full thread dump OpenJDK 64-Bit Server VM (18-internal+0-adhoc.denghuiddh.my-jdk mixed " +
                             "mode, sharing):", line2.getContent().get(0));
+        Assertions.assertFalse(line2.isEnd());
+    }
+
+    @Test
+    public void testLineIndex() throws Exception {
+        Path path = createTempFile("a\r\n\r\nb\rc\n\nd\r\re");
+        List<String> expected = new ArrayList<>();
+        try (LineNumberReader lnr = new LineNumberReader(new FileReader(path.toFile()))) {
+            String line;
+            while ((line = lnr.readLine()) != null) {
+                expected.add(line);
+            }
+        }
+
+        LineIndex index = LineIndex.build(path);
+        Assertions.assertEquals(expected.size(), index.getLineCount());
+        for (int i = 1; i <= expected.size(); i++) {
+            Assertions.assertEquals(expected.subList(i - 1, Math.min(expected.size(), i + 2)), index.read(path, i, 3));
+        }
+        Assertions.assertTrue(index.read(path, expected.size() + 1, 1).isEmpty());
+
+        ThreadDumpAnalyzer tda =
+            new ThreadDumpAnalyzer(pathOfResource("jstack_8.log"), new DefaultProgressListener());
+        int lineCount = tda.content(1, Integer.MAX_VALUE).getContent().size();
+        Content last = tda.content(lineCount - 20, 21);
+        Assertions.assertEquals(21, last.getContent().size());
+        Assertions.assertTrue(last.isEnd());
+        Assertions.assertEquals(Files.readAllLines(pathOfResource("jstack_8.log")).subList(lineCount - 21, lineCount),
+                                last.getContent());
+    }
+
+    private Path createSample(int second) throws Exception {
+        return createTempFile("2024-01-01 10:00:0" + second + "\n" +
+                              "Full thread dump OpenJDK 64-Bit Server VM (17 mixed mode, sharing):\n\n" +
+                              "\"holder\" #12 prio=5 os_prio=31 tid=0x00007fc1c2800000 nid=0x100 runnable [0x0000000000000000]\n" +
+                              "   java.lang.Thread.State: RUNNABLE\n" +
+                              "\tat Holder.spin(Holder.java:10)\n" +
+                              "\t- locked <0x0000000000001000> (a java.lang.Object)\n" +
+                              "\tat Holder.run(Holder.java:5)\n\n" +
+                              "\"waiter\" #13 prio=5 os_prio=31 tid=0x00007fc1c2801000 nid=0x101 waiting for monitor entry [0x0000000000000000]\n" +
+                              "   java.lang.Thread.State: BLOCKED (on object monitor)\n" +
+                              "\tat Waiter.run(Waiter.java:7)\n" +
+                              "\t- waiting to lock <0x0000000000001000> (a java.lang.Object)\n\n" +
+                              "\"mover\" #14 prio=5 os_prio=31 tid=0x00007fc1c2802000 nid=0x102 runnable [0x0000000000000000]\n" +
+                              "   java.lang.Thread.State: RUNNABLE\n" +
+                              "\tat Mover.move(Mover.java:" + second + ")\n" +
+                              "\tat Mover.run(Mover.java:3)\n\n" +
+                              "\"VM Thread\" os_prio=31 tid=0x00007fc1c2803000 nid=0x103 runnable\n\n" +
+                              "JNI global references: 5\n");
+    }
+
+    @Test
+    public void testSeries() throws Exception {
+        Path base = createSample(2);
+        List<Path> others = List.of(createSample(3), createSample(1));
+        ThreadDumpAnalyzer tda = ThreadDumpAnalyzer.build(base, new DefaultProgressListener());
+
+        SeriesOverview overview = tda.seriesOverview(others);
+        Assertions.assertEquals(3, overview.getSamples().size());
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(3, overview.getSamples().get(i).getJavaThreadCount());
+            Assertions.assertEquals(1, overview.getSamples().get(i).getBlockedCount());
+            if (i > 0) {
+                Assertions.assertTrue(overview.getSamples().get(i - 1).getTimestamp() <
+                                      overview.getSamples().get(i).getTimestamp());
+            }
+        }
+        Assertions.assertEquals(2, overview.getStuckThreadCount());
+        Assertions.assertEquals(1, overview.getHeldMonitorCount());
+
+        PageView<VStuckThread> stuckThreads = tda.stuckThreadsOfSeries(others, new PagingRequest(1, 8));
+        Assertions.assertEquals(2, stuckThreads.getTotalSize());
+        VStuckThread holder = stuckThreads.getData().get(0);
+        Assertions.assertEquals("holder", holder.getName());
+        Assertions.assertEquals(0x100, holder.getNid());
+        Assertions.assertEquals(3, holder.getSampleCount());
+        Assertions.assertEquals(0, holder.getFirstSample());
+        Assertions.assertEquals(2, holder.getLastSample());
+        Assertions.assertEquals("spin", holder.getFrames().get(0).getMethod());
+        Assertions.assertEquals("waiter", stuckThreads.getData().get(1).getName());
+
+        PageView<VHeldMonitor> heldMonitors = tda.heldMonitorsOfSeries(others, new PagingRequest(1, 8));
+        Assertions.assertEquals(1, heldMonitors.getTotalSize());
+        VHeldMonitor monitor = heldMonitors.getData().get(0);
+        Assertions.assertEquals(0x1000, monitor.getAddress());
+        Assertions.assertEquals("holder", monitor.getOwner());
+        Assertions.assertEquals(3, monitor.getSampleCount());
+        Assertions.assertEquals(1, monitor.getMaxWaiters());
+
+        // weighted by the number of samples
+        PageView<VFrame> roots = tda.callSiteTreeOfSeries(others, 0, new PagingRequest(1, 8));
+        Assertions.assertEquals(5, roots.getTotalSize());
+        Assertions.assertEquals(3, roots.getData().get(0).getWeight());
+        Assertions.assertEquals(3, roots.getData().get(1).getWeight());
+        Assertions.assertEquals(1, roots.getData().get(4).getWeight());
+        Assertions.assertEquals(9, roots.getData().stream().mapToInt(VFrame::getWeight).sum());
+    }
+
+    private static String javaThread(String name, int nid, String state, String... lines) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('"').append(name).append("\" #").append(nid).append(" prio=5 os_prio=31 tid=0x00007fc1c28").append(nid)
+          .append("000 nid=0x").append(nid).append(" waiting on condition [0x0000000000000000]\n")
+          .append("   java.lang.Thread.State: ").append(state).append('\n');
+        for (String line : lines) {
+            sb.append('\t').append(line).append('\n');
+        }
+        return sb.append('\n').toString();
+    }
+
+    @Test
+    public void testWaitForGraph() throws Exception {
+        ThreadDumpAnalyzer tda =
+            new ThreadDumpAnalyzer(pathOfResource("jstack_11_with_deadlocks.log"), new DefaultProgressListener());
+        List<List<VWait>> cycles = tda.waitForCycles();
+        Assertions.assertEquals(1, cycles.size());
+        Assertions.assertEquals(2, cycles.get(0).size());
+        Assertions.assertEquals(cycles.get(0).get(0).getOwner(), cycles.get(0).get(1).getThread());
+        Assertions.assertEquals(cycles.get(0).get(1).getOwner(), cycles.get(0).get(0).getThread());
+
+        // A and B dead lock on ownable synchronizers which jstack does not report, C and D wait behind them
+        String sync = "(a java.util.concurrent.locks.ReentrantLock$NonfairSync)";
+        Path path = createTempFile(
+            "2024-01-01 10:00:00\n" +
+            "Full thread dump OpenJDK 64-Bit Server VM (17 mixed mode, sharing):\n\n" +
+            javaThread("A", 101, "WAITING (parking)",
+                       "at jdk.internal.misc.Unsafe.park(java.base@17/Native Method)",
+                       "- parking to wait for  <0x0000000000000010> " + sync,
+                       "at A.run(A.java:1)", "",
+                       "Locked ownable synchronizers:", "- <0x0000000000000020> " + sync) +
+            javaThread("B", 102, "WAITING (parking)",
+                       "at jdk.internal.misc.Unsafe.park(java.base@17/Native Method)",
+                       "- parking to wait for  <0x0000000000000020> " + sync,
+                       "at B.run(B.java:1)", "",
+                       "Locked ownable synchronizers:", "- <0x0000000000000010> " + sync) +
+            javaThread("C", 103, "BLOCKED (on object monitor)",
+                       "at C.run(C.java:1)",
+                       "- waiting to lock <0x0000000000000030> (a java.lang.Object)") +
+            javaThread("D", 104, "WAITING (parking)",
+                       "at jdk.internal.misc.Unsafe.park(java.base@17/Native Method)",
+                       "- parking to wait for  <0x0000000000000010> " + sync,
+                       "at D.run(D.java:1)",
+                       "- locked <0x0000000000000030> (a java.lang.Object)") +
+            "\"VM Thread\" os_prio=31 tid=0x00007fc1c2803000 nid=0x103 runnable\n\n" +
+            "JNI global references: 5\n");
+        tda = new ThreadDumpAnalyzer(path, new DefaultProgressListener());
+
+        cycles = tda.waitForCycles();
+        Assertions.assertEquals(1, cycles.size());
+        Assertions.assertEquals("A", cycles.get(0).get(0).getThread().getName());
+        Assertions.assertEquals("B", cycles.get(0).get(0).getOwner().getName());
+        Assertions.assertEquals(0x10, cycles.get(0).get(0).getMonitor().getAddress());
+        Assertions.assertEquals("B", cycles.get(0).get(1).getThread().getName());
+        Assertions.assertEquals("A", cycles.get(0).get(1).getOwner().getName());
+
+        List<VContention> contentions = tda.contentions(new PagingRequest(1, 8)).getData();
+        Assertions.assertEquals(3, contentions.size());
+        long[][] expected = {{0x10, 2, 3, 2}, {0x20, 1, 3, 3}, {0x30, 1, 1, 1}};
+        for (int i = 0; i < expected.length; i++) {
+            VContention contention = contentions.get(i);
+            Assertions.assertEquals(expected[i][0], contention.getMonitor().getAddress());
+            Assertions.assertEquals(expected[i][1], contention.getWaiterCount());
+            Assertions.assertEquals(expected[i][2], contention.getBlockedCount());
+            Assertions.assertEquals(expected[i][3], contention.getDepth());
+        }
+        Assertions.assertEquals("D", contentions.get(2).getOwner().getName());
+
+        // C waits to lock the monitor locked by D
+        int monitor = tda.monitors(new PagingRequest(1, 8)).getData().stream()
+                         .filter(m -> m.getAddress() == 0x30).findFirst().orElseThrow().getId();
+        Assertions.assertEquals(Map.of(MonitorState.WAITING_TO_LOCK, 1, MonitorState.LOCKED, 1),
+                                tda.threadCountsByMonitor(monitor));
+        Assertions.assertEquals("C", tda.threadsByMonitor(monitor, MonitorState.WAITING_TO_LOCK,
+                                                          new PagingRequest(1, 8)).getData().get(0).getName());
+        Assertions.assertEquals("D", tda.threadsByMonitor(monitor, MonitorState.LOCKED,
+                                                          new PagingRequest(1, 8)).getData().get(0).getName());
+        Assertions.assertEquals(0, tda.threadsByMonitor(monitor, MonitorState.WAITING_ON,
+                                                        new PagingRequest(1, 8)).getTotalSize());
+        ThreadDumpAnalyzer analyzer = tda;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> analyzer.threadCountsByMonitor(1000));
+    }
+
+    @Test
+    public void testSearchThreads() throws Exception {
+        ThreadDumpAnalyzer tda =
+            new ThreadDumpAnalyzer(pathOfResource("jstack_8.log"), new DefaultProgressListener());
+        PagingRequest paging = new PagingRequest(1, 100);
+
+        // the same as a linear scan of the names
+        List<VThread> threads = tda.threads("Thread", null, paging).getData();
+        Assertions.assertEquals(7, threads.size());
+        Assertions.assertEquals("Service Thread", threads.get(0).getName());
+        Assertions.assertEquals("VM Periodic Task Thread", threads.get(6).getName());
+        Assertions.assertEquals(10, tda.threads("thread", null, paging).getTotalSize());
+        Assertions.assertEquals(4, tda.threads("Thread", ThreadType.JIT, paging).getTotalSize());
+        Assertions.assertEquals(0, tda.threads("thread#", ThreadType.JAVA, paging).getTotalSize());
+
+        Assertions.assertEquals(2, tda.searchThreads(null, "Object.wait", null, JavaThreadState.IN_OBJECT_WAIT,
+                                                     null, null, paging).getTotalSize());
+        threads = tda.searchThreads(null, "Object.wait", "ReferenceQueue$Lock", JavaThreadState.IN_OBJECT_WAIT,
+                                    null, null, paging).getData();
+        Assertions.assertEquals(1, threads.size());
+        Assertions.assertEquals("Finalizer", threads.get(0).getName());
+        Assertions.assertEquals(0, tda.searchThreads(null, "Object.wait", null, JavaThreadState.RUNNABLE,
+                                                     null, null, paging).getTotalSize());
+
+        Assertions.assertEquals(10, tda.searchThreads(null, null, null, null, null, "GC task thread", paging)
+                                       .getTotalSize());
+        threads = tda.searchThreads("#1", null, null, null, null, "GC task thread", paging).getData();
+        Assertions.assertEquals(1, threads.size());
+        Assertions.assertEquals("GC task thread#1 (ParallelGC)", threads.get(0).getName());
+    }
+
+    @Test
+    public void testFramesOfThread() throws Exception {
+        ThreadDumpAnalyzer tda =
+            new ThreadDumpAnalyzer(pathOfResource("jstack_8.log"), new DefaultProgressListener());
+        PagingRequest paging = new PagingRequest(1, 100);
+
+        int id = tda.threads("Finalizer", null, paging).getData().get(0).getId();
+        List<VFrame> frames = tda.framesOfThread(id);
+        Assertions.assertEquals(4, frames.size());
+        Assertions.assertEquals("java.lang.Object", frames.get(0).getClazz());
+        Assertions.assertEquals("wait", frames.get(0).getMethod());
+        Assertions.assertEquals(1, frames.get(0).getMonitors().size());
+        VMonitor monitor = frames.get(0).getMonitors().get(0);
+        Assertions.assertEquals(0x76ab08ee0L, monitor.getAddress());
+        Assertions.assertEquals("java.lang.ref.ReferenceQueue$Lock", monitor.getClazz());
+        Assertions.assertEquals(MonitorState.WAITING_ON, monitor.getState());
+        Assertions.assertEquals(144, frames.get(1).getLine());
+        Assertions.assertEquals(MonitorState.LOCKED, frames.get(1).getMonitors().get(0).getState());
+        Assertions.assertNull(frames.get(3).getMonitors());
+
+        int vmThread = tda.threads("VM Thread", null, paging).getData().get(0).getId();
+        Assertions.assertTrue(tda.framesOfThread(vmThread).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tda.framesOfThread(0));
+    }
+
+    @Test
+    public void testComparison() throws Exception {
+        Path base = createSample(1);
+        // the waiter gets the monitor, two pool threads wait behind the mover and the VM thread is replaced
+        Path target = createTempFile(
+            "2024-01-01 10:00:02\n" +
+            "Full thread dump OpenJDK 64-Bit Server VM (17 mixed mode, sharing):\n\n" +
+            javaThread("holder", 100, "RUNNABLE",
+                       "at Holder.spin(Holder.java:10)",
+                       "- locked <0x0000000000001000> (a java.lang.Object)",
+                       "at Holder.run(Holder.java:5)") +
+            javaThread("waiter", 101, "RUNNABLE", "at Waiter.run(Waiter.java:8)") +
+            javaThread("mover", 102, "RUNNABLE",
+                       "at Mover.move(Mover.java:2)",
+                       "- locked <0x0000000000002000> (a java.util.ArrayList)",
+                       "at Mover.run(Mover.java:3)") +
+            javaThread("pool-1-thread-1", 104, "BLOCKED (on object monitor)",
+                       "at Pool.take(Pool.java:20)",
+                       "- waiting to lock <0x0000000000002000> (a java.util.ArrayList)") +
+            javaThread("pool-1-thread-2", 105, "BLOCKED (on object monitor)",
+                       "at Pool.take(Pool.java:20)",
+                       "- waiting to lock <0x0000000000002000> (a java.util.ArrayList)") +
+            "\"VM Periodic Task Thread\" os_prio=31 tid=0x00007fc1c2806000 nid=0x106 waiting on condition\n\n" +
+            "JNI global references: 5\n");
+        ThreadDumpAnalyzer tda = ThreadDumpAnalyzer.build(base, new DefaultProgressListener());
+
+        ComparisonOverview overview = tda.comparisonOverview(target);
+        Assertions.assertEquals(4, overview.getBaseThreadCount());
+        Assertions.assertEquals(6, overview.getTargetThreadCount());
+        Assertions.assertEquals(3, overview.getAddedThreadCount());
+        Assertions.assertEquals(1, overview.getRemovedThreadCount());
+        Assertions.assertEquals(1, overview.getGroups().size());
+        ComparisonOverview.GroupDelta group = overview.getGroups().get(0);
+        Assertions.assertEquals("pool-1-thread", group.getName());
+        Assertions.assertEquals(0, group.getBaseCount());
+        Assertions.assertEquals(2, group.getAddedCount());
+        Assertions.assertEquals(1, overview.getStateTransitions().size());
+        ComparisonOverview.StateTransition transition = overview.getStateTransitions().get(0);
+        Assertions.assertEquals(JavaThreadState.BLOCKED_ON_MONITOR_ENTER, transition.getFrom());
+        Assertions.assertEquals(JavaThreadState.RUNNABLE, transition.getTo());
+        Assertions.assertEquals(1, transition.getCount());
+        Assertions.assertEquals(1, overview.getNewlyContendedMonitorCount());
+
+        PageView<VNewContention> contentions = tda.newContentionsOfComparison(target, new PagingRequest(1, 8));
+        Assertions.assertEquals(1, contentions.getTotalSize());
+        VNewContention contention = contentions.getData().get(0);
+        Assertions.assertEquals(0x2000, contention.getMonitor().getAddress());
+        Assertions.assertEquals("java.util.ArrayList", contention.getMonitor().getClazz());
+        Assertions.assertEquals("mover", contention.getOwner());
+        Assertions.assertEquals(2, contention.getWaiterCount());
+
+        // call sites only in one dump are kept with zero weight in the other
+        PageView<VFrameDelta> roots = tda.callSiteTreeOfComparison(target, 0, new PagingRequest(1, 8));
+        Assertions.assertEquals(6, roots.getTotalSize());
+        VFrameDelta pool = roots.getData().get(0);
+        Assertions.assertEquals("take", pool.getMethod());
+        Assertions.assertEquals(0, pool.getBaseWeight());
+        Assertions.assertEquals(2, pool.getWeight());
+        Assertions.assertEquals(2, pool.getDelta());
+        Assertions.assertTrue(pool.isEnd());
+        VFrameDelta holder = roots.getData().get(5);
+        Assertions.assertEquals("spin", holder.getMethod());
+        Assertions.assertEquals(0, holder.getDelta());
+        Assertions.assertEquals(0, roots.getData().stream().filter(f -> f.getMethod().equals("move"))
+                                        .mapToInt(VFrameDelta::getDelta).sum());
+
+        PageView<VFrameDelta> children = tda.callSiteTreeOfComparison(target, holder.getId(), new PagingRequest(1, 8));
+        Assertions.assertEquals(1, children.getTotalSize());
+        Assertions.assertEquals("run", children.getData().get(0).getMethod());
+        Assertions.assertEquals(1, children.getData().get(0).getBaseWeight());
+        Assertions.assertEquals(1, children.getData().get(0).getWeight());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tda.comparisonOverview(base));
     }
 }
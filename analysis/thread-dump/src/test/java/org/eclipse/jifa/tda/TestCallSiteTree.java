@@ -0,0 +1,91 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda;
+
+import org.eclipse.jifa.tda.model.CallSiteTree;
+import org.eclipse.jifa.tda.model.Frame;
+import org.eclipse.jifa.tda.model.Trace;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestCallSiteTree extends TestBase {
+
+    private static Frame frame(String method) {
+        Frame frame = new Frame();
+        frame.setClazz("C");
+        frame.setMethod(method);
+        return frame;
+    }
+
+    private static Trace trace(String... methods) {
+        Trace trace = new Trace();
+        Frame[] frames = new Frame[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            frames[i] = frame(methods[i]);
+        }
+        trace.setFrames(frames);
+        return trace;
+    }
+
+    @Test
+    public void test() {
+        List<Trace> traces = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            traces.add(trace("run", i % 3 == 0 ? "a" : "b", "c" + i % 7));
+        }
+        traces.add(trace("main"));
+
+        CallSiteTree expected = new CallSiteTree();
+        traces.forEach(expected::add);
+        expected.freeze();
+
+        // partial trees built separately, as by the parser threads
+        CallSiteTree merged = new CallSiteTree();
+        for (int from = 0; from < traces.size(); from += 64) {
+            CallSiteTree partial = new CallSiteTree();
+            traces.subList(from, Math.min(traces.size(), from + 64)).forEach(partial::add);
+            merged.merge(partial);
+        }
+        merged.freeze();
+        Assertions.assertEquals(expected, merged);
+
+        Assertions.assertEquals(traces.size(), merged.weight(0));
+        Assertions.assertEquals(2, merged.childCount(0));
+
+        int run = merged.firstChild(0);
+        Assertions.assertEquals("run", merged.frame(run).getMethod());
+        Assertions.assertEquals(300, merged.weight(run));
+        Assertions.assertEquals(0, merged.parent(run));
+
+        // children are sorted by weight
+        int b = merged.firstChild(run);
+        Assertions.assertEquals("b", merged.frame(b).getMethod());
+        Assertions.assertEquals(200, merged.weight(b));
+        Assertions.assertEquals("a", merged.frame(b + 1).getMethod());
+        Assertions.assertEquals(100, merged.weight(b + 1));
+
+        Assertions.assertEquals(7, merged.childCount(b));
+        int weight = Integer.MAX_VALUE;
+        for (int i = 0; i < merged.childCount(b); i++) {
+            int child = merged.firstChild(b) + i;
+            Assertions.assertEquals(b, merged.parent(child));
+            Assertions.assertEquals(0, merged.childCount(child));
+            Assertions.assertTrue(merged.weight(child) <= weight);
+            weight = merged.weight(child);
+        }
+    }
+}
@@ -13,16 +13,23 @@
 
 package org.eclipse.jifa.tda;
 
+import org.eclipse.jifa.tda.model.LineIndex;
+import org.eclipse.jifa.tda.model.RawMonitor;
 import org.eclipse.jifa.tda.model.Snapshot;
+import org.eclipse.jifa.tda.parser.JStackParser;
 import org.eclipse.jifa.tda.parser.ParserException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 
+import static org.eclipse.jifa.analysis.listener.ProgressListener.NoOpProgressListener;
+
 public class TestJStackParser extends TestBase {
 
     @Test
@@ -56,5 +63,40 @@ public class TestJStackParser extends TestBase {
     public void testJDK11Log() throws ParserException, URISyntaxException {
         Snapshot snapshot = parseFile("jstack_11_with_deadlocks.log");
         Assertions.assertTrue(snapshot.getErrors().isEmpty());
+        Assertions.assertEquals(1, snapshot.getDeadLockCount());
+        // the thread table replaces the threads and the dead lock section once posted
+        Assertions.assertNull(snapshot.getJavaThreads());
+        Assertions.assertNull(snapshot.getNonJavaThreads());
+        Assertions.assertNull(snapshot.getThreadMap());
+        Assertions.assertNull(snapshot.getDeadLockThreads());
+    }
+
+    @Test
+    public void testChunkedParse() throws ParserException, URISyntaxException {
+        for (String name : new String[]{"jstack_8.log", "jstack_11_with_deadlocks.log"}) {
+            Snapshot expected = parseFile(name);
+            for (long chunkSize : new long[]{1, 4096}) {
+                Snapshot snapshot = new JStackParser(chunkSize).parse(pathOfResource(name), NoOpProgressListener);
+                Assertions.assertEquals(expected, snapshot);
+                Assertions.assertEquals(expected.getRawMonitors().objects().stream().map(RawMonitor::getId).toList(),
+                                        snapshot.getRawMonitors().objects().stream().map(RawMonitor::getId).toList());
+            }
+        }
+    }
+
+    @Test
+    public void testLineIndex() throws ParserException, URISyntaxException, IOException {
+        for (String name : new String[]{"jstack_8.log", "jstack_11_with_deadlocks.log"}) {
+            String content = Files.readString(pathOfResource(name));
+            for (String separator : new String[]{"\n", "\r\n", "\r"}) {
+                Path path = createTempFile(content.replaceAll("\r?\n", separator));
+                LineIndex expected = LineIndex.build(path);
+                // the offsets recorded while parsing are the same as those of a scan of the file
+                for (long chunkSize : new long[]{1, 4096, Long.MAX_VALUE}) {
+                    Snapshot snapshot = new JStackParser(chunkSize).parse(path, NoOpProgressListener);
+                    Assertions.assertEquals(expected, snapshot.getLineIndex());
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,145 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+
+package org.eclipse.jifa.tda;
+
+import org.eclipse.jifa.analysis.listener.DefaultProgressListener;
+import org.eclipse.jifa.common.domain.request.PagingRequest;
+import org.eclipse.jifa.tda.enums.JavaThreadState;
+import org.eclipse.jifa.tda.enums.SourceType;
+import org.eclipse.jifa.tda.model.CallSiteTree;
+import org.eclipse.jifa.tda.model.Snapshot;
+import org.eclipse.jifa.tda.model.ThreadTable;
+import org.eclipse.jifa.tda.parser.JcmdJsonParser;
+import org.eclipse.jifa.tda.parser.ParserFactory;
+import org.eclipse.jifa.tda.vo.Overview;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.eclipse.jifa.analysis.listener.ProgressListener.NoOpProgressListener;
+
+public class TestJcmdJsonParser extends TestBase {
+
+    @Test
+    public void test() throws Exception {
+        Path path = pathOfResource("jcmd_21.json");
+        Snapshot snapshot = new JcmdJsonParser().parse(path, NoOpProgressListener);
+
+        Assertions.assertEquals(Instant.parse("2024-03-01T10:15:30.123456Z").toEpochMilli(), snapshot.getTimestamp());
+        Assertions.assertEquals("21.0.2+13-58", snapshot.getVmInfo());
+        // the thread objects are dropped once posted
+        Assertions.assertNull(snapshot.getJavaThreads());
+
+        // ids are assigned in the order of threads
+        ThreadTable table = snapshot.getThreadTable();
+        Assertions.assertEquals(7, table.size());
+        for (int id = 1; id < table.size(); id++) {
+            Assertions.assertTrue(table.isJava(id));
+        }
+
+        int main = 1;
+        Assertions.assertEquals("main", table.name(main));
+        Assertions.assertEquals(1, table.jid(main));
+        Assertions.assertEquals(JavaThreadState.UNKNOWN, table.javaState(main));
+        Assertions.assertEquals(12, table.lineStart(main));
+        Assertions.assertEquals(20, table.lineEnd(main));
+
+        int top = table.frame(table.trace(main), 0);
+        Assertions.assertEquals("java.lang.Thread", table.frameClass(top));
+        Assertions.assertEquals("sleep0", table.frameMethod(top));
+        Assertions.assertEquals("java.base", table.frameModule(top));
+        Assertions.assertEquals(SourceType.NATIVE_METHOD, table.frameSourceType(top));
+        int app = table.frame(table.trace(main), 2);
+        Assertions.assertEquals("Main", table.frameClass(app));
+        Assertions.assertNull(table.frameModule(app));
+        Assertions.assertEquals("Main.java", table.frameSource(app));
+        Assertions.assertEquals(12, table.frameLine(app));
+
+        // virtual threads sharing a stack share the trace and its frames
+        int v1 = 3;
+        int v2 = 4;
+        int v4 = 6;
+        Assertions.assertEquals(31, table.jid(v1));
+        Assertions.assertEquals(JavaThreadState.PARKED, table.javaState(v1));
+        Assertions.assertEquals(JavaThreadState.RUNNABLE, table.javaState(5));
+        Assertions.assertEquals(table.trace(v1), table.trace(v2));
+        Assertions.assertEquals(table.trace(v1), table.trace(v4));
+        Assertions.assertEquals(table.frame(table.trace(v1), 3), table.frame(table.trace(5), 1));
+
+        CallSiteTree tree = snapshot.getCallSiteTree();
+        Assertions.assertEquals(6, tree.weight(0));
+        Assertions.assertEquals(4, tree.childCount(0));
+        int park = tree.firstChild(0);
+        Assertions.assertEquals("park", tree.frame(park).getMethod());
+        Assertions.assertEquals(3, tree.weight(park));
+    }
+
+    @Test
+    public void testAnalyzer() throws Exception {
+        Path path = pathOfResource("jcmd_21.json");
+        Assertions.assertNotSame(ParserFactory.buildParser(pathOfResource("jstack_8.log")),
+                                 ParserFactory.buildParser(path));
+
+        ThreadDumpAnalyzer tda = ThreadDumpAnalyzer.build(path, new DefaultProgressListener());
+        Overview overview = tda.overview();
+        Assertions.assertEquals(3, overview.getJavaThreadStat().getJavaCounts()[JavaThreadState.PARKED.ordinal()]);
+
+        List<String> lines = tda.rawContentOfThread(tda.threads("main", null, new PagingRequest(1, 10))
+                                                       .getData().get(0).getId());
+        Assertions.assertEquals("{", lines.get(0).trim());
+        Assertions.assertEquals("\"name\": \"main\",", lines.get(2).trim());
+        Assertions.assertEquals("},", lines.get(lines.size() - 1).trim());
+    }
+
+    @Test
+    public void testManyVirtualThreads(@TempDir Path dir) throws Exception {
+        int count = 1000;
+        StringBuilder sb = new StringBuilder("{\n\"threadDump\": {\n\"threadContainers\": [\n{\n\"threads\": [\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("{\n\"tid\": \"").append(100 + i).append("\",\n")
+              .append("\"name\": \"worker-").append(i).append("\",\n")
+              .append("\"stack\": [\n")
+              .append("\"java.base/jdk.internal.misc.Unsafe.park(Native Method)\",\n")
+              .append("\"Main.lambda$main$0(Main.java:20)\"\n")
+              .append("]\n}").append(i < count - 1 ? ",\n" : "\n");
+        }
+        sb.append("]\n}\n]\n}\n}\n");
+        Path path = dir.resolve("jcmd.json");
+        Files.writeString(path, sb.toString());
+
+        Snapshot snapshot = new JcmdJsonParser().parse(path, NoOpProgressListener);
+        Assertions.assertNull(snapshot.getJavaThreadColumns());
+
+        ThreadTable table = snapshot.getThreadTable();
+        Assertions.assertEquals(count + 1, table.size());
+        for (int id = 1; id <= count; id++) {
+            Assertions.assertEquals("worker-" + (id - 1), table.name(id));
+            Assertions.assertEquals(99 + id, table.jid(id));
+            Assertions.assertEquals("worker", table.group(id));
+            Assertions.assertEquals(table.trace(1), table.trace(id));
+            Assertions.assertEquals(6 + (id - 1) * 8, table.lineStart(id));
+            Assertions.assertEquals(table.lineStart(id) + 7, table.lineEnd(id));
+        }
+
+        CallSiteTree tree = snapshot.getCallSiteTree();
+        Assertions.assertEquals(count, tree.weight(0));
+        Assertions.assertEquals(1, tree.childCount(0));
+        Assertions.assertEquals(count, tree.weight(tree.firstChild(0)));
+    }
+}
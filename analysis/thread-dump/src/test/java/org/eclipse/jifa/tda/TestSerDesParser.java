@@ -20,6 +20,14 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import static org.eclipse.jifa.analysis.listener.ProgressListener.NoOpProgressListener;
 
@@ -32,4 +40,76 @@ public class TestSerDesParser extends TestBase {
         Snapshot second = serDesAnalyzer.parse(pathOfResource("jstack_8.log"), NoOpProgressListener);
         Assertions.assertEquals(first, second);
     }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        SerDesParser serDesAnalyzer = new SerDesParser(analyzer);
+        for (String name : new String[]{"jstack_8.log", "jstack_11_with_deadlocks.log"}) {
+            Path path = pathOfResource(name);
+            Snapshot expected = analyzer.parse(path, NoOpProgressListener);
+            Files.deleteIfExists(serializedDataPath(path));
+
+            Snapshot parsed = serDesAnalyzer.parse(path, NoOpProgressListener);
+            Assertions.assertTrue(Files.exists(serializedDataPath(path)));
+            Snapshot deserialized = serDesAnalyzer.parse(path, NoOpProgressListener);
+            Assertions.assertEquals(expected, parsed);
+            Assertions.assertEquals(expected, deserialized);
+            Assertions.assertEquals(expected.getRawMonitors().objects(), deserialized.getRawMonitors().objects());
+            Assertions.assertEquals(expected.getWaitForGraph(), deserialized.getWaitForGraph());
+            Assertions.assertEquals(expected.getThreadTable(), deserialized.getThreadTable());
+            Assertions.assertEquals(expected.getThreadIndex(), deserialized.getThreadIndex());
+            Assertions.assertEquals(expected.getDeadLockCount(), deserialized.getDeadLockCount());
+
+            // only the thread table is retained
+            Assertions.assertNull(deserialized.getJavaThreads());
+            Assertions.assertNull(deserialized.getThreadMap());
+            Assertions.assertNull(deserialized.getMonitorThreads());
+        }
+    }
+
+    @Test
+    public void testIncompatibleData() throws Exception {
+        Path path = pathOfResource("jstack_8.log");
+        Snapshot expected = analyzer.parse(path, NoOpProgressListener);
+        SerDesParser serDesAnalyzer = new SerDesParser(analyzer);
+
+        // e.g. written by an older version
+        Files.write(serializedDataPath(path), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        Assertions.assertEquals(expected, serDesAnalyzer.parse(path, NoOpProgressListener));
+        Assertions.assertEquals(expected, serDesAnalyzer.parse(path, NoOpProgressListener));
+
+        // truncated
+        byte[] data = Files.readAllBytes(serializedDataPath(path));
+        Files.write(serializedDataPath(path), Arrays.copyOf(data, data.length / 2));
+        Assertions.assertEquals(expected, serDesAnalyzer.parse(path, NoOpProgressListener));
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        Path path = pathOfResource("jstack_8.log");
+        Snapshot expected = analyzer.parse(path, NoOpProgressListener);
+        Path serializedDataPath = serializedDataPath(path);
+        Files.deleteIfExists(serializedDataPath);
+
+        // every parser writes the serialized data as none of them finds it
+        List<CompletableFuture<Snapshot>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            SerDesParser serDesAnalyzer = new SerDesParser(analyzer);
+            futures.add(CompletableFuture.supplyAsync(() -> serDesAnalyzer.parse(path, NoOpProgressListener)));
+        }
+        for (CompletableFuture<Snapshot> future : futures) {
+            Assertions.assertEquals(expected, future.get());
+        }
+        Assertions.assertEquals(expected, new SerDesParser(analyzer).parse(path, NoOpProgressListener));
+
+        String prefix = serializedDataPath.getFileName().toString();
+        try (Stream<Path> files = Files.list(serializedDataPath.getParent())) {
+            Assertions.assertTrue(files.noneMatch(f -> f.getFileName().toString().startsWith(prefix) &&
+                                                       f.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    private static Path serializedDataPath(Path path) {
+        return Paths.get(path.toFile().getAbsoluteFile() + ".kryo");
+    }
 }
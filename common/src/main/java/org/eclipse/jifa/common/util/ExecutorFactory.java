@@ -17,6 +17,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -94,6 +95,42 @@ public class ExecutorFactory {
         return executor;
     }
 
+    /**
+     * Create a new executor service with a specified name prefix and pool size. Unlike the executors returned by
+     * {@link #newExecutor(String)}, it should be shut down once it is no longer used.
+     *
+     * @param namePrefix the thread name prefix
+     * @param nThreads   pool size
+     * @return a new executor service
+     */
+    public static ExecutorService newExecutorService(String namePrefix, int nThreads) {
+        ensureInitialized();
+
+        if (namePrefix == null || nThreads <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        AtomicInteger counter = new AtomicInteger(1);
+
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(nThreads, nThreads,
+                                       0L, TimeUnit.MILLISECONDS,
+                                       new LinkedBlockingQueue<>(),
+                                       r -> {
+                                           Thread thread = new Thread(r, namePrefix + " - " + counter.getAndIncrement());
+                                           thread.setDaemon(true);
+                                           return thread;
+                                       }) {
+                    @Override
+                    protected void terminated() {
+                        EXECUTORS.remove(this);
+                    }
+                };
+
+        EXECUTORS.put(executor, namePrefix);
+        return executor;
+    }
+
     /**
      * Create a new scheduled executor service with a specified name prefix and pool size
      *
@@ -16,6 +16,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -57,6 +58,18 @@ public class TestExecutorFactory {
         }, 100, TimeUnit.MILLISECONDS);
         assertTrue(countDownLatch3.await(1, TimeUnit.SECONDS));
 
+        ExecutorService executorService = ExecutorFactory.newExecutorService("test4", 2);
+        assertNotNull(executorService);
+        CountDownLatch countDownLatch4 = new CountDownLatch(1);
+        executorService.execute(() -> {
+            if (Thread.currentThread().getName().startsWith("test4")) {
+                countDownLatch4.countDown();
+            }
+        });
+        assertTrue(countDownLatch4.await(1, TimeUnit.SECONDS));
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(1, TimeUnit.SECONDS));
+
         ExecutorFactory.printStatistic();
     }
 
@@ -69,6 +82,8 @@ public class TestExecutorFactory {
 
         assertThrows(IllegalArgumentException.class, () -> ExecutorFactory.newExecutor(null, 1, 1));
         assertThrows(IllegalArgumentException.class, () -> ExecutorFactory.newExecutor("prefix", 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> ExecutorFactory.newExecutorService(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> ExecutorFactory.newExecutorService("prefix", 0));
         assertThrows(IllegalArgumentException.class, () -> ExecutorFactory.newScheduledExecutorService(null, 1));
         assertThrows(IllegalArgumentException.class, () -> ExecutorFactory.newScheduledExecutorService("prefix", 0));
     }
@@ -13,13 +13,20 @@
 package org.eclipse.jifa.server;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jifa.analysis.AdmissionController;
+import org.eclipse.jifa.analysis.cache.CacheManager;
+import org.eclipse.jifa.analysis.cache.EvictionPolicy;
+import org.eclipse.jifa.analysis.scheduler.ApiScheduler;
 import org.eclipse.jifa.common.util.Validate;
 import org.eclipse.jifa.server.enums.FileTransferMethod;
 import org.eclipse.jifa.server.enums.Role;
@@ -30,6 +37,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.eclipse.jifa.server.Constant.DEFAULT_CLUSTER_NAMESPACE;
 import static org.eclipse.jifa.server.Constant.DEFAULT_PORT;
@@ -126,6 +134,19 @@ public class Configuration {
     @Min(2)
     private int elasticWorkerIdleThreshold = 5;
 
+    /**
+     * The count of idle elastic workers started in advance, which are claimed by analyses instead of starting new
+     * ones. 0 by default.
+     */
+    @PositiveOrZero
+    private int elasticWorkerStandbyCount;
+
+    /**
+     * The memory size in bytes requested by standby elastic workers, analyses requesting more start their own ones.
+     */
+    @Positive
+    private long elasticWorkerStandbyMemorySize = 4L * 1024 * 1024 * 1024;
+
     /**
      * Whether to allow login, false by default
      */
@@ -166,6 +187,42 @@ public class Configuration {
      */
     private Set<FileTransferMethod> disabledFileTransferMethods = Collections.emptySet();
 
+    /**
+     * The size in bytes of a part of a file downloaded by ranged requests of URL and S3 transfers.
+     */
+    @Positive
+    private long fileTransferPartSize = 64L * 1024 * 1024;
+
+    /**
+     * The max count of parts downloaded concurrently by a URL or S3 transfer.
+     */
+    @Positive
+    private int fileTransferConcurrency = 4;
+
+    /**
+     * Whether to decompress the files compressed by gzip, zstd or zip when they are uploaded or transferred.
+     */
+    private boolean fileDecompressionEnabled = true;
+
+    /**
+     * The max size in bytes of a decompressed file, the decompression is aborted if it is exceeded. Default is 1 TiB.
+     */
+    @Positive
+    private long fileDecompressionMaxSize = 1024L * 1024 * 1024 * 1024;
+
+    /**
+     * The max ratio of the size of a decompressed file to the size of the compressed file, the decompression is
+     * aborted if it is exceeded. Files smaller than 64 MiB are not checked.
+     */
+    @Positive
+    private int fileDecompressionMaxRatio = 200;
+
+    /**
+     * The size in bytes of a chunk of a chunked upload.
+     */
+    @Positive
+    private long fileUploadChunkSize = 64L * 1024 * 1024;
+
     /**
      * Install the web security filters. Default is true.
      *
@@ -173,6 +230,66 @@ public class Configuration {
      */
     private boolean securityFiltersEnabled = true;
 
+    /**
+     * The memory budget in bytes of the analysis result caches. Default is 1/4 of the max heap size.
+     */
+    @PositiveOrZero
+    private long analysisCacheBudget;
+
+    /**
+     * The ratio of the budget that the cache of a single analyzer may use.
+     */
+    @Positive
+    @DecimalMax("1.0")
+    private double analysisCacheQuotaRatio = 0.5;
+
+    /**
+     * The duration in minutes after which a cached analysis result that is not accessed expires.
+     */
+    @Positive
+    private int analysisCacheExpireAfterAccess = 10;
+
+    /**
+     * The eviction policy of the analysis result caches, lru or cost-aware.
+     */
+    @NotBlank
+    private String analysisCacheEvictionPolicy = "lru";
+
+    /**
+     * The memory budget in bytes of the analyzers of all files, builds that do not fit wait for others to be evicted.
+     * Default is 1/2 of the max heap size.
+     */
+    @PositiveOrZero
+    private long analyzerMemoryBudget;
+
+    /**
+     * The max count of analyzers built concurrently on a worker. Default is the count of processors.
+     */
+    @PositiveOrZero
+    private int analyzerBuildConcurrency;
+
+    /**
+     * The max count of analysis api calls executed concurrently on a worker. Default is twice the count of processors.
+     */
+    @PositiveOrZero
+    private int analysisQueryConcurrency;
+
+    /**
+     * Whether to execute analysis api calls on virtual threads if the runtime supports them.
+     */
+    private boolean analysisQueryOnVirtualThreads;
+
+    /**
+     * Whether to build the analyzers of new files in background once they are uploaded or transferred.
+     */
+    private boolean preAnalysisEnabled = true;
+
+    /**
+     * The number of files that are pre-analyzed concurrently on a worker.
+     */
+    @Positive
+    private int preAnalysisConcurrency = 1;
+
     @PostConstruct
     private void init() {
         if (role == Role.MASTER) {
@@ -193,6 +310,18 @@ public class Configuration {
             }
         }
 
+        if (role != Role.MASTER) {
+            CacheManager.getInstance().configure(analysisCacheBudget > 0 ? analysisCacheBudget : Runtime.getRuntime().maxMemory() / 4,
+                                                 analysisCacheQuotaRatio,
+                                                 TimeUnit.MINUTES.toMillis(analysisCacheExpireAfterAccess),
+                                                 EvictionPolicy.of(analysisCacheEvictionPolicy));
+            AdmissionController.getInstance().configure(analyzerMemoryBudget > 0 ? analyzerMemoryBudget : Runtime.getRuntime().maxMemory() / 2);
+            int processors = Runtime.getRuntime().availableProcessors();
+            ApiScheduler.getInstance().configure(analyzerBuildConcurrency > 0 ? analyzerBuildConcurrency : processors,
+                                                 analysisQueryConcurrency > 0 ? analysisQueryConcurrency : processors * 2,
+                                                 analysisQueryOnVirtualThreads);
+        }
+
         if (!allowLogin) {
             if (!allowAnonymousAccess) {
                 allowAnonymousAccess = true;
@@ -79,6 +79,16 @@ public interface Constant extends org.eclipse.jifa.common.Constant {
 
     String WORKER_CONTAINER_NAME = "main-container";
 
+    String ELASTIC_WORKER_LABEL_KEY = "jifa/role";
+
+    String ELASTIC_WORKER_LABEL_VALUE = "elastic-worker";
+
+    // the max heap size of an elastic worker to the memory size of its pod
+    double ELASTIC_WORKER_HEAP_RATIO = 0.75;
+
+    // in seconds
+    int STATIC_WORKER_HEARTBEAT_INTERVAL = 15;
+
     String ANALYSIS_API_REQUEST_NAMESPACE_KEY = "namespace";
 
     String ANALYSIS_API_REQUEST_API_KEY = "api";
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -16,12 +16,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jifa.server.ConfigurationAccessor;
 import org.eclipse.jifa.server.Constant;
 import org.eclipse.jifa.server.condition.ElasticWorker;
+import org.eclipse.jifa.server.domain.entity.cluster.ElasticWorkerEntity;
+import org.eclipse.jifa.server.enums.ElasticWorkerPurpose;
 import org.eclipse.jifa.server.repository.ElasticWorkerRepo;
+import org.eclipse.jifa.server.repository.FileRepo;
 import org.eclipse.jifa.server.service.ElasticWorkerScheduler;
+import org.eclipse.jifa.server.service.SizingService;
+import org.eclipse.jifa.server.support.LiveSetMonitor;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.Date;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -40,9 +46,18 @@ public class CurrentElasticWorker extends ConfigurationAccessor {
 
     private final ElasticWorkerScheduler elasticWorkerScheduler;
 
-    public CurrentElasticWorker(ElasticWorkerRepo elasticWorkerRepo, ElasticWorkerScheduler elasticWorkerScheduler) {
+    private final FileRepo fileRepo;
+
+    private final SizingService sizingService;
+
+    private final LiveSetMonitor liveSetMonitor = new LiveSetMonitor();
+
+    public CurrentElasticWorker(ElasticWorkerRepo elasticWorkerRepo, ElasticWorkerScheduler elasticWorkerScheduler,
+                                FileRepo fileRepo, SizingService sizingService) {
         this.elasticWorkerRepo = elasticWorkerRepo;
         this.elasticWorkerScheduler = elasticWorkerScheduler;
+        this.fileRepo = fileRepo;
+        this.sizingService = sizingService;
         identity = Long.parseLong(System.getenv(Constant.ELASTIC_WORKER_IDENTITY_ENV_KEY));
     }
 
@@ -63,10 +78,17 @@ public class CurrentElasticWorker extends ConfigurationAccessor {
         if (activeCount.get() > 0) {
             return;
         }
+        Optional<ElasticWorkerEntity> entity = elasticWorkerRepo.findById(identity);
+        // a standby worker is terminated by the master, the idle time counts from when it is claimed
+        if (entity.map(w -> w.getPurpose() == ElasticWorkerPurpose.STANDBY).orElse(false)) {
+            lastAccessTime = System.currentTimeMillis();
+            return;
+        }
         long delta = System.currentTimeMillis() - lastAccessTime;
         long thresholdInMillis = TimeUnit.MINUTES.toMillis(config.getElasticWorkerIdleThreshold());
         if (delta > thresholdInMillis) {
             try {
+                entity.ifPresent(this::recordFootprint);
                 elasticWorkerRepo.deleteById(identity);
                 elasticWorkerScheduler.terminate(identity);
             } catch (Throwable t) {
@@ -76,4 +98,20 @@ public class CurrentElasticWorker extends ConfigurationAccessor {
             log.info("This elastic worker is currently idle and will be deleted if still not accessed by {}", new Date(lastAccessTime + thresholdInMillis));
         }
     }
+
+    private void recordFootprint(ElasticWorkerEntity entity) {
+        if (entity.getPurpose() != ElasticWorkerPurpose.FILE_ANALYSIS || lastAccessTime == 0) {
+            return;
+        }
+        try {
+            long liveSetSize = liveSetMonitor.maxLiveSetSize();
+            if (liveSetSize == 0) {
+                // nothing is known about the heap needed
+                return;
+            }
+            fileRepo.findById(entity.getReferenceId()).ifPresent(file -> sizingService.recordFootprint(file, liveSetSize));
+        } catch (Throwable t) {
+            log.error("Failed to record the footprint of this elastic worker", t);
+        }
+    }
 }
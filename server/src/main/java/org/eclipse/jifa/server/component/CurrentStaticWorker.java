@@ -14,6 +14,10 @@ package org.eclipse.jifa.server.component;
 
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jifa.analysis.AdmissionController;
+import org.eclipse.jifa.analysis.scheduler.ApiScheduler;
+import org.eclipse.jifa.analysis.scheduler.Lane;
+import org.eclipse.jifa.analysis.scheduler.SchedulerStatistics;
 import org.eclipse.jifa.server.ConfigurationAccessor;
 import org.eclipse.jifa.server.condition.StaticWorker;
 import org.eclipse.jifa.server.domain.entity.cluster.StaticWorkerEntity;
@@ -29,6 +33,8 @@ import java.time.Instant;
 import java.net.*;
 import java.util.Enumeration;
 
+import static org.eclipse.jifa.server.Constant.STATIC_WORKER_HEARTBEAT_INTERVAL;
+
 @StaticWorker
 @Component
 @Slf4j
@@ -59,25 +65,47 @@ public class CurrentStaticWorker extends ConfigurationAccessor {
             return worker;
         });
         current.setPort(config.getPort());
-        updateStorageSpace();
+        heartbeat();
 
         taskScheduler.scheduleAtFixedRate(() -> {
             try {
-                updateStorageSpace();
+                heartbeat();
             } catch (Throwable t) {
-                log.warn("Failed to update static worker space value", t);
+                log.warn("Failed to report static worker heartbeat", t);
             }
-        }, Instant.now().plusSeconds(60), Duration.ofSeconds(60));
+        }, Instant.now().plusSeconds(STATIC_WORKER_HEARTBEAT_INTERVAL), Duration.ofSeconds(STATIC_WORKER_HEARTBEAT_INTERVAL));
     }
 
     public StaticWorkerEntity getEntity() {
         return current;
     }
 
-    private void updateStorageSpace() throws IOException {
+    /**
+     * Report the storage space and the load of analyzers which are used to place new files
+     */
+    private void heartbeat() throws IOException {
         current.setAvailableSpace(storageService.getAvailableSpace());
         current.setTotalSpace(storageService.getTotalSpace());
+
+        AdmissionController admission = AdmissionController.getInstance();
+        current.setMemoryBudget(admission.budget());
+        current.setMemoryUsed(admission.usedSize());
+        current.setCachedAnalyzerCount(admission.admittedCount());
+
+        int pendingBuildCount = admission.waitingCount();
+        int queuedQueryCount = 0;
+        for (SchedulerStatistics.Item item : ApiScheduler.getInstance().statistics().getLanes()) {
+            if (item.getLane() == Lane.BUILD) {
+                pendingBuildCount += item.getQueuedCount();
+            } else if (item.getLane() == Lane.QUERY) {
+                queuedQueryCount += item.getQueuedCount();
+            }
+        }
+        current.setPendingBuildCount(pendingBuildCount);
+        current.setQueuedQueryCount(queuedQueryCount);
+
         current = staticWorkerRepo.save(current);
+        staticWorkerRepo.updateLastHeartbeatTime(current.getId());
     }
 
     private String getLocalHostExactAddress() throws IOException {
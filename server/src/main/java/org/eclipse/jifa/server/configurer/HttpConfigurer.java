@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -16,6 +16,7 @@ import org.eclipse.jifa.common.util.GsonHolder;
 import org.eclipse.jifa.server.ConfigurationAccessor;
 import org.eclipse.jifa.server.Constant;
 import org.eclipse.jifa.server.condition.ConditionalOnRole;
+import org.eclipse.jifa.server.domain.converter.RelayedResponseHttpMessageConverter;
 import org.eclipse.jifa.server.enums.Role;
 import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
@@ -80,7 +81,9 @@ public class HttpConfigurer extends ConfigurationAccessor implements WebMvcConfi
 
     @Override
     public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
-        // add GsonHttpMessageConverter to the first position
+        // add GsonHttpMessageConverter to the first position, it writes to the response stream through a JsonWriter
         converters.add(1, new GsonHttpMessageConverter(GsonHolder.GSON));
+        // ahead of GsonHttpMessageConverter which accepts any type
+        converters.add(1, new RelayedResponseHttpMessageConverter());
     }
 }
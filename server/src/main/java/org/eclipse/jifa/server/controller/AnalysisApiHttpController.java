@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -18,6 +18,7 @@ import org.eclipse.jifa.common.util.ExecutorFactory;
 import org.eclipse.jifa.server.ConfigurationAccessor;
 import org.eclipse.jifa.server.Constant;
 import org.eclipse.jifa.server.domain.dto.AnalysisApiRequest;
+import org.eclipse.jifa.server.domain.dto.RelayedResponse;
 import org.eclipse.jifa.server.service.AnalysisApiService;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -27,9 +28,12 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -45,9 +49,12 @@ public class AnalysisApiHttpController extends ConfigurationAccessor {
 
     private final ScheduledExecutorService scheduledExecutorServiceForSseHeartbeat;
 
+    private final Executor executorForSseResponse;
+
     public AnalysisApiHttpController(AnalysisApiService apiService) {
         this.apiService = apiService;
         this.scheduledExecutorServiceForSseHeartbeat = ExecutorFactory.newScheduledExecutorService("SSE Heartbeat Sender", 1);
+        this.executorForSseResponse = ExecutorFactory.newExecutor("SSE Response Sender");
     }
 
     @RequestMapping(path = Constant.HTTP_ANALYSIS_API_MAPPING,
@@ -64,13 +71,30 @@ public class AnalysisApiHttpController extends ConfigurationAccessor {
     }
 
     private Object postProcess(CompletableFuture<?> future, boolean enableSse) {
+        // the analysis is cancelled if the client goes away before the response is sent
         if (!enableSse) {
-            return future;
+            DeferredResult<Object> result = new DeferredResult<>();
+            result.onTimeout(() -> future.cancel(false));
+            result.onError(t -> future.cancel(false));
+            future.whenComplete((r, t) -> {
+                if (t == null) {
+                    if (!result.setResult(r)) {
+                        // expired, the response will never be written
+                        RelayedResponse.releaseIfRelayed(r);
+                    }
+                } else {
+                    result.setErrorResult(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+                }
+            });
+            return result;
         }
 
-        ExtendedSseEmitter emitter = new ExtendedSseEmitter();
+        ExtendedSseEmitter emitter = new ExtendedSseEmitter(future);
+        emitter.onTimeout(() -> future.cancel(false));
+        emitter.onError(t -> future.cancel(false));
         emitter.enableHeartbeat();
-        future.whenComplete((r, t) -> {
+        // the response is written by the completing thread, which may be the event loop delivering a relayed response
+        future.whenCompleteAsync((r, t) -> {
             try {
                 emitter.disableHeartbeat();
                 if (t == null) {
@@ -79,20 +103,24 @@ public class AnalysisApiHttpController extends ConfigurationAccessor {
                     emitter.send(SseEmitter.event().name(Constant.SSE_EVENT_ERROR_RESPONSE).data(r, MediaType.APPLICATION_JSON));
                 }
             } catch (Throwable throwable) {
+                RelayedResponse.releaseIfRelayed(r);
                 log.error("Error occurred when sending response to SSE emitter", throwable);
             } finally {
                 emitter.complete();
             }
-        });
+        }, executorForSseResponse);
         return emitter;
     }
 
     private class ExtendedSseEmitter extends SseEmitter implements Runnable {
 
-        public ExtendedSseEmitter() {
+        public ExtendedSseEmitter(CompletableFuture<?> analysis) {
             super(Long.MAX_VALUE);
+            this.analysis = analysis;
         }
 
+        private final CompletableFuture<?> analysis;
+
         private ScheduledFuture<?> future;
 
         private boolean shouldHeartbeat;
@@ -104,6 +132,8 @@ public class AnalysisApiHttpController extends ConfigurationAccessor {
                     send(SseEmitter.event().name(Constant.SSE_EVENT_PING));
                 } catch (Throwable t) {
                     future.cancel(true);
+                    // the client is gone
+                    analysis.cancel(false);
                 }
             }
         }
@@ -17,10 +17,12 @@ import org.eclipse.jifa.server.Constant;
 import org.eclipse.jifa.server.condition.ConditionalOnRole;
 import org.eclipse.jifa.server.domain.dto.AnalysisApiRequest;
 import org.eclipse.jifa.server.domain.dto.AnalysisApiStompResponseMessage;
+import org.eclipse.jifa.server.domain.dto.RelayedResponse;
 import org.eclipse.jifa.server.domain.exception.ElasticWorkerNotReadyException;
 import org.eclipse.jifa.server.enums.Role;
 import org.eclipse.jifa.server.service.AnalysisApiService;
 import org.eclipse.jifa.server.util.ControllerUtil;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
@@ -35,8 +37,12 @@ import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.eclipse.jifa.server.Constant.STOMP_ANALYSIS_API_MAPPING;
 
@@ -51,6 +57,9 @@ public class AnalysisApiStompController {
 
     private final AnalysisApiService apiService;
 
+    // session id -> the running api calls of the session
+    private final Map<String, Set<CompletableFuture<?>>> runningCalls = new ConcurrentHashMap<>();
+
     public AnalysisApiStompController(AnalysisApiService apiService) {
         this.apiService = apiService;
     }
@@ -69,20 +78,55 @@ public class AnalysisApiStompController {
         try {
             MimeType mimeType = ControllerUtil.checkMimeTypeForStompMessage(contentType);
             CompletableFuture<AnalysisApiStompResponseMessage> responseMessage = new CompletableFuture<>();
-            apiService.invoke(new AnalysisApiRequest(ControllerUtil.parseArgs(mimeType, message.getPayload())))
-                      .whenComplete((r, t) -> {
-                          if (t == null) {
-                              responseMessage.complete(new AnalysisApiStompResponseMessage(requestId, r, null));
-                          } else {
-                              responseMessage.complete(new AnalysisApiStompResponseMessage(requestId, null, t));
-                          }
-                      });
+            CompletableFuture<?> call = apiService.invoke(new AnalysisApiRequest(ControllerUtil.parseArgs(mimeType, message.getPayload())));
+            track(accessor.getSessionId(), call);
+            // a stomp message is sent as a whole
+            call.<Object>thenCompose(r -> r instanceof RelayedResponse relayed
+                                          ? relayed.aggregate().thenApply(bytes -> bytes)
+                                          : CompletableFuture.completedFuture(r))
+                .whenComplete((r, t) -> {
+                    if (t == null) {
+                        responseMessage.complete(new AnalysisApiStompResponseMessage(requestId, r, null));
+                    } else {
+                        responseMessage.complete(new AnalysisApiStompResponseMessage(requestId, null, t));
+                    }
+                });
             return responseMessage;
         } finally {
             SecurityContextHolder.getContext().setAuthentication(null);
         }
     }
 
+    private void track(String sessionId, CompletableFuture<?> call) {
+        if (sessionId == null) {
+            return;
+        }
+        runningCalls.compute(sessionId, (k, calls) -> {
+            if (calls == null) {
+                calls = ConcurrentHashMap.newKeySet();
+            }
+            calls.add(call);
+            return calls;
+        });
+        call.whenComplete((r, t) -> runningCalls.computeIfPresent(sessionId, (k, calls) -> {
+            calls.remove(call);
+            return calls.isEmpty() ? null : calls;
+        }));
+    }
+
+    /**
+     * Cancels the running api calls of a disconnected session
+     *
+     * @param event the disconnect event
+     */
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        Set<CompletableFuture<?>> calls = runningCalls.remove(event.getSessionId());
+        if (calls != null) {
+            calls.forEach(call -> call.cancel(false));
+        }
+    }
+
     @MessageExceptionHandler
     @SendToUser(destinations = STOMP_ANALYSIS_API_MAPPING, broadcast = false)
     public AnalysisApiStompResponseMessage
@@ -0,0 +1,35 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.controller;
+
+import org.eclipse.jifa.analysis.scheduler.ApiScheduler;
+import org.eclipse.jifa.analysis.scheduler.SchedulerStatistics;
+import org.eclipse.jifa.server.condition.Worker;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Analysis scheduler controller, used to observe the lanes of analysis work
+ */
+@Worker
+@RestController
+public class AnalysisSchedulerController {
+
+    /**
+     * @return the queue depths and latencies of the lanes of this worker
+     */
+    @GetMapping("/analysis-scheduler/statistics")
+    public SchedulerStatistics statistics() {
+        return ApiScheduler.getInstance().statistics();
+    }
+}
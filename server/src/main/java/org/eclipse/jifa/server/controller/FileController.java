@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -12,8 +12,11 @@
  ********************************************************************************/
 package org.eclipse.jifa.server.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.eclipse.jifa.common.domain.vo.PageView;
+import org.eclipse.jifa.server.domain.dto.ChunkedUpload;
+import org.eclipse.jifa.server.domain.dto.ChunkedUploadRequest;
 import org.eclipse.jifa.server.domain.dto.FileTransferProgress;
 import org.eclipse.jifa.server.domain.dto.FileTransferRequest;
 import org.eclipse.jifa.server.domain.dto.FileView;
@@ -28,6 +31,7 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -122,6 +126,57 @@ public class FileController {
         return fileService.handleUploadRequest(type, file);
     }
 
+    /**
+     * Start a chunked upload, the chunks of which can be uploaded in parallel and retried individually.
+     *
+     * @param request the chunked upload request
+     * @return the chunked upload
+     * @throws Throwable the exception
+     */
+    @PostMapping("/files/upload/chunked")
+    public ChunkedUpload chunkedUpload(@Valid @RequestBody ChunkedUploadRequest request) throws Throwable {
+        return fileService.handleChunkedUploadRequest(request);
+    }
+
+    /**
+     * Query a chunked upload by id, which tells the chunks to upload when resuming.
+     *
+     * @param transferringFileId the transferring file id
+     * @return the chunked upload
+     * @throws Throwable the exception
+     */
+    @GetMapping("/files/upload/chunked/{transferring-file-id}")
+    public ChunkedUpload chunkedUpload(@PathVariable("transferring-file-id") long transferringFileId) throws Throwable {
+        return fileService.getChunkedUpload(transferringFileId);
+    }
+
+    /**
+     * Upload a chunk of a chunked upload, the body is the content of the chunk.
+     *
+     * @param transferringFileId the transferring file id
+     * @param index              the index of the chunk, starts from 0
+     * @param request            the request
+     * @throws Throwable the exception
+     */
+    @PutMapping("/files/upload/chunked/{transferring-file-id}/chunks/{index}")
+    public void uploadChunk(@PathVariable("transferring-file-id") long transferringFileId,
+                            @PathVariable int index,
+                            HttpServletRequest request) throws Throwable {
+        fileService.handleChunkUploadRequest(transferringFileId, index, request.getInputStream(), request.getContentLengthLong());
+    }
+
+    /**
+     * Complete a chunked upload after all chunks are uploaded.
+     *
+     * @param transferringFileId the transferring file id
+     * @return the file id
+     * @throws Throwable the exception
+     */
+    @PostMapping("/files/upload/chunked/{transferring-file-id}/complete")
+    public long completeChunkedUpload(@PathVariable("transferring-file-id") long transferringFileId) throws Throwable {
+        return fileService.handleChunkedUploadCompleteRequest(transferringFileId);
+    }
+
     /**
      * Download a file by id
      *
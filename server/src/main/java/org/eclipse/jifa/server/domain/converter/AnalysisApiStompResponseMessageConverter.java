@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -12,6 +12,7 @@
  ********************************************************************************/
 package org.eclipse.jifa.server.domain.converter;
 
+import com.google.gson.stream.JsonWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jifa.common.util.GsonHolder;
 import org.eclipse.jifa.server.Constant;
@@ -26,6 +27,9 @@ import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.MimeType;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+
 import static org.eclipse.jifa.server.Constant.STOMP_ANALYSIS_API_REQUEST_ID_KEY;
 import static org.eclipse.jifa.server.Constant.STOMP_ANALYSIS_API_RESPONSE_SUCCESS_KEY;
 
@@ -79,11 +83,14 @@ public class AnalysisApiStompResponseMessageConverter implements MessageConverte
         if (o instanceof byte[] bs) {
            return bs;
         }
-        try {
-            return GsonHolder.GSON.toJson(o).getBytes(Constant.CHARSET);
+        // serialized to bytes directly rather than through an intermediate string
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = GsonHolder.GSON.newJsonWriter(new OutputStreamWriter(out, Constant.CHARSET))) {
+            GsonHolder.GSON.toJson(o, o.getClass(), writer);
         } catch (Throwable t) {
             log.error("Error occurred while converting response to data", t);
             return Constant.EMPTY_BYTE_ARRAY;
         }
+        return out.toByteArray();
     }
 }
@@ -0,0 +1,77 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.domain.converter;
+
+import org.eclipse.jifa.server.domain.dto.RelayedResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import reactor.core.Exceptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes the chunks of a relayed response to the output stream as they arrive, so that the master never holds the
+ * whole response of a worker.
+ */
+@SuppressWarnings("NullableProblems")
+public class RelayedResponseHttpMessageConverter extends AbstractHttpMessageConverter<RelayedResponse> {
+
+    public RelayedResponseHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON, MediaType.ALL);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return RelayedResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected RelayedResponse readInternal(Class<? extends RelayedResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Relayed response is write only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(RelayedResponse response, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream out = outputMessage.getBody();
+        // a chunk is requested after the previous one is written, the worker connection is paused meanwhile
+        try {
+            response.body()
+                    .doOnNext(buffer -> {
+                        // released once closed, even if the write fails
+                        try (InputStream in = buffer.asInputStream(true)) {
+                            in.transferTo(out);
+                        } catch (IOException e) {
+                            throw Exceptions.propagate(e);
+                        }
+                    })
+                    .then()
+                    .block();
+        } catch (RuntimeException e) {
+            // the failure cancels the body, which aborts the request to the worker
+            if (Exceptions.unwrap(e) instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.domain.dto;
+
+import java.util.List;
+
+/**
+ * @param id            the id of the transferring file
+ * @param size          the size of the file
+ * @param chunkSize     the size of a chunk, the last chunk may be smaller
+ * @param chunkCount    the count of chunks
+ * @param missingChunks the indexes of the chunks not received yet
+ */
+public record ChunkedUpload(long id,
+                            long size,
+                            long chunkSize,
+                            int chunkCount,
+                            List<Integer> missingChunks) {
+}
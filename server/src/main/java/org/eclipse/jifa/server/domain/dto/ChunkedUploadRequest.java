@@ -0,0 +1,44 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.domain.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+import lombok.Setter;
+import org.eclipse.jifa.server.enums.FileType;
+
+/**
+ * Chunked Upload Request
+ */
+@Getter
+@Setter
+public class ChunkedUploadRequest {
+
+    /**
+     * File type, required
+     */
+    @NotNull
+    private FileType type;
+
+    /**
+     * The original name of the file, optional
+     */
+    private String filename;
+
+    /**
+     * The size of the file in bytes, required
+     */
+    @Positive
+    private long size;
+}
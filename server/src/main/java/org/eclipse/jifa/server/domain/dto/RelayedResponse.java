@@ -0,0 +1,76 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.domain.dto;
+
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The body of a worker response relayed by the master chunk by chunk, it must be consumed or released exactly once.
+ *
+ * @param body the chunks of the body, each of which is released once written
+ */
+public record RelayedResponse(Flux<DataBuffer> body) {
+
+    /**
+     * For the protocols whose messages can not be streamed, e.g. stomp
+     *
+     * @return the whole body
+     */
+    public CompletableFuture<byte[]> aggregate() {
+        return DataBufferUtils.join(body)
+                              .map(buffer -> {
+                                  try {
+                                      byte[] bytes = new byte[buffer.readableByteCount()];
+                                      buffer.read(bytes);
+                                      return bytes;
+                                  } finally {
+                                      DataBufferUtils.release(buffer);
+                                  }
+                              })
+                              .defaultIfEmpty(new byte[0])
+                              .toFuture();
+    }
+
+    /**
+     * Release the body without consuming it, e.g. when the client has gone away, which also aborts the request to the
+     * worker.
+     */
+    public void release() {
+        body.subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                cancel();
+            }
+
+            @Override
+            protected void hookOnNext(DataBuffer buffer) {
+                DataBufferUtils.release(buffer);
+            }
+        });
+    }
+
+    /**
+     * @param result the result of an api call, released if it is a relayed response
+     */
+    public static void releaseIfRelayed(Object result) {
+        if (result instanceof RelayedResponse relayed) {
+            relayed.release();
+        }
+    }
+}
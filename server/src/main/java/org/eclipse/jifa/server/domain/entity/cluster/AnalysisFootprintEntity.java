@@ -0,0 +1,52 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.domain.entity.cluster;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+import org.eclipse.jifa.server.domain.entity.shared.BaseEntity;
+import org.eclipse.jifa.server.enums.FileType;
+
+/**
+ * The live set of an elastic worker which analyzed a file, from which the memory of later workers is sized.
+ * <p>
+ * The live set rather than the peak usage is recorded, since the peak usage grows with the heap given to the worker
+ * and sizing from it would inflate the heap of every next worker.
+ */
+@SuppressWarnings("JpaDataSourceORMInspection")
+@Table(name = "analysis_footprints",
+        indexes = {@Index(columnList = "category")})
+@Entity
+@Getter
+@Setter
+public class AnalysisFootprintEntity extends BaseEntity {
+
+    @Column(nullable = false, updatable = false)
+    @Enumerated(EnumType.STRING)
+    private FileType fileType;
+
+    @Column(nullable = false, updatable = false, length = 64)
+    private String category;
+
+    @Column(nullable = false, updatable = false)
+    private long magnitude;
+
+    @Column(nullable = false, updatable = false)
+    private long liveSetSize;
+}
@@ -33,11 +33,12 @@ public class ElasticWorkerEntity extends WorkerEntity {
 
     public static final int MAX_FAILURE_MESSAGE_LENGTH = 1024;
 
-    @Column(nullable = false, updatable = false)
+    // updated once a standby worker is claimed
+    @Column(nullable = false)
     @Enumerated(EnumType.STRING)
     private ElasticWorkerPurpose purpose;
 
-    @Column(nullable = false, updatable = false)
+    @Column(nullable = false)
     private long referenceId;
 
     @Column(nullable = false)
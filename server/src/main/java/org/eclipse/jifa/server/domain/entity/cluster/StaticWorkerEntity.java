@@ -17,6 +17,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -34,6 +35,34 @@ public class StaticWorkerEntity extends WorkerEntity {
     @Column(nullable = false)
     private long totalSpace;
 
+    // the memory budget of analyzers in bytes
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long memoryBudget;
+
+    // the total weight of the admitted analyzers in bytes
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long memoryUsed;
+
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int cachedAnalyzerCount;
+
+    // the analyzers waiting for memory or for a build thread
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int pendingBuildCount;
+
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int queuedQueryCount;
+
+    // set by every heartbeat with the time of the database, a worker without a recent heartbeat is not chosen for
+    // new files
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime lastHeartbeatTime;
+
     @Column(nullable = false)
     @UpdateTimestamp
     private LocalDateTime lastModifiedTime;
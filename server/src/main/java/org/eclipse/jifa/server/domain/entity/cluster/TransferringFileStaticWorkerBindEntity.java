@@ -0,0 +1,42 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.domain.entity.cluster;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.MapsId;
+import jakarta.persistence.OneToOne;
+import lombok.Getter;
+import lombok.Setter;
+import org.eclipse.jifa.server.domain.entity.shared.BaseEntity;
+import org.eclipse.jifa.server.domain.entity.shared.file.TransferringFileEntity;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Binds a chunked upload to the static worker storing it, so that the master forwards its chunks to the worker
+ */
+@Entity(name = "transferring_file_static_worker_binds")
+@Getter
+@Setter
+public class TransferringFileStaticWorkerBindEntity extends BaseEntity {
+
+    // deleted with the transferring file
+    @OneToOne
+    @MapsId
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private TransferringFileEntity transferringFile;
+
+    @ManyToOne(optional = false)
+    private StaticWorkerEntity staticWorker;
+}
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,6 +13,11 @@
 package org.eclipse.jifa.server.enums;
 
 public enum ElasticWorkerPurpose {
-    FILE_ANALYSIS
+    FILE_ANALYSIS,
+
+    /**
+     * Started in advance and idle, claimed by an analysis later
+     */
+    STANDBY
 
 }
@@ -32,6 +32,7 @@ public enum ServerErrorCode implements ErrorCode {
     ELASTIC_WORKER_STARTUP_FAILURE("Elastic worker startup failure"),
     NO_AVAILABLE_LOCATION("No available location"),
     FILE_TOO_LARGE("File size exceeds the maximum allowed limit"),
+    INSUFFICIENT_SPACE("Insufficient storage space"),
     ;
 
     private final String message;
@@ -16,8 +16,11 @@ import org.eclipse.jifa.server.condition.Cluster;
 import org.eclipse.jifa.server.domain.entity.cluster.ElasticWorkerEntity;
 import org.eclipse.jifa.server.enums.ElasticWorkerPurpose;
 import org.eclipse.jifa.server.enums.ElasticWorkerState;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -29,4 +32,26 @@ public interface ElasticWorkerRepo extends CrudRepository<ElasticWorkerEntity, L
     Optional<ElasticWorkerEntity> findByPurposeAndReferenceId(ElasticWorkerPurpose purpose, long referenceId);
 
     List<ElasticWorkerEntity> findAllByState(ElasticWorkerState state);
+
+    List<ElasticWorkerEntity> findAllByPurpose(ElasticWorkerPurpose purpose);
+
+    List<ElasticWorkerEntity> findAllByPurposeAndState(ElasticWorkerPurpose purpose, ElasticWorkerState state);
+
+    /**
+     * @return 1 if the standby worker is claimed, 0 if it has been claimed by others
+     */
+    @Transactional
+    @Modifying
+    @Query("update ElasticWorkerEntity worker set worker.purpose = ?2, worker.referenceId = ?3 " +
+           "where worker.id = ?1 and worker.purpose = org.eclipse.jifa.server.enums.ElasticWorkerPurpose.STANDBY")
+    int claimStandby(long id, ElasticWorkerPurpose purpose, long referenceId);
+
+    /**
+     * @return 1 if the standby worker is deleted, 0 if it has been claimed by others
+     */
+    @Transactional
+    @Modifying
+    @Query("delete ElasticWorkerEntity worker " +
+           "where worker.id = ?1 and worker.purpose = org.eclipse.jifa.server.enums.ElasticWorkerPurpose.STANDBY")
+    int deleteStandby(long id);
 }
@@ -14,17 +14,30 @@ package org.eclipse.jifa.server.repository;
 
 import org.eclipse.jifa.server.condition.Cluster;
 import org.eclipse.jifa.server.domain.entity.cluster.StaticWorkerEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Cluster
 @Repository
 public interface StaticWorkerRepo extends CrudRepository<StaticWorkerEntity, Long> {
 
-    Optional<StaticWorkerEntity> findFirstByOrderByAvailableSpaceDesc();
-
     Optional<StaticWorkerEntity> findByHostAddress(String hostAddress);
 
+    /**
+     * Set the heartbeat time with the clock of the database, which is shared by all nodes
+     */
+    @Transactional
+    @Modifying
+    @Query("update StaticWorkerEntity worker set worker.lastHeartbeatTime = local datetime where worker.id = ?1")
+    int updateLastHeartbeatTime(long id);
+
+    @Query("select local datetime")
+    LocalDateTime currentTime();
+
 }
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,8 +13,11 @@
 package org.eclipse.jifa.server.repository;
 
 import org.eclipse.jifa.server.domain.entity.shared.file.TransferringFileEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -25,4 +28,13 @@ public interface TransferringFileRepo extends CrudRepository<TransferringFileEnt
     List<TransferringFileEntity> findAllByLastModifiedTimeBefore(LocalDateTime localDateTime);
 
     Optional<TransferringFileEntity> findByUniqueName(String uniqueName);
+
+    /**
+     * Update the transferred size if it grows, the chunks of an upload are received concurrently
+     */
+    @Transactional
+    @Modifying
+    @Query("update TransferringFileEntity file set file.transferredSize = ?2, file.lastModifiedTime = ?3 " +
+           "where file.id = ?1 and file.transferredSize < ?2")
+    int updateTransferredSize(long id, long transferredSize, LocalDateTime lastModifiedTime);
 }
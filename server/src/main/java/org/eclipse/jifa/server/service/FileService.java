@@ -13,6 +13,8 @@
 package org.eclipse.jifa.server.service;
 
 import org.eclipse.jifa.common.domain.vo.PageView;
+import org.eclipse.jifa.server.domain.dto.ChunkedUpload;
+import org.eclipse.jifa.server.domain.dto.ChunkedUploadRequest;
 import org.eclipse.jifa.server.domain.dto.FileTransferProgress;
 import org.eclipse.jifa.server.domain.dto.FileTransferRequest;
 import org.eclipse.jifa.server.domain.dto.FileView;
@@ -23,6 +25,7 @@ import org.eclipse.jifa.server.enums.FileType;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Optional;
 
@@ -42,6 +45,14 @@ public interface FileService {
 
     long handleUploadRequest(FileType type, MultipartFile file) throws Throwable;
 
+    ChunkedUpload handleChunkedUploadRequest(ChunkedUploadRequest request) throws Throwable;
+
+    ChunkedUpload getChunkedUpload(long transferringFileId) throws Throwable;
+
+    void handleChunkUploadRequest(long transferringFileId, int index, InputStream in, long contentLength) throws Throwable;
+
+    long handleChunkedUploadCompleteRequest(long transferringFileId) throws Throwable;
+
     String handleLocalFileRequest(FileType type, Path path) throws IOException;
 
     NamedResource handleDownloadRequest(long fileId) throws Throwable;
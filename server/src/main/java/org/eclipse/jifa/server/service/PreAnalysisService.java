@@ -0,0 +1,31 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.service;
+
+import org.eclipse.jifa.server.enums.FileType;
+
+/**
+ * Builds the analyzers of new files in background so that they are ready when users open them.
+ */
+public interface PreAnalysisService {
+
+    /**
+     * Enqueue the analysis of a new file. Does nothing if pre-analysis is disabled or the file is not stored on this
+     * instance.
+     *
+     * @param type       file type
+     * @param uniqueName unique name of the file
+     * @param size       file size, smaller files are analyzed first
+     */
+    void submit(FileType type, String uniqueName, long size);
+}
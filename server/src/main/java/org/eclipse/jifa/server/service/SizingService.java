@@ -0,0 +1,35 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.service;
+
+import org.eclipse.jifa.server.domain.entity.shared.file.FileEntity;
+
+/**
+ * Sizes the memory of elastic workers from the features of files and the footprints of past analyses.
+ */
+public interface SizingService {
+
+    /**
+     * @param file the file to be analyzed
+     * @return the memory size in bytes requested by the elastic worker analyzing the file
+     */
+    long estimateWorkerMemorySize(FileEntity file);
+
+    /**
+     * Records the footprint of an analysis, called by the elastic worker once it is done.
+     *
+     * @param file        the analyzed file
+     * @param liveSetSize the max live set in bytes of the worker, i.e. its old generation usage after collections
+     */
+    void recordFootprint(FileEntity file, long liveSetSize);
+}
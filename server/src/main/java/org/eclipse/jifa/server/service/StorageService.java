@@ -15,9 +15,11 @@ package org.eclipse.jifa.server.service;
 import org.eclipse.jifa.server.domain.dto.FileTransferRequest;
 import org.eclipse.jifa.server.enums.FileType;
 import org.eclipse.jifa.server.support.FileTransferListener;
+import org.eclipse.jifa.server.support.PartCheckpoint;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.Set;
@@ -34,6 +36,33 @@ public interface StorageService {
 
     void handleLocalFile(FileType type, Path path, String destFilename) throws IOException;
 
+    /**
+     * Preallocate a file whose chunks are written in any order by {@link #handleChunk}
+     */
+    void provisionChunkedUpload(FileType type, String destFilename, long size, long chunkSize) throws IOException;
+
+    /**
+     * Write a chunk to its position, writing a chunk again overwrites it
+     *
+     * @return the total size of the received chunks
+     */
+    long handleChunk(FileType type, String name, int index, InputStream in) throws IOException;
+
+    /**
+     * @return the checkpoint whose completed parts are the received chunks
+     */
+    PartCheckpoint getChunkedUpload(FileType type, String name);
+
+    /**
+     * @return the size of the file, which is decompressed if enabled
+     */
+    long completeChunkedUpload(FileType type, String name) throws IOException;
+
+    /**
+     * @return the names of the chunked uploads in progress, including those interrupted by a restart
+     */
+    Map<FileType, Set<String>> getChunkedUploads();
+
     void scavenge(FileType type, String name);
 
     Path locationOf(FileType type, String name);
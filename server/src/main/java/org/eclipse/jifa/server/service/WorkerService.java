@@ -24,20 +24,32 @@ import org.eclipse.jifa.server.enums.FileType;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.concurrent.CompletableFuture;
 
 public interface WorkerService {
 
-    FileLocation decideLocationForNewFile(UserEntity user, FileType type);
+    /**
+     * @param size the size of the new file in bytes, 0 if unknown
+     */
+    FileLocation decideLocationForNewFile(UserEntity user, FileType type, long size);
 
     long forwardUploadRequestToStaticWorker(StaticWorkerEntity worker, FileType type, MultipartFile file) throws Throwable;
 
+    void forwardChunkToStaticWorker(StaticWorkerEntity worker, long transferringFileId, int index, InputStream in,
+                                    long contentLength) throws Throwable;
+
     Resource forwardDownloadRequestToStaticWorker(StaticWorkerEntity worker, long fileId) throws Throwable;
 
     ElasticWorkerState getElasticWorkerState(long workerId);
 
     ElasticWorkerEntity requestElasticWorkerForAnalysisApiRequest(FileEntity target);
 
+    /**
+     * Starts standby elastic workers until the configured count is reached, and terminates the surplus ones
+     */
+    void refillStandbyElasticWorkers();
+
     <Response> Response syncRequest(WorkerEntity worker, HttpRequestToWorker<Response> request);
 
     <Response> CompletableFuture<Response> asyncRequest(WorkerEntity worker, HttpRequestToWorker<Response> request);
@@ -21,8 +21,10 @@ import org.eclipse.jifa.server.ConfigurationAccessor;
 import org.eclipse.jifa.server.Constant;
 import org.eclipse.jifa.server.component.CurrentElasticWorker;
 import org.eclipse.jifa.server.domain.dto.AnalysisApiRequest;
+import org.eclipse.jifa.server.domain.dto.RelayedResponse;
 import org.eclipse.jifa.server.domain.entity.cluster.WorkerEntity;
 import org.eclipse.jifa.server.domain.entity.shared.file.FileEntity;
+import org.eclipse.jifa.server.domain.security.JifaAuthenticationToken;
 import org.eclipse.jifa.server.enums.FileType;
 import org.eclipse.jifa.server.service.AnalysisApiService;
 import org.eclipse.jifa.server.service.FileService;
@@ -31,6 +33,8 @@ import org.eclipse.jifa.server.service.WorkerService;
 import org.eclipse.jifa.server.support.AnalysisApiArgumentContext;
 import org.eclipse.jifa.server.support.AnalysisApiArgumentResolver;
 import org.eclipse.jifa.server.support.AnalysisApiArgumentResolverFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -108,7 +112,7 @@ public class AnalysisApiServiceImpl extends ConfigurationAccessor implements Ana
             if (dest == null) {
                 dest = workerService.requestElasticWorkerForAnalysisApiRequest(file);
             }
-            return workerService.asyncRequest(dest, createPostRequest(Constant.HTTP_ANALYSIS_API_MAPPING, request, byte[].class));
+            return workerService.asyncRequest(dest, createPostRequest(Constant.HTTP_ANALYSIS_API_MAPPING, request, RelayedResponse.class));
         }
 
         String namespace = request.namespace();
@@ -125,12 +129,14 @@ public class AnalysisApiServiceImpl extends ConfigurationAccessor implements Ana
         }
 
         try {
-            return apiService.execute(targetPath, namespace, api, args)
-                             .whenComplete((r, t) -> {
-                                 if (currentElasticWorker != null) {
-                                     currentElasticWorker.revokePreventingTermination();
-                                 }
-                             });
+            CompletableFuture<?> execution = apiService.execute(targetPath, namespace, api, args, currentUser());
+            // a side stage, the caller cancels the execution itself if the client is gone
+            execution.whenComplete((r, t) -> {
+                if (currentElasticWorker != null) {
+                    currentElasticWorker.revokePreventingTermination();
+                }
+            });
+            return execution;
         } catch (Throwable t) {
             if (currentElasticWorker != null) {
                 currentElasticWorker.revokePreventingTermination();
@@ -139,6 +145,14 @@ public class AnalysisApiServiceImpl extends ConfigurationAccessor implements Ana
         }
     }
 
+    /**
+     * @return the user whose api calls take turns with those of others, null if unknown
+     */
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication instanceof JifaAuthenticationToken token ? String.valueOf(token.getUserId()) : null;
+    }
+
     @Override
     public FileType deduceFileType(Path path) {
         if (!Files.exists(path)) {
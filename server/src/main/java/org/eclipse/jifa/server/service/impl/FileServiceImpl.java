@@ -21,6 +21,8 @@ import org.eclipse.jifa.server.Constant;
 import org.eclipse.jifa.server.component.CurrentStaticWorker;
 import org.eclipse.jifa.server.domain.converter.EntityConverter;
 import org.eclipse.jifa.server.domain.converter.FileViewConverter;
+import org.eclipse.jifa.server.domain.dto.ChunkedUpload;
+import org.eclipse.jifa.server.domain.dto.ChunkedUploadRequest;
 import org.eclipse.jifa.server.domain.dto.FileLocation;
 import org.eclipse.jifa.server.domain.dto.FileTransferProgress;
 import org.eclipse.jifa.server.domain.dto.FileTransferRequest;
@@ -28,6 +30,7 @@ import org.eclipse.jifa.server.domain.dto.FileView;
 import org.eclipse.jifa.server.domain.dto.NamedResource;
 import org.eclipse.jifa.server.domain.entity.cluster.FileStaticWorkerBindEntity;
 import org.eclipse.jifa.server.domain.entity.cluster.StaticWorkerEntity;
+import org.eclipse.jifa.server.domain.entity.cluster.TransferringFileStaticWorkerBindEntity;
 import org.eclipse.jifa.server.domain.entity.shared.file.BaseFileEntity;
 import org.eclipse.jifa.server.domain.entity.shared.file.DeletedFileEntity;
 import org.eclipse.jifa.server.domain.entity.shared.file.FileEntity;
@@ -40,11 +43,14 @@ import org.eclipse.jifa.server.repository.DeletedFileRepo;
 import org.eclipse.jifa.server.repository.FileRepo;
 import org.eclipse.jifa.server.repository.FileStaticWorkerBindRepo;
 import org.eclipse.jifa.server.repository.TransferringFileRepo;
+import org.eclipse.jifa.server.repository.TransferringFileStaticWorkerBindRepo;
 import org.eclipse.jifa.server.service.FileService;
+import org.eclipse.jifa.server.service.PreAnalysisService;
 import org.eclipse.jifa.server.service.StorageService;
 import org.eclipse.jifa.server.service.UserService;
 import org.eclipse.jifa.server.service.WorkerService;
 import org.eclipse.jifa.server.support.FileTransferListener;
+import org.eclipse.jifa.server.support.PartCheckpoint;
 import org.eclipse.jifa.server.util.FileTransferUtil;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
@@ -57,9 +63,13 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -68,6 +78,7 @@ import java.util.concurrent.TimeUnit;
 import static org.eclipse.jifa.common.domain.exception.CommonException.CE;
 import static org.eclipse.jifa.common.enums.CommonErrorCode.INTERNAL_ERROR;
 import static org.eclipse.jifa.server.domain.dto.HttpRequestToWorker.createDeleteRequest;
+import static org.eclipse.jifa.server.domain.dto.HttpRequestToWorker.createGetRequest;
 import static org.eclipse.jifa.server.domain.dto.HttpRequestToWorker.createPostRequest;
 import static org.eclipse.jifa.server.enums.Role.ELASTIC_WORKER;
 import static org.eclipse.jifa.server.enums.Role.MASTER;
@@ -97,12 +108,16 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
 
     private final FileStaticWorkerBindRepo fileStaticWorkerBindRepo;
 
+    private final TransferringFileStaticWorkerBindRepo transferringFileStaticWorkerBindRepo;
+
     private final StorageService storageService;
 
     private final WorkerService workerService;
 
     private final TaskScheduler taskScheduler;
 
+    private final PreAnalysisService preAnalysisService;
+
     public FileServiceImpl(TransactionTemplate transactionTemplate,
                            UserService userService,
                            FileRepo fileRepo,
@@ -110,9 +125,11 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
                            DeletedFileRepo deletedFileRepo,
                            @Nullable CurrentStaticWorker currentStaticWorker,
                            @Nullable FileStaticWorkerBindRepo fileStaticWorkerBindRepo,
+                           @Nullable TransferringFileStaticWorkerBindRepo transferringFileStaticWorkerBindRepo,
                            @Nullable StorageService storageService,
                            @Nullable WorkerService workerService,
-                           TaskScheduler taskScheduler) {
+                           TaskScheduler taskScheduler,
+                           PreAnalysisService preAnalysisService) {
         this.transactionTemplate = transactionTemplate;
         this.userService = userService;
         this.fileRepo = fileRepo;
@@ -120,9 +137,11 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
         this.deletedFileRepo = deletedFileRepo;
         this.currentStaticWorker = currentStaticWorker;
         this.fileStaticWorkerBindRepo = fileStaticWorkerBindRepo;
+        this.transferringFileStaticWorkerBindRepo = transferringFileStaticWorkerBindRepo;
         this.storageService = storageService;
         this.workerService = workerService;
         this.taskScheduler = taskScheduler;
+        this.preAnalysisService = preAnalysisService;
     }
 
     @Override
@@ -184,7 +203,7 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
         Validate.isFalse(config.getDisabledFileTransferMethods().contains(request.getMethod()), FILE_TRANSFER_METHOD_DISABLED);
 
         if (isMaster()) {
-            FileLocation location = workerService.decideLocationForNewFile(userService.getCurrentUserRef(), request.getType());
+            FileLocation location = workerService.decideLocationForNewFile(userService.getCurrentUserRef(), request.getType(), 0);
             assert location.valid();
             if (!location.useSharedStorage()) {
                 return workerService.syncRequest(location.staticWorker(),
@@ -208,8 +227,7 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
     @Override
     public FileTransferProgress getTransferProgress(long transferringFileId) {
         mustBe(MASTER, STANDALONE_WORKER);
-        TransferringFileEntity transferringFile = transferringFileRepo.findById(transferringFileId).orElseThrow(() -> CE(UNAVAILABLE));
-        checkAuthority(transferringFile);
+        TransferringFileEntity transferringFile = getTransferringFileEntityByIdAndCheckAuthority(transferringFileId);
         Long fileId = null;
         if (transferringFile.getTransferState() == FileTransferState.SUCCESS) {
             fileId = fileRepo.findByUniqueName(transferringFile.getUniqueName()).orElseThrow(() -> CE(INTERNAL_ERROR)).getId();
@@ -228,7 +246,7 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
         Validate.isFalse(config.getDisabledFileTransferMethods().contains(FileTransferMethod.UPLOAD), FILE_TRANSFER_METHOD_DISABLED);
 
         if (isMaster()) {
-            FileLocation location = workerService.decideLocationForNewFile(userService.getCurrentUserRef(), type);
+            FileLocation location = workerService.decideLocationForNewFile(userService.getCurrentUserRef(), type, file.getSize());
             if (!location.useSharedStorage()) {
                 return workerService.forwardUploadRequestToStaticWorker(location.staticWorker(), type, file);
             }
@@ -243,7 +261,7 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
             bind.setStaticWorker(currentStaticWorker.getEntity());
         }
 
-        return transactionTemplate.execute(status -> {
+        long fileId = transactionTemplate.execute(status -> {
             FileEntity newFile = new FileEntity();
             newFile.setUniqueName(uniqueName);
             newFile.setUser(userService.getCurrentUserRef());
@@ -257,6 +275,125 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
             }
             return savedFile.getId();
         });
+
+        preAnalysisService.submit(type, uniqueName, size);
+        return fileId;
+    }
+
+    @Override
+    public ChunkedUpload handleChunkedUploadRequest(ChunkedUploadRequest request) throws Throwable {
+        mustNotBe(ELASTIC_WORKER);
+
+        Validate.isFalse(config.getDisabledFileTransferMethods().contains(FileTransferMethod.UPLOAD), FILE_TRANSFER_METHOD_DISABLED);
+
+        if (isMaster()) {
+            FileLocation location = workerService.decideLocationForNewFile(userService.getCurrentUserRef(), request.getType(),
+                                                                        request.getSize());
+            assert location.valid();
+            if (!location.useSharedStorage()) {
+                return workerService.syncRequest(location.staticWorker(),
+                                                 createPostRequest("/files/upload/chunked", request, ChunkedUpload.class));
+            }
+        }
+
+        TransferringFileEntity transferringFile = new TransferringFileEntity();
+        transferringFile.setUniqueName(generateFileUniqueName());
+        transferringFile.setUser(userService.getCurrentUserRef());
+        transferringFile.setOriginalName(request.getFilename() != null ? request.getFilename() : Constant.DEFAULT_FILENAME);
+        transferringFile.setType(request.getType());
+        transferringFile.setTransferState(FileTransferState.IN_PROGRESS);
+        transferringFile.setTotalSize(request.getSize());
+
+        // the master relays the chunks to the static worker where the file is preallocated
+        TransferringFileStaticWorkerBindEntity bind = isStaticWorker() ? new TransferringFileStaticWorkerBindEntity() : null;
+        if (bind != null) {
+            bind.setStaticWorker(currentStaticWorker.getEntity());
+        }
+
+        TransferringFileEntity savedTransferringFile = transactionTemplate.execute(status -> {
+            TransferringFileEntity saved = transferringFileRepo.save(transferringFile);
+            if (bind != null) {
+                bind.setTransferringFile(saved);
+                transferringFileStaticWorkerBindRepo.save(bind);
+            }
+            return saved;
+        });
+
+        try {
+            storageService.provisionChunkedUpload(request.getType(), savedTransferringFile.getUniqueName(),
+                                                  request.getSize(), config.getFileUploadChunkSize());
+        } catch (IOException | RuntimeException e) {
+            transferringFileRepo.deleteById(savedTransferringFile.getId());
+            throw e;
+        }
+
+        return toChunkedUpload(savedTransferringFile);
+    }
+
+    @Override
+    public ChunkedUpload getChunkedUpload(long transferringFileId) throws Throwable {
+        mustNotBe(ELASTIC_WORKER);
+
+        TransferringFileEntity transferringFile = getTransferringFileEntityByIdAndCheckAuthority(transferringFileId);
+
+        if (isMaster()) {
+            Optional<StaticWorkerEntity> worker = getStaticWorkerByTransferringFile(transferringFile);
+            if (worker.isPresent()) {
+                return workerService.syncRequest(worker.get(),
+                                                 createGetRequest("/files/upload/chunked/" + transferringFileId, null, ChunkedUpload.class));
+            }
+        }
+
+        return toChunkedUpload(transferringFile);
+    }
+
+    @Override
+    public void handleChunkUploadRequest(long transferringFileId, int index, InputStream in, long contentLength) throws Throwable {
+        mustNotBe(ELASTIC_WORKER);
+
+        TransferringFileEntity transferringFile = getTransferringFileEntityByIdAndCheckAuthority(transferringFileId);
+        Validate.isTrue(transferringFile.getTransferState() == FileTransferState.IN_PROGRESS, UNAVAILABLE);
+
+        if (isMaster()) {
+            Optional<StaticWorkerEntity> worker = getStaticWorkerByTransferringFile(transferringFile);
+            if (worker.isPresent()) {
+                workerService.forwardChunkToStaticWorker(worker.get(), transferringFileId, index, in, contentLength);
+                return;
+            }
+        }
+
+        long receivedSize = storageService.handleChunk(transferringFile.getType(), transferringFile.getUniqueName(), index, in);
+        // chunks are received concurrently, so the update only moves the transferred size forward
+        transferringFileRepo.updateTransferredSize(transferringFileId, receivedSize, LocalDateTime.now());
+    }
+
+    @Override
+    public long handleChunkedUploadCompleteRequest(long transferringFileId) throws Throwable {
+        mustNotBe(ELASTIC_WORKER);
+
+        TransferringFileEntity transferringFile = getTransferringFileEntityByIdAndCheckAuthority(transferringFileId);
+        Validate.isTrue(transferringFile.getTransferState() == FileTransferState.IN_PROGRESS, UNAVAILABLE);
+
+        if (isMaster()) {
+            Optional<StaticWorkerEntity> worker = getStaticWorkerByTransferringFile(transferringFile);
+            if (worker.isPresent()) {
+                return workerService.syncRequest(worker.get(),
+                                                 createPostRequest("/files/upload/chunked/" + transferringFileId + "/complete",
+                                                                   null, Long.class));
+            }
+        }
+
+        FileTransferListenerImpl listener = new FileTransferListenerImpl(transferringFile);
+        long size;
+        try {
+            // fails without side effects if some chunks are missing, so that they can be uploaded again
+            size = storageService.completeChunkedUpload(transferringFile.getType(), transferringFile.getUniqueName());
+        } catch (IOException e) {
+            listener.onError(e);
+            throw e;
+        }
+        listener.onSuccess(size);
+        return fileRepo.findByUniqueName(transferringFile.getUniqueName()).orElseThrow(() -> CE(INTERNAL_ERROR)).getId();
     }
 
     @Override
@@ -276,6 +413,7 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
         newFile.setSize(file.length());
         fileRepo.save(newFile);
 
+        preAnalysisService.submit(type, uniqueName, newFile.getSize());
         return uniqueName;
     }
 
@@ -329,6 +467,31 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
         return file;
     }
 
+    private TransferringFileEntity getTransferringFileEntityByIdAndCheckAuthority(long id) {
+        TransferringFileEntity transferringFile = transferringFileRepo.findById(id).orElseThrow(() -> CE(UNAVAILABLE));
+        checkAuthority(transferringFile);
+        return transferringFile;
+    }
+
+    private Optional<StaticWorkerEntity> getStaticWorkerByTransferringFile(TransferringFileEntity transferringFile) {
+        return transferringFileStaticWorkerBindRepo.findByTransferringFileId(transferringFile.getId())
+                                                   .map(TransferringFileStaticWorkerBindEntity::getStaticWorker);
+    }
+
+    private ChunkedUpload toChunkedUpload(TransferringFileEntity transferringFile) {
+        PartCheckpoint checkpoint = storageService.getChunkedUpload(transferringFile.getType(), transferringFile.getUniqueName());
+        BitSet completed = checkpoint.completed();
+        List<Integer> missingChunks = new ArrayList<>();
+        for (int index = completed.nextClearBit(0); index < checkpoint.partCount(); index = completed.nextClearBit(index + 1)) {
+            missingChunks.add(index);
+        }
+        return new ChunkedUpload(transferringFile.getId(),
+                                 checkpoint.size(),
+                                 checkpoint.partSize(),
+                                 checkpoint.partCount(),
+                                 missingChunks);
+    }
+
     private void checkAuthority(BaseFileEntity file) {
         UserEntity user = file.getUser();
         Validate.isTrue(user == null
@@ -436,6 +599,7 @@ public class FileServiceImpl extends ConfigurationAccessor implements FileServic
                         fileStaticWorkerBindRepo.save(bind);
                     }
                 });
+                preAnalysisService.submit(file.getType(), file.getUniqueName(), totalSize);
             } finally {
                 taskScheduler.schedule(() -> transferringFileRepo.deleteById(transferringFile.getId()),
                                        Instant.now().plusSeconds(DELETION_DELAY));
@@ -14,6 +14,9 @@ package org.eclipse.jifa.server.service.impl;
 
 import io.kubernetes.client.custom.IntOrString;
 import io.kubernetes.client.custom.Quantity;
+import io.kubernetes.client.informer.ResourceEventHandler;
+import io.kubernetes.client.informer.SharedIndexInformer;
+import io.kubernetes.client.informer.SharedInformerFactory;
 import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.Configuration;
@@ -35,22 +38,32 @@ import io.kubernetes.client.openapi.models.V1ResourceRequirements;
 import io.kubernetes.client.openapi.models.V1Volume;
 import io.kubernetes.client.openapi.models.V1VolumeMount;
 import io.kubernetes.client.util.Config;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jifa.common.util.ExecutorFactory;
 import org.eclipse.jifa.common.util.Validate;
 import org.eclipse.jifa.server.ConfigurationAccessor;
 import org.eclipse.jifa.server.condition.Cluster;
 import org.eclipse.jifa.server.repository.ElasticWorkerRepo;
 import org.eclipse.jifa.server.service.ElasticWorkerScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
 import static org.eclipse.jifa.server.Constant.DEFAULT_PORT;
+import static org.eclipse.jifa.server.Constant.ELASTIC_WORKER_HEAP_RATIO;
 import static org.eclipse.jifa.server.Constant.ELASTIC_WORKER_IDENTITY_ENV_KEY;
+import static org.eclipse.jifa.server.Constant.ELASTIC_WORKER_LABEL_KEY;
+import static org.eclipse.jifa.server.Constant.ELASTIC_WORKER_LABEL_VALUE;
 import static org.eclipse.jifa.server.Constant.HTTP_API_PREFIX;
 import static org.eclipse.jifa.server.Constant.HTTP_HEALTH_CHECK_MAPPING;
 import static org.eclipse.jifa.server.Constant.POD_NAME_PREFIX;
@@ -61,123 +74,218 @@ import static org.eclipse.jifa.server.Constant.WORKER_CONTAINER_NAME;
 @Slf4j
 public class K8SWorkerScheduler extends ConfigurationAccessor implements ElasticWorkerScheduler {
 
+    private static final int STARTUP_TIMEOUT_MINUTES = 10;
+
     private final ElasticWorkerRepo elasticWorkerRepo;
 
+    private final ClientFactory clientFactory;
+
+    private final long startupTimeoutMillis;
+
     private final CoreV1Api api;
 
+    private final Executor executor = ExecutorFactory.newExecutor("Elastic Worker Starter");
+
+    // pod name -> the future of the host address
+    private final Map<String, CompletableFuture<String>> startingPods = new ConcurrentHashMap<>();
+
+    private SharedInformerFactory informerFactory;
+
+    @Autowired
     public K8SWorkerScheduler(ElasticWorkerRepo elasticWorkerRepo) throws IOException {
+        this(elasticWorkerRepo, Config::defaultClient, TimeUnit.MINUTES.toMillis(STARTUP_TIMEOUT_MINUTES));
+        Configuration.setDefaultApiClient(api.getApiClient());
+    }
+
+    /**
+     * @param clientFactory        creates the clients of the api server
+     * @param startupTimeoutMillis the time a worker is given to become ready
+     */
+    K8SWorkerScheduler(ElasticWorkerRepo elasticWorkerRepo, ClientFactory clientFactory, long startupTimeoutMillis)
+            throws IOException {
         this.elasticWorkerRepo = elasticWorkerRepo;
+        this.clientFactory = clientFactory;
+        this.startupTimeoutMillis = startupTimeoutMillis;
+        api = new CoreV1Api(clientFactory.create());
+    }
 
-        ApiClient client = Config.defaultClient();
-        Configuration.setDefaultApiClient(client);
-        api = new CoreV1Api();
+    @PreDestroy
+    synchronized void shutdown() {
+        if (informerFactory != null) {
+            informerFactory.stopAllRegisteredInformers();
+            informerFactory = null;
+        }
     }
 
     @Override
     public void scheduleAsync(long identity, long requestedMemSize, BiConsumer<String, Throwable> callback) {
         Validate.isTrue(isMaster());
-        new Thread(() -> {
-            String hostAddress;
-            try {
-                V1Volume volume = new V1Volume();
-                volume.setName("jifa-pv");
-                volume.persistentVolumeClaim(new V1PersistentVolumeClaimVolumeSource().claimName(config.getStoragePVCName()));
-
-                String podName = buildPodUniqueName(identity);
-
-                V1Pod pod = new V1Pod();
-                pod.metadata(new V1ObjectMeta().name(podName));
-
-                V1ResourceRequirements resourceRequirements = new V1ResourceRequirements()
-                        .requests(Map.of("memory", new Quantity(String.valueOf(requestedMemSize))));
-
-                V1Probe healthCheck = new V1Probe();
-                healthCheck.httpGet(new V1HTTPGetAction().path(HTTP_API_PREFIX + HTTP_HEALTH_CHECK_MAPPING)
-                                                         .port(new IntOrString(DEFAULT_PORT)))
-                           .initialDelaySeconds(5)
-                           .periodSeconds(2)
-                           .failureThreshold(30);
-
-                V1Container container = new V1Container()
-                        .name(WORKER_CONTAINER_NAME)
-                        .image(config.getElasticWorkerImage())
-                        .imagePullPolicy("Always")
-                        .addVolumeMountsItem(new V1VolumeMount().name("jifa-pv").mountPath(config.getStoragePath().toString()))
-                        .addEnvItem(new V1EnvVar().name(ELASTIC_WORKER_IDENTITY_ENV_KEY).value(Long.toString(identity)))
-                        .addEnvItem(new V1EnvVar().name("MYSQL_HOST").value(config.getDatabaseHost()))
-                        .addEnvItem(new V1EnvVar().name("MYSQL_DATABASE").value(config.getDatabaseName()))
-                        .addEnvItem(new V1EnvVar().name("MYSQL_USER").value(config.getDatabaseUser()))
-                        .addEnvItem(new V1EnvVar().name("MYSQL_PASSWORD").value(config.getDatabasePassword()))
-                        .args(List.of(
-                                "--jifa.role=elastic-worker",
-                                "--jifa.storage-path=" + config.getStoragePath().toString(),
-                                "--jifa.port=" + config.getElasticWorkerPort(),
-                                "--jifa.elastic-worker-idle-threshold=" + config.getElasticWorkerIdleThreshold(),
-                                "--jifa.cluster-namespace=" + config.getClusterNamespace()))
-                        .addPortsItem(new V1ContainerPort().containerPort(config.getElasticWorkerPort()))
-                        .resources(resourceRequirements)
-                        .startupProbe(healthCheck);
-
-                String jvmOptions = config.getElasticWorkerJVMOptions();
-                if (StringUtils.isNotBlank(jvmOptions)) {
-                    container.addEnvItem(new V1EnvVar().name("JAVA_TOOL_OPTIONS").value(jvmOptions));
+        String podName = buildPodUniqueName(identity);
+        // completed by the pod watcher once the pod has an ip and its container is ready
+        CompletableFuture<String> ready = new CompletableFuture<>();
+        startingPods.put(podName, ready);
+        ready.orTimeout(startupTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((hostAddress, t) -> {
+            startingPods.remove(podName, ready);
+            if (t != null) {
+                if (t instanceof ApiException apiException) {
+                    log.error("Failed to start elastic worker, response body: {}", apiException.getResponseBody());
+                } else {
+                    log.error("Failed to start elastic worker", t);
                 }
+            }
+            callback.accept(hostAddress, t);
+        });
 
-                V1PodSpec podSpec = new V1PodSpec().addContainersItem(container).addVolumesItem(volume)
-                                                   .serviceAccountName(config.getServiceAccountName())
-                                                   .restartPolicy("Never");
+        executor.execute(() -> {
+            try {
+                startPodWatcher();
+                api.createNamespacedPod(config.getClusterNamespace(), buildPod(identity, requestedMemSize)).execute();
+            } catch (Throwable t) {
+                ready.completeExceptionally(t);
+            }
+        });
+    }
 
-                String imagePullSecretName = config.getImagePullSecretName();
-                if (StringUtils.isNotBlank(imagePullSecretName)) {
-                    podSpec.addImagePullSecretsItem(new V1LocalObjectReference()
-                            .name(imagePullSecretName));
-                }
+    private V1Pod buildPod(long identity, long requestedMemSize) {
+        V1Volume volume = new V1Volume();
+        volume.setName("jifa-pv");
+        volume.persistentVolumeClaim(new V1PersistentVolumeClaimVolumeSource().claimName(config.getStoragePVCName()));
 
-                // workaround for https://github.com/kubernetes-client/java/issues/3076
-                podSpec.setOverhead(null);
-                pod.spec(podSpec);
+        V1Pod pod = new V1Pod();
+        pod.metadata(new V1ObjectMeta().name(buildPodUniqueName(identity))
+                                       .putLabelsItem(ELASTIC_WORKER_LABEL_KEY, ELASTIC_WORKER_LABEL_VALUE));
 
-                api.createNamespacedPod(config.getClusterNamespace(), pod).execute();
+        V1ResourceRequirements resourceRequirements = new V1ResourceRequirements()
+                .requests(Map.of("memory", new Quantity(String.valueOf(requestedMemSize))));
 
-                while (true) {
-                    pod = api.readNamespacedPod(podName, config.getClusterNamespace()).execute();
-                    V1PodStatus status = pod.getStatus();
-                    String podIP = status != null ? status.getPodIP() : null;
-                    if (podIP != null) {
-                        hostAddress = podIP;
-                        break;
-                    }
-                }
+        V1Probe healthCheck = new V1Probe();
+        healthCheck.httpGet(new V1HTTPGetAction().path(HTTP_API_PREFIX + HTTP_HEALTH_CHECK_MAPPING)
+                                                 .port(new IntOrString(DEFAULT_PORT)))
+                   .initialDelaySeconds(5)
+                   .periodSeconds(2)
+                   .failureThreshold(30);
 
-                outerLoop:
-                while (true) {
-                    V1PodStatus status = pod.getStatus();
-                    if (status != null) {
-                        List<V1ContainerStatus> containerStatuses = status.getContainerStatuses();
-                        if (containerStatuses != null) {
-                            for (V1ContainerStatus containerStatus : containerStatuses) {
-                                if (WORKER_CONTAINER_NAME.equals(containerStatus.getName())) {
-                                    if (containerStatus.getReady()) {
-                                        break outerLoop;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    pod = api.readNamespacedPod(podName, config.getClusterNamespace()).execute();
-                }
-            } catch (Throwable t) {
-                if (t instanceof ApiException apiException) {
-                    log.error("Failed to start elastic worker, response body: {}", apiException.getResponseBody());
-                } else {
-                    log.error("Failed to start elastic worker", t);
+        V1Container container = new V1Container()
+                .name(WORKER_CONTAINER_NAME)
+                .image(config.getElasticWorkerImage())
+                .imagePullPolicy("Always")
+                .addVolumeMountsItem(new V1VolumeMount().name("jifa-pv").mountPath(config.getStoragePath().toString()))
+                .addEnvItem(new V1EnvVar().name(ELASTIC_WORKER_IDENTITY_ENV_KEY).value(Long.toString(identity)))
+                .addEnvItem(new V1EnvVar().name("MYSQL_HOST").value(config.getDatabaseHost()))
+                .addEnvItem(new V1EnvVar().name("MYSQL_DATABASE").value(config.getDatabaseName()))
+                .addEnvItem(new V1EnvVar().name("MYSQL_USER").value(config.getDatabaseUser()))
+                .addEnvItem(new V1EnvVar().name("MYSQL_PASSWORD").value(config.getDatabasePassword()))
+                .args(List.of(
+                        "--jifa.role=elastic-worker",
+                        "--jifa.storage-path=" + config.getStoragePath().toString(),
+                        "--jifa.port=" + config.getElasticWorkerPort(),
+                        "--jifa.elastic-worker-idle-threshold=" + config.getElasticWorkerIdleThreshold(),
+                        "--jifa.cluster-namespace=" + config.getClusterNamespace()))
+                .addPortsItem(new V1ContainerPort().containerPort(config.getElasticWorkerPort()))
+                .resources(resourceRequirements)
+                .startupProbe(healthCheck);
+
+        // the max heap follows the requested memory unless it is given explicitly
+        String jvmOptions = StringUtils.defaultString(config.getElasticWorkerJVMOptions()).trim();
+        if (!jvmOptions.contains("-Xmx") && !jvmOptions.contains("MaxRAMPercentage")) {
+            jvmOptions = ("-Xmx" + (long) (requestedMemSize * ELASTIC_WORKER_HEAP_RATIO) + " " + jvmOptions).trim();
+        }
+        container.addEnvItem(new V1EnvVar().name("JAVA_TOOL_OPTIONS").value(jvmOptions));
+
+        V1PodSpec podSpec = new V1PodSpec().addContainersItem(container).addVolumesItem(volume)
+                                           .serviceAccountName(config.getServiceAccountName())
+                                           .restartPolicy("Never");
+
+        String imagePullSecretName = config.getImagePullSecretName();
+        if (StringUtils.isNotBlank(imagePullSecretName)) {
+            podSpec.addImagePullSecretsItem(new V1LocalObjectReference()
+                    .name(imagePullSecretName));
+        }
+
+        // workaround for https://github.com/kubernetes-client/java/issues/3076
+        podSpec.setOverhead(null);
+        pod.spec(podSpec);
+        return pod;
+    }
+
+    /**
+     * Starts watching the pods of elastic workers, a single watch serves all starting workers
+     */
+    private synchronized void startPodWatcher() throws IOException {
+        if (informerFactory != null) {
+            return;
+        }
+        ApiClient client = clientFactory.create();
+        // a watch is a long-running request
+        client.setHttpClient(client.getHttpClient().newBuilder().readTimeout(0, TimeUnit.SECONDS).build());
+        CoreV1Api watchApi = new CoreV1Api(client);
+        String namespace = config.getClusterNamespace();
+        String labelSelector = ELASTIC_WORKER_LABEL_KEY + "=" + ELASTIC_WORKER_LABEL_VALUE;
+
+        SharedInformerFactory factory = new SharedInformerFactory(client);
+        SharedIndexInformer<V1Pod> informer = factory.sharedIndexInformerFor(
+                params -> watchApi.listNamespacedPod(namespace)
+                                  .labelSelector(labelSelector)
+                                  .resourceVersion(params.resourceVersion)
+                                  .timeoutSeconds(params.timeoutSeconds)
+                                  .watch(params.watch)
+                                  .buildCall(null),
+                V1Pod.class, V1PodList.class);
+        informer.addEventHandler(new ResourceEventHandler<>() {
+            @Override
+            public void onAdd(V1Pod pod) {
+                podChanged(pod);
+            }
+
+            @Override
+            public void onUpdate(V1Pod oldPod, V1Pod newPod) {
+                podChanged(newPod);
+            }
+
+            @Override
+            public void onDelete(V1Pod pod, boolean deletedFinalStateUnknown) {
+                CompletableFuture<String> ready = startingPods.get(pod.getMetadata().getName());
+                if (ready != null) {
+                    ready.completeExceptionally(new IllegalStateException("Pod is deleted before ready"));
                 }
-                callback.accept(null, t);
-                return;
             }
+        });
+        factory.startAllRegisteredInformers();
+        informerFactory = factory;
+    }
+
+    private void podChanged(V1Pod pod) {
+        CompletableFuture<String> ready = startingPods.get(pod.getMetadata().getName());
+        if (ready == null) {
+            return;
+        }
+        V1PodStatus status = pod.getStatus();
+        String phase = status != null ? status.getPhase() : null;
+        if ("Failed".equals(phase) || "Succeeded".equals(phase)) {
+            ready.completeExceptionally(new IllegalStateException("Pod is terminated before ready, phase: " + phase));
+            return;
+        }
+        String hostAddress = hostAddressIfReady(pod);
+        if (hostAddress != null) {
+            ready.complete(hostAddress);
+        }
+    }
 
-            callback.accept(hostAddress, null);
-        }, "Elastic worker - " + identity + " Starter").start();
+    /**
+     * @param pod the pod of an elastic worker
+     * @return the ip of the pod if the worker container is ready, otherwise null
+     */
+    static String hostAddressIfReady(V1Pod pod) {
+        V1PodStatus status = pod.getStatus();
+        if (status == null || status.getPodIP() == null || status.getContainerStatuses() == null) {
+            return null;
+        }
+        for (V1ContainerStatus containerStatus : status.getContainerStatuses()) {
+            if (WORKER_CONTAINER_NAME.equals(containerStatus.getName()) && Boolean.TRUE.equals(containerStatus.getReady())) {
+                return status.getPodIP();
+            }
+        }
+        return null;
     }
 
     @Override
@@ -214,4 +322,9 @@ public class K8SWorkerScheduler extends ConfigurationAccessor implements Elastic
     private String buildPodUniqueName(long identity) {
         return POD_NAME_PREFIX + identity;
     }
+
+    interface ClientFactory {
+
+        ApiClient create() throws IOException;
+    }
 }
@@ -0,0 +1,159 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.service.impl;
+
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jifa.analysis.ApiService;
+import org.eclipse.jifa.common.util.ExecutorFactory;
+import org.eclipse.jifa.server.ConfigurationAccessor;
+import org.eclipse.jifa.server.enums.FileType;
+import org.eclipse.jifa.server.service.PreAnalysisService;
+import org.eclipse.jifa.server.service.StorageService;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Files are analyzed at most a configured number at a time, smallest first so that most files are ready as soon as
+ * possible.
+ * <p>
+ * Jobs are dispatched by a single thread when they are submitted and when a build completes, so no thread waits for
+ * a build. Only workers that store the files themselves pre-analyze them. Files on the shared storage of a cluster are
+ * analyzed by elastic workers which are launched on demand.
+ */
+@Service
+@Slf4j
+public class PreAnalysisServiceImpl extends ConfigurationAccessor implements PreAnalysisService {
+
+    private final StorageService storageService;
+
+    private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    // the number of builds in progress, only accessed by the dispatcher
+    private int running;
+
+    private volatile boolean stopped;
+
+    private ApiService apiService;
+
+    private ExecutorService dispatcher;
+
+    public PreAnalysisServiceImpl(@Nullable StorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    @PostConstruct
+    private void init() {
+        if (!enabled()) {
+            return;
+        }
+        apiService = ApiService.getInstance();
+        start();
+    }
+
+    private void start() {
+        dispatcher = ExecutorFactory.newExecutorService("Pre-Analysis", 1);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        stopped = true;
+        queue.clear();
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    @Override
+    public void submit(FileType type, String uniqueName, long size) {
+        if (!enabled() || stopped || !pending.add(uniqueName)) {
+            return;
+        }
+        queue.add(new Job(type, uniqueName, size, sequence.getAndIncrement()));
+        schedule();
+    }
+
+    private boolean enabled() {
+        return config.isPreAnalysisEnabled() && (isStandaloneWorker() || isStaticWorker());
+    }
+
+    private void schedule() {
+        try {
+            dispatcher.execute(this::dispatch);
+        } catch (RejectedExecutionException e) {
+            // shut down
+        }
+    }
+
+    private void dispatch() {
+        while (!stopped && running < config.getPreAnalysisConcurrency()) {
+            Job job = queue.poll();
+            if (job == null) {
+                return;
+            }
+            running++;
+            long start = System.currentTimeMillis();
+            analyze(job).whenCompleteAsync((analyzed, t) -> {
+                running--;
+                pending.remove(job.uniqueName);
+                if (t != null) {
+                    log.warn("Failed to pre-analyze {} '{}': {}", job.type, job.uniqueName, t.getMessage());
+                } else if (analyzed) {
+                    log.info("Pre-analysis of {} '{}' finished in {} ms",
+                             job.type, job.uniqueName, System.currentTimeMillis() - start);
+                }
+                dispatch();
+            }, dispatcher);
+        }
+    }
+
+    /**
+     * @return a future completed with false if the file was deleted before its turn, or true once its analyzer is
+     * built
+     */
+    private CompletableFuture<Boolean> analyze(Job job) {
+        try {
+            Path target = storageService.locationOf(job.type, job.uniqueName);
+            if (!Files.exists(target)) {
+                return CompletableFuture.completedFuture(false);
+            }
+            return apiService.prebuild(target, job.type.getApiNamespace()).thenApply(ignored -> true);
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+    }
+
+    private record Job(FileType type, String uniqueName, long size, long sequence) implements Comparable<Job> {
+
+        @Override
+        public int compareTo(Job o) {
+            int c = Long.compare(size, o.size);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+}
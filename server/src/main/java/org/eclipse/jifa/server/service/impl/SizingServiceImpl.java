@@ -0,0 +1,129 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.service.impl;
+
+import jakarta.annotation.Nullable;
+import org.eclipse.jifa.server.ConfigurationAccessor;
+import org.eclipse.jifa.server.condition.Cluster;
+import org.eclipse.jifa.server.domain.entity.cluster.AnalysisFootprintEntity;
+import org.eclipse.jifa.server.domain.entity.shared.file.FileEntity;
+import org.eclipse.jifa.server.repository.AnalysisFootprintRepo;
+import org.eclipse.jifa.server.service.SizingService;
+import org.eclipse.jifa.server.service.StorageService;
+import org.eclipse.jifa.server.support.SizingFeatures;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.eclipse.jifa.server.Constant.ELASTIC_WORKER_HEAP_RATIO;
+
+/**
+ * The heap of a worker is modeled as a base plus a per-category ratio times the magnitude of the file.
+ * <p>
+ * The ratio of a category is the 90th percentile of the live set ratios of its recent footprints, with headroom for
+ * garbage and a safety margin, or a prior if there are too few footprints. Since the live set of an analysis does not
+ * depend on the heap it is given, repeated recordings converge.
+ */
+@Cluster
+@Service
+public class SizingServiceImpl extends ConfigurationAccessor implements SizingService {
+
+    static final long MB = 1024 * 1024L;
+
+    // the heap used by the worker itself
+    static final long BASE_HEAP_SIZE = 256 * MB;
+
+    // the live set of the worker itself
+    static final long BASE_LIVE_SET_SIZE = 128 * MB;
+
+    static final long MIN_HEAP_SIZE = 512 * MB;
+
+    static final int MIN_FOOTPRINTS = 5;
+
+    static final double SAFETY_MARGIN = 1.2;
+
+    // the heap per byte of live set, so that the worker does not collect garbage all the time
+    static final double GC_HEADROOM = 1.5;
+
+    // bytes of heap per unit of magnitude
+    private static final Map<String, Double> PRIORS = Map.of("hprof", 1.3,
+                                                             "hprof-id8", 1.3,
+                                                             "hprof-id4", 1.6,
+                                                             "jfr", 2.0,
+                                                             "gc-log-lines", 400.0,
+                                                             "thread-dump-lines", 150.0);
+
+    private static final double DEFAULT_PRIOR = 1.3;
+
+    private final AnalysisFootprintRepo analysisFootprintRepo;
+
+    private final StorageService storageService;
+
+    public SizingServiceImpl(AnalysisFootprintRepo analysisFootprintRepo, @Nullable StorageService storageService) {
+        this.analysisFootprintRepo = analysisFootprintRepo;
+        this.storageService = storageService;
+    }
+
+    @Override
+    public long estimateWorkerMemorySize(FileEntity file) {
+        SizingFeatures features = featuresOf(file);
+        long heap = estimateHeapSize(features, analysisFootprintRepo.findTop50ByCategoryOrderByCreatedTimeDesc(features.category()));
+        return (long) (heap / ELASTIC_WORKER_HEAP_RATIO);
+    }
+
+    @Override
+    public void recordFootprint(FileEntity file, long liveSetSize) {
+        SizingFeatures features = featuresOf(file);
+        AnalysisFootprintEntity footprint = new AnalysisFootprintEntity();
+        footprint.setFileType(file.getType());
+        footprint.setCategory(features.category());
+        footprint.setMagnitude(features.magnitude());
+        footprint.setLiveSetSize(liveSetSize);
+        analysisFootprintRepo.save(footprint);
+    }
+
+    private SizingFeatures featuresOf(FileEntity file) {
+        Path path = null;
+        if (storageService != null && storageService.available()) {
+            path = storageService.locationOf(file.getType(), file.getUniqueName());
+            if (!Files.isReadable(path)) {
+                path = null;
+            }
+        }
+        return SizingFeatures.of(file.getType(), path, file.getSize());
+    }
+
+    /**
+     * @param features   the features of the file
+     * @param footprints the recent footprints of the category
+     * @return the estimated heap size in bytes
+     */
+    static long estimateHeapSize(SizingFeatures features, List<AnalysisFootprintEntity> footprints) {
+        double ratio;
+        if (footprints.size() < MIN_FOOTPRINTS) {
+            ratio = PRIORS.getOrDefault(features.category(), DEFAULT_PRIOR);
+        } else {
+            double[] ratios = footprints.stream()
+                                        .filter(f -> f.getMagnitude() > 0)
+                                        .mapToDouble(f -> (double) Math.max(0, f.getLiveSetSize() - BASE_LIVE_SET_SIZE) / f.getMagnitude())
+                                        .sorted()
+                                        .toArray();
+            ratio = ratios.length == 0 ? PRIORS.getOrDefault(features.category(), DEFAULT_PRIOR)
+                                       : ratios[(int) Math.ceil(ratios.length * 0.9) - 1] * GC_HEADROOM * SAFETY_MARGIN;
+        }
+        return Math.max(MIN_HEAP_SIZE, BASE_HEAP_SIZE + (long) (ratio * features.magnitude()));
+    }
+}
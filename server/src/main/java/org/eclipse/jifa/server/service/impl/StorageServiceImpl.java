@@ -25,7 +25,6 @@ import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.InstanceProfileCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.GetObjectRequest;
 import jakarta.annotation.PostConstruct;
 import net.schmizz.sshj.SSHClient;
 import net.schmizz.sshj.common.KeyType;
@@ -44,43 +43,60 @@ import org.eclipse.jifa.common.util.Validate;
 import org.eclipse.jifa.server.ConfigurationAccessor;
 import org.eclipse.jifa.server.domain.dto.FileTransferRequest;
 import org.eclipse.jifa.server.enums.FileType;
+import org.eclipse.jifa.server.enums.ServerErrorCode;
 import org.eclipse.jifa.server.service.CipherService;
 import org.eclipse.jifa.server.service.StorageService;
+import org.eclipse.jifa.server.support.Decompression;
+import org.eclipse.jifa.server.support.DownloadSources;
 import org.eclipse.jifa.server.support.FileTransferListener;
+import org.eclipse.jifa.server.support.ParallelDownloader;
+import org.eclipse.jifa.server.support.PartCheckpoint;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.URLConnection;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class StorageServiceImpl extends ConfigurationAccessor implements StorageService {
 
+    private static final int CHUNK_BUFFER_SIZE = 64 * 1024;
+
     private final CipherService cipherService;
 
     private Executor executor;
 
+    private ParallelDownloader downloader;
+
+    private Decompression.Limit decompressionLimit;
+
     private Path basePath;
 
     private KeyProvider sshKeyProvider;
 
     private boolean available;
 
+    // the checkpoints of the chunked uploads in progress, loaded from their files on demand
+    private final Map<Path, PartCheckpoint> chunkedUploads = new ConcurrentHashMap<>();
+
     public StorageServiceImpl(CipherService cipherService) {
         this.cipherService = cipherService;
     }
@@ -124,7 +140,30 @@ public class StorageServiceImpl extends ConfigurationAccessor implements Storage
         };
 
         executor = ExecutorFactory.newExecutor("File Transfer");
+        decompressionLimit = new Decompression.Limit(config.getFileDecompressionMaxSize(),
+                                                     config.getFileDecompressionMaxRatio());
+        downloader = new ParallelDownloader(ExecutorFactory.newExecutor("File Transfer Part"),
+                                            config.getFileTransferPartSize(),
+                                            config.getFileTransferConcurrency(),
+                                            config.isFileDecompressionEnabled() ? decompressionLimit : null);
         available = true;
+        loadChunkedUploads();
+    }
+
+    /**
+     * The files left with checkpoints by a restart, i.e. chunked uploads and interrupted transfers, reserve the space
+     * of their missing parts until they are completed or scavenged
+     */
+    private void loadChunkedUploads() {
+        for (Map.Entry<FileType, Set<String>> entry : getAllFiles().entrySet()) {
+            for (String name : entry.getValue()) {
+                Path destination = locationOf(entry.getKey(), name);
+                PartCheckpoint checkpoint = PartCheckpoint.load(PartCheckpoint.pathOf(destination));
+                if (checkpoint != null) {
+                    chunkedUploads.put(destination, checkpoint);
+                }
+            }
+        }
     }
 
     @Override
@@ -173,7 +212,17 @@ public class StorageServiceImpl extends ConfigurationAccessor implements Storage
         Validate.isTrue(available, CommonErrorCode.INTERNAL_ERROR);
         Path destination = provision(type, destFilename);
         try {
-            file.transferTo(destination);
+            Decompression.Format format = null;
+            if (config.isFileDecompressionEnabled()) {
+                try (InputStream in = file.getInputStream()) {
+                    format = Decompression.detect(in.readNBytes(Decompression.HEAD_SIZE));
+                }
+            }
+            if (format != null) {
+                Decompression.decompress(file.getInputStream(), format, destination, null, decompressionLimit);
+            } else {
+                file.transferTo(destination);
+            }
             return destination.toFile().length();
         } catch (IOException e) {
             scavenge(type, destFilename);
@@ -186,13 +235,118 @@ public class StorageServiceImpl extends ConfigurationAccessor implements Storage
         Validate.isTrue(available, CommonErrorCode.INTERNAL_ERROR);
         Path destination = provision(type, destFilename);
         try {
-            Files.copy(path, destination);
+            Decompression.Format format = null;
+            if (config.isFileDecompressionEnabled()) {
+                try (InputStream in = Files.newInputStream(path)) {
+                    format = Decompression.detect(in.readNBytes(Decompression.HEAD_SIZE));
+                }
+            }
+            if (format != null) {
+                Decompression.decompress(Files.newInputStream(path), format, destination, null, decompressionLimit);
+            } else {
+                Files.copy(path, destination);
+            }
         } catch (IOException e) {
             scavenge(type, destFilename);
             throw e;
         }
     }
 
+    @Override
+    public void provisionChunkedUpload(FileType type, String destFilename, long size, long chunkSize) throws IOException {
+        Validate.isTrue(available, CommonErrorCode.INTERNAL_ERROR);
+        // the preallocated files are sparse, so the chunks not yet received by the other uploads are reserved
+        synchronized (chunkedUploads) {
+            long reserved = 0;
+            for (PartCheckpoint upload : chunkedUploads.values()) {
+                reserved += upload.size() - upload.completedSize();
+            }
+            Validate.isTrue(size <= getAvailableSpace() - reserved, ServerErrorCode.INSUFFICIENT_SPACE);
+
+            Path destination = provision(type, destFilename);
+            try {
+                try (RandomAccessFile file = new RandomAccessFile(destination.toFile(), "rw")) {
+                    file.setLength(size);
+                }
+                PartCheckpoint checkpoint = new PartCheckpoint(size, chunkSize, null);
+                checkpoint.save(PartCheckpoint.pathOf(destination));
+                chunkedUploads.put(destination, checkpoint);
+            } catch (IOException e) {
+                scavenge(type, destFilename);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public long handleChunk(FileType type, String name, int index, InputStream in) throws IOException {
+        Path destination = locationOf(type, name);
+        PartCheckpoint checkpoint = getChunkedUpload(type, name);
+        Validate.isTrue(index >= 0 && index < checkpoint.partCount(), CommonErrorCode.ILLEGAL_ARGUMENT);
+        long position = index * checkpoint.partSize();
+        long length = checkpoint.partLength(index);
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(destination, StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[CHUNK_BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                Validate.isTrue(written + n <= length, CommonErrorCode.ILLEGAL_ARGUMENT,
+                                () -> "Chunk " + index + " exceeds " + length + " bytes");
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, n);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer, position + written + byteBuffer.position());
+                }
+                written += n;
+            }
+            Validate.isTrue(written == length, CommonErrorCode.ILLEGAL_ARGUMENT,
+                            "Chunk " + index + " is truncated, expected " + length + " bytes, but got " + written);
+            // a recorded chunk is not uploaded again, so it must survive a crash
+            channel.force(false);
+        }
+        checkpoint.complete(index, PartCheckpoint.pathOf(destination));
+        return checkpoint.completedSize();
+    }
+
+    @Override
+    public PartCheckpoint getChunkedUpload(FileType type, String name) {
+        Validate.isTrue(available, CommonErrorCode.INTERNAL_ERROR);
+        Path destination = locationOf(type, name);
+        PartCheckpoint checkpoint = chunkedUploads.computeIfAbsent(destination, d -> PartCheckpoint.load(PartCheckpoint.pathOf(d)));
+        Validate.notNull(checkpoint, ServerErrorCode.UNAVAILABLE);
+        return checkpoint;
+    }
+
+    @Override
+    public long completeChunkedUpload(FileType type, String name) throws IOException {
+        Path destination = locationOf(type, name);
+        PartCheckpoint checkpoint = getChunkedUpload(type, name);
+        Validate.isTrue(checkpoint.completed().cardinality() == checkpoint.partCount(), ServerErrorCode.FILE_TRANSFER_INCOMPLETE);
+        try (FileChannel channel = FileChannel.open(destination, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.delete(PartCheckpoint.pathOf(destination));
+        chunkedUploads.remove(destination);
+        decompressIfEnabled(destination);
+        return Files.size(destination);
+    }
+
+    @Override
+    public Map<FileType, Set<String>> getChunkedUploads() {
+        Validate.isTrue(available, CommonErrorCode.INTERNAL_ERROR);
+        // completed by another node sharing the storage
+        chunkedUploads.keySet().removeIf(destination -> !Files.exists(PartCheckpoint.pathOf(destination)));
+        Map<FileType, Set<String>> map = new HashMap<>();
+        for (FileType type : FileType.values()) {
+            Path directory = basePath.resolve(type.getStorageDirectoryName());
+            for (Path destination : chunkedUploads.keySet()) {
+                if (destination.startsWith(directory)) {
+                    map.computeIfAbsent(type, t -> new HashSet<>()).add(destination.getFileName().toString());
+                }
+            }
+        }
+        return map;
+    }
+
     @Override
     public Path locationOf(FileType type, String name) {
         Validate.isTrue(available, CommonErrorCode.INTERNAL_ERROR);
@@ -203,6 +357,7 @@ public class StorageServiceImpl extends ConfigurationAccessor implements Storage
     public void scavenge(FileType type, String name) {
         Validate.isTrue(available, CommonErrorCode.INTERNAL_ERROR);
         Path directory = basePath.resolve(type.getStorageDirectoryName()).resolve(name);
+        chunkedUploads.keySet().removeIf(path -> path.startsWith(directory));
         FileUtils.deleteQuietly(directory.toFile());
     }
 
@@ -259,9 +414,10 @@ public class StorageServiceImpl extends ConfigurationAccessor implements Storage
         } finally {
             ossClient.shutdown();
         }
+        decompressIfEnabled(destination);
     }
 
-    private void transferByS3(FileTransferRequest request, Path destination, FileTransferListener listener) {
+    private void transferByS3(FileTransferRequest request, Path destination, FileTransferListener listener) throws IOException {
         AWSCredentials credentials = new BasicAWSCredentials(request.getS3AccessKey(), request.getS3SecretKey());
         ClientConfiguration clientConfig = new ClientConfiguration();
         clientConfig.setProtocol(Protocol.HTTPS);
@@ -273,18 +429,8 @@ public class StorageServiceImpl extends ConfigurationAccessor implements Storage
                                                  .withPathStyleAccessEnabled(true)
                                                  .build();
         try {
-            com.amazonaws.services.s3.model.ObjectMetadata objectMetadata =
-                    s3Client.getObjectMetadata(request.getS3BucketName(), request.getS3ObjectKey());
-            listener.fireTotalSize(objectMetadata.getContentLength());
-
-            AtomicLong transferredSize = new AtomicLong(0);
-            GetObjectRequest getObjectRequest = new GetObjectRequest(request.getS3BucketName(), request.getOssObjectKey())
-                    .withGeneralProgressListener(progressEvent -> {
-                        if (progressEvent.getEventType() == com.amazonaws.event.ProgressEventType.RESPONSE_BYTE_TRANSFER_EVENT) {
-                            listener.fireTransferredSize(transferredSize.addAndGet(progressEvent.getBytes()));
-                        }
-                    });
-            s3Client.getObject(getObjectRequest, destination.toFile());
+            downloader.download(DownloadSources.s3(s3Client, request.getS3BucketName(), request.getS3ObjectKey()),
+                                destination, listener);
         } finally {
             s3Client.shutdown();
         }
@@ -318,21 +464,20 @@ public class StorageServiceImpl extends ConfigurationAccessor implements Storage
             downloadClient.setRecursiveMode(false);
             downloadClient.copy(request.getScpSourcePath(), new FileSystemFile(destination.toFile().getAbsolutePath()));
         }
+        decompressIfEnabled(destination);
     }
 
     private void transferByURL(FileTransferRequest request, Path destination, FileTransferListener listener) throws IOException {
-        URLConnection conn = new java.net.URL(request.getUrl()).openConnection();
-        listener.fireTotalSize(Math.max(conn.getContentLengthLong(), 0));
-        try (InputStream in = conn.getInputStream();
-             OutputStream out = new FileOutputStream(destination.toFile())) {
-            byte[] buffer = new byte[8192];
-            int length;
-            int transferredSize = 0;
-            while ((length = in.read(buffer)) > 0) {
-                out.write(buffer, 0, length);
-                transferredSize += length;
-                listener.fireTransferredSize(transferredSize);
-            }
+        downloader.download(DownloadSources.url(request.getUrl()), destination, listener);
+    }
+
+    /**
+     * The clients of OSS and SCP write the file by themselves, and the chunks of an upload are written in any order,
+     * so the file is decompressed after it is complete
+     */
+    private void decompressIfEnabled(Path destination) throws IOException {
+        if (config.isFileDecompressionEnabled()) {
+            Decompression.decompressInPlace(destination, decompressionLimit);
         }
     }
 
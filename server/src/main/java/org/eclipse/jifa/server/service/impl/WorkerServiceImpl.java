@@ -22,6 +22,7 @@ import org.eclipse.jifa.server.Constant;
 import org.eclipse.jifa.server.condition.Master;
 import org.eclipse.jifa.server.domain.dto.FileLocation;
 import org.eclipse.jifa.server.domain.dto.HttpRequestToWorker;
+import org.eclipse.jifa.server.domain.dto.RelayedResponse;
 import org.eclipse.jifa.server.domain.entity.cluster.ElasticWorkerEntity;
 import org.eclipse.jifa.server.domain.entity.cluster.FileLocationRuleEntity;
 import org.eclipse.jifa.server.domain.entity.cluster.StaticWorkerEntity;
@@ -39,6 +40,7 @@ import org.eclipse.jifa.server.repository.FileLocationRuleRepo;
 import org.eclipse.jifa.server.repository.StaticWorkerLabelRepo;
 import org.eclipse.jifa.server.repository.StaticWorkerRepo;
 import org.eclipse.jifa.server.service.ElasticWorkerScheduler;
+import org.eclipse.jifa.server.service.SizingService;
 import org.eclipse.jifa.server.service.StorageService;
 import org.eclipse.jifa.server.service.UserService;
 import org.eclipse.jifa.server.service.WorkerService;
@@ -47,6 +49,8 @@ import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -70,15 +74,23 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import org.springframework.web.util.UriBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.netty.http.client.HttpClient;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -88,8 +100,10 @@ import static org.eclipse.jifa.common.domain.exception.CommonException.CE;
 import static org.eclipse.jifa.common.enums.CommonErrorCode.INTERNAL_ERROR;
 import static org.eclipse.jifa.common.util.GsonHolder.GSON;
 import static org.eclipse.jifa.server.Constant.HTTP_API_PREFIX;
+import static org.eclipse.jifa.server.Constant.STATIC_WORKER_HEARTBEAT_INTERVAL;
 import static org.eclipse.jifa.server.domain.entity.cluster.ElasticWorkerEntity.MAX_FAILURE_MESSAGE_LENGTH;
 import static org.eclipse.jifa.server.enums.ElasticWorkerPurpose.FILE_ANALYSIS;
+import static org.eclipse.jifa.server.enums.ElasticWorkerPurpose.STANDBY;
 import static org.eclipse.jifa.server.enums.ServerErrorCode.NO_AVAILABLE_LOCATION;
 
 @Master
@@ -99,6 +113,7 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
     private final UserService userService;
     protected final WebClient webClient;
     private static final int DELETION_DELAY = 60;
+    private static final int CHUNK_RELAY_BUFFER_SIZE = 64 * 1024;
     private final StorageService storageService;
     private final FileLocationRuleRepo fileLocationRuleRepo;
     private final StaticWorkerRepo staticWorkerRepo;
@@ -106,6 +121,7 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
     private final ElasticWorkerRepo elasticWorkerRepo;
     private final ElasticWorkerScheduler elasticWorkerScheduler;
     private final TaskScheduler taskScheduler;
+    private final SizingService sizingService;
     private final RetryTemplate retryTemplateForAcquiringElasticWorker;
 
     protected WorkerServiceImpl(UserService userService,
@@ -113,7 +129,7 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
                                 FileLocationRuleRepo fileLocationRuleRepo,
                                 StaticWorkerRepo staticWorkerRepo, StaticWorkerLabelRepo staticWorkerLabelRepo,
                                 ElasticWorkerRepo elasticWorkerRepo, ElasticWorkerScheduler elasticWorkerScheduler,
-                                TaskScheduler taskScheduler) {
+                                TaskScheduler taskScheduler, SizingService sizingService) {
         this.userService = userService;
         this.storageService = storageService;
         this.fileLocationRuleRepo = fileLocationRuleRepo;
@@ -122,6 +138,7 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
         this.elasticWorkerRepo = elasticWorkerRepo;
         this.elasticWorkerScheduler = elasticWorkerScheduler;
         this.taskScheduler = taskScheduler;
+        this.sizingService = sizingService;
 
         HttpClient httpClient = HttpClient.create()
                                           .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 16000)
@@ -160,7 +177,7 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
     }
 
     @Override
-    public FileLocation decideLocationForNewFile(UserEntity user, FileType type) {
+    public FileLocation decideLocationForNewFile(UserEntity user, FileType type, long size) {
         FileLocationRuleEntity rule = null;
         if (fileLocationRuleRepo.count() > 0) {
             // find by user and file type
@@ -186,7 +203,7 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
                 return new FileLocation(true, null);
             }
 
-            staticWorker = staticWorkerRepo.findFirstByOrderByAvailableSpaceDesc();
+            staticWorker = chooseStaticWorker(staticWorkerRepo.findAll(), size, staticWorkerRepo.currentTime());
         } else {
 
             switch (rule.getRule()) {
@@ -195,13 +212,14 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
                 }
 
                 case STATIC_WORKERS -> {
-                    staticWorker = staticWorkerRepo.findFirstByOrderByAvailableSpaceDesc();
+                    staticWorker = chooseStaticWorker(staticWorkerRepo.findAll(), size, staticWorkerRepo.currentTime());
                 }
 
                 case LABELED_STATIC_WORKERS -> {
-                    staticWorker = staticWorkerLabelRepo.findByLabel(rule.getLabel()).stream()
-                                                        .sorted(Comparator.comparingLong(e -> e.getStaticWorker().getAvailableSpace()))
-                                                        .reduce((f, s) -> s).map(StaticWorkerLabelEntity::getStaticWorker);
+                    staticWorker = chooseStaticWorker(staticWorkerLabelRepo.findByLabel(rule.getLabel()).stream()
+                                                                           .map(StaticWorkerLabelEntity::getStaticWorker)
+                                                                           .toList(),
+                                                      size, staticWorkerRepo.currentTime());
                 }
 
                 default -> throw new ShouldNotReachHereException();
@@ -215,6 +233,53 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
         throw CE(NO_AVAILABLE_LOCATION);
     }
 
+    /**
+     * Files are stored on the local disk of a static worker, so all analyses of a file are routed to the worker and
+     * its analyzer stays warm there. A new file goes to the worker with the most headroom, whose heartbeat reports
+     * disk space, analyzer memory and queue depth. The memory held by cached analyzers counts as used so that
+     * new files don't evict the analyzers of hot files.
+     * <p>
+     * The heartbeat time is set by the database, so it is compared with the time of the database rather than the
+     * clock of this node.
+     *
+     * @param workers the candidates
+     * @param size    the size of the file in bytes, 0 if unknown
+     * @param now     the current time of the database
+     * @return the chosen worker among those with enough available space, workers without a recent heartbeat are
+     * chosen only if no worker has one
+     */
+    static Optional<StaticWorkerEntity> chooseStaticWorker(Iterable<StaticWorkerEntity> workers, long size,
+                                                           LocalDateTime now) {
+        LocalDateTime staleTime = now.minusSeconds(STATIC_WORKER_HEARTBEAT_INTERVAL * 4L);
+        List<StaticWorkerEntity> alive = new ArrayList<>();
+        List<StaticWorkerEntity> all = new ArrayList<>();
+        for (StaticWorkerEntity worker : workers) {
+            // the score is relative to the disk, so a large disk that is mostly used may still score higher
+            if (worker.getAvailableSpace() < size) {
+                continue;
+            }
+            all.add(worker);
+            if (worker.getLastHeartbeatTime() != null && worker.getLastHeartbeatTime().isAfter(staleTime)) {
+                alive.add(worker);
+            }
+        }
+        return (alive.isEmpty() ? all : alive).stream()
+                                              .max(Comparator.comparingDouble(WorkerServiceImpl::placementScore)
+                                                             .thenComparingLong(StaticWorkerEntity::getAvailableSpace));
+    }
+
+    /**
+     * @return the weighted headroom of disk, memory and queues, in [0, 1]
+     */
+    static double placementScore(StaticWorkerEntity worker) {
+        double disk = worker.getTotalSpace() > 0 ? (double) worker.getAvailableSpace() / worker.getTotalSpace() : 0;
+        double memory = worker.getMemoryBudget() > 0
+                        ? Math.max(0, 1 - (double) worker.getMemoryUsed() / worker.getMemoryBudget()) : 0;
+        // a build takes minutes while a query takes milliseconds
+        double queue = 1 / (1 + worker.getPendingBuildCount() + worker.getQueuedQueryCount() / 10.0);
+        return 0.4 * disk + 0.3 * memory + 0.3 * queue;
+    }
+
     @Override
     public long forwardUploadRequestToStaticWorker(StaticWorkerEntity worker, FileType type, MultipartFile file) throws Throwable {
         MultipartBodyBuilder builder = new MultipartBodyBuilder();
@@ -247,6 +312,43 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
                    }).toFuture().get();
     }
 
+    @Override
+    public void forwardChunkToStaticWorker(StaticWorkerEntity worker, long transferringFileId, int index, InputStream in,
+                                           long contentLength) throws Throwable {
+        Validate.isTrue(isMaster(), INTERNAL_ERROR);
+        UriBuilder uriBuilder = new DefaultUriBuilderFactory().builder()
+                                                              .scheme("http")
+                                                              .host(worker.getHostAddress())
+                                                              .port(worker.getPort())
+                                                              .path(HTTP_API_PREFIX + "/files/upload/chunked/" + transferringFileId +
+                                                                    "/chunks/" + index);
+
+        WebClient.RequestBodySpec spec = webClient.method(HttpMethod.PUT)
+                                                  .uri(uriBuilder.build());
+
+        String jwtToken = userService.getCurrentUserJwtTokenOrNull();
+        if (jwtToken != null) {
+            spec.header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken);
+        }
+        if (contentLength >= 0) {
+            spec.contentLength(contentLength);
+        }
+
+        // the chunk is relayed as it is read rather than buffered in memory
+        Flux<DataBuffer> chunk = DataBufferUtils.readInputStream(() -> in, DefaultDataBufferFactory.sharedInstance,
+                                                                 CHUNK_RELAY_BUFFER_SIZE)
+                                                .subscribeOn(Schedulers.boundedElastic());
+
+        spec.contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(BodyInserters.fromDataBuffers(chunk))
+            .exchangeToMono(response -> {
+                if (!response.statusCode().is2xxSuccessful()) {
+                    return response.createError();
+                }
+                return response.releaseBody();
+            }).toFuture().get();
+    }
+
     @Override
     public Resource forwardDownloadRequestToStaticWorker(StaticWorkerEntity worker, long fileId) throws Throwable {
         Validate.isTrue(isMaster(), INTERNAL_ERROR);
@@ -342,6 +444,26 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
         }
 
         Class<Response> responseClass = request.responseType();
+        if (responseClass == RelayedResponse.class) {
+            // completes once the headers arrive, the body is relayed as it arrives rather than buffered
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            Disposable exchange = spec.retrieve()
+                                      .toEntityFlux(DataBuffer.class)
+                                      .subscribe(entity -> {
+                                          RelayedResponse relayed = new RelayedResponse(entity.getBody());
+                                          if (!future.complete((Response) relayed)) {
+                                              // cancelled while the headers arrived
+                                              relayed.release();
+                                          }
+                                      }, future::completeExceptionally);
+            future.whenComplete((r, t) -> {
+                if (future.isCancelled()) {
+                    exchange.dispose();
+                }
+            });
+            return future;
+        }
+
         return spec.exchangeToMono(response -> {
             if (!response.statusCode().is2xxSuccessful()) {
                 return response.createError();
@@ -362,11 +484,7 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
     }
 
     private ElasticWorkerEntity acquireElasticWorkerForAnalysis(FileEntity target) {
-        return AcquireElasticWorker(FILE_ANALYSIS, target.getId(), () -> {
-            // TODO: need improvements
-            long GB = 1024 * 1024 * 1024L;
-            return (long) Math.max(GB, 1.3 * target.getSize());
-        });
+        return AcquireElasticWorker(FILE_ANALYSIS, target.getId(), () -> sizingService.estimateWorkerMemorySize(target));
     }
 
     @SuppressWarnings("SameParameterValue")
@@ -379,34 +497,79 @@ public class WorkerServiceImpl extends ConfigurationAccessor implements WorkerSe
                 return optional.get();
             }
 
+            long requestedMemorySize = requestedMemorySizeSupplier.get();
+
+            optional = claimStandbyElasticWorker(purpose, referenceId, requestedMemorySize);
+
+            if (optional.isPresent()) {
+                return optional.get();
+            }
+
             ElasticWorkerEntity elasticWorker = createNewElasticWorker(purpose, referenceId);
+            startElasticWorker(elasticWorker, requestedMemorySize);
+            return elasticWorker;
+        });
+    }
 
-            long requestedMemorySize = requestedMemorySizeSupplier.get();
+    private Optional<ElasticWorkerEntity> claimStandbyElasticWorker(ElasticWorkerPurpose purpose, long referenceId, long requestedMemorySize) {
+        if (requestedMemorySize > config.getElasticWorkerStandbyMemorySize()) {
+            return Optional.empty();
+        }
+        for (ElasticWorkerEntity standby : elasticWorkerRepo.findAllByPurposeAndState(STANDBY, ElasticWorkerState.READY)) {
+            // a conditional update, only one of the concurrent claims succeeds
+            if (elasticWorkerRepo.claimStandby(standby.getId(), purpose, referenceId) == 1) {
+                return elasticWorkerRepo.findById(standby.getId());
+            }
+        }
+        return Optional.empty();
+    }
 
-            elasticWorkerScheduler.scheduleAsync(elasticWorker.getId(), requestedMemorySize, (hostAddress, throwable) -> {
-                if (throwable != null) {
-                    try {
-                        elasticWorker.setState(ElasticWorkerState.FAILURE);
-                        String failureMessage = throwable.getMessage();
-                        if (failureMessage.length() > MAX_FAILURE_MESSAGE_LENGTH) {
-                            failureMessage = failureMessage.substring(0, MAX_FAILURE_MESSAGE_LENGTH);
-                        }
-                        elasticWorker.setFailureMessage(failureMessage);
-                        elasticWorkerRepo.save(elasticWorker);
-                    } finally {
-                        taskScheduler.schedule(() -> elasticWorkerRepo.deleteById(elasticWorker.getId()),
-                                               Instant.now().plusSeconds(DELETION_DELAY));
+    private void startElasticWorker(ElasticWorkerEntity elasticWorker, long requestedMemorySize) {
+        elasticWorkerScheduler.scheduleAsync(elasticWorker.getId(), requestedMemorySize, (hostAddress, throwable) -> {
+            if (throwable != null) {
+                try {
+                    elasticWorker.setState(ElasticWorkerState.FAILURE);
+                    String failureMessage = String.valueOf(throwable.getMessage());
+                    if (failureMessage.length() > MAX_FAILURE_MESSAGE_LENGTH) {
+                        failureMessage = failureMessage.substring(0, MAX_FAILURE_MESSAGE_LENGTH);
                     }
-                } else {
-                    elasticWorker.setHostAddress(hostAddress);
-                    elasticWorker.setState(ElasticWorkerState.READY);
+                    elasticWorker.setFailureMessage(failureMessage);
                     elasticWorkerRepo.save(elasticWorker);
+                } finally {
+                    taskScheduler.schedule(() -> elasticWorkerRepo.deleteById(elasticWorker.getId()),
+                                           Instant.now().plusSeconds(DELETION_DELAY));
                 }
-            });
-            return elasticWorker;
+            } else {
+                // a standby worker may have been claimed meanwhile
+                ElasticWorkerEntity latest = elasticWorkerRepo.findById(elasticWorker.getId()).orElse(elasticWorker);
+                latest.setHostAddress(hostAddress);
+                latest.setState(ElasticWorkerState.READY);
+                elasticWorkerRepo.save(latest);
+            }
         });
     }
 
+    @Override
+    public void refillStandbyElasticWorkers() {
+        List<ElasticWorkerEntity> standbys = elasticWorkerRepo.findAllByPurpose(STANDBY);
+        int target = config.getElasticWorkerStandbyCount();
+        for (int i = standbys.size(); i < target; i++) {
+            // the reference id of a standby worker is only required to be unique
+            long referenceId = -(UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE) - 1;
+            startElasticWorker(createNewElasticWorker(STANDBY, referenceId), config.getElasticWorkerStandbyMemorySize());
+        }
+        for (int i = target; i < standbys.size(); i++) {
+            ElasticWorkerEntity surplus = standbys.get(i);
+            // not claimed meanwhile
+            if (surplus.getState() == ElasticWorkerState.READY && elasticWorkerRepo.deleteStandby(surplus.getId()) == 1) {
+                try {
+                    elasticWorkerScheduler.terminate(surplus.getId());
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
     private ElasticWorkerEntity createNewElasticWorker(ElasticWorkerPurpose purpose, long referenceId) {
         ElasticWorkerEntity newElasticWorker = new ElasticWorkerEntity();
         newElasticWorker.setPurpose(purpose);
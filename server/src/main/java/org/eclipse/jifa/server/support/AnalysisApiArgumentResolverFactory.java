@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -18,14 +18,17 @@ import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import org.eclipse.jifa.analysis.Api;
 import org.eclipse.jifa.analysis.ApiParameter;
+import org.eclipse.jifa.analysis.util.TypeParameterUtil;
 import org.eclipse.jifa.server.domain.entity.shared.file.FileEntity;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -137,6 +140,9 @@ public class AnalysisApiArgumentResolverFactory {
                                                   assert comparisonTargetPath;
                                                   return new ComparisonPathResolver(name);
                                               }
+                                          } else if (comparisonTargetPath) {
+                                              assert TypeParameterUtil.isListOf(type, Path.class);
+                                              return new ComparisonPathsResolver(name);
                                           } else {
                                               Class<?> raw;
                                               if (type instanceof Class<?> clazz) {
@@ -355,13 +361,48 @@ public class AnalysisApiArgumentResolverFactory {
             if (element == null) {
                 throw new IllegalArgumentException(key + " is required");
             }
-            if (!element.isJsonPrimitive() || element.getAsJsonPrimitive().isString()) {
-                throw new IllegalArgumentException(key + " must be the name of a comparison target");
+            return resolveComparisonPath(context, key, element);
+        }
+    }
+
+    static class ComparisonPathsResolver extends LeafResolver<List<Path>> {
+
+        ComparisonPathsResolver(String name) {
+            super(name, true);
+        }
+
+        @Override
+        List<Path> resolve(AnalysisApiArgumentContext context) {
+            JsonElement element = context.paramJson().get(key);
+            if (element == null) {
+                throw new IllegalArgumentException(key + " is required");
+            }
+            if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+                // names joined by ',' when passed as a query parameter
+                JsonArray array = new JsonArray();
+                for (String name : element.getAsString().split(",")) {
+                    array.add(name.trim());
+                }
+                element = array;
+            }
+            if (!element.isJsonArray()) {
+                throw new IllegalArgumentException(key + " must be the names of comparison targets");
             }
-            String name = element.getAsString();
-            FileEntity file = context.fileService().getFileByUniqueName(name, context.type());
-            return context.storageService().locationOf(file.getType(), file.getUniqueName());
+            List<Path> paths = new ArrayList<>();
+            for (JsonElement e : element.getAsJsonArray()) {
+                paths.add(resolveComparisonPath(context, key, e));
+            }
+            return paths;
+        }
+    }
+
+    private static Path resolveComparisonPath(AnalysisApiArgumentContext context, String key, JsonElement element) {
+        if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isString()) {
+            throw new IllegalArgumentException(key + " must be the name of a comparison target");
         }
+        String name = element.getAsString();
+        FileEntity file = context.fileService().getFileByUniqueName(name, context.type());
+        return context.storageService().locationOf(file.getType(), file.getUniqueName());
     }
 
     static class ObjectResolver extends LeafResolver<Object> {
@@ -0,0 +1,278 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.support;
+
+import com.github.luben.zstd.ZstdInputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Decompresses the files whose formats are detected from their magic bytes, so that compressed dumps and logs are
+ * stored ready for analysis
+ */
+@Slf4j
+public final class Decompression {
+
+    /**
+     * The count of bytes needed to detect the format
+     */
+    public static final int HEAD_SIZE = 4;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Small files are not checked against the max ratio since logs may be highly compressible
+     */
+    private static final long RATIO_CHECK_MIN_SIZE = 64L * 1024 * 1024;
+
+    private Decompression() {
+    }
+
+    /**
+     * The limits of a decompression, which keep a decompression bomb from filling the disk
+     *
+     * @param maxSize  the max size of the decompressed content in bytes
+     * @param maxRatio the max ratio of the decompressed size to the compressed size
+     */
+    public record Limit(long maxSize, int maxRatio) {
+
+        public static final Limit NONE = new Limit(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+        void check(long size, long compressedSize) throws IOException {
+            if (size > maxSize) {
+                throw new IOException("The decompressed size exceeds the limit of " + maxSize + " bytes");
+            }
+            if (size > RATIO_CHECK_MIN_SIZE && size / maxRatio > compressedSize) {
+                throw new IOException("The decompression ratio exceeds the limit of " + maxRatio);
+            }
+        }
+    }
+
+    public enum Format {
+
+        // concatenated members are decompressed as a whole
+        GZIP(0x1f, 0x8b),
+
+        // concatenated frames are decompressed as a whole
+        ZSTD(0x28, 0xb5, 0x2f, 0xfd),
+
+        // the archive must contain a single file
+        ZIP(0x50, 0x4b, 0x03, 0x04);
+
+        private final byte[] magic;
+
+        Format(int... magic) {
+            this.magic = new byte[magic.length];
+            for (int i = 0; i < magic.length; i++) {
+                this.magic[i] = (byte) magic[i];
+            }
+        }
+    }
+
+    /**
+     * @param head the first bytes of a file
+     * @return the format, or null if the file is not compressed in a supported format
+     */
+    public static Format detect(byte[] head) {
+        for (Format format : Format.values()) {
+            if (head.length >= format.magic.length &&
+                Arrays.equals(head, 0, format.magic.length, format.magic, 0, format.magic.length)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param in the stream which must support mark, it is reset to the start
+     * @return the format, or null if the stream is not compressed in a supported format
+     */
+    public static Format detect(BufferedInputStream in) throws IOException {
+        in.mark(HEAD_SIZE);
+        byte[] head = in.readNBytes(HEAD_SIZE);
+        in.reset();
+        return detect(head);
+    }
+
+    /**
+     * @param compressed  the compressed stream which is closed
+     * @param format      the format
+     * @param destination the destination of the decompressed content
+     * @param executor    if not null, the compressed stream is read on it so that the read, such as a download,
+     *                    overlaps the decompression
+     * @param limit       the limit, the destination is deleted if it is exceeded or the decompression fails
+     */
+    public static void decompress(InputStream compressed, Format format, Path destination, Executor executor,
+                                  Limit limit) throws IOException {
+        try {
+            if (executor == null) {
+                try (InputStream in = compressed) {
+                    decompressTo(in, format, destination, limit);
+                }
+            } else {
+                decompressAsync(compressed, format, destination, executor, limit);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(destination);
+            throw e;
+        }
+    }
+
+    private static void decompressAsync(InputStream compressed, Format format, Path destination, Executor executor,
+                                        Limit limit) throws IOException {
+        PipedInputStream pipe = new PipedInputStream(BUFFER_SIZE);
+        PipedOutputStream sink = new PipedOutputStream(pipe);
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+            try (InputStream in = compressed; OutputStream out = sink) {
+                in.transferTo(out);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        try (InputStream in = pipe) {
+            decompressTo(in, format, destination, limit);
+        } catch (IOException | RuntimeException e) {
+            // the pipe is closed, so the reader fails instead of blocking on the full pipe
+            reader.cancel(false);
+            throw e;
+        }
+        try {
+            // a failed read also ends the pipe, which must not be taken as the end of the content
+            reader.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Decompress a file in place if it is compressed, which needs the space of both before the compressed one is
+     * deleted
+     *
+     * @param file  the file
+     * @param limit the limit, the file is left compressed if it is exceeded
+     */
+    public static void decompressInPlace(Path file, Limit limit) throws IOException {
+        Format format;
+        try (InputStream in = Files.newInputStream(file)) {
+            format = detect(in.readNBytes(HEAD_SIZE));
+        }
+        if (format == null) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".decompressing");
+        try {
+            decompress(Files.newInputStream(file), format, temp, null, limit);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void decompressTo(InputStream in, Format format, Path destination, Limit limit)
+            throws IOException {
+        log.info("Decompress {} to {}", format, destination);
+        CountingInputStream compressed = new CountingInputStream(in);
+        switch (format) {
+            case GZIP -> copy(new GZIPInputStream(compressed, BUFFER_SIZE), compressed, destination, limit);
+            case ZSTD -> copy(new ZstdInputStream(compressed), compressed, destination, limit);
+            case ZIP -> {
+                ZipInputStream zip = new ZipInputStream(compressed);
+                ZipEntry entry = nextFile(zip);
+                if (entry == null) {
+                    throw new IOException("The zip archive contains no file");
+                }
+                copy(zip, compressed, destination, limit);
+                if (nextFile(zip) != null) {
+                    throw new IOException("The zip archive contains more than one file");
+                }
+            }
+        }
+    }
+
+    private static ZipEntry nextFile(ZipInputStream zip) throws IOException {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null && entry.isDirectory()) {
+            zip.closeEntry();
+        }
+        return entry;
+    }
+
+    private static void copy(InputStream in, CountingInputStream compressed, Path destination, Limit limit)
+            throws IOException {
+        try (OutputStream out = Files.newOutputStream(destination)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long size = 0;
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                size += n;
+                // checked before the write so that the disk never holds more than the limit
+                limit.check(size, compressed.count);
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
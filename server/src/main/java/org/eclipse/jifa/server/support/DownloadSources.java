@@ -0,0 +1,137 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.support;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The sources of {@link ParallelDownloader}
+ */
+public final class DownloadSources {
+
+    private static final Pattern MD5_ETAG = Pattern.compile("[0-9a-fA-F]{32}");
+
+    private DownloadSources() {
+    }
+
+    /**
+     * The size, the support of ranges and the checksum of a http url are probed by a HEAD request, the other urls are
+     * read as a whole.
+     *
+     * @param url the url
+     * @return the source
+     */
+    public static ParallelDownloader.Source url(String url) throws IOException {
+        URL u = new URL(url);
+        URLConnection probe = u.openConnection();
+        if (!(probe instanceof HttpURLConnection http)) {
+            return new UrlSource(u, probe.getContentLengthLong(), false, null, null);
+        }
+        try {
+            http.setRequestMethod("HEAD");
+            http.setRequestProperty("Accept-Encoding", "identity");
+            if (http.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                // some servers reject HEAD requests
+                return new UrlSource(u, -1, false, null, null);
+            }
+            String etag = http.getHeaderField("ETag");
+            // a weak etag does not identify the bytes
+            String version = etag != null && !etag.startsWith("W/") ? etag : http.getHeaderField("Last-Modified");
+            String contentMD5 = http.getHeaderField("Content-MD5");
+            String md5 = contentMD5 != null ? HexFormat.of().formatHex(Base64.getDecoder().decode(contentMD5.trim())) : null;
+            return new UrlSource(u, http.getContentLengthLong(),
+                                 "bytes".equalsIgnoreCase(http.getHeaderField("Accept-Ranges")), version, md5);
+        } finally {
+            http.disconnect();
+        }
+    }
+
+    /**
+     * @param s3     the client
+     * @param bucket the bucket
+     * @param key    the key of the object
+     * @return the source
+     */
+    public static ParallelDownloader.Source s3(AmazonS3 s3, String bucket, String key) {
+        ObjectMetadata metadata = s3.getObjectMetadata(bucket, key);
+        String etag = metadata.getETag();
+        // the etag of an object uploaded in parts or encrypted by kms or a customer key is not its md5
+        boolean md5 = etag != null && MD5_ETAG.matcher(etag).matches() &&
+                      !"aws:kms".equals(metadata.getSSEAlgorithm()) && metadata.getSSECustomerAlgorithm() == null;
+        return new S3Source(s3, bucket, key, metadata.getContentLength(), etag, md5 ? etag : null);
+    }
+
+    private record UrlSource(URL url, long size, boolean rangeSupported, String version, String md5)
+            implements ParallelDownloader.Source {
+
+        @Override
+        public InputStream open(long start, long length) throws IOException {
+            URLConnection conn = url.openConnection();
+            if (!(conn instanceof HttpURLConnection http) || (start == 0 && length < 0)) {
+                return conn.getInputStream();
+            }
+            http.setRequestProperty("Accept-Encoding", "identity");
+            http.setRequestProperty("Range", "bytes=" + start + "-" + (length < 0 ? "" : start + length - 1));
+            if (version != null) {
+                // the whole content is returned instead of the range if it has changed
+                http.setRequestProperty("If-Range", version);
+            }
+            if (http.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                http.disconnect();
+                throw new IOException("Unexpected response code " + http.getResponseCode() + " of a ranged request, " +
+                                      "the content may have changed");
+            }
+            return http.getInputStream();
+        }
+    }
+
+    private record S3Source(AmazonS3 s3, String bucket, String key, long size, String version, String md5)
+            implements ParallelDownloader.Source {
+
+        @Override
+        public boolean rangeSupported() {
+            return true;
+        }
+
+        @Override
+        public InputStream open(long start, long length) throws IOException {
+            GetObjectRequest request = new GetObjectRequest(bucket, key);
+            if (length < 0) {
+                request.setRange(start);
+            } else {
+                request.setRange(start, start + length - 1);
+            }
+            if (version != null) {
+                request.setMatchingETagConstraints(List.of(version));
+            }
+            S3Object object = s3.getObject(request);
+            if (object == null) {
+                throw new IOException("The object has changed");
+            }
+            return object.getObjectContent();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.support;
+
+import javax.management.NotificationEmitter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the max live set of the heap, i.e. the usage of the old generation right after a collection.
+ * <p>
+ * Unlike the peak usage of the pools, which grows with the heap given to the jvm since garbage is collected later in a
+ * larger heap, the live set only depends on the analysis. The usage after a collection only reflects the latest one, so
+ * it is sampled after every collection.
+ */
+public class LiveSetMonitor {
+
+    private final List<MemoryPoolMXBean> oldGenerationPools;
+
+    private final AtomicLong maxLiveSetSize = new AtomicLong();
+
+    public LiveSetMonitor() {
+        oldGenerationPools = ManagementFactory.getMemoryPoolMXBeans()
+                                              .stream()
+                                              .filter(LiveSetMonitor::isOldGeneration)
+                                              .toList();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener((notification, handback) -> sample(), null, null);
+            }
+        }
+    }
+
+    /**
+     * @return the max live set in bytes observed so far, 0 if no collection of the old generation is observed
+     */
+    public long maxLiveSetSize() {
+        sample();
+        return maxLiveSetSize.get();
+    }
+
+    private void sample() {
+        long size = 0;
+        for (MemoryPoolMXBean pool : oldGenerationPools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) {
+                size += usage.getUsed();
+            }
+        }
+        maxLiveSetSize.accumulateAndGet(size, Math::max);
+    }
+
+    /**
+     * Eden and survivor spaces support no usage threshold since they are emptied by every collection.
+     */
+    static boolean isOldGeneration(MemoryPoolMXBean pool) {
+        return pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() &&
+               pool.isCollectionUsageThresholdSupported();
+    }
+}
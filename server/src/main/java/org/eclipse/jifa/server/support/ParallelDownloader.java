@@ -0,0 +1,350 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads a source in parts of a fixed size by ranged reads which are written concurrently to their positions of
+ * the destination. The completed parts are recorded in a checkpoint file next to the destination, so that a download
+ * interrupted by failures resumes from the parts that are not completed.
+ * <p>
+ * A compressed source is downloaded as a stream which is decompressed while it is read, since the decompression
+ * must be in order.
+ */
+@Slf4j
+public class ParallelDownloader {
+
+    static final int MAX_PART_ATTEMPTS = 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Executor executor;
+
+    private final long partSize;
+
+    private final int concurrency;
+
+    private final boolean decompress;
+
+    private final Decompression.Limit decompressionLimit;
+
+    /**
+     * @param executor           the executor which reads the parts
+     * @param partSize           the size of a part in bytes
+     * @param concurrency        the max count of parts read concurrently by a download
+     * @param decompressionLimit the limit of decompressing the sources compressed in the formats of
+     *                           {@link Decompression}, null to not decompress them
+     */
+    public ParallelDownloader(Executor executor, long partSize, int concurrency,
+                              Decompression.Limit decompressionLimit) {
+        this.executor = executor;
+        this.partSize = partSize;
+        this.concurrency = concurrency;
+        this.decompress = decompressionLimit != null;
+        this.decompressionLimit = decompressionLimit;
+    }
+
+    /**
+     * The source of a download
+     */
+    public interface Source {
+
+        /**
+         * @return the size in bytes, or a negative value if unknown
+         */
+        long size();
+
+        /**
+         * @return whether {@link #open(long, long)} supports ranges
+         */
+        boolean rangeSupported();
+
+        /**
+         * @return the version of the content such as an etag, the checkpoint of another version is discarded, null if
+         * unknown
+         */
+        String version();
+
+        /**
+         * @return the md5 of the content in hex, null if unknown
+         */
+        String md5();
+
+        /**
+         * @param start  the first byte
+         * @param length the count of bytes, or a negative value to read to the end
+         * @return the stream of the range
+         */
+        InputStream open(long start, long length) throws IOException;
+    }
+
+    /**
+     * @param source      the source
+     * @param destination the destination
+     * @param listener    the listener of the sizes
+     */
+    public void download(Source source, Path destination, FileTransferListener listener) throws IOException {
+        long size = source.size();
+        listener.fireTotalSize(Math.max(size, 0));
+        if (size >= 0 && source.rangeSupported() && (!decompress || !compressed(source, size))) {
+            downloadParts(source, size, destination, listener);
+            verify(source, size, destination);
+        } else {
+            stream(source, size, destination, listener);
+        }
+    }
+
+    private static boolean compressed(Source source, long size) throws IOException {
+        if (size < Decompression.HEAD_SIZE) {
+            return false;
+        }
+        try (InputStream in = source.open(0, Decompression.HEAD_SIZE)) {
+            return Decompression.detect(in.readNBytes(Decompression.HEAD_SIZE)) != null;
+        }
+    }
+
+    /**
+     * The size and the checksum are verified against the bytes read from the source, which are not stored if they
+     * are decompressed
+     */
+    private void stream(Source source, long size, Path destination, FileTransferListener listener) throws IOException {
+        MessageDigest digest = source.md5() != null ? newMD5() : null;
+        AtomicLong transferredSize = new AtomicLong();
+        InputStream raw = new FilterInputStream(source.open(0, -1)) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    listener.fireTransferredSize(transferredSize.incrementAndGet());
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int length = super.read(b, off, len);
+                if (length > 0) {
+                    listener.fireTransferredSize(transferredSize.addAndGet(length));
+                }
+                return length;
+            }
+        };
+        BufferedInputStream in = new BufferedInputStream(digest != null ? new DigestInputStream(raw, digest) : raw,
+                                                         BUFFER_SIZE);
+        Decompression.Format format = decompress ? Decompression.detect(in) : null;
+        if (format != null) {
+            Decompression.decompress(in, format, destination, executor, decompressionLimit);
+        } else {
+            try (InputStream input = in) {
+                Files.copy(input, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        if (size >= 0 && transferredSize.get() != size) {
+            throw new IOException("Size mismatch, expected " + size + " bytes, but got " + transferredSize.get());
+        }
+        if (digest != null) {
+            checkMD5(source.md5(), digest);
+        }
+    }
+
+    private void downloadParts(Source source, long size, Path destination, FileTransferListener listener) throws IOException {
+        int partCount = (int) ((size + partSize - 1) / partSize);
+        Path checkpointPath = PartCheckpoint.pathOf(destination);
+        PartCheckpoint checkpoint = PartCheckpoint.load(checkpointPath);
+        if (checkpoint == null || checkpoint.size() != size || checkpoint.partSize() != partSize ||
+            !Objects.equals(checkpoint.version(), source.version())) {
+            checkpoint = new PartCheckpoint(size, partSize, source.version());
+            Files.deleteIfExists(destination);
+        } else {
+            log.info("Resume the download of {}, completed parts: {}/{}", destination,
+                     checkpoint.completed().cardinality(), partCount);
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        Progress progress = new Progress(listener);
+        for (int i = 0; i < partCount; i++) {
+            if (checkpoint.completed().get(i)) {
+                progress.add(partLength(i, size));
+            } else {
+                pending.add(i);
+            }
+        }
+        progress.add(0);
+
+        PartCheckpoint current = checkpoint;
+        try (FileChannel channel = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            AtomicInteger next = new AtomicInteger();
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (int w = 0; w < Math.min(concurrency, pending.size()); w++) {
+                workers.add(CompletableFuture.runAsync(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < pending.size()) {
+                        int part = pending.get(index);
+                        try {
+                            downloadPart(source, size, part, channel, progress);
+                        } catch (RuntimeException e) {
+                            // the other workers stop after their current parts
+                            next.set(pending.size());
+                            throw e;
+                        }
+                        current.complete(part, checkpointPath);
+                    }
+                }, executor));
+            }
+            try {
+                CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedPartException partException) {
+                    throw partException.getCause();
+                }
+                throw e;
+            }
+            channel.force(false);
+        }
+        Files.deleteIfExists(checkpointPath);
+    }
+
+    private void downloadPart(Source source, long size, int part, FileChannel channel, Progress progress) {
+        long start = part * partSize;
+        long length = partLength(part, size);
+        // the bytes of the part which are reported by the previous attempts
+        long reported = 0;
+        for (int attempt = 1; ; attempt++) {
+            AtomicLong written = new AtomicLong();
+            try (InputStream in = source.open(start, length)) {
+                transfer(in, channel, start, written, reported, progress);
+                if (written.get() != length) {
+                    throw new IOException("Part " + part + " is truncated, expected " + length + " bytes, but got " +
+                                          written.get());
+                }
+                // a recorded part is not downloaded again, so it must survive a crash
+                channel.force(false);
+                return;
+            } catch (IOException e) {
+                // the transferred size never decreases, the bytes transferred again are not reported twice
+                reported = Math.max(reported, written.get());
+                if (attempt >= MAX_PART_ATTEMPTS) {
+                    throw new UncheckedPartException(e);
+                }
+                log.warn("Failed to download part {} of {}, attempt {}", part, size, attempt, e);
+            }
+        }
+    }
+
+    private long partLength(int part, long size) {
+        return Math.min(partSize, size - part * partSize);
+    }
+
+    private static void transfer(InputStream in, FileChannel channel, long position, AtomicLong written,
+                                 long reported, Progress progress) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length;
+        while ((length = in.read(buffer)) >= 0) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+            while (byteBuffer.hasRemaining()) {
+                channel.write(byteBuffer, position + written.get() + byteBuffer.position());
+            }
+            long before = written.getAndAdd(length);
+            long delta = before + length - Math.max(before, reported);
+            if (delta > 0) {
+                progress.add(delta);
+            }
+        }
+    }
+
+    private static void verify(Source source, long size, Path destination) throws IOException {
+        long actualSize = Files.size(destination);
+        if (size >= 0 && actualSize != size) {
+            throw new IOException("Size mismatch, expected " + size + " bytes, but got " + actualSize);
+        }
+        if (source.md5() != null) {
+            MessageDigest digest = newMD5();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(destination), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            checkMD5(source.md5(), digest);
+        }
+    }
+
+    private static MessageDigest newMD5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void checkMD5(String expected, MessageDigest digest) throws IOException {
+        String actual = HexFormat.of().formatHex(digest.digest());
+        if (!expected.equalsIgnoreCase(actual)) {
+            throw new IOException("Checksum mismatch, expected md5 " + expected + ", but got " + actual);
+        }
+    }
+
+    /**
+     * Reports the transferred size of the parts written concurrently in order
+     */
+    private static class Progress {
+
+        private final FileTransferListener listener;
+
+        private long transferredSize;
+
+        Progress(FileTransferListener listener) {
+            this.listener = listener;
+        }
+
+        synchronized void add(long delta) {
+            transferredSize += delta;
+            listener.fireTransferredSize(transferredSize);
+        }
+    }
+
+    private static class UncheckedPartException extends RuntimeException {
+
+        UncheckedPartException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+
+import static org.eclipse.jifa.common.util.GsonHolder.GSON;
+
+/**
+ * The completed parts of a file which is written in parts of a fixed size, saved in a file next to it so that the
+ * writing resumes from the parts that are not completed
+ */
+@Slf4j
+public class PartCheckpoint {
+
+    static final String SUFFIX = ".checkpoint";
+
+    private final long size;
+
+    private final long partSize;
+
+    private final String version;
+
+    private long[] completed;
+
+    /**
+     * @param size     the size of the file
+     * @param partSize the size of a part, the last part may be smaller
+     * @param version  the version of the content, may be null
+     */
+    public PartCheckpoint(long size, long partSize, String version) {
+        this.size = size;
+        this.partSize = partSize;
+        this.version = version;
+        this.completed = new long[0];
+    }
+
+    /**
+     * @param file the file written in parts
+     * @return the path of the checkpoint of the file
+     */
+    public static Path pathOf(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    /**
+     * @param path the path of the checkpoint
+     * @return the checkpoint, null if it does not exist or is broken
+     */
+    public static PartCheckpoint load(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return GSON.fromJson(Files.readString(path, StandardCharsets.UTF_8), PartCheckpoint.class);
+        } catch (Exception e) {
+            log.warn("Discard the broken checkpoint {}", path, e);
+            return null;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long partSize() {
+        return partSize;
+    }
+
+    public String version() {
+        return version;
+    }
+
+    public int partCount() {
+        return (int) ((size + partSize - 1) / partSize);
+    }
+
+    /**
+     * @param part the index of a part
+     * @return the size of the part
+     */
+    public long partLength(int part) {
+        return Math.min(partSize, size - part * partSize);
+    }
+
+    public synchronized BitSet completed() {
+        return BitSet.valueOf(completed);
+    }
+
+    /**
+     * @return the total size of the completed parts
+     */
+    public synchronized long completedSize() {
+        BitSet bits = BitSet.valueOf(completed);
+        long completedSize = 0;
+        for (int part = bits.nextSetBit(0); part >= 0; part = bits.nextSetBit(part + 1)) {
+            completedSize += partLength(part);
+        }
+        return completedSize;
+    }
+
+    /**
+     * Record a completed part, a failure of saving is logged and the part will be written again if resumed. The part
+     * must be forced to the storage device before it is recorded, otherwise a crash may lose a recorded part.
+     *
+     * @param part the index of the part
+     * @param path the path of the checkpoint
+     */
+    public synchronized void complete(int part, Path path) {
+        BitSet bits = BitSet.valueOf(completed);
+        bits.set(part);
+        completed = bits.toLongArray();
+        try {
+            save(path);
+        } catch (IOException e) {
+            log.warn("Failed to save the checkpoint {}", path, e);
+        }
+    }
+
+    /**
+     * @param path the path of the checkpoint
+     */
+    public synchronized void save(Path path) throws IOException {
+        // replaced atomically so that a crash leaves the previous checkpoint
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temp, GSON.toJson(this), StandardCharsets.UTF_8);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
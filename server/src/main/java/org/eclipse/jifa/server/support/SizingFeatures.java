@@ -0,0 +1,110 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.support;
+
+import org.eclipse.jifa.server.enums.FileType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The features of a file which are cheap to read and which the memory footprint of its analysis is proportional to.
+ *
+ * @param category  the files of a category share the ratio of the footprint to the magnitude
+ * @param magnitude bytes for binary files, lines for text files
+ */
+public record SizingFeatures(String category, long magnitude) {
+
+    // bytes of the head of a text file whose lines are counted
+    static final int SAMPLE_SIZE = 8 * 1024 * 1024;
+
+    private static final int DEFAULT_LINE_LENGTH = 100;
+
+    private static final byte[] HPROF_MAGIC = "JAVA PROFILE ".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * @param type the file type
+     * @param path the file, null if not readable on this node
+     * @param size the file size
+     * @return the features of the file
+     */
+    public static SizingFeatures of(FileType type, Path path, long size) {
+        return switch (type) {
+            case HEAP_DUMP -> new SizingFeatures("hprof" + idSizeSuffix(path), size);
+            case JFR_FILE -> new SizingFeatures("jfr", size);
+            case GC_LOG, THREAD_DUMP -> new SizingFeatures(type.getStorageDirectoryName() + "-lines",
+                                                           estimateLines(path, size));
+        };
+    }
+
+    /**
+     * The header of hprof is "JAVA PROFILE 1.0.x\0" followed by the u4 size of identifiers, which is 4 if oops
+     * are compressed, so that the same bytes hold more objects
+     */
+    private static String idSizeSuffix(Path path) {
+        if (path == null) {
+            return "";
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] head = in.readNBytes(64);
+            for (int i = 0; i < HPROF_MAGIC.length; i++) {
+                if (i >= head.length || head[i] != HPROF_MAGIC[i]) {
+                    return "";
+                }
+            }
+            for (int i = HPROF_MAGIC.length; i + 4 < head.length; i++) {
+                if (head[i] == 0) {
+                    int idSize = ByteBuffer.wrap(head, i + 1, 4).getInt();
+                    return idSize == 4 || idSize == 8 ? "-id" + idSize : "";
+                }
+            }
+        } catch (IOException ignored) {
+        }
+        return "";
+    }
+
+    /**
+     * Counts the lines of the head and extrapolates to the whole file
+     */
+    private static long estimateLines(Path path, long size) {
+        if (path != null) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(SAMPLE_SIZE, Math.max(size, 1)));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) <= 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                int sampled = buffer.limit();
+                long lines = 0;
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() == '\n') {
+                        lines++;
+                    }
+                }
+                if (sampled > 0) {
+                    return Math.max(1, (long) Math.ceil((double) Math.max(lines, 1) * size / sampled));
+                }
+            } catch (IOException ignored) {
+            }
+        }
+        return Math.max(1, size / DEFAULT_LINE_LENGTH);
+    }
+}
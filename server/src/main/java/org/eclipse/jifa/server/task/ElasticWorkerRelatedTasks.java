@@ -15,6 +15,7 @@ package org.eclipse.jifa.server.task;
 import org.eclipse.jifa.server.ConfigurationAccessor;
 import org.eclipse.jifa.server.condition.Master;
 import org.eclipse.jifa.server.domain.entity.cluster.ElasticWorkerEntity;
+import org.eclipse.jifa.server.enums.ElasticWorkerPurpose;
 import org.eclipse.jifa.server.enums.ElasticWorkerState;
 import org.eclipse.jifa.server.repository.ElasticWorkerRepo;
 import org.eclipse.jifa.server.service.ElasticWorkerScheduler;
@@ -54,6 +55,14 @@ public class ElasticWorkerRelatedTasks extends ConfigurationAccessor {
         lockSupport.runUnderLock(elasticWorkerScheduler::terminateInconsistentInstancesQuietly, this.getClass().getSimpleName() + "#terminateInconsistentInstances");
     }
 
+    @Scheduled(initialDelay = 10, fixedDelay = 10, timeUnit = TimeUnit.SECONDS)
+    void refillStandbyInstances() {
+        if (config.getElasticWorkerStandbyCount() == 0 && elasticWorkerRepo.findAllByPurpose(ElasticWorkerPurpose.STANDBY).isEmpty()) {
+            return;
+        }
+        lockSupport.runUnderLock(workerService::refillStandbyElasticWorkers, this.getClass().getSimpleName() + "#refillStandbyInstances");
+    }
+
     @Scheduled(initialDelay = 1, fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
     void terminateUnhealthyInstances() {
         lockSupport.runUnderLock(() -> {
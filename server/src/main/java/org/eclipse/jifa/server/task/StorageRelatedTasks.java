@@ -14,6 +14,8 @@ package org.eclipse.jifa.server.task;
 
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jifa.server.ConfigurationAccessor;
+import org.eclipse.jifa.server.domain.entity.shared.file.TransferringFileEntity;
+import org.eclipse.jifa.server.enums.FileTransferState;
 import org.eclipse.jifa.server.enums.FileType;
 import org.eclipse.jifa.server.repository.FileRepo;
 import org.eclipse.jifa.server.repository.TransferringFileRepo;
@@ -24,6 +26,7 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -85,6 +88,29 @@ public class StorageRelatedTasks extends ConfigurationAccessor {
         }, this.getClass().getSimpleName() + "#sync");
     }
 
+    /**
+     * A chunked upload whose transferring file timed out or is gone is never completed, but its file and checkpoint
+     * stay on the node that received the chunks, and its missing chunks keep reserving space
+     */
+    @Scheduled(initialDelay = 1, fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public void scavengeAbandonedChunkedUploads() {
+        if (!storageService.available()) {
+            return;
+        }
+        for (Map.Entry<FileType, Set<String>> entry : storageService.getChunkedUploads().entrySet()) {
+            for (String name : entry.getValue()) {
+                Optional<TransferringFileEntity> transferringFile = transferringFileRepo.findByUniqueName(name);
+                boolean abandoned = transferringFile.isPresent()
+                                    ? transferringFile.get().getTransferState() == FileTransferState.FAILURE
+                                    : fileRepo.findByUniqueName(name).isEmpty();
+                if (abandoned) {
+                    log.info("Scavenge the abandoned chunked upload {}", name);
+                    storageService.scavenge(entry.getKey(), name);
+                }
+            }
+        }
+    }
+
     private boolean shouldClean() {
         try {
             long availableSpace = storageService.getAvailableSpace();
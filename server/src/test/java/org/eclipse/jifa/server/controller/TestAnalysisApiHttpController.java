@@ -13,6 +13,7 @@
 package org.eclipse.jifa.server.controller;
 
 import org.eclipse.jifa.server.Constant;
+import org.eclipse.jifa.server.domain.dto.RelayedResponse;
 import org.eclipse.jifa.server.service.AnalysisApiService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,10 +23,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CompletableFuture;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
@@ -92,4 +98,37 @@ public class TestAnalysisApiHttpController {
                                                """))
            .andReturn();
     }
+
+    @Test
+    public void testSseRelayedResponse() throws Throwable {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        Mockito.when(apiService.invoke(Mockito.any())).thenAnswer((Answer<CompletableFuture<?>>) invocation -> future);
+
+        MvcResult result = mvc.perform(post(Constant.HTTP_API_PREFIX + Constant.HTTP_ANALYSIS_API_MAPPING)
+                                               .contentType(MediaType.APPLICATION_JSON)
+                                               .header(Constant.HTTP_HEADER_ENABLE_SSE, "true")
+                                               .content("""
+                                                                {
+                                                                  "namespace": "test-namespace",
+                                                                  "api": "test-api",
+                                                                  "target": "test-target"
+                                                                }"""))
+                              .andExpect(request().asyncStarted())
+                              .andReturn();
+
+        // a relayed response is completed on an event loop, where blocking is not allowed
+        Flux<DataBuffer> body = Flux.just("[1", ",2]")
+                                    .map(part -> DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8)));
+        Schedulers.parallel().schedule(() -> future.complete(new RelayedResponse(body)));
+
+        mvc.perform(asyncDispatch(result))
+           .andExpect(status().isOk())
+           .andExpect(content().contentType(MediaType.TEXT_EVENT_STREAM))
+           .andExpect(content().string("""
+                                               event:response
+                                               data:[1,2]
+
+                                               """))
+           .andReturn();
+    }
 }
@@ -1,5 +1,5 @@
 /********************************************************************************
- * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ * Copyright (c) 2023, 2024 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -17,6 +17,8 @@ import org.eclipse.jifa.common.domain.request.PagingRequest;
 import org.eclipse.jifa.common.domain.vo.PageView;
 import org.eclipse.jifa.common.util.PageViewBuilder;
 import org.eclipse.jifa.server.Constant;
+import org.eclipse.jifa.server.domain.dto.ChunkedUpload;
+import org.eclipse.jifa.server.domain.dto.ChunkedUploadRequest;
 import org.eclipse.jifa.server.domain.dto.FileTransferProgress;
 import org.eclipse.jifa.server.domain.dto.FileTransferRequest;
 import org.eclipse.jifa.server.domain.dto.FileView;
@@ -38,6 +40,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -48,6 +51,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -140,6 +144,39 @@ public class TestFileController {
            .andExpect(content().json(Long.toString(1L)));
     }
 
+    @Test
+    public void testChunkedUpload() throws Throwable {
+        ChunkedUpload upload = new ChunkedUpload(1L, 3000, 1024, 3, List.of(0, 1, 2));
+        Mockito.when(fileService.handleChunkedUploadRequest(Mockito.any())).thenReturn(upload);
+        Mockito.when(fileService.getChunkedUpload(1L)).thenReturn(upload);
+        Mockito.when(fileService.handleChunkedUploadCompleteRequest(1L)).thenReturn(2L);
+
+        ChunkedUploadRequest request = new ChunkedUploadRequest();
+        request.setType(FileType.HEAP_DUMP);
+        request.setFilename("heap.hprof");
+        request.setSize(3000);
+        mvc.perform(post(Constant.HTTP_API_PREFIX + "/files/upload/chunked")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(GSON.toJson(request)))
+           .andExpect(status().isOk())
+           .andExpect(content().json(GSON.toJson(upload)));
+
+        mvc.perform(get(Constant.HTTP_API_PREFIX + "/files/upload/chunked/1"))
+           .andExpect(status().isOk())
+           .andExpect(content().json(GSON.toJson(upload)));
+
+        mvc.perform(put(Constant.HTTP_API_PREFIX + "/files/upload/chunked/1/chunks/2")
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                            .content(new byte[]{1, 2, 3}))
+           .andExpect(status().isOk());
+        Mockito.verify(fileService).handleChunkUploadRequest(Mockito.eq(1L), Mockito.eq(2), Mockito.any(InputStream.class),
+                                                             Mockito.eq(3L));
+
+        mvc.perform(post(Constant.HTTP_API_PREFIX + "/files/upload/chunked/1/complete"))
+           .andExpect(status().isOk())
+           .andExpect(content().json(Long.toString(2L)));
+    }
+
     @Test
     public void testDownload() throws Throwable {
         File tempFile = File.createTempFile("test", "txt");
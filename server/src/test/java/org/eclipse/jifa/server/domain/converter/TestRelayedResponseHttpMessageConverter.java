@@ -0,0 +1,114 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.domain.converter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.eclipse.jifa.server.domain.dto.RelayedResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestRelayedResponseHttpMessageConverter {
+
+    private static Flux<DataBuffer> chunks(String... parts) {
+        return Flux.fromArray(parts)
+                   .map(part -> DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void test() throws Exception {
+        RelayedResponseHttpMessageConverter converter = new RelayedResponseHttpMessageConverter();
+        assertTrue(converter.canWrite(RelayedResponse.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(String.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canRead(RelayedResponse.class, MediaType.APPLICATION_JSON));
+
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(new RelayedResponse(chunks("{\"a\":", "[1,2,", "3]}")), MediaType.APPLICATION_JSON, message);
+        assertEquals("{\"a\":[1,2,3]}", message.getBodyAsString(StandardCharsets.UTF_8));
+        assertEquals(MediaType.APPLICATION_JSON, message.getHeaders().getContentType());
+    }
+
+    @Test
+    public void testAggregate() throws ExecutionException, InterruptedException {
+        assertArrayEquals("[1,2]".getBytes(StandardCharsets.UTF_8),
+                          new RelayedResponse(chunks("[1", ",2]")).aggregate().get());
+        assertEquals(0, new RelayedResponse(Flux.fromIterable(List.of())).aggregate().get().length);
+    }
+
+    @Test
+    public void testReleaseOnError() {
+        NettyDataBufferFactory factory = new NettyDataBufferFactory(Unpooled.buffer().alloc());
+        List<ByteBuf> emitted = new ArrayList<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<DataBuffer> body = Flux.just("[1", ",2", "]")
+                                    .map(part -> {
+                                        ByteBuf buf = Unpooled.copiedBuffer(part, StandardCharsets.UTF_8);
+                                        emitted.add(buf);
+                                        return (DataBuffer) factory.wrap(buf);
+                                    })
+                                    .doOnCancel(() -> cancelled.set(true));
+
+        // the client goes away while the first chunk is written
+        HttpOutputMessage message = new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        throw new IOException("Broken pipe");
+                    }
+                };
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+        assertThrows(IOException.class, () -> new RelayedResponseHttpMessageConverter()
+            .write(new RelayedResponse(body), MediaType.APPLICATION_JSON, message));
+        assertTrue(cancelled.get());
+        assertEquals(1, emitted.size());
+        assertEquals(0, emitted.get(0).refCnt());
+    }
+
+    @Test
+    public void testRelease() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        new RelayedResponse(chunks("[1", ",2]").doOnCancel(() -> cancelled.set(true))).release();
+        assertTrue(cancelled.get());
+    }
+}
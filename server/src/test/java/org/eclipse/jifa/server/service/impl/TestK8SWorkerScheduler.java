@@ -0,0 +1,257 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.service.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.models.V1ContainerStatus;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1Pod;
+import io.kubernetes.client.openapi.models.V1PodStatus;
+import org.eclipse.jifa.server.Configuration;
+import org.eclipse.jifa.server.enums.Role;
+import org.eclipse.jifa.server.repository.ElasticWorkerRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.eclipse.jifa.server.Constant.DEFAULT_CLUSTER_NAMESPACE;
+import static org.eclipse.jifa.server.Constant.POD_NAME_PREFIX;
+import static org.eclipse.jifa.server.Constant.WORKER_CONTAINER_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+public class TestK8SWorkerScheduler {
+
+    private FakeApiServer server;
+
+    private K8SWorkerScheduler scheduler;
+
+    @BeforeEach
+    public void init() throws IOException {
+        server = new FakeApiServer();
+        Configuration config = new Configuration();
+        config.setRole(Role.MASTER);
+        config.setStoragePath(Path.of("/jifa-storage"));
+        config.setStoragePVCName("jifa-pvc");
+        config.setElasticWorkerImage("jifa");
+        scheduler = new K8SWorkerScheduler(mock(ElasticWorkerRepo.class), server::client, 5000);
+        ReflectionTestUtils.setField(scheduler, "config", config);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        scheduler.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testHostAddressIfReady() {
+        V1Pod pod = new V1Pod();
+        assertNull(K8SWorkerScheduler.hostAddressIfReady(pod));
+
+        V1PodStatus status = new V1PodStatus().phase("Pending");
+        pod.status(status);
+        assertNull(K8SWorkerScheduler.hostAddressIfReady(pod));
+
+        status.podIP("10.0.0.8");
+        assertNull(K8SWorkerScheduler.hostAddressIfReady(pod));
+
+        V1ContainerStatus container = new V1ContainerStatus().name(WORKER_CONTAINER_NAME).ready(false);
+        status.addContainerStatusesItem(new V1ContainerStatus().name("sidecar").ready(true))
+              .addContainerStatusesItem(container);
+        assertNull(K8SWorkerScheduler.hostAddressIfReady(pod));
+
+        container.ready(true);
+        assertEquals("10.0.0.8", K8SWorkerScheduler.hostAddressIfReady(pod));
+    }
+
+    @Test
+    public void testReady() throws Exception {
+        CompletableFuture<String> hostAddress = schedule(1);
+        V1Pod pod = server.awaitCreated(POD_NAME_PREFIX + 1);
+        assertEquals("1024", pod.getSpec().getContainers().get(0).getResources().getRequests().get("memory")
+                                 .toSuffixedString());
+
+        server.emit("ADDED", pod(1, "Pending", null, false));
+        server.emit("MODIFIED", pod(1, "Running", "10.0.0.8", false));
+        // a pod of another worker
+        server.emit("ADDED", pod(2, "Running", "10.0.0.9", true));
+        server.emit("MODIFIED", pod(1, "Running", "10.0.0.8", true));
+        assertEquals("10.0.0.8", hostAddress.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDeleted() {
+        CompletableFuture<String> hostAddress = schedule(1);
+        server.awaitCreated(POD_NAME_PREFIX + 1);
+        server.emit("ADDED", pod(1, "Pending", null, false));
+        server.emit("DELETED", pod(1, "Pending", null, false));
+        assertFailure(hostAddress, IllegalStateException.class);
+    }
+
+    @Test
+    public void testFailed() {
+        CompletableFuture<String> hostAddress = schedule(1);
+        server.awaitCreated(POD_NAME_PREFIX + 1);
+        server.emit("ADDED", pod(1, "Failed", null, false));
+        assertFailure(hostAddress, IllegalStateException.class);
+    }
+
+    @Test
+    public void testTimeout() {
+        CompletableFuture<String> hostAddress = schedule(1);
+        server.awaitCreated(POD_NAME_PREFIX + 1);
+        server.emit("ADDED", pod(1, "Pending", null, false));
+        assertFailure(hostAddress, TimeoutException.class);
+    }
+
+    private CompletableFuture<String> schedule(long identity) {
+        CompletableFuture<String> hostAddress = new CompletableFuture<>();
+        scheduler.scheduleAsync(identity, 1024, (address, t) -> {
+            if (t != null) {
+                hostAddress.completeExceptionally(t);
+            } else {
+                hostAddress.complete(address);
+            }
+        });
+        return hostAddress;
+    }
+
+    private static void assertFailure(CompletableFuture<String> hostAddress, Class<? extends Throwable> type) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> hostAddress.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(type, e.getCause());
+    }
+
+    private static V1Pod pod(long identity, String phase, String podIP, boolean ready) {
+        V1PodStatus status = new V1PodStatus().phase(phase).podIP(podIP);
+        status.addContainerStatusesItem(new V1ContainerStatus().name(WORKER_CONTAINER_NAME).ready(ready)
+                                                               .image("jifa").imageID("").restartCount(0));
+        return new V1Pod().metadata(new V1ObjectMeta().name(POD_NAME_PREFIX + identity)).status(status);
+    }
+
+    /**
+     * Serves the pods api of the api server: creations are recorded, lists are empty, and watches stream the events
+     * emitted by the test.
+     */
+    private static class FakeApiServer {
+
+        private static final String PODS = "/api/v1/namespaces/" + DEFAULT_CLUSTER_NAMESPACE + "/pods";
+
+        private final HttpServer server;
+
+        private final ApiClient json = new ApiClient();
+
+        private final List<V1Pod> created = new CopyOnWriteArrayList<>();
+
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        private final AtomicLong resourceVersion = new AtomicLong(1);
+
+        private volatile boolean stopped;
+
+        FakeApiServer() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext(PODS, this::handle);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+
+        ApiClient client() {
+            return new ApiClient().setBasePath("http://127.0.0.1:" + server.getAddress().getPort());
+        }
+
+        void emit(String type, V1Pod pod) {
+            pod.getMetadata().resourceVersion(Long.toString(resourceVersion.incrementAndGet()));
+            events.add(json.getJSON().serialize(Map.of("type", type, "object", pod)));
+        }
+
+        V1Pod awaitCreated(String name) {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (System.currentTimeMillis() < deadline) {
+                for (V1Pod pod : created) {
+                    if (name.equals(pod.getMetadata().getName())) {
+                        return pod;
+                    }
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            throw new AssertionError("Pod is not created: " + name);
+        }
+
+        void stop() {
+            stopped = true;
+            server.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                String method = exchange.getRequestMethod();
+                String query = exchange.getRequestURI().getQuery();
+                if (method.equals("POST")) {
+                    String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                    created.add(json.getJSON().deserialize(body, V1Pod.class));
+                    respond(exchange, 201, body);
+                } else if (query != null && query.contains("watch=true")) {
+                    exchange.sendResponseHeaders(200, 0);
+                    OutputStream out = exchange.getResponseBody();
+                    while (!stopped) {
+                        String event = events.poll(100, TimeUnit.MILLISECONDS);
+                        if (event != null) {
+                            out.write((event + "\n").getBytes(StandardCharsets.UTF_8));
+                            out.flush();
+                        }
+                    }
+                } else {
+                    respond(exchange, 200, "{\"apiVersion\":\"v1\",\"kind\":\"PodList\"," +
+                                           "\"metadata\":{\"resourceVersion\":\"1\"},\"items\":[]}");
+                }
+            } catch (InterruptedException | IOException ignored) {
+                // the watch is closed
+            }
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.service.impl;
+
+import org.eclipse.jifa.analysis.ApiService;
+import org.eclipse.jifa.server.Configuration;
+import org.eclipse.jifa.server.enums.FileType;
+import org.eclipse.jifa.server.enums.Role;
+import org.eclipse.jifa.server.service.StorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestPreAnalysisServiceImpl {
+
+    private static final String NAMESPACE = FileType.GC_LOG.getApiNamespace();
+
+    @TempDir
+    Path dir;
+
+    private final ApiService apiService = mock(ApiService.class);
+
+    // target -> the build future returned by the api service
+    private final Map<Path, CompletableFuture<Object>> builds = new ConcurrentHashMap<>();
+
+    private PreAnalysisServiceImpl preAnalysisService;
+
+    @BeforeEach
+    public void init() {
+        Configuration config = new Configuration();
+        config.setRole(Role.STANDALONE_WORKER);
+        config.setPreAnalysisEnabled(true);
+        config.setPreAnalysisConcurrency(1);
+
+        StorageService storageService = mock(StorageService.class);
+        when(storageService.locationOf(any(), anyString())).thenAnswer(i -> dir.resolve((String) i.getArgument(1)));
+        when(apiService.prebuild(any(), eq(NAMESPACE)))
+                .thenAnswer(i -> builds.computeIfAbsent(i.getArgument(0), ignored -> new CompletableFuture<>()));
+
+        preAnalysisService = new PreAnalysisServiceImpl(storageService);
+        ReflectionTestUtils.setField(preAnalysisService, "config", config);
+        ReflectionTestUtils.setField(preAnalysisService, "apiService", apiService);
+        ReflectionTestUtils.invokeMethod(preAnalysisService, "start");
+    }
+
+    @AfterEach
+    public void shutdown() {
+        ReflectionTestUtils.invokeMethod(preAnalysisService, "shutdown");
+    }
+
+    @Test
+    public void testSmallestFirst() throws IOException {
+        Path a = file("a");
+        Path b = file("b");
+        Path c = file("c");
+
+        preAnalysisService.submit(FileType.GC_LOG, "a", 300);
+        verify(apiService, timeout(1000)).prebuild(a, NAMESPACE);
+        preAnalysisService.submit(FileType.GC_LOG, "c", 200);
+        preAnalysisService.submit(FileType.GC_LOG, "b", 100);
+
+        // the next build starts once the running one completes
+        verify(apiService, after(200).never()).prebuild(b, NAMESPACE);
+        builds.get(a).complete(null);
+        verify(apiService, timeout(1000)).prebuild(b, NAMESPACE);
+        verify(apiService, after(200).never()).prebuild(c, NAMESPACE);
+
+        // a failed build releases its slot too
+        builds.get(b).completeExceptionally(new IllegalStateException("failed"));
+        verify(apiService, timeout(1000)).prebuild(c, NAMESPACE);
+    }
+
+    @Test
+    public void testDuplicatedSubmission() throws IOException {
+        Path a = file("a");
+        preAnalysisService.submit(FileType.GC_LOG, "a", 100);
+        preAnalysisService.submit(FileType.GC_LOG, "a", 100);
+        verify(apiService, timeout(1000)).prebuild(a, NAMESPACE);
+
+        // submitted again once the previous build completes
+        builds.get(a).complete(null);
+        builds.remove(a);
+        verify(apiService, after(200).times(1)).prebuild(a, NAMESPACE);
+        preAnalysisService.submit(FileType.GC_LOG, "a", 100);
+        verify(apiService, timeout(1000).times(2)).prebuild(a, NAMESPACE);
+    }
+
+    @Test
+    public void testDeletedBeforeItsTurn() throws IOException {
+        Path b = file("b");
+        preAnalysisService.submit(FileType.GC_LOG, "a", 100);
+        preAnalysisService.submit(FileType.GC_LOG, "b", 200);
+        verify(apiService, timeout(1000)).prebuild(b, NAMESPACE);
+        verify(apiService, never()).prebuild(dir.resolve("a"), NAMESPACE);
+    }
+
+    @Test
+    public void testShutdown() throws IOException {
+        Path a = file("a");
+        Path b = file("b");
+        preAnalysisService.submit(FileType.GC_LOG, "a", 100);
+        verify(apiService, timeout(1000)).prebuild(a, NAMESPACE);
+        preAnalysisService.submit(FileType.GC_LOG, "b", 200);
+
+        // queued files are dropped
+        ReflectionTestUtils.invokeMethod(preAnalysisService, "shutdown");
+        builds.get(a).complete(null);
+        preAnalysisService.submit(FileType.GC_LOG, "c", 100);
+        verify(apiService, after(200).never()).prebuild(b, NAMESPACE);
+        verify(apiService, never()).prebuild(dir.resolve("c"), NAMESPACE);
+    }
+
+    private Path file(String name) throws IOException {
+        return Files.writeString(dir.resolve(name), name);
+    }
+}
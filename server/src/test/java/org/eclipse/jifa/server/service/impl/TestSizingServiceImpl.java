@@ -0,0 +1,131 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.service.impl;
+
+import org.eclipse.jifa.server.domain.entity.cluster.AnalysisFootprintEntity;
+import org.eclipse.jifa.server.domain.entity.shared.file.FileEntity;
+import org.eclipse.jifa.server.enums.FileType;
+import org.eclipse.jifa.server.repository.AnalysisFootprintRepo;
+import org.eclipse.jifa.server.support.LiveSetMonitor;
+import org.eclipse.jifa.server.support.SizingFeatures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.eclipse.jifa.server.Constant.ELASTIC_WORKER_HEAP_RATIO;
+import static org.eclipse.jifa.server.service.impl.SizingServiceImpl.BASE_HEAP_SIZE;
+import static org.eclipse.jifa.server.service.impl.SizingServiceImpl.BASE_LIVE_SET_SIZE;
+import static org.eclipse.jifa.server.service.impl.SizingServiceImpl.MB;
+import static org.eclipse.jifa.server.service.impl.SizingServiceImpl.MIN_HEAP_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestSizingServiceImpl {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testFeatures() throws IOException {
+        Path hprof = dir.resolve("a.hprof");
+        ByteBuffer header = ByteBuffer.allocate(32);
+        header.put("JAVA PROFILE 1.0.2".getBytes(StandardCharsets.US_ASCII)).put((byte) 0).putInt(4).putLong(0);
+        Files.write(hprof, header.array());
+        assertEquals(new SizingFeatures("hprof-id4", 1000), SizingFeatures.of(FileType.HEAP_DUMP, hprof, 1000));
+        assertEquals(new SizingFeatures("hprof", 1000), SizingFeatures.of(FileType.HEAP_DUMP, null, 1000));
+
+        Path log = dir.resolve("gc.log");
+        Files.writeString(log, "line 1\nline 2\nline 3\n");
+        long size = Files.size(log);
+        assertEquals(new SizingFeatures("gc-log-lines", 3), SizingFeatures.of(FileType.GC_LOG, log, size));
+        // extrapolated from the head
+        assertEquals(300, SizingFeatures.of(FileType.THREAD_DUMP, log, size * 100).magnitude());
+        assertEquals(new SizingFeatures("jfr", 42), SizingFeatures.of(FileType.JFR_FILE, null, 42));
+    }
+
+    @Test
+    public void testEstimateHeapSize() {
+        SizingFeatures features = new SizingFeatures("gc-log-lines", 1_000_000);
+        List<AnalysisFootprintEntity> footprints = new ArrayList<>();
+        // the prior
+        assertEquals(BASE_HEAP_SIZE + 400L * 1_000_000, SizingServiceImpl.estimateHeapSize(features, footprints));
+
+        for (int i = 1; i <= 10; i++) {
+            AnalysisFootprintEntity footprint = new AnalysisFootprintEntity();
+            footprint.setCategory(features.category());
+            footprint.setMagnitude(1_000_000);
+            // live set ratios 100, 200, ..., 1000 bytes per line
+            footprint.setLiveSetSize(BASE_LIVE_SET_SIZE + i * 100L * 1_000_000);
+            footprints.add(footprint);
+        }
+        // the 90th percentile is 900 with a headroom of 1.5 and a margin of 1.2
+        assertEquals(BASE_HEAP_SIZE + 1620L * 1_000_000, SizingServiceImpl.estimateHeapSize(features, footprints), MB);
+
+        assertEquals(MIN_HEAP_SIZE, SizingServiceImpl.estimateHeapSize(new SizingFeatures("gc-log-lines", 10), List.of()));
+    }
+
+    @Test
+    public void testRepeatedRecordingsConverge() {
+        // the repo returns the latest footprints first
+        List<AnalysisFootprintEntity> footprints = new ArrayList<>();
+        AnalysisFootprintRepo repo = mock(AnalysisFootprintRepo.class);
+        when(repo.save(any())).thenAnswer(i -> {
+            footprints.add(0, i.getArgument(0));
+            return i.getArgument(0);
+        });
+        when(repo.findTop50ByCategoryOrderByCreatedTimeDesc(anyString()))
+                .thenAnswer(i -> List.copyOf(footprints.subList(0, Math.min(50, footprints.size()))));
+        SizingServiceImpl sizingService = new SizingServiceImpl(repo, null);
+
+        FileEntity file = new FileEntity();
+        file.setType(FileType.JFR_FILE);
+        file.setSize(1024 * MB);
+
+        // each worker is given the estimated heap, while its live set only depends on the file
+        List<Long> estimates = new ArrayList<>();
+        for (int round = 0; round < 100; round++) {
+            long heap = (long) (sizingService.estimateWorkerMemorySize(file) * ELASTIC_WORKER_HEAP_RATIO);
+            long liveSetSize = BASE_LIVE_SET_SIZE + (long) (file.getSize() * (1 + round % 10 / 100.0));
+            assertTrue(heap > liveSetSize);
+            estimates.add(heap);
+            sizingService.recordFootprint(file, liveSetSize);
+        }
+        // stable once the footprints cover the variation of the live set
+        for (int round = 10; round < estimates.size(); round++) {
+            assertEquals(estimates.get(10), estimates.get(round), MB);
+        }
+    }
+
+    @Test
+    public void testLiveSetMonitor() {
+        LiveSetMonitor monitor = new LiveSetMonitor();
+        long[][] live = new long[64][];
+        for (int i = 0; i < live.length; i++) {
+            live[i] = new long[128 * 1024];
+        }
+        System.gc();
+        // a full collection may leave part of the live objects in the young generation
+        assertTrue(monitor.maxLiveSetSize() >= (long) live.length * live[0].length * Long.BYTES / 2);
+    }
+}
@@ -0,0 +1,181 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.service.impl;
+
+import org.eclipse.jifa.common.domain.exception.ErrorCodeException;
+import org.eclipse.jifa.server.Configuration;
+import org.eclipse.jifa.server.enums.FileType;
+import org.eclipse.jifa.server.enums.Role;
+import org.eclipse.jifa.server.service.CipherService;
+import org.eclipse.jifa.server.support.PartCheckpoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+public class TestStorageServiceImpl {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    @TempDir
+    Path dir;
+
+    private StorageServiceImpl storageService;
+
+    @BeforeEach
+    public void init() {
+        init(Role.ELASTIC_WORKER);
+    }
+
+    private void init(Role role) {
+        Configuration config = new Configuration();
+        config.setRole(role);
+        config.setStoragePath(dir);
+        storageService = new StorageServiceImpl(mock(CipherService.class));
+        ReflectionTestUtils.setField(storageService, "config", config);
+        ReflectionTestUtils.invokeMethod(storageService, "init");
+    }
+
+    @Test
+    public void testChunkedUpload() throws Exception {
+        byte[] content = new byte[CHUNK_SIZE * 10 + 100];
+        new Random(0).nextBytes(content);
+        storageService.provisionChunkedUpload(FileType.GC_LOG, "file", content.length, CHUNK_SIZE);
+        PartCheckpoint checkpoint = storageService.getChunkedUpload(FileType.GC_LOG, "file");
+        assertEquals(11, checkpoint.partCount());
+        assertTrue(checkpoint.completed().isEmpty());
+
+        // the chunks are written concurrently in any order
+        List<Integer> indexes = new ArrayList<>(IntStream.range(0, 11).boxed().toList());
+        Collections.shuffle(indexes, new Random(0));
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int index : indexes.subList(0, 10)) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return storageService.handleChunk(FileType.GC_LOG, "file", index, chunk(content, index));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        // missing chunks fail the completion without side effects
+        assertThrows(ErrorCodeException.class, () -> storageService.completeChunkedUpload(FileType.GC_LOG, "file"));
+
+        int last = indexes.get(10);
+        // a truncated chunk is not recorded, and is uploaded again
+        byte[] truncated = Arrays.copyOf(chunk(content, last).readAllBytes(), 10);
+        assertThrows(ErrorCodeException.class,
+                     () -> storageService.handleChunk(FileType.GC_LOG, "file", last, new ByteArrayInputStream(truncated)));
+        assertFalse(checkpoint.completed().get(last));
+        assertThrows(ErrorCodeException.class,
+                     () -> storageService.handleChunk(FileType.GC_LOG, "file", 11, chunk(content, 0)));
+
+        assertEquals(content.length, storageService.handleChunk(FileType.GC_LOG, "file", last, chunk(content, last)));
+        // a retried chunk overwrites itself
+        assertEquals(content.length, storageService.handleChunk(FileType.GC_LOG, "file", 0, chunk(content, 0)));
+
+        Path file = storageService.locationOf(FileType.GC_LOG, "file");
+        assertTrue(Files.exists(PartCheckpoint.pathOf(file)));
+        assertEquals(content.length, storageService.completeChunkedUpload(FileType.GC_LOG, "file"));
+        assertArrayEquals(content, Files.readAllBytes(file));
+        assertFalse(Files.exists(PartCheckpoint.pathOf(file)));
+    }
+
+    @Test
+    public void testResumeChunkedUpload() throws Exception {
+        byte[] content = new byte[CHUNK_SIZE * 3];
+        new Random(1).nextBytes(content);
+        storageService.provisionChunkedUpload(FileType.THREAD_DUMP, "file", content.length, CHUNK_SIZE);
+        storageService.handleChunk(FileType.THREAD_DUMP, "file", 1, chunk(content, 1));
+
+        // the checkpoint is loaded from its file after a restart
+        init();
+        PartCheckpoint checkpoint = storageService.getChunkedUpload(FileType.THREAD_DUMP, "file");
+        assertEquals(CHUNK_SIZE, checkpoint.completedSize());
+        assertTrue(checkpoint.completed().get(1));
+
+        storageService.handleChunk(FileType.THREAD_DUMP, "file", 0, chunk(content, 0));
+        storageService.handleChunk(FileType.THREAD_DUMP, "file", 2, chunk(content, 2));
+        assertEquals(content.length, storageService.completeChunkedUpload(FileType.THREAD_DUMP, "file"));
+        assertArrayEquals(content, Files.readAllBytes(storageService.locationOf(FileType.THREAD_DUMP, "file")));
+    }
+
+    @Test
+    public void testInsufficientSpace() throws Exception {
+        StorageServiceImpl storageService = spy(this.storageService);
+        doReturn(CHUNK_SIZE * 10L).when(storageService).getAvailableSpace();
+        assertThrows(ErrorCodeException.class,
+                     () -> storageService.provisionChunkedUpload(FileType.GC_LOG, "a", CHUNK_SIZE * 11, CHUNK_SIZE));
+        assertFalse(Files.exists(storageService.locationOf(FileType.GC_LOG, "a")));
+
+        // the chunks not yet received by the other uploads are reserved
+        storageService.provisionChunkedUpload(FileType.GC_LOG, "a", CHUNK_SIZE * 6, CHUNK_SIZE);
+        assertThrows(ErrorCodeException.class,
+                     () -> storageService.provisionChunkedUpload(FileType.GC_LOG, "b", CHUNK_SIZE * 6, CHUNK_SIZE));
+        byte[] content = new byte[CHUNK_SIZE * 2];
+        storageService.handleChunk(FileType.GC_LOG, "a", 0, chunk(content, 0));
+        storageService.handleChunk(FileType.GC_LOG, "a", 1, chunk(content, 1));
+        storageService.provisionChunkedUpload(FileType.GC_LOG, "b", CHUNK_SIZE * 6, CHUNK_SIZE);
+    }
+
+    @Test
+    public void testLoadChunkedUploads() throws Exception {
+        storageService.provisionChunkedUpload(FileType.GC_LOG, "a", CHUNK_SIZE * 2, CHUNK_SIZE);
+        storageService.handleChunk(FileType.GC_LOG, "a", 0, chunk(new byte[CHUNK_SIZE * 2], 0));
+
+        // the uploads interrupted by a restart reserve the space of their missing chunks
+        init(Role.STATIC_WORKER);
+        assertEquals(Map.of(FileType.GC_LOG, Set.of("a")), storageService.getChunkedUploads());
+        StorageServiceImpl storageService = spy(this.storageService);
+        doReturn(CHUNK_SIZE * 2L).when(storageService).getAvailableSpace();
+        assertThrows(ErrorCodeException.class,
+                     () -> storageService.provisionChunkedUpload(FileType.GC_LOG, "b", CHUNK_SIZE * 2, CHUNK_SIZE));
+
+        // completed by another node sharing the storage
+        Files.delete(PartCheckpoint.pathOf(storageService.locationOf(FileType.GC_LOG, "a")));
+        assertTrue(storageService.getChunkedUploads().isEmpty());
+        storageService.provisionChunkedUpload(FileType.GC_LOG, "b", CHUNK_SIZE * 2, CHUNK_SIZE);
+    }
+
+    private static InputStream chunk(byte[] content, int index) {
+        int offset = index * CHUNK_SIZE;
+        return new ByteArrayInputStream(content, offset, Math.min(CHUNK_SIZE, content.length - offset));
+    }
+}
@@ -0,0 +1,337 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.service.impl;
+
+import org.eclipse.jifa.server.Configuration;
+import org.eclipse.jifa.server.domain.entity.cluster.ElasticWorkerEntity;
+import org.eclipse.jifa.server.domain.entity.cluster.StaticWorkerEntity;
+import org.eclipse.jifa.server.domain.entity.shared.file.FileEntity;
+import org.eclipse.jifa.server.domain.exception.ElasticWorkerNotReadyException;
+import org.eclipse.jifa.server.enums.ElasticWorkerPurpose;
+import org.eclipse.jifa.server.enums.ElasticWorkerState;
+import org.eclipse.jifa.server.enums.Role;
+import org.eclipse.jifa.server.repository.ElasticWorkerRepo;
+import org.eclipse.jifa.server.repository.FileLocationRuleRepo;
+import org.eclipse.jifa.server.repository.StaticWorkerLabelRepo;
+import org.eclipse.jifa.server.repository.StaticWorkerRepo;
+import org.eclipse.jifa.server.service.ElasticWorkerScheduler;
+import org.eclipse.jifa.server.service.SizingService;
+import org.eclipse.jifa.server.service.StorageService;
+import org.eclipse.jifa.server.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static org.eclipse.jifa.server.enums.ElasticWorkerPurpose.FILE_ANALYSIS;
+import static org.eclipse.jifa.server.enums.ElasticWorkerPurpose.STANDBY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestWorkerServiceImpl {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    private static final long STANDBY_MEMORY_SIZE = 4096;
+
+    private final Configuration config = new Configuration();
+
+    private final ElasticWorkerRepo elasticWorkerRepo = mock(ElasticWorkerRepo.class);
+
+    private final ElasticWorkerScheduler elasticWorkerScheduler = mock(ElasticWorkerScheduler.class);
+
+    private final TaskScheduler taskScheduler = mock(TaskScheduler.class);
+
+    private final SizingService sizingService = mock(SizingService.class);
+
+    // the rows of the elastic worker table, by id
+    private final Map<Long, ElasticWorkerEntity> elasticWorkers = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    // identity -> requested memory size and callback of the workers being started
+    private final Map<Long, Long> requestedMemorySizes = new ConcurrentHashMap<>();
+
+    private final Map<Long, BiConsumer<String, Throwable>> startCallbacks = new ConcurrentHashMap<>();
+
+    private WorkerServiceImpl workerService;
+
+    @BeforeEach
+    public void init() {
+        config.setRole(Role.MASTER);
+        config.setElasticWorkerStandbyMemorySize(STANDBY_MEMORY_SIZE);
+        fakeElasticWorkerRepo();
+        doAnswer(i -> {
+            requestedMemorySizes.put(i.getArgument(0), i.getArgument(1));
+            startCallbacks.put(i.getArgument(0), i.getArgument(2));
+            return null;
+        }).when(elasticWorkerScheduler).scheduleAsync(anyLong(), anyLong(), any());
+
+        workerService = new WorkerServiceImpl(mock(UserService.class), mock(StorageService.class),
+                                              mock(FileLocationRuleRepo.class), mock(StaticWorkerRepo.class),
+                                              mock(StaticWorkerLabelRepo.class), elasticWorkerRepo,
+                                              elasticWorkerScheduler, taskScheduler, sizingService);
+        ReflectionTestUtils.setField(workerService, "config", config);
+    }
+
+    /**
+     * Backs the repo by a map, where the conditional updates are atomic as they are in the database
+     */
+    private void fakeElasticWorkerRepo() {
+        when(elasticWorkerRepo.save(any())).thenAnswer(i -> {
+            ElasticWorkerEntity worker = i.getArgument(0);
+            if (worker.getId() == null) {
+                worker.setId(nextId.getAndIncrement());
+            }
+            elasticWorkers.put(worker.getId(), worker);
+            return worker;
+        });
+        when(elasticWorkerRepo.findById(anyLong())).thenAnswer(
+                i -> Optional.ofNullable(elasticWorkers.get((Long) i.getArgument(0))));
+        when(elasticWorkerRepo.findByPurposeAndReferenceId(any(), anyLong())).thenAnswer(
+                i -> elasticWorkers.values().stream()
+                                   .filter(w -> w.getPurpose() == i.getArgument(0) &&
+                                                w.getReferenceId() == (Long) i.getArgument(1))
+                                   .findFirst());
+        when(elasticWorkerRepo.findAllByPurpose(any())).thenAnswer(
+                i -> elasticWorkers.values().stream().filter(w -> w.getPurpose() == i.getArgument(0)).toList());
+        when(elasticWorkerRepo.findAllByPurposeAndState(any(), any())).thenAnswer(
+                i -> elasticWorkers.values().stream()
+                                   .filter(w -> w.getPurpose() == i.getArgument(0) && w.getState() == i.getArgument(1))
+                                   .toList());
+        when(elasticWorkerRepo.claimStandby(anyLong(), any(), anyLong())).thenAnswer(i -> {
+            synchronized (elasticWorkers) {
+                ElasticWorkerEntity worker = elasticWorkers.get((Long) i.getArgument(0));
+                if (worker == null || worker.getPurpose() != STANDBY) {
+                    return 0;
+                }
+                worker.setPurpose(i.getArgument(1));
+                worker.setReferenceId(i.getArgument(2));
+                return 1;
+            }
+        });
+        when(elasticWorkerRepo.deleteStandby(anyLong())).thenAnswer(i -> {
+            synchronized (elasticWorkers) {
+                ElasticWorkerEntity worker = elasticWorkers.get((Long) i.getArgument(0));
+                if (worker == null || worker.getPurpose() != STANDBY) {
+                    return 0;
+                }
+                elasticWorkers.remove(worker.getId());
+                return 1;
+            }
+        });
+    }
+
+    @Test
+    public void testChooseStaticWorker() {
+        // b has a bit more disk but its memory is held by warm analyzers and it is building
+        StaticWorkerEntity a = worker("a", 600, 200, 0, NOW);
+        StaticWorkerEntity b = worker("b", 700, 1000, 2, NOW);
+        assertEquals(a, WorkerServiceImpl.chooseStaticWorker(List.of(a, b), 0, NOW).orElseThrow());
+
+        // c has the most headroom but no recent heartbeat
+        StaticWorkerEntity c = worker("c", 1000, 0, 0, NOW.minusMinutes(10));
+        assertEquals(a, WorkerServiceImpl.chooseStaticWorker(List.of(a, b, c), 0, NOW).orElseThrow());
+        assertEquals(c, WorkerServiceImpl.chooseStaticWorker(List.of(c), 0, NOW).orElseThrow());
+
+        assertTrue(WorkerServiceImpl.chooseStaticWorker(List.of(), 0, NOW).isEmpty());
+    }
+
+    @Test
+    public void testChooseStaticWorkerBySize() {
+        // a scores higher but the file doesn't fit in its disk
+        StaticWorkerEntity a = worker("a", 600, 0, 0, NOW);
+        a.setTotalSpace(700);
+        StaticWorkerEntity b = worker("b", 800, 0, 0, NOW);
+        assertEquals(a, WorkerServiceImpl.chooseStaticWorker(List.of(a, b), 500, NOW).orElseThrow());
+        assertEquals(b, WorkerServiceImpl.chooseStaticWorker(List.of(a, b), 700, NOW).orElseThrow());
+
+        // a stale worker with enough space is preferred to no worker
+        b.setLastHeartbeatTime(NOW.minusMinutes(10));
+        assertEquals(b, WorkerServiceImpl.chooseStaticWorker(List.of(a, b), 700, NOW).orElseThrow());
+
+        assertTrue(WorkerServiceImpl.chooseStaticWorker(List.of(a, b), 900, NOW).isEmpty());
+    }
+
+    @Test
+    public void testPlacementScore() {
+        assertEquals(1, WorkerServiceImpl.placementScore(worker("a", 1000, 0, 0, NOW)), 1e-9);
+        // reported by a worker of an old version
+        StaticWorkerEntity old = worker("old", 1000, 0, 0, null);
+        old.setMemoryBudget(0);
+        assertEquals(0.7, WorkerServiceImpl.placementScore(old), 1e-9);
+        assertTrue(WorkerServiceImpl.placementScore(worker("a", 1000, 0, 1, NOW)) <
+                   WorkerServiceImpl.placementScore(worker("a", 1000, 0, 0, NOW)));
+    }
+
+    @Test
+    public void testClaimStandbyRace() throws Exception {
+        ElasticWorkerEntity a = elasticWorker(STANDBY, -1, ElasticWorkerState.READY);
+        ElasticWorkerEntity b = elasticWorker(STANDBY, -2, ElasticWorkerState.READY);
+        when(sizingService.estimateWorkerMemorySize(any())).thenReturn(STANDBY_MEMORY_SIZE);
+
+        // all requests see both standby workers before any of them claims one
+        int requests = 4;
+        CyclicBarrier barrier = new CyclicBarrier(requests);
+        when(elasticWorkerRepo.findAllByPurposeAndState(STANDBY, ElasticWorkerState.READY)).thenAnswer(i -> {
+            List<ElasticWorkerEntity> standbys = List.of(a, b);
+            barrier.await();
+            return standbys;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        List<Future<ElasticWorkerEntity>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            FileEntity file = new FileEntity();
+            file.setId(100L + i);
+            futures.add(executor.submit(() -> workerService.requestElasticWorkerForAnalysisApiRequest(file)));
+        }
+
+        Set<Long> claimed = new HashSet<>();
+        List<Long> started = new ArrayList<>();
+        for (Future<ElasticWorkerEntity> future : futures) {
+            try {
+                ElasticWorkerEntity worker = future.get();
+                assertEquals(FILE_ANALYSIS, worker.getPurpose());
+                assertTrue(claimed.add(worker.getId()), "a standby worker is claimed once");
+            } catch (Exception e) {
+                assertInstanceOf(ElasticWorkerNotReadyException.class, e.getCause());
+            }
+        }
+        executor.shutdown();
+        assertEquals(Set.of(a.getId(), b.getId()), claimed);
+        assertEquals(Set.of(100L, 101L, 102L, 103L),
+                     Set.of(elasticWorkers.values().stream().map(ElasticWorkerEntity::getReferenceId)
+                                          .toArray(Long[]::new)));
+        // the losers start their own workers
+        assertEquals(2, startCallbacks.size());
+        requestedMemorySizes.values().forEach(size -> assertEquals(STANDBY_MEMORY_SIZE, size));
+    }
+
+    @Test
+    public void testStandbyTooSmall() {
+        ElasticWorkerEntity standby = elasticWorker(STANDBY, -1, ElasticWorkerState.READY);
+        when(sizingService.estimateWorkerMemorySize(any())).thenReturn(STANDBY_MEMORY_SIZE + 1);
+        FileEntity file = new FileEntity();
+        file.setId(100L);
+
+        try {
+            workerService.requestElasticWorkerForAnalysisApiRequest(file);
+        } catch (ElasticWorkerNotReadyException e) {
+            // expected
+        }
+        assertEquals(STANDBY, standby.getPurpose());
+        assertEquals(List.of(STANDBY_MEMORY_SIZE + 1), new ArrayList<>(requestedMemorySizes.values()));
+    }
+
+    @Test
+    public void testRefillStandbyElasticWorkers() {
+        config.setElasticWorkerStandbyCount(2);
+        workerService.refillStandbyElasticWorkers();
+        assertEquals(2, startCallbacks.size());
+        requestedMemorySizes.values().forEach(size -> assertEquals(STANDBY_MEMORY_SIZE, size));
+        List<Long> ids = new ArrayList<>(startCallbacks.keySet());
+        ElasticWorkerEntity first = elasticWorkers.get(ids.get(0));
+        ElasticWorkerEntity second = elasticWorkers.get(ids.get(1));
+        assertEquals(ElasticWorkerState.STARTING, first.getState());
+        assertTrue(first.getReferenceId() < 0);
+        assertTrue(first.getReferenceId() != second.getReferenceId());
+
+        // already filled
+        workerService.refillStandbyElasticWorkers();
+        assertEquals(2, startCallbacks.size());
+
+        startCallbacks.get(first.getId()).accept("10.0.0.8", null);
+        assertEquals(ElasticWorkerState.READY, first.getState());
+        assertEquals("10.0.0.8", first.getHostAddress());
+
+        // a failed worker is deleted later
+        startCallbacks.get(second.getId()).accept(null, new IllegalStateException("Pod is deleted before ready"));
+        assertEquals(ElasticWorkerState.FAILURE, second.getState());
+        assertEquals("Pod is deleted before ready", second.getFailureMessage());
+        verify(taskScheduler).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    @Test
+    public void testTrimStandbyElasticWorkers() throws Exception {
+        config.setElasticWorkerStandbyCount(1);
+        elasticWorker(STANDBY, -1, ElasticWorkerState.READY);
+        ElasticWorkerEntity surplus = elasticWorker(STANDBY, -2, ElasticWorkerState.READY);
+        ElasticWorkerEntity starting = elasticWorker(STANDBY, -3, ElasticWorkerState.STARTING);
+        ElasticWorkerEntity claimed = elasticWorker(STANDBY, -4, ElasticWorkerState.READY);
+
+        // claimed by a request after the standby workers are listed
+        List<ElasticWorkerEntity> standbys = new CopyOnWriteArrayList<>(elasticWorkers.values());
+        standbys.sort((x, y) -> Long.compare(x.getId(), y.getId()));
+        when(elasticWorkerRepo.findAllByPurpose(STANDBY)).thenAnswer(i -> {
+            elasticWorkerRepo.claimStandby(claimed.getId(), FILE_ANALYSIS, 100);
+            return standbys;
+        });
+
+        workerService.refillStandbyElasticWorkers();
+        assertNull(elasticWorkers.get(surplus.getId()));
+        verify(elasticWorkerScheduler).terminate(surplus.getId());
+        verify(elasticWorkerScheduler, never()).terminate(starting.getId());
+        verify(elasticWorkerScheduler, never()).terminate(claimed.getId());
+        assertEquals(FILE_ANALYSIS, elasticWorkers.get(claimed.getId()).getPurpose());
+        assertTrue(startCallbacks.isEmpty());
+    }
+
+    private ElasticWorkerEntity elasticWorker(ElasticWorkerPurpose purpose, long referenceId,
+                                              ElasticWorkerState state) {
+        ElasticWorkerEntity worker = new ElasticWorkerEntity();
+        worker.setPurpose(purpose);
+        worker.setReferenceId(referenceId);
+        worker.setState(state);
+        return elasticWorkerRepo.save(worker);
+    }
+
+    private static StaticWorkerEntity worker(String hostAddress, long availableSpace, long memoryUsed,
+                                             int pendingBuildCount, LocalDateTime lastHeartbeatTime) {
+        StaticWorkerEntity worker = new StaticWorkerEntity();
+        worker.setHostAddress(hostAddress);
+        worker.setAvailableSpace(availableSpace);
+        worker.setTotalSpace(1000);
+        worker.setMemoryBudget(1000);
+        worker.setMemoryUsed(memoryUsed);
+        worker.setPendingBuildCount(pendingBuildCount);
+        worker.setLastHeartbeatTime(lastHeartbeatTime);
+        return worker;
+    }
+}
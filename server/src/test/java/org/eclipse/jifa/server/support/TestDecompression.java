@@ -0,0 +1,223 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.support;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.stream.Stream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestDecompression {
+
+    @TempDir
+    Path dir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDetect() {
+        assertEquals(Decompression.Format.GZIP, Decompression.detect(new byte[]{0x1f, (byte) 0x8b, 8, 0}));
+        assertEquals(Decompression.Format.ZSTD, Decompression.detect(new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd}));
+        assertEquals(Decompression.Format.ZIP, Decompression.detect(new byte[]{0x50, 0x4b, 0x03, 0x04}));
+        assertNull(Decompression.detect("JAVA".getBytes()));
+        assertNull(Decompression.detect(new byte[]{0x1f}));
+    }
+
+    @Test
+    public void testGzipMembers() throws IOException {
+        byte[] a = content(3000);
+        byte[] b = content(5000);
+        byte[] compressed = concat(gzip(a), gzip(b));
+        Path destination = dir.resolve("gzip");
+        Decompression.decompress(new ByteArrayInputStream(compressed), Decompression.Format.GZIP, destination,
+                                 executor, Decompression.Limit.NONE);
+        assertArrayEquals(concat(a, b), Files.readAllBytes(destination));
+    }
+
+    @Test
+    public void testZstdFrames() throws IOException {
+        byte[] a = content(3000);
+        byte[] b = content(5000);
+        byte[] compressed = concat(zstd(a), zstd(b));
+        Path destination = dir.resolve("zstd");
+        Decompression.decompress(new ByteArrayInputStream(compressed), Decompression.Format.ZSTD, destination,
+                                 null, Decompression.Limit.NONE);
+        assertArrayEquals(concat(a, b), Files.readAllBytes(destination));
+    }
+
+    @Test
+    public void testZip() throws IOException {
+        byte[] a = content(3000);
+        Path destination = dir.resolve("zip");
+        Decompression.decompress(new ByteArrayInputStream(zip(a)), Decompression.Format.ZIP, destination,
+                                 executor, Decompression.Limit.NONE);
+        assertArrayEquals(a, Files.readAllBytes(destination));
+
+        assertThrows(IOException.class, () -> Decompression.decompress(new ByteArrayInputStream(zip(a, a)),
+                                                                       Decompression.Format.ZIP, destination, null,
+                                                                       Decompression.Limit.NONE));
+    }
+
+    @Test
+    public void testFailedRead() {
+        byte[] compressed = gzip(content(100000));
+        // the read fails in the middle of the content
+        InputStream broken = new SequenceInputStream(new ByteArrayInputStream(compressed, 0, compressed.length / 2),
+                                                     new InputStream() {
+                                                         @Override
+                                                         public int read() throws IOException {
+                                                             throw new IOException("Broken");
+                                                         }
+                                                     });
+        assertThrows(IOException.class, () -> Decompression.decompress(broken, Decompression.Format.GZIP,
+                                                                       dir.resolve("broken"), executor,
+                                                                       Decompression.Limit.NONE));
+    }
+
+    @Test
+    public void testDecompressInPlace() throws IOException {
+        byte[] a = content(3000);
+        Path file = dir.resolve("file");
+        Files.write(file, gzip(a));
+        Decompression.decompressInPlace(file, Decompression.Limit.NONE);
+        assertArrayEquals(a, Files.readAllBytes(file));
+
+        // not compressed
+        Decompression.decompressInPlace(file, Decompression.Limit.NONE);
+        assertArrayEquals(a, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void testMaxSize() throws IOException {
+        byte[] compressed = gzip(content(3000));
+        Path destination = dir.resolve("large");
+        Decompression.Limit limit = new Decompression.Limit(1000, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> Decompression.decompress(new ByteArrayInputStream(compressed),
+                                                                       Decompression.Format.GZIP, destination,
+                                                                       executor, limit));
+        assertFalse(Files.exists(destination));
+
+        // left compressed
+        Path file = dir.resolve("file");
+        Files.write(file, compressed);
+        assertThrows(IOException.class, () -> Decompression.decompressInPlace(file, limit));
+        assertArrayEquals(compressed, Files.readAllBytes(file));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    public void testMaxRatio() throws IOException {
+        // about 1000 times smaller
+        ByteArrayOutputStream bomb = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bomb)) {
+            byte[] zeros = new byte[1024 * 1024];
+            for (int i = 0; i < 128; i++) {
+                out.write(zeros);
+            }
+        }
+        Path destination = dir.resolve("bomb");
+        assertThrows(IOException.class, () -> Decompression.decompress(new ByteArrayInputStream(bomb.toByteArray()),
+                                                                       Decompression.Format.GZIP, destination, null,
+                                                                       new Decompression.Limit(Long.MAX_VALUE, 200)));
+        assertFalse(Files.exists(destination));
+
+        Decompression.decompress(new ByteArrayInputStream(bomb.toByteArray()), Decompression.Format.GZIP, destination,
+                                 null, new Decompression.Limit(Long.MAX_VALUE, 2000));
+        assertEquals(128 * 1024 * 1024, Files.size(destination));
+    }
+
+    static byte[] content(int size) {
+        byte[] bytes = new byte[size];
+        Random random = new Random(size);
+        // compressible
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ('a' + random.nextInt(4));
+        }
+        return bytes;
+    }
+
+    static byte[] gzip(byte[] bytes) {
+        return compress(bytes, GZIPOutputStream::new);
+    }
+
+    private static byte[] zstd(byte[] bytes) {
+        return compress(bytes, ZstdOutputStream::new);
+    }
+
+    private static byte[] zip(byte[]... files) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("dir/"));
+            zip.closeEntry();
+            for (int i = 0; i < files.length; i++) {
+                zip.putNextEntry(new ZipEntry("dir/gc-" + i + ".log"));
+                zip.write(files[i]);
+                zip.closeEntry();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] compress(byte[] bytes, Compressor compressor) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream compressed = compressor.wrap(out)) {
+            compressed.write(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] bytes = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, bytes, a.length, b.length);
+        return bytes;
+    }
+
+    private interface Compressor {
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+}
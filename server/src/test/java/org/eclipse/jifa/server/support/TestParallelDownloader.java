@@ -0,0 +1,337 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.support;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestParallelDownloader {
+
+    private static final int PART_SIZE = 1000;
+
+    @TempDir
+    Path dir;
+
+    private final byte[] data = new byte[10 * PART_SIZE + 500];
+
+    private ExecutorService executor;
+
+    private HttpServer server;
+
+    // the ranges requested from the server
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    private boolean rangeSupported = true;
+
+    private String contentMD5;
+
+    // the bytes served, which are the data or the compressed data
+    private byte[] served;
+
+    @BeforeEach
+    public void before() throws Exception {
+        new Random(42).nextBytes(data);
+        served = data;
+        contentMD5 = Base64.getEncoder().encodeToString(MessageDigest.getInstance("MD5").digest(data));
+        executor = Executors.newFixedThreadPool(4);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/file", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Content-MD5", contentMD5);
+            if (rangeSupported) {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            byte[] body = served;
+            int code = 200;
+            if (rangeSupported && range != null) {
+                ranges.add(range);
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                int start = Integer.parseInt(bounds[0]);
+                int end = bounds.length > 1 ? Integer.parseInt(bounds[1]) : served.length - 1;
+                body = Arrays.copyOfRange(served, start, end + 1);
+                code = 206;
+            }
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(served.length));
+                exchange.sendResponseHeaders(code, -1);
+            } else {
+                exchange.sendResponseHeaders(code, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void after() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testURL() throws IOException {
+        Path destination = dir.resolve("file");
+        RecordingListener listener = new RecordingListener();
+        downloader().download(DownloadSources.url(url()), destination, listener);
+
+        assertArrayEquals(data, Files.readAllBytes(destination));
+        assertEquals(11, ranges.size());
+        assertEquals(data.length, listener.totalSize.get());
+        assertEquals(data.length, listener.transferredSize.get());
+        assertFalse(Files.exists(PartCheckpoint.pathOf(destination)));
+    }
+
+    @Test
+    public void testURLWithoutRanges() throws IOException {
+        rangeSupported = false;
+        Path destination = dir.resolve("file");
+        downloader().download(DownloadSources.url(url()), destination, new RecordingListener());
+
+        assertArrayEquals(data, Files.readAllBytes(destination));
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    public void testDecompression() throws Exception {
+        byte[] content = TestDecompression.content(10 * PART_SIZE);
+        served = TestDecompression.gzip(content);
+        contentMD5 = Base64.getEncoder().encodeToString(MessageDigest.getInstance("MD5").digest(served));
+        Path destination = dir.resolve("file");
+        RecordingListener listener = new RecordingListener();
+        new ParallelDownloader(executor, PART_SIZE, 3, Decompression.Limit.NONE).download(DownloadSources.url(url()), destination, listener);
+
+        assertArrayEquals(content, Files.readAllBytes(destination));
+        // the head is probed by a ranged request and the content is streamed
+        assertEquals(1, ranges.size());
+        assertEquals(served.length, listener.transferredSize.get());
+
+        // not compressed
+        served = data;
+        contentMD5 = Base64.getEncoder().encodeToString(MessageDigest.getInstance("MD5").digest(data));
+        ranges.clear();
+        new ParallelDownloader(executor, PART_SIZE, 3, Decompression.Limit.NONE).download(DownloadSources.url(url()), destination,
+                                                                      new RecordingListener());
+        assertArrayEquals(data, Files.readAllBytes(destination));
+        assertEquals(12, ranges.size());
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        contentMD5 = Base64.getEncoder().encodeToString(MessageDigest.getInstance("MD5").digest(new byte[1]));
+        Path destination = dir.resolve("file");
+        IOException e = assertThrows(IOException.class,
+                                     () -> downloader().download(DownloadSources.url(url()), destination,
+                                                                 new RecordingListener()));
+        assertTrue(e.getMessage().startsWith("Checksum mismatch"));
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        Path destination = dir.resolve("file");
+        ParallelDownloader.Source source = DownloadSources.url(url());
+
+        // the parts from the 6th always fail
+        ParallelDownloader.Source failing = new DelegatingSource(source) {
+            @Override
+            public InputStream open(long start, long length) throws IOException {
+                if (start >= 6 * PART_SIZE) {
+                    throw new IOException("Broken");
+                }
+                return super.open(start, length);
+            }
+        };
+        assertThrows(IOException.class, () -> new ParallelDownloader(executor, PART_SIZE, 1, null)
+                .download(failing, destination, new RecordingListener()));
+        assertTrue(Files.exists(PartCheckpoint.pathOf(destination)));
+        assertEquals(6, ranges.size());
+
+        ranges.clear();
+        RecordingListener listener = new RecordingListener();
+        downloader().download(source, destination, listener);
+        assertArrayEquals(data, Files.readAllBytes(destination));
+        assertEquals(5, ranges.size(), "the completed parts are not downloaded again");
+        assertEquals(data.length, listener.transferredSize.get());
+        assertFalse(Files.exists(PartCheckpoint.pathOf(destination)));
+
+        // the checkpoint of another version is discarded
+        Files.writeString(PartCheckpoint.pathOf(destination), "{\"size\":" + data.length + ",\"partSize\":" + PART_SIZE +
+                                                     ",\"version\":\"v0\",\"completed\":[2047]}");
+        ranges.clear();
+        downloader().download(source, destination, new RecordingListener());
+        assertArrayEquals(data, Files.readAllBytes(destination));
+        assertEquals(11, ranges.size());
+    }
+
+    @Test
+    public void testRetryPart() throws IOException {
+        Path destination = dir.resolve("file");
+        AtomicLong failures = new AtomicLong();
+        ParallelDownloader.Source flaky = new DelegatingSource(DownloadSources.url(url())) {
+            @Override
+            public InputStream open(long start, long length) throws IOException {
+                InputStream in = super.open(start, length);
+                if (start == 3 * PART_SIZE && failures.getAndIncrement() < ParallelDownloader.MAX_PART_ATTEMPTS - 1) {
+                    // truncated
+                    return new ByteArrayInputStream(in.readNBytes(PART_SIZE / 2));
+                }
+                return in;
+            }
+        };
+        RecordingListener listener = new RecordingListener();
+        downloader().download(flaky, destination, listener);
+        assertArrayEquals(data, Files.readAllBytes(destination));
+        assertEquals(data.length, listener.transferredSize.get());
+    }
+
+    @Test
+    public void testS3() throws IOException {
+        String etag = HexFormat.of().formatHex(Base64.getDecoder().decode(contentMD5));
+        List<long[]> s3Ranges = new CopyOnWriteArrayList<>();
+        AbstractAmazonS3 s3 = new AbstractAmazonS3() {
+            @Override
+            public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength(data.length);
+                metadata.setHeader("ETag", etag);
+                return metadata;
+            }
+
+            @Override
+            public S3Object getObject(GetObjectRequest request) {
+                if (!request.getMatchingETagConstraints().contains(etag)) {
+                    return null;
+                }
+                long[] range = request.getRange();
+                s3Ranges.add(range);
+                S3Object object = new S3Object();
+                object.setObjectContent(new ByteArrayInputStream(data, (int) range[0],
+                                                                 (int) (range[1] - range[0] + 1)));
+                return object;
+            }
+        };
+
+        Path destination = dir.resolve("object");
+        downloader().download(DownloadSources.s3(s3, "bucket", "key"), destination, new RecordingListener());
+        assertArrayEquals(data, Files.readAllBytes(destination));
+        assertEquals(11, s3Ranges.size());
+    }
+
+    private ParallelDownloader downloader() {
+        return new ParallelDownloader(executor, PART_SIZE, 3, null);
+    }
+
+    private String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/file";
+    }
+
+    private static class DelegatingSource implements ParallelDownloader.Source {
+
+        private final ParallelDownloader.Source delegate;
+
+        DelegatingSource(ParallelDownloader.Source delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long size() {
+            return delegate.size();
+        }
+
+        @Override
+        public boolean rangeSupported() {
+            return delegate.rangeSupported();
+        }
+
+        @Override
+        public String version() {
+            return delegate.version();
+        }
+
+        @Override
+        public String md5() {
+            return delegate.md5();
+        }
+
+        @Override
+        public InputStream open(long start, long length) throws IOException {
+            return delegate.open(start, length);
+        }
+    }
+
+    private static class RecordingListener implements FileTransferListener {
+
+        private final AtomicLong totalSize = new AtomicLong();
+
+        private final AtomicLong transferredSize = new AtomicLong();
+
+        @Override
+        public void onStart() {
+        }
+
+        @Override
+        public void fireTotalSize(long totalSize) {
+            this.totalSize.set(totalSize);
+        }
+
+        @Override
+        public synchronized void fireTransferredSize(long transferredSize) {
+            assertTrue(transferredSize >= this.transferredSize.get(), "the transferred size never decreases");
+            this.transferredSize.set(transferredSize);
+        }
+
+        @Override
+        public void onSuccess(long totalSize) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+    }
+}
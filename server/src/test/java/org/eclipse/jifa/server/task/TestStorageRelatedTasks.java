@@ -0,0 +1,97 @@
+/********************************************************************************
+ * Copyright (c) 2024 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.jifa.server.task;
+
+import org.eclipse.jifa.server.Configuration;
+import org.eclipse.jifa.server.domain.entity.shared.file.FileEntity;
+import org.eclipse.jifa.server.domain.entity.shared.file.TransferringFileEntity;
+import org.eclipse.jifa.server.enums.FileTransferState;
+import org.eclipse.jifa.server.enums.FileType;
+import org.eclipse.jifa.server.enums.Role;
+import org.eclipse.jifa.server.repository.FileRepo;
+import org.eclipse.jifa.server.repository.TransferringFileRepo;
+import org.eclipse.jifa.server.service.impl.StorageServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestStorageRelatedTasks {
+
+    @TempDir
+    Path dir;
+
+    private final FileRepo fileRepo = mock(FileRepo.class);
+
+    private final TransferringFileRepo transferringFileRepo = mock(TransferringFileRepo.class);
+
+    private StorageServiceImpl storageService;
+
+    private StorageRelatedTasks tasks;
+
+    @BeforeEach
+    public void init() {
+        Configuration config = new Configuration();
+        config.setRole(Role.ELASTIC_WORKER);
+        config.setStoragePath(dir);
+        storageService = new StorageServiceImpl(null);
+        ReflectionTestUtils.setField(storageService, "config", config);
+        ReflectionTestUtils.invokeMethod(storageService, "init");
+
+        tasks = new StorageRelatedTasks(new LockSupport(null), fileRepo, transferringFileRepo, null, storageService);
+        ReflectionTestUtils.setField(tasks, "config", config);
+    }
+
+    @Test
+    public void testScavengeAbandonedChunkedUploads() throws Exception {
+        // timed out
+        provision("failed", FileTransferState.FAILURE);
+        provision("uploading", FileTransferState.IN_PROGRESS);
+        // the transferring file is deleted
+        provision("deleted", null);
+        // the file is created, so it is kept though its transferring file is deleted
+        provision("completed", null);
+        when(fileRepo.findByUniqueName("completed")).thenReturn(Optional.of(new FileEntity()));
+
+        tasks.scavengeAbandonedChunkedUploads();
+
+        assertEquals(Map.of(FileType.GC_LOG, Set.of("uploading", "completed")), storageService.getChunkedUploads());
+        assertFalse(Files.exists(storageService.locationOf(FileType.GC_LOG, "failed")));
+        assertFalse(Files.exists(storageService.locationOf(FileType.GC_LOG, "deleted")));
+        assertTrue(Files.exists(storageService.locationOf(FileType.GC_LOG, "uploading")));
+        assertTrue(Files.exists(storageService.locationOf(FileType.GC_LOG, "completed")));
+    }
+
+    private void provision(String name, FileTransferState state) throws Exception {
+        storageService.provisionChunkedUpload(FileType.GC_LOG, name, 1024, 256);
+        TransferringFileEntity transferringFile = null;
+        if (state != null) {
+            transferringFile = new TransferringFileEntity();
+            transferringFile.setUniqueName(name);
+            transferringFile.setTransferState(state);
+        }
+        when(transferringFileRepo.findByUniqueName(name)).thenReturn(Optional.ofNullable(transferringFile));
+    }
+}